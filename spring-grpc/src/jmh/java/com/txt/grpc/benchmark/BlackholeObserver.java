@@ -0,0 +1,47 @@
+package com.txt.grpc.benchmark;
+
+import io.grpc.stub.StreamObserver;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Response observer that hands every message to a {@link Blackhole} and lets the benchmark thread wait for the
+ * end of the stream.
+ */
+final class BlackholeObserver<T> implements StreamObserver<T> {
+
+    private final Blackhole blackhole;
+    private final CountDownLatch finishLatch = new CountDownLatch(1);
+    private volatile Throwable error;
+
+    BlackholeObserver(Blackhole blackhole) {
+        this.blackhole = blackhole;
+    }
+
+    @Override
+    public void onNext(T value) {
+        blackhole.consume(value);
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        error = t;
+        finishLatch.countDown();
+    }
+
+    @Override
+    public void onCompleted() {
+        finishLatch.countDown();
+    }
+
+    void await() throws InterruptedException {
+        if (!finishLatch.await(30, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("stream did not complete within 30 seconds");
+        }
+        if (error != null) {
+            throw new IllegalStateException("stream failed", error);
+        }
+    }
+}
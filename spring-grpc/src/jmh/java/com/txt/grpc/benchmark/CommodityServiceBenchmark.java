@@ -0,0 +1,90 @@
+package com.txt.grpc.benchmark;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnknownFieldSet;
+import com.txt.grpc.errorhandling.Commodity;
+import com.txt.grpc.errorhandling.CommodityPriceProviderGrpc;
+import com.txt.grpc.errorhandling.CommodityQuote;
+import com.txt.grpc.errorhandling.StreamingCommodityQuote;
+import io.grpc.stub.StreamObserver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class CommodityServiceBenchmark {
+
+    /**
+     * Size of the padding carried by every {@link Commodity} request. Name and token are checked by the server, so the
+     * padding travels as an unknown field, which the server still reads and parses.
+     */
+    @Param({"16", "1024"})
+    public int payloadSize;
+
+    private static final int PADDING_FIELD_NUMBER = 1000;
+
+    /**
+     * Stream shape of the streaming benchmarks, kept apart so its parameter does not multiply the unary one.
+     */
+    @State(Scope.Thread)
+    public static class StreamState {
+
+        /**
+         * Number of {@link Commodity} requests sent on one bidirectional stream; each one is answered with five
+         * quotes.
+         */
+        @Param({"1", "16", "256"})
+        public int streamLength;
+    }
+
+    private CommodityPriceProviderGrpc.CommodityPriceProviderBlockingStub blockingStub;
+    private CommodityPriceProviderGrpc.CommodityPriceProviderStub nonBlockingStub;
+    private Commodity request;
+
+    @Setup
+    public void setup(ServicesState services) {
+        blockingStub = CommodityPriceProviderGrpc.newBlockingStub(services.channel());
+        nonBlockingStub = CommodityPriceProviderGrpc.newStub(services.channel());
+        request = Commodity.newBuilder()
+                .setCommodityName("Commodity1")
+                .setAccessToken("123validToken")
+                .setUnknownFields(UnknownFieldSet.newBuilder()
+                        .addField(PADDING_FIELD_NUMBER, UnknownFieldSet.Field.newBuilder()
+                                .addLengthDelimited(ByteString.copyFromUtf8(ServicesState.payload(payloadSize)))
+                                .build())
+                        .build())
+                .build();
+    }
+
+    @Benchmark
+    public CommodityQuote getBestCommodityPrice() {
+        return blockingStub.getBestCommodityPrice(request);
+    }
+
+    @Benchmark
+    public void bidirectionalListOfPrices(StreamState stream, Blackhole blackhole) throws InterruptedException {
+        BlackholeObserver<StreamingCommodityQuote> responseObserver = new BlackholeObserver<>(blackhole);
+        StreamObserver<Commodity> requestObserver = nonBlockingStub.bidirectionalListOfPrices(responseObserver);
+        for (int i = 0; i < stream.streamLength; i++) {
+            requestObserver.onNext(request);
+        }
+        requestObserver.onCompleted();
+        responseObserver.await();
+    }
+}
@@ -0,0 +1,29 @@
+package com.txt.grpc.benchmark;
+
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A started server together with a client channel connected to it.
+ */
+final class Endpoint {
+
+    private final Server server;
+    private final ManagedChannel channel;
+
+    Endpoint(Server server, ManagedChannel channel) {
+        this.server = server;
+        this.channel = channel;
+    }
+
+    ManagedChannel channel() {
+        return channel;
+    }
+
+    void shutdown() throws InterruptedException {
+        channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,47 @@
+package com.txt.grpc.benchmark;
+
+import com.txt.grpc.hello.HelloRequest;
+import com.txt.grpc.hello.HelloResponse;
+import com.txt.grpc.hello.HelloServiceGrpc;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class HelloServiceBenchmark {
+
+    @Param({"16", "1024", "16384"})
+    public int payloadSize;
+
+    private HelloServiceGrpc.HelloServiceBlockingStub blockingStub;
+    private HelloRequest request;
+
+    @Setup
+    public void setup(ServicesState services) {
+        blockingStub = HelloServiceGrpc.newBlockingStub(services.channel());
+        request = HelloRequest.newBuilder()
+                .setFirstName(ServicesState.payload(payloadSize))
+                .setLastName("gRPC")
+                .build();
+    }
+
+    @Benchmark
+    public HelloResponse hello() {
+        return blockingStub.hello(request);
+    }
+}
@@ -0,0 +1,146 @@
+package com.txt.grpc.benchmark;
+
+import com.txt.grpc.client.ServiceConfigBuilder;
+import com.txt.grpc.client.StaticAddressNameResolverProvider;
+import com.txt.grpc.client.WeightedLeastRequestLoadBalancerProvider;
+import com.txt.grpc.errorhandling.Commodity;
+import com.txt.grpc.errorhandling.CommodityPriceProviderGrpc;
+import com.txt.grpc.errorhandling.CommodityQuote;
+import com.txt.grpc.interceptor.AccessTokenInterceptor;
+import com.txt.grpc.interceptor.DelayInjectionInterceptor;
+import com.txt.grpc.service.CommodityService;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Metadata;
+import io.grpc.Server;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.ServerInterceptors;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Unary calls from one channel to several Netty replicas in the same JVM, reporting at the end of each trial how
+ * the calls were spread. {@code pick_first} pins every call to one replica; {@code round_robin} spreads them evenly
+ * while the replicas are equal; {@code weighted_least_request} also steers away from a replica that slows down.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class LoadBalancingBenchmark {
+
+    @Param({"pick_first", "round_robin", WeightedLeastRequestLoadBalancerProvider.POLICY_NAME})
+    public String policy;
+
+    @Param({"4"})
+    public int replicas;
+
+    /**
+     * Delay added to every call of the last replica, in microseconds; 0 keeps the replicas equal.
+     */
+    @Param({"0", "2000"})
+    public long slowReplicaDelayMicros;
+
+    private final List<Server> servers = new ArrayList<>();
+    private AtomicLongArray calls;
+    private ManagedChannel channel;
+    private CommodityPriceProviderGrpc.CommodityPriceProviderBlockingStub stub;
+    private Commodity request;
+
+    @Setup(Level.Trial)
+    public void startReplicas() throws Exception {
+        calls = new AtomicLongArray(replicas);
+        List<String> addresses = new ArrayList<>();
+        for (int i = 0; i < replicas; i++) {
+            Duration delay = i == replicas - 1 ? Duration.ofNanos(slowReplicaDelayMicros * 1000) : Duration.ZERO;
+            Server server = NettyServerBuilder.forPort(0)
+                    .addService(ServerInterceptors.intercept(new CommodityService(), new AccessTokenInterceptor(),
+                            new DelayInjectionInterceptor(delay, 1.0), counting(i)))
+                    .build()
+                    .start();
+            servers.add(server);
+            addresses.add("127.0.0.1:" + server.getPort());
+        }
+        StaticAddressNameResolverProvider.register();
+        WeightedLeastRequestLoadBalancerProvider.register();
+        channel = ManagedChannelBuilder.forTarget(StaticAddressNameResolverProvider.target(addresses))
+                .usePlaintext()
+                .defaultServiceConfig(new ServiceConfigBuilder().loadBalancingPolicy(policy).build())
+                .build();
+        stub = CommodityPriceProviderGrpc.newBlockingStub(channel);
+        request = Commodity.newBuilder()
+                .setCommodityName("Commodity1")
+                .setAccessToken("123validToken")
+                .build();
+    }
+
+    @Setup(Level.Iteration)
+    public void resetCounts() {
+        for (int i = 0; i < replicas; i++) {
+            calls.set(i, 0);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void reportSpread() {
+        long total = 0;
+        for (int i = 0; i < replicas; i++) {
+            total += calls.get(i);
+        }
+        StringBuilder spread = new StringBuilder("calls per replica:");
+        for (int i = 0; i < replicas; i++) {
+            spread.append(String.format(" %.1f%%", total == 0 ? 0.0 : 100.0 * calls.get(i) / total));
+        }
+        System.out.println(spread);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopReplicas() throws Exception {
+        channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        for (Server server : servers) {
+            server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        }
+        servers.clear();
+    }
+
+    @Benchmark
+    public CommodityQuote getBestCommodityPrice() {
+        return stub.getBestCommodityPrice(request);
+    }
+
+    private ServerInterceptor counting(int replica) {
+        return new ServerInterceptor() {
+            @Override
+            public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call,
+                                                                         Metadata headers,
+                                                                         ServerCallHandler<ReqT, RespT> next) {
+                calls.incrementAndGet(replica);
+                return next.startCall(call, headers);
+            }
+        };
+    }
+}
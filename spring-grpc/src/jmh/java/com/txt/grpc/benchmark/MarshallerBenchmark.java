@@ -0,0 +1,107 @@
+package com.txt.grpc.benchmark;
+
+import com.txt.grpc.service.ZeroCopyMarshaller;
+import com.txt.grpc.streaming.Stock;
+import com.txt.grpc.streaming.StockQuote;
+import io.grpc.Drainable;
+import io.grpc.MethodDescriptor;
+import io.grpc.internal.ReadableBuffers;
+import io.grpc.protobuf.ProtoUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares protobuf's marshaller with {@link ZeroCopyMarshaller} without a transport: parsing a {@link Stock} from a
+ * direct buffer as Netty hands it over, and writing a {@link StockQuote} either fanned out (the same shared instance
+ * every time) or freshly built.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class MarshallerBenchmark {
+
+    public enum Kind {
+        PROTOBUF, ZERO_COPY
+    }
+
+    @Param({"PROTOBUF", "ZERO_COPY"})
+    public Kind marshaller;
+
+    /**
+     * Size of the {@code company_name} and {@code description} of the parsed {@link Stock}.
+     */
+    @Param({"16", "1024"})
+    public int payloadSize;
+
+    private MethodDescriptor.Marshaller<Stock> stockMarshaller;
+    private MethodDescriptor.Marshaller<StockQuote> quoteMarshaller;
+    private ByteBuffer serializedStock;
+    private StockQuote fannedOutQuote;
+    private final ByteArrayOutputStream sink = new ByteArrayOutputStream(1024);
+    private int offer;
+
+    @Setup
+    public void setup() {
+        stockMarshaller = marshaller == Kind.PROTOBUF
+                ? ProtoUtils.marshaller(Stock.getDefaultInstance())
+                : ZeroCopyMarshaller.of(Stock.getDefaultInstance());
+        quoteMarshaller = marshaller == Kind.PROTOBUF
+                ? ProtoUtils.marshaller(StockQuote.getDefaultInstance())
+                : ZeroCopyMarshaller.of(StockQuote.getDefaultInstance());
+        byte[] stock = Stock.newBuilder()
+                .setTickerSymbol("AU")
+                .setCompanyName(ServicesState.payload(payloadSize))
+                .setDescription(ServicesState.payload(payloadSize))
+                .build()
+                .toByteArray();
+        serializedStock = ByteBuffer.allocateDirect(stock.length).put(stock).flip();
+        fannedOutQuote = ZeroCopyMarshaller.share(quote(1));
+    }
+
+    @Benchmark
+    public String parseStock() {
+        Stock stock = stockMarshaller.parse(ReadableBuffers.openStream(
+                ReadableBuffers.wrap(serializedStock.duplicate()), true));
+        return stock.getTickerSymbol();
+    }
+
+    @Benchmark
+    public int writeFannedOutQuote() throws IOException {
+        return drain(quoteMarshaller, fannedOutQuote);
+    }
+
+    @Benchmark
+    public int writeFreshQuote() throws IOException {
+        return drain(quoteMarshaller, quote(++offer));
+    }
+
+    private <T> int drain(MethodDescriptor.Marshaller<T> marshaller, T message) throws IOException {
+        sink.reset();
+        return ((Drainable) marshaller.stream(message)).drainTo(sink);
+    }
+
+    private static StockQuote quote(int offer) {
+        return StockQuote.newBuilder()
+                .setPrice(offer * 0.01)
+                .setOfferNumber(offer)
+                .setDescription("Price for stock:AU")
+                .build();
+    }
+}
@@ -0,0 +1,65 @@
+package com.txt.grpc.benchmark;
+
+import com.txt.grpc.interceptor.AccessTokenInterceptor;
+import com.txt.grpc.marketdata.MarketDataHub;
+import com.txt.grpc.service.CommodityService;
+import com.txt.grpc.service.HelloServiceImpl;
+import com.txt.grpc.service.StockService;
+import com.txt.grpc.service.WriteCoalescing;
+import io.grpc.ManagedChannel;
+import io.grpc.ServerInterceptors;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Starts one server hosting HelloService, CommodityPriceProvider and StockQuoteProvider for the selected transport.
+ */
+@State(Scope.Benchmark)
+public class ServicesState {
+
+    @Param({"IN_PROCESS", "NETTY"})
+    public Transport transport;
+
+    /**
+     * Messages coalesced per flush on the bidirectional price streams; 1 disables coalescing.
+     */
+    @Param({"1", "32"})
+    public int coalesceMessages;
+
+    private MarketDataHub marketDataHub;
+    private Endpoint endpoint;
+
+    @Setup(Level.Trial)
+    public void startServer() throws Exception {
+        WriteCoalescing coalescing = WriteCoalescing.of(coalesceMessages, 16 * 1024, Duration.ofNanos(200_000));
+        marketDataHub = new MarketDataHub();
+        endpoint = transport.start(List.of(
+                new HelloServiceImpl().bindService(),
+                ServerInterceptors.intercept(new CommodityService(coalescing), new AccessTokenInterceptor()),
+                new StockService(marketDataHub, 16, coalescing).bindService()));
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServer() throws Exception {
+        endpoint.shutdown();
+        marketDataHub.close();
+    }
+
+    public ManagedChannel channel() {
+        return endpoint.channel();
+    }
+
+    /**
+     * Builds a string of the given length, used to scale request payloads.
+     */
+    static String payload(int size) {
+        return "x".repeat(size);
+    }
+}
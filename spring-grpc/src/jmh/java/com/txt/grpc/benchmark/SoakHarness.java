@@ -0,0 +1,347 @@
+package com.txt.grpc.benchmark;
+
+import com.txt.grpc.errorhandling.Commodity;
+import com.txt.grpc.errorhandling.CommodityPriceProviderGrpc;
+import com.txt.grpc.errorhandling.StreamingCommodityQuote;
+import com.txt.grpc.interceptor.AccessTokenInterceptor;
+import com.txt.grpc.marketdata.MarketDataHub;
+import com.txt.grpc.service.CommodityService;
+import com.txt.grpc.service.StockService;
+import com.txt.grpc.streaming.Stock;
+import com.txt.grpc.streaming.StockQuote;
+import com.txt.grpc.streaming.StockQuoteProviderGrpc;
+import io.grpc.ServerInterceptors;
+import io.grpc.netty.shaded.io.netty.util.internal.PlatformDependent;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps thousands of bidirectional price streams open for a fixed duration and fails when memory, threads or
+ * throughput drift, to catch the slow leaks that only show after hours of open streams.
+ * <p>
+ * Every stream sends one request per {@code messageInterval}, skipping a turn while its transport is not ready, and
+ * a {@code churn} share of the streams is half-closed and replaced every second. Heap after a full GC, direct memory
+ * (the JDK pool plus Netty's own counter for its pooled, cleaner-less buffers) and the thread count are sampled
+ * every {@code sampleInterval} after the warmup. Client and server share the JVM, so the figures cover both ends
+ * of a stream.
+ * <p>
+ * The run fails when the heap retained per open stream over the pre-stream baseline, its growth or the growth of
+ * direct memory per stream between the first and last sample, the growth of the thread count, or the drop of the
+ * response rate between the first and last interval passes its threshold, or when a stream fails. The retained
+ * heap includes the fixed cost of the transport spread over the streams, so it is only meaningful with thousands
+ * of them.
+ * <p>
+ * {@code mvn -Psoak -DskipTests verify -Dsoak.args="--transport=netty --streams=5000 --duration=3600"}; a failed
+ * threshold fails the build.
+ */
+@Slf4j
+public class SoakHarness {
+
+    private static final long TICK_MILLIS = 10;
+
+    private static final Commodity COMMODITY = Commodity.newBuilder()
+            .setCommodityName("Commodity1")
+            .setAccessToken("123validToken")
+            .build();
+    private static final Stock STOCK = Stock.newBuilder()
+            .setTickerSymbol("AU")
+            .setCompanyName("Auburn Corp")
+            .build();
+
+    private final SoakOptions options;
+    private final SoakStream<?, ?>[] streams;
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder opened = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private CommodityPriceProviderGrpc.CommodityPriceProviderStub commodityStub;
+    private StockQuoteProviderGrpc.StockQuoteProviderStub stockStub;
+    private double sendBudget;
+    private double churnBudget;
+    private int sendCursor;
+    private int churnCursor;
+    private volatile boolean finished;
+
+    public SoakHarness(SoakOptions options) {
+        this.options = options;
+        this.streams = new SoakStream<?, ?>[options.getStreams()];
+    }
+
+    public Result run() throws IOException, InterruptedException {
+        log.info("Soak: {}", options);
+        MarketDataHub marketDataHub = new MarketDataHub();
+        Endpoint endpoint = options.getTransport().start(List.of(
+                ServerInterceptors.intercept(new CommodityService(), new AccessTokenInterceptor()),
+                new StockService(marketDataHub, 16).bindService()));
+        ScheduledExecutorService driver = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "soak-driver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            commodityStub = CommodityPriceProviderGrpc.newStub(endpoint.channel());
+            stockStub = StockQuoteProviderGrpc.newStub(endpoint.channel());
+            long start = System.nanoTime();
+            Sample baseline = sample(start);
+            for (int i = 0; i < streams.length; i++) {
+                streams[i] = open(i);
+            }
+            driver.scheduleAtFixedRate(this::tick, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+
+            Thread.sleep(options.getWarmup().toMillis());
+            List<Sample> samples = new ArrayList<>();
+            samples.add(sample(start));
+            long end = System.nanoTime() + options.getDuration().toNanos();
+            for (long remaining = end - System.nanoTime(); remaining > 0; remaining = end - System.nanoTime()) {
+                Thread.sleep(Math.min(options.getSampleInterval().toMillis(), TimeUnit.NANOSECONDS.toMillis(remaining)));
+                Sample sample = sample(start);
+                log.info("Soak {}", sample.describe(samples.get(samples.size() - 1)));
+                samples.add(sample);
+            }
+            return new Result(options, baseline, samples, opened.sum(), errors.sum());
+        } finally {
+            finished = true;
+            driver.shutdownNow();
+            driver.awaitTermination(5, TimeUnit.SECONDS);
+            for (SoakStream<?, ?> stream : streams) {
+                if (stream != null) {
+                    stream.cancel();
+                }
+            }
+            endpoint.shutdown();
+            marketDataHub.close();
+        }
+    }
+
+    /**
+     * Runs on the driver thread, the only one touching the streams once they are open.
+     */
+    private void tick() {
+        sendBudget += (double) streams.length * TICK_MILLIS / options.getMessageInterval().toMillis();
+        for (; sendBudget >= 1; sendBudget--) {
+            int index = sendCursor++ % streams.length;
+            if (streams[index].failed) {
+                streams[index] = open(index);
+            }
+            streams[index].send();
+        }
+        churnBudget += streams.length * options.getChurn() * TICK_MILLIS / 1000;
+        for (; churnBudget >= 1; churnBudget--) {
+            int index = churnCursor++ % streams.length;
+            streams[index].close();
+            streams[index] = open(index);
+        }
+        sendCursor %= streams.length;
+        churnCursor %= streams.length;
+    }
+
+    private SoakStream<?, ?> open(int index) {
+        opened.increment();
+        SoakOptions.Rpc rpc = options.getRpc();
+        if (rpc == SoakOptions.Rpc.COMMODITY || rpc == SoakOptions.Rpc.MIXED && index % 2 == 0) {
+            SoakStream<Commodity, StreamingCommodityQuote> stream = new SoakStream<>(COMMODITY);
+            commodityStub.bidirectionalListOfPrices(stream);
+            return stream;
+        }
+        SoakStream<Stock, StockQuote> stream = new SoakStream<>(STOCK);
+        stockStub.bidirectionalStreamingGetListsStockQuotes(stream);
+        return stream;
+    }
+
+    private Sample sample(long startNanos) {
+        System.gc();
+        long heapUsed = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        long directUsed = Math.max(0, PlatformDependent.usedDirectMemory());
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if ("direct".equals(pool.getName())) {
+                directUsed += pool.getMemoryUsed();
+            }
+        }
+        return new Sample(System.nanoTime() - startNanos, heapUsed, directUsed,
+                ManagementFactory.getThreadMXBean().getThreadCount(), sent.sum(), received.sum());
+    }
+
+    private final class SoakStream<ReqT, RespT> implements ClientResponseObserver<ReqT, RespT> {
+
+        private final ReqT request;
+        private ClientCallStreamObserver<ReqT> requests;
+        private volatile boolean failed;
+
+        private SoakStream(ReqT request) {
+            this.request = request;
+        }
+
+        @Override
+        public void beforeStart(ClientCallStreamObserver<ReqT> requestStream) {
+            this.requests = requestStream;
+        }
+
+        private void send() {
+            if (requests.isReady()) {
+                requests.onNext(request);
+                sent.increment();
+            }
+        }
+
+        private void close() {
+            requests.onCompleted();
+        }
+
+        private void cancel() {
+            requests.cancel("Soak finished", null);
+        }
+
+        @Override
+        public void onNext(RespT value) {
+            received.increment();
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            if (!finished) {
+                errors.increment();
+                log.warn("Soak stream failed: {}", t.getMessage());
+            }
+            failed = true;
+        }
+
+        @Override
+        public void onCompleted() {
+        }
+    }
+
+    /**
+     * Memory, threads and message counters at one point of the run.
+     */
+    public static final class Sample {
+
+        private final long elapsedNanos;
+        private final long heapUsed;
+        private final long directUsed;
+        private final int threads;
+        private final long sent;
+        private final long received;
+
+        Sample(long elapsedNanos, long heapUsed, long directUsed, int threads, long sent, long received) {
+            this.elapsedNanos = elapsedNanos;
+            this.heapUsed = heapUsed;
+            this.directUsed = directUsed;
+            this.threads = threads;
+            this.sent = sent;
+            this.received = received;
+        }
+
+        /**
+         * @return responses per second since the previous sample
+         */
+        double rateSince(Sample previous) {
+            return (received - previous.received) * 1e9 / (elapsedNanos - previous.elapsedNanos);
+        }
+
+        String describe(Sample previous) {
+            return String.format("t=%ds heap=%.1fMB direct=%.1fMB threads=%d sent=%d received=%d rate=%.0f msg/s",
+                    TimeUnit.NANOSECONDS.toSeconds(elapsedNanos), heapUsed / 1e6, directUsed / 1e6, threads, sent,
+                    received, rateSince(previous));
+        }
+    }
+
+    /**
+     * Samples of the run and the thresholds they passed or failed.
+     */
+    public static final class Result {
+
+        private final SoakOptions options;
+        private final Sample baseline;
+        private final List<Sample> samples;
+        private final long opened;
+        private final long errors;
+        private final List<String> failures = new ArrayList<>();
+
+        Result(SoakOptions options, Sample baseline, List<Sample> samples, long opened, long errors) {
+            this.options = options;
+            this.baseline = baseline;
+            this.samples = samples;
+            this.opened = opened;
+            this.errors = errors;
+            evaluate();
+        }
+
+        private void evaluate() {
+            int streams = options.getStreams();
+            Sample first = samples.get(0);
+            Sample last = samples.get(samples.size() - 1);
+            check((last.heapUsed - baseline.heapUsed) / streams, options.getMaxBytesPerStream(),
+                    "retained heap per stream");
+            check((last.heapUsed - first.heapUsed) / streams, options.getMaxHeapGrowthPerStream(),
+                    "heap growth per stream");
+            check((last.directUsed - first.directUsed) / streams, options.getMaxDirectGrowthPerStream(),
+                    "direct memory growth per stream");
+            check(last.threads - first.threads, options.getMaxThreadGrowth(), "thread growth");
+            check(errors, 0, "failed streams");
+            if (samples.size() > 2) {
+                double firstRate = samples.get(1).rateSince(first);
+                double lastRate = last.rateSince(samples.get(samples.size() - 2));
+                double drop = firstRate > 0 ? 1 - lastRate / firstRate : 0;
+                if (drop > options.getMaxRateDrop()) {
+                    failures.add(String.format("response rate dropped %.0f%%, from %.0f to %.0f msg/s, limit %.0f%%",
+                            drop * 100, firstRate, lastRate, options.getMaxRateDrop() * 100));
+                }
+            }
+        }
+
+        private void check(long value, long limit, String what) {
+            if (value > limit) {
+                failures.add(what + " " + value + " exceeds " + limit);
+            }
+        }
+
+        public boolean passed() {
+            return failures.isEmpty();
+        }
+
+        public List<String> failures() {
+            return failures;
+        }
+
+        public long received() {
+            return samples.get(samples.size() - 1).received;
+        }
+
+        /**
+         * @return streams opened, the initial ones and their replacements
+         */
+        public long opened() {
+            return opened;
+        }
+
+        public void print() {
+            Sample first = samples.get(0);
+            Sample last = samples.get(samples.size() - 1);
+            System.out.printf("%s%n", options);
+            System.out.printf("streams opened=%d failed=%d, responses=%d, rate=%.0f msg/s%n", opened, errors,
+                    last.received, last.rateSince(first));
+            System.out.printf("heap retained per stream=%d B, growth per stream=%d B; direct growth per stream=%d B;"
+                            + " threads %d -> %d%n", (last.heapUsed - baseline.heapUsed) / options.getStreams(),
+                    (last.heapUsed - first.heapUsed) / options.getStreams(),
+                    (last.directUsed - first.directUsed) / options.getStreams(), first.threads, last.threads);
+            System.out.println(passed() ? "PASSED" : "FAILED: " + String.join("; ", failures));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Result result = new SoakHarness(SoakOptions.parse(args)).run();
+        result.print();
+        System.exit(result.passed() ? 0 : 1);
+    }
+}
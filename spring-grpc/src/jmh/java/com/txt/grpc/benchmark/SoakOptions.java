@@ -0,0 +1,113 @@
+package com.txt.grpc.benchmark;
+
+import lombok.Getter;
+
+import java.time.Duration;
+
+/**
+ * Command line options of {@link SoakHarness}, given as {@code --name=value}; durations are in seconds.
+ */
+@Getter
+public class SoakOptions {
+
+    public enum Rpc {
+        /**
+         * {@code bidirectionalListOfPrices}
+         */
+        COMMODITY,
+        /**
+         * {@code bidirectionalStreamingGetListsStockQuotes}
+         */
+        STOCK,
+        /**
+         * Both, on alternate streams.
+         */
+        MIXED
+    }
+
+    private Transport transport = Transport.IN_PROCESS;
+    private Rpc rpc = Rpc.MIXED;
+    private int streams = 2_000;
+    private Duration messageInterval = Duration.ofSeconds(1);
+    private double churn = 0.01;
+    private Duration warmup = Duration.ofSeconds(30);
+    private Duration duration = Duration.ofMinutes(5);
+    private Duration sampleInterval = Duration.ofSeconds(10);
+    private long maxBytesPerStream = 32 * 1024;
+    private long maxHeapGrowthPerStream = 1024;
+    private long maxDirectGrowthPerStream = 8 * 1024;
+    private int maxThreadGrowth = 32;
+    private double maxRateDrop = 0.2;
+
+    public static SoakOptions parse(String[] args) {
+        SoakOptions options = new SoakOptions();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || arg.indexOf('=') < 0) {
+                throw new IllegalArgumentException("Expected --name=value but got " + arg + "\n" + usage());
+            }
+            String name = arg.substring(2, arg.indexOf('='));
+            String value = arg.substring(arg.indexOf('=') + 1);
+            switch (name) {
+                case "transport":
+                    options.transport = Transport.valueOf(value.toUpperCase().replace('-', '_'));
+                    break;
+                case "rpc":
+                    options.rpc = Rpc.valueOf(value.toUpperCase());
+                    break;
+                case "streams":
+                    options.streams = Integer.parseInt(value);
+                    break;
+                case "interval-ms":
+                    options.messageInterval = Duration.ofMillis(Long.parseLong(value));
+                    break;
+                case "churn":
+                    options.churn = Double.parseDouble(value);
+                    break;
+                case "warmup":
+                    options.warmup = Duration.ofSeconds(Long.parseLong(value));
+                    break;
+                case "duration":
+                    options.duration = Duration.ofSeconds(Long.parseLong(value));
+                    break;
+                case "sample":
+                    options.sampleInterval = Duration.ofSeconds(Long.parseLong(value));
+                    break;
+                case "max-bytes-per-stream":
+                    options.maxBytesPerStream = Long.parseLong(value);
+                    break;
+                case "max-heap-growth-per-stream":
+                    options.maxHeapGrowthPerStream = Long.parseLong(value);
+                    break;
+                case "max-direct-growth-per-stream":
+                    options.maxDirectGrowthPerStream = Long.parseLong(value);
+                    break;
+                case "max-thread-growth":
+                    options.maxThreadGrowth = Integer.parseInt(value);
+                    break;
+                case "max-rate-drop":
+                    options.maxRateDrop = Double.parseDouble(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option --" + name + "\n" + usage());
+            }
+        }
+        if (options.streams < 1 || options.messageInterval.isZero() || options.sampleInterval.isZero()) {
+            throw new IllegalArgumentException("streams, interval-ms and sample must be positive\n" + usage());
+        }
+        return options;
+    }
+
+    static String usage() {
+        return "Usage: SoakHarness [--transport=in-process|netty] [--rpc=commodity|stock|mixed] [--streams=2000]"
+                + " [--interval-ms=1000] [--churn=0.01] [--warmup=30] [--duration=300] [--sample=10]"
+                + " [--max-bytes-per-stream=32768] [--max-heap-growth-per-stream=1024]"
+                + " [--max-direct-growth-per-stream=8192] [--max-thread-growth=32] [--max-rate-drop=0.2]";
+    }
+
+    @Override
+    public String toString() {
+        return "transport=" + transport + ", rpc=" + rpc + ", streams=" + streams + ", interval="
+                + messageInterval.toMillis() + "ms, churn=" + churn + "/s, warmup=" + warmup.getSeconds()
+                + "s, duration=" + duration.getSeconds() + "s, sample=" + sampleInterval.getSeconds() + "s";
+    }
+}
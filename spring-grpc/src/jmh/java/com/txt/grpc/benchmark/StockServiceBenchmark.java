@@ -0,0 +1,98 @@
+package com.txt.grpc.benchmark;
+
+import com.txt.grpc.streaming.Stock;
+import com.txt.grpc.streaming.StockQuote;
+import com.txt.grpc.streaming.StockQuoteProviderGrpc;
+import io.grpc.stub.StreamObserver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class StockServiceBenchmark {
+
+    /**
+     * Size of the {@code description} carried by every {@link Stock} request.
+     */
+    @Param({"16", "1024"})
+    public int payloadSize;
+
+    /**
+     * Stream shape of the client and bidirectional streaming benchmarks; the server-side streaming one always sends a
+     * single request, so it does not take this state and is not repeated for every length.
+     */
+    @State(Scope.Thread)
+    public static class StreamState {
+
+        /**
+         * Number of {@link Stock} messages sent on client and bidirectional streams.
+         */
+        @Param({"1", "16", "256"})
+        public int streamLength;
+    }
+
+    private StockQuoteProviderGrpc.StockQuoteProviderBlockingStub blockingStub;
+    private StockQuoteProviderGrpc.StockQuoteProviderStub nonBlockingStub;
+    private Stock request;
+
+    @Setup
+    public void setup(ServicesState services) {
+        blockingStub = StockQuoteProviderGrpc.newBlockingStub(services.channel());
+        nonBlockingStub = StockQuoteProviderGrpc.newStub(services.channel());
+        request = Stock.newBuilder()
+                .setTickerSymbol("AU")
+                .setCompanyName("Auburn Corp")
+                .setDescription(ServicesState.payload(payloadSize))
+                .build();
+    }
+
+    @Benchmark
+    public void serverSideStreamingGetListStockQuotes(Blackhole blackhole) {
+        Iterator<StockQuote> stockQuotes = blockingStub.serverSideStreamingGetListStockQuotes(request);
+        while (stockQuotes.hasNext()) {
+            blackhole.consume(stockQuotes.next());
+        }
+    }
+
+    @Benchmark
+    public void clientSideStreamingGetStatisticsOfStocks(StreamState stream, Blackhole blackhole)
+            throws InterruptedException {
+        BlackholeObserver<StockQuote> responseObserver = new BlackholeObserver<>(blackhole);
+        StreamObserver<Stock> requestObserver = nonBlockingStub.clientSideStreamingGetStatisticsOfStocks(responseObserver);
+        sendAll(requestObserver, stream.streamLength);
+        responseObserver.await();
+    }
+
+    @Benchmark
+    public void bidirectionalStreamingGetListsStockQuotes(StreamState stream, Blackhole blackhole)
+            throws InterruptedException {
+        BlackholeObserver<StockQuote> responseObserver = new BlackholeObserver<>(blackhole);
+        StreamObserver<Stock> requestObserver = nonBlockingStub.bidirectionalStreamingGetListsStockQuotes(responseObserver);
+        sendAll(requestObserver, stream.streamLength);
+        responseObserver.await();
+    }
+
+    private void sendAll(StreamObserver<Stock> requestObserver, int streamLength) {
+        for (int i = 0; i < streamLength; i++) {
+            requestObserver.onNext(request);
+        }
+        requestObserver.onCompleted();
+    }
+}
@@ -0,0 +1,47 @@
+package com.txt.grpc.benchmark;
+
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Server;
+import io.grpc.ServerBuilder;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Transports the benchmarks run over: the in-process transport used by the unit tests and Netty on loopback.
+ */
+public enum Transport {
+
+    IN_PROCESS {
+        @Override
+        Endpoint start(List<ServerServiceDefinition> services) throws IOException {
+            String serverName = InProcessServerBuilder.generateName();
+            InProcessServerBuilder serverBuilder = InProcessServerBuilder.forName(serverName).directExecutor();
+            services.forEach(serverBuilder::addService);
+            Server server = serverBuilder.build().start();
+            // the client keeps its default executor: the in-process transport deadlocks on its own stream locks when
+            // a server write from the flush timer meets a client write while both sides run callbacks inline
+            ManagedChannel channel = InProcessChannelBuilder.forName(serverName).build();
+            return new Endpoint(server, channel);
+        }
+    },
+
+    NETTY {
+        @Override
+        Endpoint start(List<ServerServiceDefinition> services) throws IOException {
+            ServerBuilder<?> serverBuilder = ServerBuilder.forPort(0);
+            services.forEach(serverBuilder::addService);
+            Server server = serverBuilder.build().start();
+            ManagedChannel channel = ManagedChannelBuilder.forAddress("127.0.0.1", server.getPort())
+                    .usePlaintext()
+                    .build();
+            return new Endpoint(server, channel);
+        }
+    };
+
+    abstract Endpoint start(List<ServerServiceDefinition> services) throws IOException;
+}
@@ -0,0 +1,179 @@
+package com.txt.grpc.client;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A {@link Channel} spreading calls over several underlying channels, each with its own HTTP/2 connection and Netty
+ * event loop, so client throughput and the number of concurrent streams are not capped by a single connection.
+ * <p>
+ * Can be passed wherever a {@link Channel} is expected, e.g. to the {@code StockClient} and {@code CommodityClient}
+ * constructors. Every subchannel tracks its outstanding calls, which drives {@link Selection#LEAST_OUTSTANDING} and
+ * is reported by {@link #outstandingCalls()}.
+ */
+public class ChannelPool extends Channel implements AutoCloseable {
+
+    public enum Selection {
+        ROUND_ROBIN, LEAST_OUTSTANDING
+    }
+
+    private final List<ManagedChannel> channels;
+    private final Selection selection;
+    private final AtomicIntegerArray outstanding;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ChannelPool(List<ManagedChannel> channels, Selection selection) {
+        if (channels.isEmpty()) {
+            throw new IllegalArgumentException("At least one channel is required");
+        }
+        this.channels = List.copyOf(channels);
+        this.selection = selection;
+        this.outstanding = new AtomicIntegerArray(channels.size());
+    }
+
+    /**
+     * Opens {@code size} plaintext channels to the target.
+     */
+    public static ChannelPool forTarget(String target, int size, Selection selection) {
+        return forTarget(target, size, selection, "pick_first");
+    }
+
+    /**
+     * Opens {@code size} plaintext channels to the target, each balancing its calls over all resolved backends with
+     * the given policy; {@code static:///host:port,...} targets and the {@code weighted_least_request} policy are
+     * available.
+     */
+    public static ChannelPool forTarget(String target, int size, Selection selection, String loadBalancingPolicy) {
+        StaticAddressNameResolverProvider.register();
+        WeightedLeastRequestLoadBalancerProvider.register();
+        List<ManagedChannel> channels = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            channels.add(ManagedChannelBuilder.forTarget(target)
+                    .usePlaintext()
+                    .defaultLoadBalancingPolicy(loadBalancingPolicy)
+                    .build());
+        }
+        return new ChannelPool(channels, selection);
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> newCall(MethodDescriptor<ReqT, RespT> methodDescriptor,
+                                                         CallOptions callOptions) {
+        int index = select();
+        outstanding.incrementAndGet(index);
+        return new TrackedCall<>(channels.get(index).newCall(methodDescriptor, callOptions), index);
+    }
+
+    @Override
+    public String authority() {
+        return channels.get(0).authority();
+    }
+
+    public int size() {
+        return channels.size();
+    }
+
+    /**
+     * @return the number of calls currently open on each subchannel, in pool order
+     */
+    public int[] outstandingCalls() {
+        int[] counts = new int[outstanding.length()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = outstanding.get(i);
+        }
+        return counts;
+    }
+
+    private int select() {
+        int start = Math.floorMod(next.getAndIncrement(), channels.size());
+        if (selection == Selection.ROUND_ROBIN) {
+            return start;
+        }
+        // the rotating start index spreads ties instead of always favouring the first subchannel
+        int best = start;
+        int bestCount = outstanding.get(start);
+        for (int i = 1; i < channels.size() && bestCount > 0; i++) {
+            int candidate = (start + i) % channels.size();
+            int count = outstanding.get(candidate);
+            if (count < bestCount) {
+                best = candidate;
+                bestCount = count;
+            }
+        }
+        return best;
+    }
+
+    public void shutdown() {
+        channels.forEach(ManagedChannel::shutdown);
+    }
+
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (ManagedChannel channel : channels) {
+            if (!channel.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        channels.forEach(ManagedChannel::shutdownNow);
+        awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    private final class TrackedCall<ReqT, RespT> extends ForwardingClientCall.SimpleForwardingClientCall<ReqT, RespT> {
+
+        private final int index;
+        private final AtomicBoolean released = new AtomicBoolean();
+        private boolean started;
+
+        private TrackedCall(ClientCall<ReqT, RespT> delegate, int index) {
+            super(delegate);
+            this.index = index;
+        }
+
+        @Override
+        public void start(Listener<RespT> responseListener, Metadata headers) {
+            started = true;
+            super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<RespT>(responseListener) {
+                @Override
+                public void onClose(Status status, Metadata trailers) {
+                    release();
+                    super.onClose(status, trailers);
+                }
+            }, headers);
+        }
+
+        @Override
+        public void cancel(String message, Throwable cause) {
+            if (!started) {
+                // a call cancelled before start never gets onClose
+                release();
+            }
+            super.cancel(message, cause);
+        }
+
+        private void release() {
+            if (released.compareAndSet(false, true)) {
+                outstanding.decrementAndGet(index);
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.txt.grpc.client;
+
+import com.txt.grpc.interceptor.PreviousAttemptsInterceptor;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records the latency of successful calls and which attempt answered them, to derive hedging delays and to show how
+ * often hedged or retried attempts win.
+ * <p>
+ * The winning attempt is read from the {@code grpc-previous-rpc-attempts} response header, which servers echo from
+ * the request through {@link PreviousAttemptsInterceptor}; a response without it counts as a first-attempt win.
+ * Intercept the channel itself, above the retry layer, so only the committed attempt is seen.
+ */
+public class HedgingMetricsInterceptor implements ClientInterceptor {
+
+    private static final int TRACKED_ATTEMPTS = 5;
+    private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private final Histogram latencyMicros = new ConcurrentHistogram(MAX_LATENCY_MICROS, 3);
+    private final AtomicLongArray winsByAttempt = new AtomicLongArray(TRACKED_ATTEMPTS);
+    private final AtomicLong failures = new AtomicLong();
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method,
+                                                               CallOptions callOptions, Channel next) {
+        return new ForwardingClientCall.SimpleForwardingClientCall<>(next.newCall(method, callOptions)) {
+            @Override
+            public void start(Listener<RespT> responseListener, Metadata headers) {
+                long startNanos = System.nanoTime();
+                super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<>(responseListener) {
+                    private int attempt;
+
+                    @Override
+                    public void onHeaders(Metadata headers) {
+                        attempt = previousAttempts(headers);
+                        super.onHeaders(headers);
+                    }
+
+                    @Override
+                    public void onClose(Status status, Metadata trailers) {
+                        if (status.isOk()) {
+                            long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+                            latencyMicros.recordValue(Math.min(Math.max(micros, 1), MAX_LATENCY_MICROS));
+                            winsByAttempt.incrementAndGet(Math.min(attempt, TRACKED_ATTEMPTS - 1));
+                        } else {
+                            failures.incrementAndGet();
+                        }
+                        super.onClose(status, trailers);
+                    }
+                }, headers);
+            }
+        };
+    }
+
+    /**
+     * @return the latency at the given percentile of the successful calls so far, or zero before the first one
+     */
+    public Duration latencyPercentile(double percentile) {
+        return Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(latencyMicros.getValueAtPercentile(percentile)));
+    }
+
+    /**
+     * @return successful calls answered by the first, second, ... attempt; the last slot counts all later ones
+     */
+    public long[] winsByAttempt() {
+        long[] wins = new long[TRACKED_ATTEMPTS];
+        for (int i = 0; i < wins.length; i++) {
+            wins[i] = winsByAttempt.get(i);
+        }
+        return wins;
+    }
+
+    /**
+     * @return successful calls answered by an attempt other than the first
+     */
+    public long hedgeWins() {
+        long wins = 0;
+        for (int i = 1; i < TRACKED_ATTEMPTS; i++) {
+            wins += winsByAttempt.get(i);
+        }
+        return wins;
+    }
+
+    public long successes() {
+        return latencyMicros.getTotalCount();
+    }
+
+    public long failures() {
+        return failures.get();
+    }
+
+    public void reset() {
+        latencyMicros.reset();
+        for (int i = 0; i < TRACKED_ATTEMPTS; i++) {
+            winsByAttempt.set(i, 0);
+        }
+        failures.set(0);
+    }
+
+    private static int previousAttempts(Metadata headers) {
+        String value = headers.get(PreviousAttemptsInterceptor.PREVIOUS_RPC_ATTEMPTS);
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Math.max(0, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
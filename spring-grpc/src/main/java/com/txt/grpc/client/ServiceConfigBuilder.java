@@ -0,0 +1,120 @@
+package com.txt.grpc.client;
+
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Builds a gRPC service config, as passed to {@code ManagedChannelBuilder.defaultServiceConfig}, with per-method
+ * retry or hedging policies.
+ * <p>
+ * A method gets either a retry or a hedging policy, never both. Retried and hedged calls draw from the same
+ * throttling budget: once too many attempts fail, the channel stops sending extra attempts until successes
+ * replenish the tokens. The channel must be built with {@code enableRetry()}, and its {@code maxRetryAttempts}
+ * caps {@code maxAttempts}.
+ */
+public class ServiceConfigBuilder {
+
+    private final List<Map<String, ?>> methodConfigs = new ArrayList<>();
+    private String loadBalancingPolicy;
+    private Map<String, ?> loadBalancingPolicyConfig = Map.of();
+    private Map<String, ?> retryThrottling;
+
+    /**
+     * @param policy a registered policy such as {@code round_robin} or {@code pick_first}
+     */
+    public ServiceConfigBuilder loadBalancingPolicy(String policy) {
+        return loadBalancingPolicy(policy, Map.of());
+    }
+
+    /**
+     * @param config the policy's own settings, e.g. {@code choiceCount} for {@code weighted_least_request}
+     */
+    public ServiceConfigBuilder loadBalancingPolicy(String policy, Map<String, ?> config) {
+        this.loadBalancingPolicy = policy;
+        this.loadBalancingPolicyConfig = config;
+        return this;
+    }
+
+    /**
+     * Sends another attempt every {@code hedgingDelay} until one succeeds, a fatal status arrives or
+     * {@code maxAttempts} are in flight; the first response wins and the other attempts are cancelled.
+     */
+    public ServiceConfigBuilder hedging(MethodDescriptor<?, ?> method, int maxAttempts, Duration hedgingDelay,
+                                       Status.Code... nonFatalStatusCodes) {
+        Map<String, Object> policy = new LinkedHashMap<>();
+        policy.put("maxAttempts", (double) maxAttempts);
+        policy.put("hedgingDelay", duration(hedgingDelay));
+        policy.put("nonFatalStatusCodes", codes(nonFatalStatusCodes));
+        return methodConfig(method, "hedgingPolicy", policy);
+    }
+
+    /**
+     * Retries with exponential backoff, jittered by gRPC, on the given status codes.
+     */
+    public ServiceConfigBuilder retry(MethodDescriptor<?, ?> method, int maxAttempts, Duration initialBackoff,
+                                     Duration maxBackoff, double backoffMultiplier,
+                                     Status.Code... retryableStatusCodes) {
+        Map<String, Object> policy = new LinkedHashMap<>();
+        policy.put("maxAttempts", (double) maxAttempts);
+        policy.put("initialBackoff", duration(initialBackoff));
+        policy.put("maxBackoff", duration(maxBackoff));
+        policy.put("backoffMultiplier", backoffMultiplier);
+        policy.put("retryableStatusCodes", codes(retryableStatusCodes));
+        return methodConfig(method, "retryPolicy", policy);
+    }
+
+    /**
+     * Every failed attempt costs a token and every success returns {@code tokenRatio}; extra attempts are only sent
+     * while more than half of {@code maxTokens} are left.
+     */
+    public ServiceConfigBuilder retryThrottling(int maxTokens, double tokenRatio) {
+        Map<String, Object> throttling = new LinkedHashMap<>();
+        throttling.put("maxTokens", (double) maxTokens);
+        throttling.put("tokenRatio", tokenRatio);
+        this.retryThrottling = throttling;
+        return this;
+    }
+
+    public Map<String, ?> build() {
+        Map<String, Object> serviceConfig = new LinkedHashMap<>();
+        if (loadBalancingPolicy != null) {
+            serviceConfig.put("loadBalancingConfig", List.of(Map.of(loadBalancingPolicy, loadBalancingPolicyConfig)));
+        }
+        serviceConfig.put("methodConfig", List.copyOf(methodConfigs));
+        if (retryThrottling != null) {
+            serviceConfig.put("retryThrottling", retryThrottling);
+        }
+        return serviceConfig;
+    }
+
+    private ServiceConfigBuilder methodConfig(MethodDescriptor<?, ?> method, String policyName,
+                                              Map<String, Object> policy) {
+        Map<String, Object> name = new LinkedHashMap<>();
+        name.put("service", method.getServiceName());
+        name.put("method", method.getBareMethodName());
+        Map<String, Object> methodConfig = new LinkedHashMap<>();
+        methodConfig.put("name", List.of(name));
+        methodConfig.put(policyName, policy);
+        methodConfigs.add(methodConfig);
+        return this;
+    }
+
+    private static List<String> codes(Status.Code... codes) {
+        return Arrays.stream(codes).map(Status.Code::name).collect(Collectors.toList());
+    }
+
+    /**
+     * Service config durations are decimal seconds with an {@code s} suffix.
+     */
+    private static String duration(Duration duration) {
+        return String.format("%d.%09ds", duration.getSeconds(), duration.getNano());
+    }
+}
@@ -0,0 +1,138 @@
+package com.txt.grpc.client;
+
+import com.google.common.net.HostAndPort;
+import io.grpc.Attributes;
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.NameResolver;
+import io.grpc.NameResolverProvider;
+import io.grpc.NameResolverRegistry;
+import io.grpc.Status;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Resolves {@code static:///host1:port1,host2:port2} to a fixed list of backends, one address group each, so a
+ * single channel can balance, retry and hedge across several local servers without DNS.
+ * <p>
+ * An address may carry a weight, as in {@code host:port*3}, read by the {@code weighted_least_request} policy;
+ * addresses without one weigh 1.
+ */
+public class StaticAddressNameResolverProvider extends NameResolverProvider {
+
+    public static final String SCHEME = "static";
+
+    @EquivalentAddressGroup.Attr
+    public static final Attributes.Key<Integer> WEIGHT = Attributes.Key.create("static-address-weight");
+
+    private static final AtomicBoolean REGISTERED = new AtomicBoolean();
+
+    /**
+     * Makes the {@code static} scheme available to every channel built afterwards.
+     */
+    public static void register() {
+        if (REGISTERED.compareAndSet(false, true)) {
+            NameResolverRegistry.getDefaultRegistry().register(new StaticAddressNameResolverProvider());
+        }
+    }
+
+    /**
+     * @return the channel target for the given {@code host:port} addresses
+     */
+    public static String target(Collection<String> addresses) {
+        return SCHEME + ":///" + String.join(",", addresses);
+    }
+
+    @Override
+    public NameResolver newNameResolver(URI targetUri, NameResolver.Args args) {
+        if (!SCHEME.equals(targetUri.getScheme())) {
+            return null;
+        }
+        String path = targetUri.getPath();
+        if (path == null || path.length() <= 1) {
+            throw new IllegalArgumentException("No addresses in " + targetUri);
+        }
+        List<EquivalentAddressGroup> groups = new ArrayList<>();
+        String[] addresses = path.substring(1).split(",");
+        for (String address : addresses) {
+            groups.add(addressGroup(address.trim()));
+        }
+        // commas are not valid in an authority, the first backend stands for all of them
+        return new StaticNameResolver(hostAndPort(addresses[0]), Collections.unmodifiableList(groups));
+    }
+
+    private static EquivalentAddressGroup addressGroup(String address) {
+        HostAndPort hostAndPort = HostAndPort.fromString(hostAndPort(address));
+        SocketAddress socketAddress = new InetSocketAddress(hostAndPort.getHost(), hostAndPort.getPort());
+        int separator = address.lastIndexOf('*');
+        if (separator < 0) {
+            return new EquivalentAddressGroup(socketAddress);
+        }
+        int weight = Integer.parseInt(address.substring(separator + 1));
+        if (weight < 1) {
+            throw new IllegalArgumentException("Weight of " + address + " must be at least 1");
+        }
+        return new EquivalentAddressGroup(socketAddress, Attributes.newBuilder().set(WEIGHT, weight).build());
+    }
+
+    private static String hostAndPort(String address) {
+        int separator = address.lastIndexOf('*');
+        return (separator < 0 ? address : address.substring(0, separator)).trim();
+    }
+
+    @Override
+    public String getDefaultScheme() {
+        return SCHEME;
+    }
+
+    @Override
+    protected boolean isAvailable() {
+        return true;
+    }
+
+    /**
+     * Below DNS, so targets without a scheme keep resolving through DNS.
+     */
+    @Override
+    protected int priority() {
+        return 4;
+    }
+
+    private static final class StaticNameResolver extends NameResolver {
+
+        private final String authority;
+        private final List<EquivalentAddressGroup> groups;
+
+        private StaticNameResolver(String authority, List<EquivalentAddressGroup> groups) {
+            this.authority = authority;
+            this.groups = groups;
+        }
+
+        @Override
+        public String getServiceAuthority() {
+            return authority;
+        }
+
+        @Override
+        public void start(Listener2 listener) {
+            if (groups.isEmpty()) {
+                listener.onError(Status.UNAVAILABLE.withDescription("No addresses to resolve"));
+                return;
+            }
+            listener.onResult(ResolutionResult.newBuilder()
+                    .setAddresses(groups)
+                    .setAttributes(Attributes.EMPTY)
+                    .build());
+        }
+
+        @Override
+        public void shutdown() {
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.txt.grpc.client;
+
+import io.grpc.ClientStreamTracer;
+import io.grpc.ConnectivityState;
+import io.grpc.ConnectivityStateInfo;
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.LoadBalancer;
+import io.grpc.Metadata;
+import io.grpc.Status;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One subchannel per resolved address, picked as described in {@link WeightedLeastRequestLoadBalancerProvider}.
+ * <p>
+ * Open calls are counted by a stream tracer attached to every pick, so retried and hedged attempts count on the
+ * backend they were sent to. Like {@code round_robin}, a backend that failed stays out of the picker until it is
+ * ready again, instead of flapping between connecting and failed.
+ */
+final class WeightedLeastRequestLoadBalancer extends LoadBalancer {
+
+    private final Helper helper;
+    private final Map<EquivalentAddressGroup, Backend> backends = new HashMap<>();
+    private int choiceCount = WeightedLeastRequestLoadBalancerProvider.DEFAULT_CHOICE_COUNT;
+
+    WeightedLeastRequestLoadBalancer(Helper helper) {
+        this.helper = helper;
+    }
+
+    @Override
+    public void handleResolvedAddresses(ResolvedAddresses resolvedAddresses) {
+        if (resolvedAddresses.getLoadBalancingPolicyConfig() instanceof Integer) {
+            choiceCount = (Integer) resolvedAddresses.getLoadBalancingPolicyConfig();
+        }
+        Map<EquivalentAddressGroup, Integer> weights = new HashMap<>();
+        for (EquivalentAddressGroup group : resolvedAddresses.getAddresses()) {
+            Integer weight = group.getAttributes().get(StaticAddressNameResolverProvider.WEIGHT);
+            // attributes are not part of the identity of a backend, a new weight keeps its connection
+            weights.put(new EquivalentAddressGroup(group.getAddresses()), weight == null ? 1 : weight);
+        }
+        Iterator<Map.Entry<EquivalentAddressGroup, Backend>> existing = backends.entrySet().iterator();
+        while (existing.hasNext()) {
+            Map.Entry<EquivalentAddressGroup, Backend> entry = existing.next();
+            if (!weights.containsKey(entry.getKey())) {
+                entry.getValue().subchannel.shutdown();
+                existing.remove();
+            }
+        }
+        weights.forEach((addresses, weight) -> {
+            Backend backend = backends.get(addresses);
+            if (backend == null) {
+                Subchannel subchannel = helper.createSubchannel(CreateSubchannelArgs.newBuilder()
+                        .setAddresses(addresses)
+                        .build());
+                Backend created = new Backend(subchannel);
+                subchannel.start(state -> processSubchannelState(addresses, created, state));
+                subchannel.requestConnection();
+                backends.put(addresses, created);
+                backend = created;
+            }
+            backend.weight = weight;
+        });
+        updateBalancingState();
+    }
+
+    @Override
+    public void handleNameResolutionError(Status error) {
+        if (backends.values().stream().noneMatch(backend -> backend.state == ConnectivityState.READY)) {
+            helper.updateBalancingState(ConnectivityState.TRANSIENT_FAILURE,
+                    new FixedPicker(PickResult.withError(error)));
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        backends.values().forEach(backend -> backend.subchannel.shutdown());
+        backends.clear();
+    }
+
+    private void processSubchannelState(EquivalentAddressGroup addresses, Backend backend,
+                                        ConnectivityStateInfo stateInfo) {
+        if (backends.get(addresses) != backend) {
+            return;
+        }
+        ConnectivityState state = stateInfo.getState();
+        if (state == ConnectivityState.TRANSIENT_FAILURE || state == ConnectivityState.IDLE) {
+            helper.refreshNameResolution();
+        }
+        if (state == ConnectivityState.IDLE) {
+            backend.subchannel.requestConnection();
+        }
+        if (backend.state == ConnectivityState.TRANSIENT_FAILURE
+                && (state == ConnectivityState.CONNECTING || state == ConnectivityState.IDLE)) {
+            return;
+        }
+        backend.state = state;
+        if (state == ConnectivityState.TRANSIENT_FAILURE) {
+            backend.failure = stateInfo.getStatus();
+        }
+        updateBalancingState();
+    }
+
+    private void updateBalancingState() {
+        List<Backend> ready = new ArrayList<>();
+        boolean connecting = false;
+        Status failure = Status.UNAVAILABLE.withDescription("No backend resolved");
+        for (Backend backend : backends.values()) {
+            if (backend.state == ConnectivityState.READY) {
+                ready.add(backend);
+            } else if (backend.state == ConnectivityState.TRANSIENT_FAILURE) {
+                failure = backend.failure;
+            } else {
+                connecting = true;
+            }
+        }
+        if (!ready.isEmpty()) {
+            helper.updateBalancingState(ConnectivityState.READY, new LeastRequestPicker(ready, choiceCount));
+        } else if (connecting) {
+            helper.updateBalancingState(ConnectivityState.CONNECTING, new FixedPicker(PickResult.withNoResult()));
+        } else {
+            helper.updateBalancingState(ConnectivityState.TRANSIENT_FAILURE,
+                    new FixedPicker(PickResult.withError(failure)));
+        }
+    }
+
+    private static final class Backend {
+
+        private final Subchannel subchannel;
+        private final AtomicInteger openCalls = new AtomicInteger();
+        private final ClientStreamTracer.Factory tracerFactory = new ClientStreamTracer.Factory() {
+            @Override
+            public ClientStreamTracer newClientStreamTracer(ClientStreamTracer.StreamInfo info, Metadata headers) {
+                openCalls.incrementAndGet();
+                return new ClientStreamTracer() {
+                    @Override
+                    public void streamClosed(Status status) {
+                        openCalls.decrementAndGet();
+                    }
+                };
+            }
+        };
+        private int weight = 1;
+        private ConnectivityState state = ConnectivityState.IDLE;
+        private Status failure = Status.UNAVAILABLE;
+
+        private Backend(Subchannel subchannel) {
+            this.subchannel = subchannel;
+        }
+    }
+
+    private static final class LeastRequestPicker extends SubchannelPicker {
+
+        private final Backend[] ready;
+        private final int[] weights;
+        private final int totalWeight;
+        private final int choiceCount;
+
+        private LeastRequestPicker(List<Backend> ready, int choiceCount) {
+            this.ready = ready.toArray(new Backend[0]);
+            this.weights = new int[this.ready.length];
+            int total = 0;
+            for (int i = 0; i < this.ready.length; i++) {
+                weights[i] = this.ready[i].weight;
+                total += weights[i];
+            }
+            this.totalWeight = total;
+            this.choiceCount = choiceCount;
+        }
+
+        @Override
+        public PickResult pickSubchannel(PickSubchannelArgs args) {
+            int best = draw();
+            for (int i = 1; i < choiceCount; i++) {
+                int candidate = draw();
+                // open calls per unit of weight, compared without dividing
+                if ((long) ready[candidate].openCalls.get() * weights[best]
+                        < (long) ready[best].openCalls.get() * weights[candidate]) {
+                    best = candidate;
+                }
+            }
+            return PickResult.withSubchannel(ready[best].subchannel, ready[best].tracerFactory);
+        }
+
+        private int draw() {
+            int point = ThreadLocalRandom.current().nextInt(totalWeight);
+            for (int i = 0; i < weights.length; i++) {
+                point -= weights[i];
+                if (point < 0) {
+                    return i;
+                }
+            }
+            return weights.length - 1;
+        }
+    }
+
+    private static final class FixedPicker extends SubchannelPicker {
+
+        private final PickResult result;
+
+        private FixedPicker(PickResult result) {
+            this.result = result;
+        }
+
+        @Override
+        public PickResult pickSubchannel(PickSubchannelArgs args) {
+            return result;
+        }
+    }
+}
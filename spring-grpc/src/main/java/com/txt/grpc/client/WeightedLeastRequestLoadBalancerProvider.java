@@ -0,0 +1,71 @@
+package com.txt.grpc.client;
+
+import io.grpc.LoadBalancer;
+import io.grpc.LoadBalancerProvider;
+import io.grpc.LoadBalancerRegistry;
+import io.grpc.NameResolver;
+import io.grpc.Status;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Registers the {@code weighted_least_request} load-balancing policy: every call goes to the least loaded of
+ * {@code choiceCount} backends drawn at random in proportion to their weight, where the load of a backend is its
+ * number of open calls divided by its weight.
+ * <p>
+ * Unlike {@code round_robin}, a backend that slows down accumulates open calls and is picked less often, without
+ * the client having to know why. Weights come from the {@link StaticAddressNameResolverProvider#WEIGHT} address
+ * attribute. The optional policy config is {@code {"choiceCount": 2}}, between 2 and 10.
+ */
+public class WeightedLeastRequestLoadBalancerProvider extends LoadBalancerProvider {
+
+    public static final String POLICY_NAME = "weighted_least_request";
+
+    static final int DEFAULT_CHOICE_COUNT = 2;
+    private static final int MAX_CHOICE_COUNT = 10;
+
+    private static final AtomicBoolean REGISTERED = new AtomicBoolean();
+
+    /**
+     * Makes the policy available to every channel built afterwards.
+     */
+    public static void register() {
+        if (REGISTERED.compareAndSet(false, true)) {
+            LoadBalancerRegistry.getDefaultRegistry().register(new WeightedLeastRequestLoadBalancerProvider());
+        }
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return true;
+    }
+
+    @Override
+    public int getPriority() {
+        return 5;
+    }
+
+    @Override
+    public String getPolicyName() {
+        return POLICY_NAME;
+    }
+
+    @Override
+    public LoadBalancer newLoadBalancer(LoadBalancer.Helper helper) {
+        return new WeightedLeastRequestLoadBalancer(helper);
+    }
+
+    @Override
+    public NameResolver.ConfigOrError parseLoadBalancingPolicyConfig(Map<String, ?> rawConfig) {
+        Object choiceCount = rawConfig.get("choiceCount");
+        if (choiceCount == null) {
+            return NameResolver.ConfigOrError.fromConfig(DEFAULT_CHOICE_COUNT);
+        }
+        if (!(choiceCount instanceof Number) || ((Number) choiceCount).intValue() < 2) {
+            return NameResolver.ConfigOrError.fromError(Status.INVALID_ARGUMENT
+                    .withDescription("choiceCount must be a number of at least 2, got " + choiceCount));
+        }
+        return NameResolver.ConfigOrError.fromConfig(Math.min(MAX_CHOICE_COUNT, ((Number) choiceCount).intValue()));
+    }
+}
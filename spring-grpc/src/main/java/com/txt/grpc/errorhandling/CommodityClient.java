@@ -4,25 +4,110 @@ import com.google.protobuf.Any;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.rpc.Code;
 import com.google.rpc.ErrorInfo;
+import com.txt.grpc.client.ChannelPool;
+import com.txt.grpc.client.HedgingMetricsInterceptor;
+import com.txt.grpc.client.ServiceConfigBuilder;
+import com.txt.grpc.client.StaticAddressNameResolverProvider;
+import com.txt.grpc.client.WeightedLeastRequestLoadBalancerProvider;
 import io.grpc.Channel;
+import io.grpc.ClientInterceptors;
 import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
 import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
 import io.grpc.stub.StreamObserver;
 import lombok.extern.slf4j.Slf4j;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Slf4j
 public class CommodityClient {
 
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final Channel channel;
+    private final CommodityPriceProviderGrpc.CommodityPriceProviderBlockingStub blockingStub;
     private final CommodityPriceProviderGrpc.CommodityPriceProviderStub nonBlockingStub;
 
     public CommodityClient(Channel channel) {
+        this.channel = channel;
+        blockingStub = CommodityPriceProviderGrpc.newBlockingStub(channel);
         nonBlockingStub = CommodityPriceProviderGrpc.newStub(channel);
     }
 
+    /**
+     * Asks for the best price of Commodity1 {@code calls} times in a row.
+     *
+     * @return the number of calls that failed
+     */
+    public int getBestCommodityPrice(int calls) {
+        log.info("######START EXAMPLE######: Unary - getBestCommodityPrice {} times", calls);
+        Commodity request = Commodity.newBuilder()
+                .setCommodityName("Commodity1")
+                .setAccessToken("123validToken")
+                .build();
+        int failures = 0;
+        for (int i = 0; i < calls; i++) {
+            try {
+                blockingStub.getBestCommodityPrice(request);
+            } catch (StatusRuntimeException e) {
+                log.info("RPC failed: {}", e.getStatus());
+                failures++;
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * Service config hedging {@code getBestCommodityPrice} across the resolved backends: a new attempt is sent every
+     * {@code hedgingDelay} while none has answered, up to {@link #MAX_ATTEMPTS}.
+     */
+    public static Map<String, ?> hedgingServiceConfig(Duration hedgingDelay) {
+        return new ServiceConfigBuilder()
+                .loadBalancingPolicy("round_robin")
+                .hedging(CommodityPriceProviderGrpc.getGetBestCommodityPriceMethod(), MAX_ATTEMPTS, hedgingDelay,
+                        Status.Code.UNAVAILABLE, Status.Code.RESOURCE_EXHAUSTED)
+                .retryThrottling(10, 0.1)
+                .build();
+    }
+
+    /**
+     * Service config retrying {@code getBestCommodityPrice} on transient failures, with the same throttling as
+     * hedging.
+     */
+    public static Map<String, ?> retryServiceConfig() {
+        return new ServiceConfigBuilder()
+                .loadBalancingPolicy("round_robin")
+                .retry(CommodityPriceProviderGrpc.getGetBestCommodityPriceMethod(), MAX_ATTEMPTS,
+                        Duration.ofMillis(10), Duration.ofMillis(200), 2.0,
+                        Status.Code.UNAVAILABLE, Status.Code.RESOURCE_EXHAUSTED)
+                .retryThrottling(10, 0.1)
+                .build();
+    }
+
+    /**
+     * Opens a channel applying the service config, e.g. to {@code static:///localhost:8980,localhost:8981}.
+     */
+    public static ManagedChannel newChannel(String target, Map<String, ?> serviceConfig) {
+        StaticAddressNameResolverProvider.register();
+        WeightedLeastRequestLoadBalancerProvider.register();
+        return ManagedChannelBuilder.forTarget(target)
+                .usePlaintext()
+                .defaultServiceConfig(serviceConfig)
+                .enableRetry()
+                .maxRetryAttempts(MAX_ATTEMPTS)
+                .build();
+    }
+
     public void getBidirectionalCommodityPriceLists() throws InterruptedException {
         log.info("#######START EXAMPLE#######: BidirectionalStreaming - getCommodityPriceLists from list of commodities");
         final CountDownLatch finishLatch = new CountDownLatch(1);
@@ -81,7 +166,6 @@ public class CommodityClient {
                         .build();
                 log.info("REQUEST - commodity:" + request.getCommodityName());
                 requestObserver.onNext(request);
-                Thread.sleep(200);
                 if (finishLatch.getCount() == 0) {
                     return;
                 }
@@ -97,23 +181,106 @@ public class CommodityClient {
         }
     }
 
+    /**
+     * Pipelines {@code requests} best-price requests over one stream with at most {@code maxInFlight} unanswered.
+     */
+    public void getPipelinedBestPrices(int requests, int maxInFlight) throws InterruptedException {
+        log.info("#######START EXAMPLE#######: Pipelined - {} best prices, {} in flight", requests, maxInFlight);
+        List<CompletableFuture<CommodityQuote>> quotes = new ArrayList<>(requests);
+        try (PipelinedCommodityClient client = new PipelinedCommodityClient(channel, maxInFlight)) {
+            for (int i = 0; i < requests; i++) {
+                quotes.add(client.bestPrice(Commodity.newBuilder()
+                        .setCommodityName("Commodity" + (i % 2 + 1))
+                        .setAccessToken("123validToken")
+                        .build()));
+            }
+        }
+        try {
+            CompletableFuture.allOf(quotes.toArray(new CompletableFuture[0])).get(1, TimeUnit.MINUTES);
+            CommodityQuote last = quotes.get(quotes.size() - 1).join();
+            log.info("RESPONSE {} best prices, last {} from {} at {}", quotes.size(), last.getCommodityName(),
+                    last.getProducerName(), last.getPrice());
+        } catch (ExecutionException e) {
+            log.error("getPipelinedBestPrices Failed:" + Status.fromThrowable(e.getCause()));
+        } catch (TimeoutException e) {
+            log.info("getPipelinedBestPrices can not finish within 1 minute");
+        }
+    }
+
+    /**
+     * Arguments: target ({@code localhost:8980}), connections (1), then optionally {@code hedge} or {@code retry}
+     * and a number of unary calls (200). The target may list several replicas as {@code static:///host:port,...};
+     * calls are then spread over them by least request. With a policy the unary calls are first made without one
+     * to measure the p95 used as hedging delay.
+     */
     public static void main(String[] args) throws InterruptedException {
         String target = "localhost:8980";
         if (args.length > 0) {
             target = args[0];
         }
 
-        ManagedChannel channel = ManagedChannelBuilder.forTarget(target)
-                .usePlaintext()
-                .build();
+        int connections = 1;
+        if (args.length > 1) {
+            connections = Integer.parseInt(args[1]);
+        }
+
+        if (args.length > 2) {
+            int calls = args.length > 3 ? Integer.parseInt(args[3]) : 200;
+            runWithPolicy(target, args[2], calls);
+            return;
+        }
+
+        ChannelPool channel = ChannelPool.forTarget(target, connections, ChannelPool.Selection.LEAST_OUTSTANDING,
+                WeightedLeastRequestLoadBalancerProvider.POLICY_NAME);
         try {
             CommodityClient client = new CommodityClient(channel);
 
             client.getBidirectionalCommodityPriceLists();
+
+            client.getPipelinedBestPrices(1000, 64);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private static void runWithPolicy(String target, String policy, int calls) throws InterruptedException {
+        HedgingMetricsInterceptor metrics = new HedgingMetricsInterceptor();
+        Map<String, ?> serviceConfig = new ServiceConfigBuilder().loadBalancingPolicy("round_robin").build();
+        ManagedChannel baseline = newChannel(target, serviceConfig);
+        try {
+            new CommodityClient(ClientInterceptors.intercept(baseline, metrics)).getBestCommodityPrice(calls);
+        } finally {
+            baseline.shutdown().awaitTermination(5, TimeUnit.SECONDS);
+        }
+        Duration p95 = metrics.latencyPercentile(95);
+        report("without policy", metrics);
+
+        switch (policy) {
+            case "hedge":
+                serviceConfig = hedgingServiceConfig(p95);
+                break;
+            case "retry":
+                serviceConfig = retryServiceConfig();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown policy " + policy + ", expected hedge or retry");
+        }
+        log.info("Using {} policy, hedging delay {} from the observed p95", policy, p95);
+        metrics.reset();
+        ManagedChannel channel = newChannel(target, serviceConfig);
+        try {
+            new CommodityClient(ClientInterceptors.intercept(channel, metrics)).getBestCommodityPrice(calls);
         } finally {
-            channel.shutdownNow()
-                    .awaitTermination(5, TimeUnit.SECONDS);
+            channel.shutdown().awaitTermination(5, TimeUnit.SECONDS);
         }
+        report("with " + policy + " policy", metrics);
+    }
+
+    private static void report(String label, HedgingMetricsInterceptor metrics) {
+        log.info("{}: {} ok, {} failed, p50={} p95={} p99={}, wins by attempt {}, {} won by a later attempt",
+                label, metrics.successes(), metrics.failures(), metrics.latencyPercentile(50),
+                metrics.latencyPercentile(95), metrics.latencyPercentile(99),
+                Arrays.toString(metrics.winsByAttempt()), metrics.hedgeWins());
     }
 
 }
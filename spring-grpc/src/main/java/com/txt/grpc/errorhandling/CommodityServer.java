@@ -1,29 +1,91 @@
 package com.txt.grpc.errorhandling;
 
+import com.txt.grpc.interceptor.AccessTokenInterceptor;
+import com.txt.grpc.interceptor.ConcurrencyLimitInterceptor;
+import com.txt.grpc.interceptor.DelayInjectionInterceptor;
+import com.txt.grpc.interceptor.PreviousAttemptsInterceptor;
+import com.txt.grpc.server.ServerWarmup;
 import com.txt.grpc.service.CommodityService;
 import io.grpc.Server;
-import io.grpc.ServerBuilder;
+import io.grpc.ServerInterceptors;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.util.concurrent.TimeUnit;
 
 @Slf4j
 public class CommodityServer {
 
-    private final int port;
+    private static final Duration DEFAULT_MAX_CONNECTION_AGE = Duration.ofMinutes(30);
+    private static final Duration DEFAULT_MAX_CONNECTION_AGE_GRACE = Duration.ofMinutes(1);
+
     private final Server server;
 
     public CommodityServer(int port) throws IOException {
-        this.port = port;
-        server = ServerBuilder.forPort(port)
-                .addService(new CommodityService())
+        this(port, Duration.ZERO, 0);
+    }
+
+    /**
+     * @param injectedDelay    added to a share of the calls, to stand in for a degraded backend
+     * @param delayProbability share of the calls that are delayed, between 0 and 1
+     */
+    public CommodityServer(int port, Duration injectedDelay, double delayProbability) throws IOException {
+        this(port, injectedDelay, delayProbability, DEFAULT_MAX_CONNECTION_AGE, DEFAULT_MAX_CONNECTION_AGE_GRACE,
+                false);
+    }
+
+    /**
+     * @param maxConnectionAge      age after which a connection is sent a GOAWAY, so long-lived clients reconnect and
+     *                              spread over the replicas started since
+     * @param maxConnectionAgeGrace time calls still open on an aged connection get to finish before it is closed
+     * @param limitConcurrency      shed calls beyond the {@link ConcurrencyLimitInterceptor} limits of each method
+     */
+    public CommodityServer(int port, Duration injectedDelay, double delayProbability, Duration maxConnectionAge,
+                           Duration maxConnectionAgeGrace, boolean limitConcurrency) throws IOException {
+        // server-wide interceptors are left out of the warmup, so it is neither delayed nor counted by the limiter
+        NettyServerBuilder builder = NettyServerBuilder.forPort(port)
+                .maxConnectionAge(maxConnectionAge.toNanos(), TimeUnit.NANOSECONDS)
+                .maxConnectionAgeGrace(maxConnectionAgeGrace.toNanos(), TimeUnit.NANOSECONDS)
+                .addService(ServerInterceptors.intercept(new CommodityService(), new AccessTokenInterceptor()))
+                .intercept(new DelayInjectionInterceptor(injectedDelay, delayProbability))
+                .intercept(new PreviousAttemptsInterceptor());
+        if (limitConcurrency) {
+            builder.intercept(new ConcurrencyLimitInterceptor());
+        }
+        server = builder.build();
+    }
+
+    /**
+     * Calls every method in-process until compilation has settled; run before {@link #start()}.
+     */
+    public ServerWarmup.Report warmUp() throws IOException, InterruptedException {
+        Commodity commodity = Commodity.newBuilder()
+                .setAccessToken("123validToken")
+                .setCommodityName("Commodity1")
                 .build();
+        return ServerWarmup.forServices(server.getServices())
+                .request(CommodityPriceProviderGrpc.getGetBestCommodityPriceMethod(), commodity)
+                .request(CommodityPriceProviderGrpc.getBidirectionalListOfPricesMethod(), commodity)
+                .request(CommodityPriceProviderGrpc.getGetBestCommodityPricesMethod(), CommodityBatch.newBuilder()
+                        .setAccessToken("123validToken")
+                        .addCommodityName("Commodity1")
+                        .addCommodityName("Commodity2")
+                        .build())
+                .run();
+    }
+
+    /**
+     * @return the bound port, once started
+     */
+    public int getPort() {
+        return server.getPort();
     }
 
     public void start() throws IOException {
         server.start();
-        log.info("Server started, listening on {}", port);
+        log.info("Server started, listening on {}", server.getPort());
         Runtime.getRuntime()
                 .addShutdownHook(new Thread() {
                     @Override
@@ -46,9 +108,16 @@ public class CommodityServer {
         }
     }
 
+    /**
+     * Arguments: port (8980), injected delay in milliseconds (0) and share of delayed calls (1.0).
+     */
     public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8980;
+        Duration injectedDelay = Duration.ofMillis(args.length > 1 ? Long.parseLong(args[1]) : 0);
+        double delayProbability = args.length > 2 ? Double.parseDouble(args[2]) : 1.0;
 
-        CommodityServer commodityServer = new CommodityServer(8980);
+        CommodityServer commodityServer = new CommodityServer(port, injectedDelay, delayProbability);
+        commodityServer.warmUp();
         commodityServer.start();
         if (commodityServer.server != null) {
             commodityServer.server.awaitTermination();
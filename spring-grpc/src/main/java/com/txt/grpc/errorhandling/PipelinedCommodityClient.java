@@ -0,0 +1,372 @@
+package com.txt.grpc.errorhandling;
+
+import io.grpc.Channel;
+import io.grpc.Status;
+import io.grpc.protobuf.StatusProto;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Asynchronous client pipelining requests over a single {@code bidirectionalListOfPrices} stream.
+ * <p>
+ * Every request is tagged with a request id, which the server echoes on each quote answering it and marks the final
+ * one {@code last}. At most {@code maxInFlight} requests wait for their last quote; callers block until one is
+ * answered, and while the transport is not ready, so a fast producer is held back instead of filling the outbound
+ * buffer. Futures and publishers complete on gRPC callback threads: do not issue requests from them, and do not
+ * block them.
+ */
+@Slf4j
+public class PipelinedCommodityClient implements AutoCloseable {
+
+    private final Semaphore window;
+    private final Map<Long, Exchange> exchanges = new ConcurrentHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition writable = lock.newCondition();
+    private final ClientCallStreamObserver<Commodity> requestStream;
+    private long nextRequestId = 1;
+    private Throwable failure;
+    private boolean closed;
+
+    /**
+     * Opens the stream.
+     *
+     * @param maxInFlight maximum number of requests sent but not fully answered
+     */
+    public PipelinedCommodityClient(Channel channel, int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be positive");
+        }
+        window = new Semaphore(maxInFlight);
+        requestStream = (ClientCallStreamObserver<Commodity>) CommodityPriceProviderGrpc.newStub(channel)
+                .bidirectionalListOfPrices(new ResponseObserver());
+    }
+
+    /**
+     * Sends a request and completes with the lowest quote among its providers, or with a
+     * {@link io.grpc.StatusRuntimeException} carrying the status the server answered with.
+     *
+     * @throws InterruptedException if interrupted while waiting for room in the window
+     */
+    public CompletableFuture<CommodityQuote> bestPrice(Commodity request) throws InterruptedException {
+        BestPrice exchange = new BestPrice();
+        send(request, exchange);
+        return exchange.future;
+    }
+
+    /**
+     * Sends a request and publishes every quote or status answering it, then completes. The quotes are buffered
+     * until subscribed; only one subscriber is supported.
+     *
+     * @throws InterruptedException if interrupted while waiting for room in the window
+     */
+    public Flow.Publisher<StreamingCommodityQuote> prices(Commodity request) throws InterruptedException {
+        QuotePublisher exchange = new QuotePublisher();
+        send(request, exchange);
+        return exchange;
+    }
+
+    /**
+     * @return the number of requests sent but not fully answered
+     */
+    public int inFlight() {
+        return exchanges.size();
+    }
+
+    /**
+     * Half-closes the stream. Requests already sent are still answered; later ones fail.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed || failure != null) {
+                return;
+            }
+            closed = true;
+            requestStream.onCompleted();
+            writable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void send(Commodity request, Exchange exchange) throws InterruptedException {
+        window.acquire();
+        Throwable rejection;
+        lock.lock();
+        try {
+            while (failure == null && !closed && !requestStream.isReady()) {
+                writable.await();
+            }
+            if (failure == null && !closed) {
+                long requestId = nextRequestId++;
+                exchanges.put(requestId, exchange);
+                requestStream.onNext(request.toBuilder().setRequestId(requestId).build());
+                return;
+            }
+            rejection = failure != null
+                    ? failure
+                    : Status.FAILED_PRECONDITION.withDescription("The client is closed").asRuntimeException();
+        } catch (InterruptedException e) {
+            window.release();
+            throw e;
+        } finally {
+            lock.unlock();
+        }
+        window.release();
+        exchange.onError(rejection);
+    }
+
+    private void fail(Throwable t) {
+        List<Exchange> failed;
+        lock.lock();
+        try {
+            if (failure != null) {
+                return;
+            }
+            failure = t;
+            failed = new ArrayList<>();
+            for (Long requestId : exchanges.keySet()) {
+                Exchange exchange = exchanges.remove(requestId);
+                if (exchange != null) {
+                    failed.add(exchange);
+                }
+            }
+            writable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        // wakes producers waiting for room, they then see the failure
+        window.release(failed.size() + 1);
+        failed.forEach(exchange -> exchange.onError(t));
+    }
+
+    private final class ResponseObserver implements ClientResponseObserver<Commodity, StreamingCommodityQuote> {
+
+        @Override
+        public void beforeStart(ClientCallStreamObserver<Commodity> requestStream) {
+            requestStream.setOnReadyHandler(() -> {
+                lock.lock();
+                try {
+                    writable.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            });
+        }
+
+        @Override
+        public void onNext(StreamingCommodityQuote quote) {
+            long requestId = quote.getRequestId();
+            Exchange exchange = quote.getLast() ? exchanges.remove(requestId) : exchanges.get(requestId);
+            if (exchange == null) {
+                log.warn("Dropping quote for unknown request {}", requestId);
+                return;
+            }
+            if (quote.getLast()) {
+                window.release();
+            }
+            exchange.onQuote(quote);
+            if (quote.getLast()) {
+                exchange.onEnd();
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            fail(t);
+        }
+
+        @Override
+        public void onCompleted() {
+            fail(Status.INTERNAL.withDescription("The stream completed before answering the request")
+                    .asRuntimeException());
+        }
+    }
+
+    private interface Exchange {
+
+        void onQuote(StreamingCommodityQuote quote);
+
+        void onEnd();
+
+        void onError(Throwable t);
+    }
+
+    private static final class BestPrice implements Exchange {
+
+        private final CompletableFuture<CommodityQuote> future = new CompletableFuture<>();
+        private CommodityQuote best;
+
+        @Override
+        public void onQuote(StreamingCommodityQuote quote) {
+            switch (quote.getMessageCase()) {
+                case COMODITY_QUOTE:
+                    if (best == null || quote.getComodityQuote().getPrice() < best.getPrice()) {
+                        best = quote.getComodityQuote();
+                    }
+                    break;
+                case STATUS:
+                    future.completeExceptionally(StatusProto.toStatusRuntimeException(quote.getStatus()));
+                    break;
+                default:
+                    future.completeExceptionally(Status.INTERNAL.withDescription("Unknown message case")
+                            .asRuntimeException());
+            }
+        }
+
+        @Override
+        public void onEnd() {
+            if (best != null) {
+                future.complete(best);
+            } else {
+                future.completeExceptionally(Status.INTERNAL.withDescription("No quote received")
+                        .asRuntimeException());
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            future.completeExceptionally(t);
+        }
+    }
+
+    /**
+     * Single-subscriber publisher of the quotes answering one request, emitting them in a serialized drain loop.
+     */
+    private static final class QuotePublisher implements Exchange, Flow.Publisher<StreamingCommodityQuote>,
+            Flow.Subscription {
+
+        private final Queue<StreamingCommodityQuote> quotes = new ConcurrentLinkedQueue<>();
+        private final AtomicReference<Flow.Subscriber<? super StreamingCommodityQuote>> subscriber =
+                new AtomicReference<>();
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private volatile boolean ended;
+        private volatile Throwable error;
+        private volatile Throwable invalidRequest;
+        private volatile boolean cancelled;
+        private boolean terminated;
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super StreamingCommodityQuote> s) {
+            if (!subscriber.compareAndSet(null, s)) {
+                s.onSubscribe(new Flow.Subscription() {
+                    @Override
+                    public void request(long n) {
+                    }
+
+                    @Override
+                    public void cancel() {
+                    }
+                });
+                s.onError(new IllegalStateException("Only one subscriber is supported"));
+                return;
+            }
+            s.onSubscribe(this);
+            drain();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                invalidRequest = new IllegalArgumentException("Requested " + n + " quotes, demand must be positive");
+            } else {
+                demand.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n);
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            drain();
+        }
+
+        @Override
+        public void onQuote(StreamingCommodityQuote quote) {
+            quotes.add(quote);
+            drain();
+        }
+
+        @Override
+        public void onEnd() {
+            ended = true;
+            drain();
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            error = t;
+            drain();
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                Flow.Subscriber<? super StreamingCommodityQuote> s = subscriber.get();
+                if (s != null && !terminated) {
+                    if (cancelled) {
+                        terminated = true;
+                        quotes.clear();
+                    } else {
+                        emit(s);
+                    }
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void emit(Flow.Subscriber<? super StreamingCommodityQuote> s) {
+            if (invalidRequest != null) {
+                terminated = true;
+                quotes.clear();
+                s.onError(invalidRequest);
+                return;
+            }
+            long requested = demand.get();
+            long emitted = 0;
+            while (emitted != requested && !cancelled) {
+                StreamingCommodityQuote quote = quotes.poll();
+                if (quote == null) {
+                    break;
+                }
+                s.onNext(quote);
+                emitted++;
+            }
+            if (emitted != 0 && requested != Long.MAX_VALUE) {
+                demand.addAndGet(-emitted);
+            }
+            if (cancelled || !quotes.isEmpty()) {
+                return;
+            }
+            Throwable t = error;
+            if (t != null) {
+                terminated = true;
+                s.onError(t);
+            } else if (ended) {
+                terminated = true;
+                s.onComplete();
+            }
+        }
+    }
+}
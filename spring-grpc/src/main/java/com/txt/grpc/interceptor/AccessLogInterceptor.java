@@ -0,0 +1,96 @@
+package com.txt.grpc.interceptor;
+
+import io.grpc.ForwardingServerCall;
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Grpc;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Logs a sample of the finished calls through an {@link AccessLogWriter}: method, peer, status, duration and message
+ * counts, never the payloads.
+ * <p>
+ * Each call is sampled on arrival with the rate of its method, or the default rate. Calls that are not sampled are
+ * passed through untouched; sampled ones cost two counters per message and one ring slot on close.
+ */
+public class AccessLogInterceptor implements ServerInterceptor {
+
+    private final AccessLogWriter writer;
+    private final double defaultSampleRate;
+    private final Map<String, Double> sampleRates;
+
+    /**
+     * @param defaultSampleRate share of calls logged, between 0 and 1
+     * @param sampleRates       rates overriding the default, by full method name such as
+     *                          {@code commodityprice.CommodityPriceProvider/bidirectionalListOfPrices}
+     */
+    public AccessLogInterceptor(AccessLogWriter writer, double defaultSampleRate, Map<String, Double> sampleRates) {
+        checkRate(defaultSampleRate);
+        sampleRates.values().forEach(AccessLogInterceptor::checkRate);
+        this.writer = writer;
+        this.defaultSampleRate = defaultSampleRate;
+        this.sampleRates = Map.copyOf(sampleRates);
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+        String method = call.getMethodDescriptor().getFullMethodName();
+        double sampleRate = sampleRates.getOrDefault(method, defaultSampleRate);
+        if (sampleRate <= 0 || (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate)) {
+            return next.startCall(call, headers);
+        }
+        LoggedCall<ReqT, RespT> loggedCall = new LoggedCall<>(call, method, sampleRate);
+        return new ForwardingServerCallListener.SimpleForwardingServerCallListener<>(
+                next.startCall(loggedCall, headers)) {
+            @Override
+            public void onMessage(ReqT message) {
+                loggedCall.messagesReceived++;
+                super.onMessage(message);
+            }
+        };
+    }
+
+    private static void checkRate(double rate) {
+        if (rate < 0 || rate > 1) {
+            throw new IllegalArgumentException("sample rates must be between 0 and 1");
+        }
+    }
+
+    private final class LoggedCall<ReqT, RespT> extends ForwardingServerCall.SimpleForwardingServerCall<ReqT, RespT> {
+
+        private final String method;
+        private final double sampleRate;
+        private final long startMillis = System.currentTimeMillis();
+        private final long startNanos = System.nanoTime();
+        // each counter has a single writer, the listener or the code sending responses, and is read on close
+        private volatile long messagesReceived;
+        private volatile long messagesSent;
+
+        private LoggedCall(ServerCall<ReqT, RespT> delegate, String method, double sampleRate) {
+            super(delegate);
+            this.method = method;
+            this.sampleRate = sampleRate;
+        }
+
+        @Override
+        public void sendMessage(RespT message) {
+            messagesSent++;
+            super.sendMessage(message);
+        }
+
+        @Override
+        public void close(Status status, Metadata trailers) {
+            writer.offer(new AccessLogWriter.Entry(startMillis, method,
+                    getAttributes().get(Grpc.TRANSPORT_ATTR_REMOTE_ADDR), status.getCode(),
+                    System.nanoTime() - startNanos, messagesReceived, messagesSent, sampleRate));
+            super.close(status, trailers);
+        }
+    }
+}
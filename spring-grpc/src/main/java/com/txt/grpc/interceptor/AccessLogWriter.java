@@ -0,0 +1,211 @@
+package com.txt.grpc.interceptor;
+
+import io.grpc.Status;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.SocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Appends access-log entries to a file as one JSON object per line, off the request path.
+ * <p>
+ * Request threads publish entries into a bounded lock-free ring; a single daemon thread drains it, formats the lines
+ * and writes them. When the ring is full the entry is dropped and counted, so a slow disk never blocks or grows the
+ * heap of the server. Producers never wake the writer thread; it polls every 10 milliseconds while idle, which
+ * bounds how stale the file can be.
+ */
+@Slf4j
+public class AccessLogWriter implements AutoCloseable {
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final AtomicReferenceArray<Entry> slots;
+    private final int mask;
+    private final AtomicLong producerIndex = new AtomicLong();
+    private final AtomicLong consumerIndex = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final Writer writer;
+    private final StringBuilder line = new StringBuilder(256);
+    private final Thread drainer;
+    private volatile boolean closed;
+
+    /**
+     * @param file     appended to, created with its parent directories if missing
+     * @param capacity entries buffered before new ones are dropped, rounded up to a power of two
+     */
+    public AccessLogWriter(Path file, int capacity) throws IOException {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        int size = Integer.highestOneBit(capacity);
+        size = size < capacity ? size << 1 : size;
+        slots = new AtomicReferenceArray<>(size);
+        mask = size - 1;
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        writer = new BufferedWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE), 64 * 1024);
+        drainer = new Thread(this::drainLoop, "access-log-writer");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    /**
+     * @return entries written to the file
+     */
+    public long written() {
+        return written.get();
+    }
+
+    /**
+     * @return entries dropped because the ring was full or the writer closed
+     */
+    public long dropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Publishes an entry without blocking.
+     *
+     * @return whether the entry was accepted
+     */
+    boolean offer(Entry entry) {
+        while (!closed) {
+            long index = producerIndex.get();
+            if (index - consumerIndex.get() > mask) {
+                break;
+            }
+            if (producerIndex.compareAndSet(index, index + 1)) {
+                slots.lazySet((int) index & mask, entry);
+                return true;
+            }
+        }
+        dropped.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Stops the writer thread after it drained the entries published so far.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        LockSupport.unpark(drainer);
+        try {
+            drainer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writer.close();
+    }
+
+    private void drainLoop() {
+        while (true) {
+            boolean wasClosed = closed;
+            try {
+                if (drain() > 0) {
+                    continue;
+                }
+                writer.flush();
+            } catch (IOException e) {
+                log.warn("Could not write the access log: {}", e.getMessage());
+            }
+            if (wasClosed && consumerIndex.get() == producerIndex.get()) {
+                return;
+            }
+            LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+        }
+    }
+
+    private int drain() throws IOException {
+        int drained = 0;
+        long index = consumerIndex.get();
+        while (true) {
+            int slot = (int) index & mask;
+            Entry entry = slots.get(slot);
+            if (entry == null) {
+                // empty, or claimed by a producer that has not stored its entry yet
+                return drained;
+            }
+            slots.lazySet(slot, null);
+            consumerIndex.lazySet(++index);
+            line.setLength(0);
+            entry.appendTo(line);
+            writer.append(line);
+            written.incrementAndGet();
+            drained++;
+        }
+    }
+
+    /**
+     * One finished call. Only references and primitives are captured on the request path; the line is formatted by
+     * the writer thread.
+     */
+    static final class Entry {
+
+        private final long timestampMillis;
+        private final String method;
+        private final SocketAddress peer;
+        private final Status.Code code;
+        private final long durationNanos;
+        private final long messagesReceived;
+        private final long messagesSent;
+        private final double sampleRate;
+
+        Entry(long timestampMillis, String method, SocketAddress peer, Status.Code code, long durationNanos,
+              long messagesReceived, long messagesSent, double sampleRate) {
+            this.timestampMillis = timestampMillis;
+            this.method = method;
+            this.peer = peer;
+            this.code = code;
+            this.durationNanos = durationNanos;
+            this.messagesReceived = messagesReceived;
+            this.messagesSent = messagesSent;
+            this.sampleRate = sampleRate;
+        }
+
+        void appendTo(StringBuilder line) {
+            line.append("{\"ts\":\"").append(Instant.ofEpochMilli(timestampMillis))
+                    .append("\",\"method\":\"");
+            appendEscaped(line, method);
+            line.append("\",\"peer\":\"");
+            appendEscaped(line, peer == null ? "" : peer.toString());
+            line.append("\",\"status\":\"").append(code)
+                    .append("\",\"durationMicros\":").append(TimeUnit.NANOSECONDS.toMicros(durationNanos))
+                    .append(",\"received\":").append(messagesReceived)
+                    .append(",\"sent\":").append(messagesSent)
+                    .append(",\"sampleRate\":").append(sampleRate)
+                    .append("}\n");
+        }
+
+        private static void appendEscaped(StringBuilder line, String value) {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"' || c == '\\') {
+                    line.append('\\').append(c);
+                } else if (c < 0x20) {
+                    line.append(String.format("\\u%04x", (int) c));
+                } else {
+                    line.append(c);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.txt.grpc.interceptor;
+
+import com.google.protobuf.Any;
+import com.google.rpc.Code;
+import com.google.rpc.ErrorInfo;
+import com.txt.grpc.errorhandling.Commodity;
+import com.txt.grpc.errorhandling.CommodityBatch;
+import com.txt.grpc.errorhandling.StreamingCommodityQuote;
+import com.txt.grpc.service.ZeroCopyMarshaller;
+import io.grpc.Context;
+import io.grpc.Contexts;
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+
+import java.time.Duration;
+
+/**
+ * Validates the access token carried by {@link Commodity} and {@link CommodityBatch} requests.
+ * <p>
+ * The verdict for the latest message is published through {@link #CALL_AUTHORIZATION}; the service checks it after
+ * its own request validation and answers a unary call with {@link #invalidTokenException()}, or a stream with
+ * {@link #INVALID_TOKEN_QUOTE} while keeping the stream open. A call that did not pass through this interceptor reads
+ * the default verdict, which is unauthorized. A token is validated once per call as long as it does not change, and
+ * validation results are shared between calls through a {@link TokenValidationCache}. All error responses are built
+ * once, so rejecting a token allocates next to nothing.
+ */
+public class AccessTokenInterceptor implements ServerInterceptor {
+
+    public static final com.google.rpc.Status INVALID_TOKEN_STATUS = com.google.rpc.Status.newBuilder()
+            .setCode(Code.NOT_FOUND.getNumber())
+            .setMessage("The access token not found")
+            .addDetails(Any.pack(ErrorInfo.newBuilder()
+                    .setReason("Invalid Token")
+                    .setDomain("com.txt.grpc.errorhandling")
+                    .putMetadata("insertToken", "123validToken")
+                    .build()))
+            .build();
+
+    /**
+     * Ends the exchange of the rejected request; requests carrying a {@code request_id} get a copy echoing it.
+     */
+    public static final StreamingCommodityQuote INVALID_TOKEN_QUOTE = ZeroCopyMarshaller.share(
+            StreamingCommodityQuote.newBuilder()
+                    .setStatus(INVALID_TOKEN_STATUS)
+                    .setLast(true)
+                    .build());
+
+    public static final Context.Key<CallAuthorization> CALL_AUTHORIZATION =
+            Context.keyWithDefault("call-authorization", new CallAuthorization(null));
+
+    private static final Status INVALID_TOKEN = Status.fromCodeValue(INVALID_TOKEN_STATUS.getCode())
+            .withDescription(INVALID_TOKEN_STATUS.getMessage());
+    // same key as io.grpc.protobuf.StatusProto, carrying the status bytes serialized once
+    private static final Metadata.Key<byte[]> STATUS_DETAILS_KEY =
+            Metadata.Key.of("grpc-status-details-bin", Metadata.BINARY_BYTE_MARSHALLER);
+    private static final byte[] INVALID_TOKEN_STATUS_BYTES = INVALID_TOKEN_STATUS.toByteArray();
+
+    private final TokenValidationCache tokenValidationCache;
+
+    public AccessTokenInterceptor() {
+        this(new TokenValidationCache("123validToken"::equals, 10_000, Duration.ofMinutes(1)));
+    }
+
+    public AccessTokenInterceptor(TokenValidationCache tokenValidationCache) {
+        this.tokenValidationCache = tokenValidationCache;
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+        CallAuthorization authorization = new CallAuthorization(tokenValidationCache);
+        Context context = Context.current().withValue(CALL_AUTHORIZATION, authorization);
+        ServerCall.Listener<ReqT> listener = Contexts.interceptCall(context, call, headers, next);
+        return new AuthorizingListener<>(listener, authorization);
+    }
+
+    /**
+     * @return the error closing a unary call whose token is not authorized, with {@link #INVALID_TOKEN_STATUS} in
+     * its trailers
+     */
+    public static StatusRuntimeException invalidTokenException() {
+        Metadata trailers = new Metadata();
+        trailers.put(STATUS_DETAILS_KEY, INVALID_TOKEN_STATUS_BYTES);
+        return INVALID_TOKEN.asRuntimeException(trailers);
+    }
+
+    private static String accessToken(Object message) {
+        if (message instanceof Commodity) {
+            return ((Commodity) message).getAccessToken();
+        }
+        if (message instanceof CommodityBatch) {
+            return ((CommodityBatch) message).getAccessToken();
+        }
+        return null;
+    }
+
+    /**
+     * Verdict on the access token of the message currently being handled by the service.
+     */
+    public static final class CallAuthorization {
+
+        private final TokenValidationCache tokenValidationCache;
+        private String lastValidToken;
+        private boolean authorized;
+
+        private CallAuthorization(TokenValidationCache tokenValidationCache) {
+            this.tokenValidationCache = tokenValidationCache;
+        }
+
+        public boolean isAuthorized() {
+            return authorized;
+        }
+
+        private void validate(String token) {
+            if (token.equals(lastValidToken)) {
+                authorized = true;
+                return;
+            }
+            authorized = tokenValidationCache.isValid(token);
+            if (authorized) {
+                lastValidToken = token;
+            }
+        }
+    }
+
+    private static final class AuthorizingListener<ReqT>
+            extends ForwardingServerCallListener.SimpleForwardingServerCallListener<ReqT> {
+
+        private final CallAuthorization authorization;
+
+        private AuthorizingListener(ServerCall.Listener<ReqT> delegate, CallAuthorization authorization) {
+            super(delegate);
+            this.authorization = authorization;
+        }
+
+        @Override
+        public void onMessage(ReqT message) {
+            String token = accessToken(message);
+            if (token != null) {
+                authorization.validate(token);
+            }
+            super.onMessage(message);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.txt.grpc.interceptor;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Number of calls of one method allowed to run at once, either fixed or adapted to the observed latency.
+ * <p>
+ * The adaptive limit follows the gradient approach: it compares a short-term average of the call latency with a
+ * long-term one. While they stay within the tolerance the limit grows by its square root, the queue a healthy
+ * server may absorb. When recent calls get slower, the limit shrinks in proportion, at most by half per sample.
+ * Calls timing out count as a drop and cut the limit by a tenth. The limit only grows while at least half of it is
+ * in use, so an idle method does not drift to the maximum. Admission is a CAS on the in-flight counter; samples are
+ * folded in under the instance lock.
+ */
+public final class ConcurrencyLimit {
+
+    private static final double LONG_WINDOW = 600;
+    private static final double SHORT_WINDOW = 10;
+    private static final double DROP_BACKOFF = 0.9;
+
+    private final boolean adaptive;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double rttTolerance;
+    private final double smoothing;
+    private final long fixedRetryAfterMillis;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+    private volatile int limit;
+    private double estimatedLimit;
+    private double longRttNanos;
+    private volatile double shortRttNanos;
+
+    private ConcurrencyLimit(boolean adaptive, int initialLimit, int minLimit, int maxLimit, double rttTolerance,
+                             double smoothing, long fixedRetryAfterMillis) {
+        if (minLimit < 1 || initialLimit < minLimit || maxLimit < initialLimit) {
+            throw new IllegalArgumentException("limits must satisfy 1 <= min <= initial <= max");
+        }
+        this.adaptive = adaptive;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.rttTolerance = rttTolerance;
+        this.smoothing = smoothing;
+        this.fixedRetryAfterMillis = fixedRetryAfterMillis;
+        this.limit = initialLimit;
+        this.estimatedLimit = initialLimit;
+    }
+
+    /**
+     * @param rttTolerance how much slower than usual recent calls may be before the limit shrinks, at least 1
+     * @param smoothing    weight of each new estimate, between 0 and 1
+     */
+    public static ConcurrencyLimit adaptive(int initialLimit, int minLimit, int maxLimit, double rttTolerance,
+                                            double smoothing) {
+        if (rttTolerance < 1 || smoothing <= 0 || smoothing > 1) {
+            throw new IllegalArgumentException("rttTolerance must be at least 1 and smoothing in (0, 1]");
+        }
+        return new ConcurrencyLimit(true, initialLimit, minLimit, maxLimit, rttTolerance, smoothing, 0);
+    }
+
+    /**
+     * @param retryAfter hint returned to rejected callers
+     */
+    public static ConcurrencyLimit fixed(int limit, Duration retryAfter) {
+        return new ConcurrencyLimit(false, limit, limit, limit, 1, 1, Math.max(1, retryAfter.toMillis()));
+    }
+
+    /**
+     * Admits a call unless the limit is reached; admitted calls must {@link #release} exactly once.
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                rejected.increment();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Ends an admitted call without sampling it, for calls whose latency says nothing about the server.
+     */
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * Ends an admitted call that completed normally and folds its latency into the limit.
+     *
+     * @param inFlightAtStart calls in flight when this one was admitted, itself included
+     */
+    public void release(long rttNanos, int inFlightAtStart) {
+        inFlight.decrementAndGet();
+        if (adaptive && rttNanos > 0) {
+            sample(rttNanos, inFlightAtStart);
+        }
+    }
+
+    /**
+     * Ends an admitted call that ran out of time.
+     */
+    public void releaseDropped() {
+        inFlight.decrementAndGet();
+        if (adaptive) {
+            synchronized (this) {
+                update(estimatedLimit * DROP_BACKOFF);
+            }
+        }
+    }
+
+    public int limit() {
+        return limit;
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    public long rejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return how long a rejected caller should wait: about one recent call duration, or the fixed hint
+     */
+    public long retryAfterMillis() {
+        if (!adaptive) {
+            return fixedRetryAfterMillis;
+        }
+        return Math.max(1, (long) Math.ceil(shortRttNanos / TimeUnit.MILLISECONDS.toNanos(1)));
+    }
+
+    private synchronized void sample(long rttNanos, int inFlightAtStart) {
+        if (longRttNanos == 0) {
+            longRttNanos = rttNanos;
+            shortRttNanos = rttNanos;
+        } else {
+            longRttNanos += (rttNanos - longRttNanos) / LONG_WINDOW;
+            shortRttNanos += (rttNanos - shortRttNanos) / SHORT_WINDOW;
+        }
+        // recover quickly after a sustained latency drop, otherwise the long average holds the limit up for long
+        if (longRttNanos > 2 * shortRttNanos) {
+            longRttNanos *= 0.95;
+        }
+        if (inFlightAtStart < estimatedLimit / 2) {
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, rttTolerance * longRttNanos / shortRttNanos));
+        double candidate = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+        update(estimatedLimit * (1 - smoothing) + candidate * smoothing);
+    }
+
+    private void update(double candidate) {
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit, candidate));
+        limit = (int) estimatedLimit;
+    }
+}
@@ -0,0 +1,196 @@
+package com.txt.grpc.interceptor;
+
+import io.grpc.Context;
+import io.grpc.Contexts;
+import io.grpc.Deadline;
+import io.grpc.ForwardingServerCall;
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Sheds load early: each method admits at most its {@link ConcurrencyLimit} of calls, and excess calls are closed
+ * at once with {@code RESOURCE_EXHAUSTED} instead of queueing behind the others.
+ * <p>
+ * Unary calls and streams get separate limits, created per method by their own supplier. Unary limits adapt to the
+ * latency of successful calls. Streams live as long as their client wants, so their duration says nothing about
+ * the server and their limit is usually fixed; a burst of new streams then only exhausts the stream limit of its
+ * method, never the unary pricing calls. Rejections carry {@code grpc-retry-pushback-ms}, which gRPC clients with a
+ * retry policy honour and other clients can read as a retry-after hint.
+ * <p>
+ * Bound to a {@link MeterRegistry}, it publishes {@code grpc.server.concurrency.limit} and
+ * {@code grpc.server.concurrency.rejected} per method.
+ */
+public class ConcurrencyLimitInterceptor implements ServerInterceptor, MeterBinder {
+
+    public static final Metadata.Key<String> RETRY_PUSHBACK_MS =
+            Metadata.Key.of("grpc-retry-pushback-ms", Metadata.ASCII_STRING_MARSHALLER);
+
+    private final Supplier<ConcurrencyLimit> unaryLimits;
+    private final Supplier<ConcurrencyLimit> streamLimits;
+    private final Map<String, ConcurrencyLimit> limits = new ConcurrentHashMap<>();
+    private volatile MeterRegistry registry;
+
+    /**
+     * Adaptive unary limits between 4 and 500, and at most 1000 streams per method.
+     */
+    public ConcurrencyLimitInterceptor() {
+        this(() -> ConcurrencyLimit.adaptive(20, 4, 500, 1.5, 0.2),
+                () -> ConcurrencyLimit.fixed(1000, Duration.ofSeconds(1)));
+    }
+
+    /**
+     * @param unaryLimits  creates the limit of each unary method
+     * @param streamLimits creates the limit of each streaming method
+     */
+    public ConcurrencyLimitInterceptor(Supplier<ConcurrencyLimit> unaryLimits,
+                                       Supplier<ConcurrencyLimit> streamLimits) {
+        this.unaryLimits = unaryLimits;
+        this.streamLimits = streamLimits;
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+        MethodDescriptor<ReqT, RespT> method = call.getMethodDescriptor();
+        ConcurrencyLimit limit = limit(method.getFullMethodName(), method.getType());
+        if (!limit.tryAcquire()) {
+            Metadata trailers = new Metadata();
+            trailers.put(RETRY_PUSHBACK_MS, Long.toString(limit.retryAfterMillis()));
+            call.close(Status.RESOURCE_EXHAUSTED.withDescription(
+                    "Concurrency limit of " + limit.limit() + " reached for " + method.getFullMethodName()), trailers);
+            return new ServerCall.Listener<>() {
+            };
+        }
+        LimitedCall<ReqT, RespT> limitedCall = new LimitedCall<>(call, limit,
+                method.getType() == MethodDescriptor.MethodType.UNARY);
+        ServerCall.Listener<ReqT> listener;
+        try {
+            listener = next.startCall(limitedCall, headers);
+        } catch (RuntimeException e) {
+            limitedCall.release(null);
+            throw e;
+        }
+        return new ForwardingServerCallListener.SimpleForwardingServerCallListener<>(listener) {
+            @Override
+            public void onCancel() {
+                limitedCall.release(deadlineExceeded() ? Status.DEADLINE_EXCEEDED : null);
+                super.onCancel();
+            }
+
+            @Override
+            public void onComplete() {
+                limitedCall.release(null);
+                super.onComplete();
+            }
+        };
+    }
+
+    /**
+     * @return the current limit of a method, or 0 before its first call
+     */
+    public int limit(String fullMethodName) {
+        ConcurrencyLimit limit = limits.get(fullMethodName);
+        return limit == null ? 0 : limit.limit();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.registry = registry;
+        limits.forEach((method, limit) -> register(registry, method, limit));
+    }
+
+    private ConcurrencyLimit limit(String fullMethodName, MethodDescriptor.MethodType type) {
+        ConcurrencyLimit limit = limits.get(fullMethodName);
+        return limit != null ? limit : limits.computeIfAbsent(fullMethodName, name -> {
+            ConcurrencyLimit created = type == MethodDescriptor.MethodType.UNARY
+                    ? unaryLimits.get()
+                    : streamLimits.get();
+            MeterRegistry meterRegistry = registry;
+            if (meterRegistry != null) {
+                register(meterRegistry, name, created);
+            }
+            return created;
+        });
+    }
+
+    /**
+     * A call whose deadline passes is cancelled rather than closed by the server, so the cancellation is told apart
+     * from a client going away by the deadline of the call's context.
+     */
+    private static boolean deadlineExceeded() {
+        Context context = Context.current();
+        Deadline deadline = context.getDeadline();
+        if (deadline != null && deadline.isExpired()) {
+            return true;
+        }
+        Status status = Contexts.statusFromCancelled(context);
+        return status != null && status.getCode() == Status.Code.DEADLINE_EXCEEDED;
+    }
+
+    private static void register(MeterRegistry registry, String fullMethodName, ConcurrencyLimit limit) {
+        Tags tags = Tags.of("method", fullMethodName);
+        Gauge.builder("grpc.server.concurrency.limit", limit, ConcurrencyLimit::limit)
+                .tags(tags)
+                .register(registry);
+        FunctionCounter.builder("grpc.server.concurrency.rejected", limit, ConcurrencyLimit::rejected)
+                .tags(tags)
+                .register(registry);
+    }
+
+    private static final class LimitedCall<ReqT, RespT>
+            extends ForwardingServerCall.SimpleForwardingServerCall<ReqT, RespT> {
+
+        private final ConcurrencyLimit limit;
+        private final boolean sampled;
+        private final long startNanos = System.nanoTime();
+        private final int inFlightAtStart;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private LimitedCall(ServerCall<ReqT, RespT> delegate, ConcurrencyLimit limit, boolean sampled) {
+            super(delegate);
+            this.limit = limit;
+            this.sampled = sampled;
+            this.inFlightAtStart = limit.inFlight();
+        }
+
+        @Override
+        public void close(Status status, Metadata trailers) {
+            release(status);
+            super.close(status, trailers);
+        }
+
+        /**
+         * @param status the status the call closed with, or {@code null} when it ended without the server closing it
+         */
+        private void release(Status status) {
+            if (!released.compareAndSet(false, true)) {
+                return;
+            }
+            if (status == null || !sampled) {
+                limit.release();
+            } else if (status.isOk()) {
+                limit.release(System.nanoTime() - startNanos, inFlightAtStart);
+            } else if (status.getCode() == Status.Code.DEADLINE_EXCEEDED) {
+                limit.releaseDropped();
+            } else {
+                limit.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.txt.grpc.interceptor;
+
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Makes a share of the calls slow, to reproduce a degraded backend when testing retries and hedging.
+ * <p>
+ * The delay is slept on the call's executor thread before the handler sees the half-close, so the server must run
+ * on a pooled executor, never on the transport threads.
+ */
+public class DelayInjectionInterceptor implements ServerInterceptor {
+
+    private final long delayMillis;
+    private final double probability;
+
+    /**
+     * @param delay       added before each delayed call is handled
+     * @param probability share of the calls that are delayed, between 0 and 1
+     */
+    public DelayInjectionInterceptor(Duration delay, double probability) {
+        if (probability < 0 || probability > 1) {
+            throw new IllegalArgumentException("probability must be between 0 and 1");
+        }
+        this.delayMillis = delay.toMillis();
+        this.probability = probability;
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+        ServerCall.Listener<ReqT> listener = next.startCall(call, headers);
+        if (delayMillis <= 0 || ThreadLocalRandom.current().nextDouble() >= probability) {
+            return listener;
+        }
+        return new ForwardingServerCallListener.SimpleForwardingServerCallListener<>(listener) {
+            @Override
+            public void onHalfClose() {
+                try {
+                    Thread.sleep(delayMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.onHalfClose();
+            }
+        };
+    }
+}
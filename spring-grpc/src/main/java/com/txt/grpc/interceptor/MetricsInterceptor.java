@@ -0,0 +1,257 @@
+package com.txt.grpc.interceptor;
+
+import io.grpc.ForwardingServerCall;
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.ServerStreamTracer;
+import io.grpc.Status;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records per-method latency, message, byte, in-flight and status-code metrics of every call.
+ * <p>
+ * Meters are resolved once per method; per message the interceptor only bumps striped {@link LongAdder}s and
+ * per-call counters updated through field updaters, so recording takes no locks and allocates nothing. Bytes on the wire come from the stream
+ * tracer returned by {@link #streamTracerFactory()}, which must be registered on the server next to the interceptor.
+ */
+public class MetricsInterceptor implements ServerInterceptor {
+
+    private static final Status.Code[] CODES = Status.Code.values();
+
+    private final MeterRegistry registry;
+    private final Map<String, MethodMetrics> methods = new ConcurrentHashMap<>();
+
+    public MetricsInterceptor(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+        MethodMetrics metrics = methodMetrics(call.getMethodDescriptor().getFullMethodName(),
+                call.getMethodDescriptor().getType());
+        MeteredCall<ReqT, RespT> meteredCall = new MeteredCall<>(call, metrics);
+        return new MeteredListener<>(next.startCall(meteredCall, headers), meteredCall);
+    }
+
+    public ServerStreamTracer.Factory streamTracerFactory() {
+        return new ServerStreamTracer.Factory() {
+            @Override
+            public ServerStreamTracer newServerStreamTracer(String fullMethodName, Metadata headers) {
+                MethodMetrics metrics = methods.get(fullMethodName);
+                return metrics == null ? new WireSizeTracer(fullMethodName) : metrics.wireSizeTracer;
+            }
+        };
+    }
+
+    private MethodMetrics methodMetrics(String fullMethodName, MethodDescriptor.MethodType type) {
+        MethodMetrics metrics = methods.get(fullMethodName);
+        return metrics != null
+                ? metrics
+                : methods.computeIfAbsent(fullMethodName, name -> new MethodMetrics(registry, name, type));
+    }
+
+    private final class WireSizeTracer extends ServerStreamTracer {
+
+        private final String fullMethodName;
+        private MethodMetrics metrics;
+
+        private WireSizeTracer(String fullMethodName) {
+            this.fullMethodName = fullMethodName;
+        }
+
+        private MethodMetrics metrics() {
+            if (metrics == null) {
+                metrics = methods.get(fullMethodName);
+            }
+            return metrics;
+        }
+
+        @Override
+        public void inboundWireSize(long bytes) {
+            MethodMetrics methodMetrics = metrics();
+            if (methodMetrics != null) {
+                methodMetrics.bytesIn.add(bytes);
+            }
+        }
+
+        @Override
+        public void outboundWireSize(long bytes) {
+            MethodMetrics methodMetrics = metrics();
+            if (methodMetrics != null) {
+                methodMetrics.bytesOut.add(bytes);
+            }
+        }
+    }
+
+    private static final class MethodMetrics {
+
+        private final MeterRegistry registry;
+        private final Tags tags;
+        private final Timer latency;
+        private final DistributionSummary messagesInPerCall;
+        private final DistributionSummary messagesOutPerCall;
+        private final LongAdder messagesIn = new LongAdder();
+        private final LongAdder messagesOut = new LongAdder();
+        private final LongAdder bytesIn = new LongAdder();
+        private final LongAdder bytesOut = new LongAdder();
+        private final LongAdder inFlight = new LongAdder();
+        private final AtomicReferenceArray<Counter> statusCounters = new AtomicReferenceArray<>(CODES.length);
+        private final ServerStreamTracer wireSizeTracer;
+
+        private MethodMetrics(MeterRegistry registry, String fullMethodName, MethodDescriptor.MethodType type) {
+            this.registry = registry;
+            this.tags = Tags.of("method", fullMethodName, "type", type.name());
+            this.latency = Timer.builder("grpc.server.call.duration")
+                    .description("Time from call start to close")
+                    .tags(tags)
+                    .publishPercentiles(0.5, 0.9, 0.99, 0.999)
+                    .publishPercentileHistogram()
+                    .register(registry);
+            this.messagesInPerCall = DistributionSummary.builder("grpc.server.call.messages")
+                    .tags(tags).tag("direction", "in")
+                    .register(registry);
+            this.messagesOutPerCall = DistributionSummary.builder("grpc.server.call.messages")
+                    .tags(tags).tag("direction", "out")
+                    .register(registry);
+            FunctionCounter.builder("grpc.server.messages", messagesIn, LongAdder::doubleValue)
+                    .tags(tags).tag("direction", "in")
+                    .register(registry);
+            FunctionCounter.builder("grpc.server.messages", messagesOut, LongAdder::doubleValue)
+                    .tags(tags).tag("direction", "out")
+                    .register(registry);
+            FunctionCounter.builder("grpc.server.bytes", bytesIn, LongAdder::doubleValue)
+                    .tags(tags).tag("direction", "in")
+                    .baseUnit("bytes")
+                    .register(registry);
+            FunctionCounter.builder("grpc.server.bytes", bytesOut, LongAdder::doubleValue)
+                    .tags(tags).tag("direction", "out")
+                    .baseUnit("bytes")
+                    .register(registry);
+            Gauge.builder("grpc.server.calls.in.flight", inFlight, LongAdder::doubleValue)
+                    .tags(tags)
+                    .register(registry);
+            // shared by all calls of the method: it only adds to the striped counters above
+            this.wireSizeTracer = new ServerStreamTracer() {
+                @Override
+                public void inboundWireSize(long bytes) {
+                    bytesIn.add(bytes);
+                }
+
+                @Override
+                public void outboundWireSize(long bytes) {
+                    bytesOut.add(bytes);
+                }
+            };
+        }
+
+        private Counter statusCounter(Status.Code code) {
+            Counter counter = statusCounters.get(code.ordinal());
+            if (counter == null) {
+                counter = Counter.builder("grpc.server.calls")
+                        .tags(tags).tag("status", code.name())
+                        .register(registry);
+                statusCounters.set(code.ordinal(), counter);
+            }
+            return counter;
+        }
+    }
+
+    private static final class MeteredCall<ReqT, RespT>
+            extends ForwardingServerCall.SimpleForwardingServerCall<ReqT, RespT> {
+
+        @SuppressWarnings("rawtypes")
+        private static final AtomicLongFieldUpdater<MeteredCall> MESSAGES_IN =
+                AtomicLongFieldUpdater.newUpdater(MeteredCall.class, "messagesIn");
+        @SuppressWarnings("rawtypes")
+        private static final AtomicLongFieldUpdater<MeteredCall> MESSAGES_OUT =
+                AtomicLongFieldUpdater.newUpdater(MeteredCall.class, "messagesOut");
+
+        private final MethodMetrics metrics;
+        private final long startNanos = System.nanoTime();
+        // responses may be sent from several threads, such as a producer and a flush timer, so both counters are
+        // bumped atomically and read by whichever thread records the call
+        private volatile long messagesIn;
+        private volatile long messagesOut;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private MeteredCall(ServerCall<ReqT, RespT> delegate, MethodMetrics metrics) {
+            super(delegate);
+            this.metrics = metrics;
+            metrics.inFlight.increment();
+        }
+
+        @Override
+        public void sendMessage(RespT message) {
+            MESSAGES_OUT.incrementAndGet(this);
+            metrics.messagesOut.increment();
+            super.sendMessage(message);
+        }
+
+        @Override
+        public void close(Status status, Metadata trailers) {
+            record(status.getCode());
+            super.close(status, trailers);
+        }
+
+        private void messageReceived() {
+            MESSAGES_IN.incrementAndGet(this);
+            metrics.messagesIn.increment();
+        }
+
+        /**
+         * Runs once, either when the service closes the call or when the client cancels it.
+         */
+        private void record(Status.Code code) {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            metrics.latency.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            metrics.messagesInPerCall.record(messagesIn);
+            metrics.messagesOutPerCall.record(messagesOut);
+            metrics.statusCounter(code).increment();
+            metrics.inFlight.decrement();
+        }
+    }
+
+    private static final class MeteredListener<ReqT>
+            extends ForwardingServerCallListener.SimpleForwardingServerCallListener<ReqT> {
+
+        private final MeteredCall<ReqT, ?> call;
+
+        private MeteredListener(ServerCall.Listener<ReqT> delegate, MeteredCall<ReqT, ?> call) {
+            super(delegate);
+            this.call = call;
+        }
+
+        @Override
+        public void onMessage(ReqT message) {
+            call.messageReceived();
+            super.onMessage(message);
+        }
+
+        @Override
+        public void onCancel() {
+            call.record(Status.Code.CANCELLED);
+            super.onCancel();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.txt.grpc.interceptor;
+
+import io.grpc.ForwardingServerCall;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+
+/**
+ * Echoes the {@code grpc-previous-rpc-attempts} request header, set by clients on retried and hedged attempts, in
+ * the response headers, so the client can tell which attempt answered.
+ */
+public class PreviousAttemptsInterceptor implements ServerInterceptor {
+
+    public static final Metadata.Key<String> PREVIOUS_RPC_ATTEMPTS =
+            Metadata.Key.of("grpc-previous-rpc-attempts", Metadata.ASCII_STRING_MARSHALLER);
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+        String previousAttempts = headers.get(PREVIOUS_RPC_ATTEMPTS);
+        if (previousAttempts == null) {
+            return next.startCall(call, headers);
+        }
+        return next.startCall(new ForwardingServerCall.SimpleForwardingServerCall<>(call) {
+            @Override
+            public void sendHeaders(Metadata responseHeaders) {
+                responseHeaders.put(PREVIOUS_RPC_ATTEMPTS, previousAttempts);
+                super.sendHeaders(responseHeaders);
+            }
+        }, headers);
+    }
+}
@@ -0,0 +1,72 @@
+package com.txt.grpc.interceptor;
+
+import io.grpc.Context;
+import io.grpc.Contexts;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+
+import java.util.Locale;
+
+/**
+ * Reads the delivery mode a client asks for on quote subscriptions from the {@code x-quote-delivery} header and
+ * hands it to the service through {@link #QUOTE_DELIVERY}.
+ * <p>
+ * Without the header every quote is delivered in order; {@code conflated} lets a subscriber that falls behind skip
+ * to the latest quote of each ticker. An unknown mode fails the call with {@code INVALID_ARGUMENT}.
+ */
+public class QuoteDeliveryInterceptor implements ServerInterceptor {
+
+    public static final Metadata.Key<String> QUOTE_DELIVERY_HEADER =
+            Metadata.Key.of("x-quote-delivery", Metadata.ASCII_STRING_MARSHALLER);
+
+    public static final Context.Key<QuoteDelivery> QUOTE_DELIVERY =
+            Context.keyWithDefault("quote-delivery", QuoteDelivery.QUEUED);
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+        String value = headers.get(QUOTE_DELIVERY_HEADER);
+        if (value == null) {
+            return next.startCall(call, headers);
+        }
+        QuoteDelivery delivery = QuoteDelivery.parse(value);
+        if (delivery == null) {
+            call.close(Status.INVALID_ARGUMENT.withDescription("Unknown quote delivery " + value), new Metadata());
+            return new ServerCall.Listener<>() {
+            };
+        }
+        return Contexts.interceptCall(Context.current().withValue(QUOTE_DELIVERY, delivery), call, headers, next);
+    }
+
+    public enum QuoteDelivery {
+
+        /**
+         * Every quote, in order, up to the subscriber buffer.
+         */
+        QUEUED,
+
+        /**
+         * Only the latest quote of each ticker while the subscriber cannot keep up.
+         */
+        CONFLATED;
+
+        /**
+         * @return the header value selecting this mode
+         */
+        public String headerValue() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+
+        private static QuoteDelivery parse(String value) {
+            for (QuoteDelivery delivery : values()) {
+                if (delivery.headerValue().equals(value)) {
+                    return delivery;
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.txt.grpc.interceptor;
+
+import com.txt.grpc.sharding.ConsistentHashRing;
+import com.txt.grpc.streaming.Stock;
+import com.txt.grpc.streaming.StockSubscription;
+import io.grpc.ForwardingServerCall;
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+
+/**
+ * Keeps a shard of a ticker-sharded stock cluster to its own tickers.
+ * <p>
+ * A {@link Stock} or {@link StockSubscription} naming a ticker owned by another shard closes the call with
+ * {@code FAILED_PRECONDITION} and the owning shard in the description, so a client routing with an outdated ring
+ * fails loudly instead of getting quotes from the wrong node. The service is not told: whatever it still writes on
+ * the closed call is dropped.
+ */
+public class TickerShardInterceptor implements ServerInterceptor {
+
+    private final ConsistentHashRing ring;
+    private final String shard;
+
+    /**
+     * @param shard name of this server on the ring
+     */
+    public TickerShardInterceptor(ConsistentHashRing ring, String shard) {
+        if (!ring.shards().contains(shard)) {
+            throw new IllegalArgumentException("Shard " + shard + " is not on the ring " + ring.shards());
+        }
+        this.ring = ring;
+        this.shard = shard;
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+        GuardedCall<ReqT, RespT> guardedCall = new GuardedCall<>(call);
+        return new ForwardingServerCallListener.SimpleForwardingServerCallListener<>(
+                next.startCall(guardedCall, headers)) {
+            @Override
+            public void onMessage(ReqT message) {
+                if (guardedCall.rejected) {
+                    return;
+                }
+                String misplaced = misplacedTicker(message);
+                if (misplaced != null) {
+                    guardedCall.reject(Status.FAILED_PRECONDITION.withDescription("Ticker " + misplaced
+                            + " belongs to shard " + ring.shardFor(misplaced) + ", not " + shard));
+                    return;
+                }
+                super.onMessage(message);
+            }
+
+            @Override
+            public void onHalfClose() {
+                if (!guardedCall.rejected) {
+                    super.onHalfClose();
+                }
+            }
+        };
+    }
+
+    private String misplacedTicker(Object message) {
+        if (message instanceof Stock) {
+            String ticker = ((Stock) message).getTickerSymbol();
+            return owns(ticker) ? null : ticker;
+        }
+        if (message instanceof StockSubscription) {
+            for (String ticker : ((StockSubscription) message).getTickerSymbolList()) {
+                if (!owns(ticker)) {
+                    return ticker;
+                }
+            }
+        }
+        return null;
+    }
+
+    private boolean owns(String ticker) {
+        return shard.equals(ring.shardFor(ticker));
+    }
+
+    /**
+     * The rejection comes from the listener while the service may be writing from another thread, so writes and
+     * closes are serialized here.
+     */
+    private static final class GuardedCall<ReqT, RespT>
+            extends ForwardingServerCall.SimpleForwardingServerCall<ReqT, RespT> {
+
+        private boolean closed;
+        private volatile boolean rejected;
+
+        private GuardedCall(ServerCall<ReqT, RespT> delegate) {
+            super(delegate);
+        }
+
+        private synchronized void reject(Status status) {
+            rejected = true;
+            if (!closed) {
+                closed = true;
+                super.close(status, new Metadata());
+            }
+        }
+
+        @Override
+        public synchronized void sendMessage(RespT message) {
+            if (!rejected) {
+                super.sendMessage(message);
+            }
+        }
+
+        @Override
+        public boolean isReady() {
+            return !rejected && super.isReady();
+        }
+
+        @Override
+        public synchronized void close(Status status, Metadata trailers) {
+            if (!closed) {
+                closed = true;
+                super.close(status, trailers);
+            }
+        }
+    }
+}
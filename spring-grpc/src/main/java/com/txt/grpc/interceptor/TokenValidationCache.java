@@ -0,0 +1,101 @@
+package com.txt.grpc.interceptor;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * Bounded cache of access-token validation results with a time-to-live.
+ * <p>
+ * Lookups are a single {@link ConcurrentHashMap#get} per segment and allocate nothing on a hit, so a storm of
+ * requests carrying the same token, valid or not, costs one validation per TTL. Validated and rejected tokens live in
+ * separate segments of {@code maxSize} entries each, so a flood of invalid tokens only ever evicts other invalid
+ * ones. A full segment evicts expired entries, then arbitrary ones, down to nine tenths of its size in one go, so
+ * the scan is paid once per tenth of {@code maxSize} insertions rather than on every one. Tokens that keep being
+ * presented are simply re-validated and re-inserted, which approximates LRU without maintaining an access order on
+ * the lookup path.
+ */
+public class TokenValidationCache {
+
+    private final Predicate<String> validator;
+    private final long ttlNanos;
+    private final Segment validated;
+    private final Segment rejected;
+
+    public TokenValidationCache(Predicate<String> validator, int maxSize, Duration ttl) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        this.validator = validator;
+        this.ttlNanos = ttl.toNanos();
+        this.validated = new Segment(maxSize);
+        this.rejected = new Segment(maxSize);
+    }
+
+    public boolean isValid(String token) {
+        long now = System.nanoTime();
+        if (validated.contains(token, now)) {
+            return true;
+        }
+        if (rejected.contains(token, now)) {
+            return false;
+        }
+        boolean valid = validator.test(token);
+        (valid ? validated : rejected).put(token, now + ttlNanos, now);
+        (valid ? rejected : validated).remove(token);
+        return valid;
+    }
+
+    public int size() {
+        return validated.entries.size() + rejected.entries.size();
+    }
+
+    private static final class Segment {
+
+        private final int maxSize;
+        private final int evictedSize;
+        private final Map<String, Long> entries = new ConcurrentHashMap<>();
+        private final ReentrantLock insertionLock = new ReentrantLock();
+
+        private Segment(int maxSize) {
+            this.maxSize = maxSize;
+            this.evictedSize = maxSize - Math.max(1, maxSize / 10);
+        }
+
+        private boolean contains(String token, long now) {
+            Long expiresAt = entries.get(token);
+            return expiresAt != null && expiresAt - now > 0;
+        }
+
+        /**
+         * Insertions are serialized so the segment never holds more than {@code maxSize} entries.
+         */
+        private void put(String token, long expiresAt, long now) {
+            insertionLock.lock();
+            try {
+                if (!entries.containsKey(token) && entries.size() >= maxSize) {
+                    evict(now);
+                }
+                entries.put(token, expiresAt);
+            } finally {
+                insertionLock.unlock();
+            }
+        }
+
+        private void remove(String token) {
+            entries.remove(token);
+        }
+
+        private void evict(long now) {
+            entries.values().removeIf(expiresAt -> expiresAt - now <= 0);
+            Iterator<Long> victims = entries.values().iterator();
+            while (entries.size() > evictedSize && victims.hasNext()) {
+                victims.next();
+                victims.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.txt.grpc.journal;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the records of a {@link QuoteJournal} in sequence order, following new appends as they are committed.
+ * <p>
+ * A cursor is not thread-safe; it belongs to one reader at a time. Record accessors refer to the record of the last
+ * successful {@link #advance()}.
+ */
+public final class JournalCursor {
+
+    private final QuoteJournal journal;
+    private final long fromSequence;
+    private final long fromTimestamp;
+    private JournalSegment segment;
+    private ByteBuffer view;
+    private int offset;
+    private int recordOffset = -1;
+
+    JournalCursor(QuoteJournal journal, JournalSegment segment, long fromSequence, long fromTimestamp) {
+        this.journal = journal;
+        this.fromSequence = fromSequence;
+        this.fromTimestamp = fromTimestamp;
+        this.segment = segment;
+        this.view = segment.view();
+    }
+
+    /**
+     * Moves to the next record.
+     *
+     * @return {@code false} if the reader has caught up with the writer; a later call may succeed
+     */
+    public boolean advance() {
+        while (true) {
+            if (offset < segment.committed()) {
+                recordOffset = offset;
+                offset += JournalSegment.HEADER_BYTES + tickerLength() + payloadLength();
+                if (sequence() >= fromSequence && timestampMillis() >= fromTimestamp) {
+                    return true;
+                }
+                continue;
+            }
+            if (!segment.isSealed()) {
+                return false;
+            }
+            // the committed offset is final once the segment is sealed, but may have moved since it was read
+            if (offset < segment.committed()) {
+                continue;
+            }
+            JournalSegment next = journal.segmentAfter(segment);
+            if (next == null) {
+                return false;
+            }
+            segment = next;
+            view = next.view();
+            offset = 0;
+        }
+    }
+
+    public long sequence() {
+        return view.getLong(recordOffset + Integer.BYTES);
+    }
+
+    public long timestampMillis() {
+        return view.getLong(recordOffset + Integer.BYTES + Long.BYTES);
+    }
+
+    public String tickerSymbol() {
+        byte[] tickerSymbol = new byte[tickerLength()];
+        view.get(recordOffset + JournalSegment.HEADER_BYTES, tickerSymbol);
+        return new String(tickerSymbol, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Compares the ticker of the record with a UTF-8 encoded symbol without decoding it.
+     */
+    public boolean hasTickerSymbol(byte[] tickerSymbol) {
+        if (tickerLength() != tickerSymbol.length) {
+            return false;
+        }
+        int start = recordOffset + JournalSegment.HEADER_BYTES;
+        for (int i = 0; i < tickerSymbol.length; i++) {
+            if (view.get(start + i) != tickerSymbol[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the serialized {@code JournaledStockQuote} of the record, backed by the mapping
+     */
+    public ByteBuffer payload() {
+        int start = recordOffset + JournalSegment.HEADER_BYTES + tickerLength();
+        return view.duplicate().position(start).limit(start + payloadLength()).slice();
+    }
+
+    private int payloadLength() {
+        return view.getInt(recordOffset);
+    }
+
+    private int tickerLength() {
+        return Short.toUnsignedInt(view.getShort(recordOffset + Integer.BYTES + 2 * Long.BYTES));
+    }
+}
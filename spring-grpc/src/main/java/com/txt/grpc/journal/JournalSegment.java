@@ -0,0 +1,173 @@
+package com.txt.grpc.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * One memory-mapped journal file holding the records from {@link #firstSequence} on.
+ * <p>
+ * Record layout, big-endian: payload length, sequence, timestamp in milliseconds, UTF-8 ticker length as a short,
+ * CRC32C checksum, the ticker, then the payload. The checksum covers every other byte of the record but the length.
+ * A zero length ends the written part of the file. Only the journal's writer appends; it publishes each record by
+ * advancing the volatile {@link #committed} offset, so readers never see a partial record.
+ * <p>
+ * The length is written last, after the checksum, so a record torn by a process crash still reads as the end of the
+ * file. Pages of the mapping may still reach the disk in any order when the machine crashes, so recovery also stops
+ * at the first record whose checksum does not match or whose sequence does not follow the previous one.
+ */
+final class JournalSegment {
+
+    static final int HEADER_BYTES = Integer.BYTES + 2 * Long.BYTES + Short.BYTES + Integer.BYTES;
+    static final int MAX_TICKER_BYTES = 0xFFFF;
+
+    private static final int SEQUENCE_OFFSET = Integer.BYTES;
+    private static final int TICKER_LENGTH_OFFSET = Integer.BYTES + 2 * Long.BYTES;
+    private static final int CHECKSUM_OFFSET = TICKER_LENGTH_OFFSET + Short.BYTES;
+
+    private final Path path;
+    private final long firstSequence;
+    private final MappedByteBuffer buffer;
+    private final CRC32C checksum = new CRC32C();
+    private volatile int committed;
+    private volatile boolean sealed;
+    private long lastSequence;
+
+    private JournalSegment(Path path, long firstSequence, MappedByteBuffer buffer) {
+        this.path = path;
+        this.firstSequence = firstSequence;
+        this.buffer = buffer;
+        this.lastSequence = firstSequence - 1;
+    }
+
+    /**
+     * Maps the file, creating it with the given size if needed, and finds the end of its records.
+     */
+    static JournalSegment open(Path path, long firstSequence, int size) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            long length = Math.max(size, channel.size());
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("Journal segment too large: " + path);
+            }
+            JournalSegment segment = new JournalSegment(path, firstSequence,
+                    channel.map(FileChannel.MapMode.READ_WRITE, 0, length));
+            segment.recover();
+            return segment;
+        }
+    }
+
+    private void recover() {
+        int offset = 0;
+        while (offset + HEADER_BYTES <= buffer.capacity()) {
+            int payloadLength = buffer.getInt(offset);
+            int tickerLength = Short.toUnsignedInt(buffer.getShort(offset + TICKER_LENGTH_OFFSET));
+            long end = (long) offset + HEADER_BYTES + tickerLength + payloadLength;
+            if (payloadLength <= 0 || end > buffer.capacity()) {
+                break;
+            }
+            long sequence = buffer.getLong(offset + SEQUENCE_OFFSET);
+            if (sequence != lastSequence + 1
+                    || buffer.getInt(offset + CHECKSUM_OFFSET) != checksum(offset, (int) end - offset)) {
+                break;
+            }
+            lastSequence = sequence;
+            offset = (int) end;
+        }
+        committed = offset;
+    }
+
+    Path path() {
+        return path;
+    }
+
+    long firstSequence() {
+        return firstSequence;
+    }
+
+    /**
+     * @return the sequence of the last record, or {@code firstSequence - 1} if the segment is empty
+     */
+    long lastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * @return the timestamp of the first record, or {@link Long#MAX_VALUE} if the segment is empty
+     */
+    long firstTimestamp() {
+        return committed == 0 ? Long.MAX_VALUE : buffer.getLong(Integer.BYTES + Long.BYTES);
+    }
+
+    int committed() {
+        return committed;
+    }
+
+    boolean isSealed() {
+        return sealed;
+    }
+
+    boolean hasRoom(int recordLength) {
+        return buffer.capacity() - committed >= recordLength;
+    }
+
+    /**
+     * A private view of the mapping, since buffer positions are not thread-safe.
+     */
+    ByteBuffer view() {
+        return buffer.duplicate();
+    }
+
+    /**
+     * Writes the header of the next record, but its length, and returns a buffer positioned at its payload; the
+     * record becomes visible on {@link #commit(long, int)}.
+     */
+    ByteBuffer beginRecord(long sequence, long timestamp, byte[] tickerSymbol, int payloadLength) {
+        ByteBuffer record = buffer.duplicate();
+        record.position(committed);
+        record.putInt(0)
+                .putLong(sequence)
+                .putLong(timestamp)
+                .putShort((short) tickerSymbol.length)
+                .putInt(0)
+                .put(tickerSymbol);
+        record.limit(record.position() + payloadLength);
+        return record.slice();
+    }
+
+    /**
+     * Seals the record with its checksum, then writes its length and publishes it.
+     */
+    void commit(long sequence, int recordLength) {
+        int offset = committed;
+        buffer.putInt(offset + CHECKSUM_OFFSET, checksum(offset, recordLength));
+        buffer.putInt(offset, recordLength - HEADER_BYTES
+                - Short.toUnsignedInt(buffer.getShort(offset + TICKER_LENGTH_OFFSET)));
+        lastSequence = sequence;
+        committed = offset + recordLength;
+    }
+
+    private int checksum(int offset, int recordLength) {
+        ByteBuffer record = buffer.duplicate();
+        checksum.reset();
+        checksum.update(record.limit(offset + CHECKSUM_OFFSET).position(offset + SEQUENCE_OFFSET));
+        checksum.update(record.limit(offset + recordLength).position(offset + HEADER_BYTES));
+        return (int) checksum.getValue();
+    }
+
+    /**
+     * Marks the segment as complete; readers move on to the next segment once they reach its end.
+     */
+    void seal() {
+        buffer.force();
+        sealed = true;
+    }
+
+    void force() {
+        buffer.force();
+    }
+}
@@ -0,0 +1,212 @@
+package com.txt.grpc.journal;
+
+import com.google.protobuf.CodedOutputStream;
+import com.txt.grpc.marketdata.QuoteRecorder;
+import com.txt.grpc.streaming.JournaledStockQuote;
+import com.txt.grpc.streaming.StockQuote;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Append-only journal of published quotes in segmented, memory-mapped files.
+ * <p>
+ * Every record gets the next sequence number and carries its {@link JournaledStockQuote} already serialized, so a
+ * replay can hand the bytes straight from the mapping to the transport. Segments are fixed-size files named after
+ * their first sequence; when one is full the next is created and, beyond {@code maxSegments}, the oldest is deleted.
+ * Appends are serialized by the journal's lock while any number of {@link JournalCursor}s read without locking.
+ * <p>
+ * Records survive a process crash as soon as they are written to the mapping; they are forced to disk when a segment
+ * is sealed and on {@link #close()}.
+ */
+@Slf4j
+public class QuoteJournal implements QuoteRecorder, AutoCloseable {
+
+    private static final String SEGMENT_PREFIX = "quotes-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final Clock clock;
+    private final ConcurrentNavigableMap<Long, JournalSegment> segments = new ConcurrentSkipListMap<>();
+    private JournalSegment active;
+    private long nextSequence;
+    private boolean closed;
+
+    public QuoteJournal(Path directory, int segmentSize, int maxSegments) throws IOException {
+        this(directory, segmentSize, maxSegments, Clock.systemUTC());
+    }
+
+    /**
+     * Opens the journal in the directory, recovering the segments already there.
+     *
+     * @param segmentSize bytes mapped per segment file
+     * @param maxSegments segments kept before the oldest is deleted
+     */
+    public QuoteJournal(Path directory, int segmentSize, int maxSegments, Clock clock) throws IOException {
+        if (segmentSize <= JournalSegment.HEADER_BYTES) {
+            throw new IllegalArgumentException("segmentSize too small: " + segmentSize);
+        }
+        if (maxSegments < 1) {
+            throw new IllegalArgumentException("maxSegments must be positive");
+        }
+        this.directory = Files.createDirectories(directory);
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+        this.clock = clock;
+
+        TreeMap<Long, Path> existing = new TreeMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                existing.put(firstSequence(file), file);
+            }
+        }
+        for (Map.Entry<Long, Path> entry : existing.entrySet()) {
+            if (active != null) {
+                active.seal();
+            }
+            active = JournalSegment.open(entry.getValue(), entry.getKey(), segmentSize);
+            segments.put(entry.getKey(), active);
+        }
+        if (active == null) {
+            nextSequence = 1;
+            active = createSegment(nextSequence);
+        } else {
+            nextSequence = active.lastSequence() + 1;
+            log.info("Recovered quote journal {} up to sequence {}", directory, active.lastSequence());
+        }
+    }
+
+    @Override
+    public void record(String tickerSymbol, StockQuote stockQuote) {
+        append(tickerSymbol, stockQuote);
+    }
+
+    /**
+     * @return the sequence number of the record, or {@code -1} once the journal is closed
+     */
+    public synchronized long append(String tickerSymbol, StockQuote stockQuote) {
+        if (closed) {
+            return -1;
+        }
+        long sequence = nextSequence;
+        long timestamp = clock.millis();
+        JournaledStockQuote record = JournaledStockQuote.newBuilder()
+                .setSequence(sequence)
+                .setTimestampMillis(timestamp)
+                .setTickerSymbol(tickerSymbol)
+                .setQuote(stockQuote)
+                .build();
+        byte[] encodedTickerSymbol = tickerSymbol.getBytes(StandardCharsets.UTF_8);
+        if (encodedTickerSymbol.length > JournalSegment.MAX_TICKER_BYTES) {
+            throw new IllegalArgumentException("Ticker of " + encodedTickerSymbol.length
+                    + " bytes is too long to journal");
+        }
+        int payloadLength = record.getSerializedSize();
+        int recordLength = JournalSegment.HEADER_BYTES + encodedTickerSymbol.length + payloadLength;
+        if (recordLength > segmentSize) {
+            throw new IllegalArgumentException("Quote of " + recordLength + " bytes does not fit a journal segment");
+        }
+        try {
+            if (!active.hasRoom(recordLength)) {
+                roll();
+            }
+            CodedOutputStream output = CodedOutputStream.newInstance(
+                    active.beginRecord(sequence, timestamp, encodedTickerSymbol, payloadLength));
+            record.writeTo(output);
+            output.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to journal quote " + sequence, e);
+        }
+        active.commit(sequence, recordLength);
+        nextSequence++;
+        return sequence;
+    }
+
+    /**
+     * A cursor over the records from the given sequence on, or from the oldest retained record if that is later.
+     */
+    public JournalCursor fromSequence(long sequence) {
+        Map.Entry<Long, JournalSegment> start = segments.floorEntry(sequence);
+        return new JournalCursor(this, start != null ? start.getValue() : segments.firstEntry().getValue(),
+                sequence, Long.MIN_VALUE);
+    }
+
+    /**
+     * A cursor over the records written at or after the given time.
+     */
+    public JournalCursor fromTimestamp(long timestampMillis) {
+        JournalSegment start = segments.firstEntry().getValue();
+        for (JournalSegment segment : segments.values()) {
+            if (segment.firstTimestamp() > timestampMillis) {
+                break;
+            }
+            start = segment;
+        }
+        return new JournalCursor(this, start, Long.MIN_VALUE, timestampMillis);
+    }
+
+    /**
+     * @return the sequence the next record will get
+     */
+    public synchronized long nextSequence() {
+        return nextSequence;
+    }
+
+    int segmentCount() {
+        return segments.size();
+    }
+
+    synchronized int activeSegmentCommitted() {
+        return active.committed();
+    }
+
+    JournalSegment segmentAfter(JournalSegment segment) {
+        Map.Entry<Long, JournalSegment> next = segments.higherEntry(segment.firstSequence());
+        return next == null ? null : next.getValue();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!closed) {
+            closed = true;
+            active.force();
+        }
+    }
+
+    private void roll() throws IOException {
+        JournalSegment next = createSegment(nextSequence);
+        JournalSegment previous = active;
+        active = next;
+        previous.seal();
+        while (segments.size() > maxSegments) {
+            JournalSegment oldest = segments.pollFirstEntry().getValue();
+            // cursors still reading it keep their mapping, which outlives the file
+            Files.deleteIfExists(oldest.path());
+        }
+    }
+
+    private JournalSegment createSegment(long firstSequence) throws IOException {
+        Path path = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX));
+        JournalSegment segment = JournalSegment.open(path, firstSequence, segmentSize);
+        segments.put(firstSequence, segment);
+        return segment;
+    }
+
+    private static long firstSequence(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+}
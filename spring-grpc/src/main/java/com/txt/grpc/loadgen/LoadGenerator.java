@@ -0,0 +1,192 @@
+package com.txt.grpc.loadgen;
+
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Drives a {@link Workload} against a running StockServer or CommodityServer and reports latency percentiles and
+ * throughput of the measurement phase.
+ * <p>
+ * Closed-loop mode keeps {@code channels x streams} operations outstanding. Open-loop mode starts operations at a
+ * fixed rate and measures latency from the intended start time, so a stalled server shows up in the percentiles
+ * instead of silently lowering the offered load.
+ */
+@Slf4j
+public class LoadGenerator {
+
+    private static final long OPEN_LOOP_TICK_MICROS = 500;
+
+    private final LoadGeneratorOptions options;
+    private final List<ManagedChannel> channels = new ArrayList<>();
+    private final List<Workload.Operation> operations = new ArrayList<>();
+    private final Recorder recorder = new Recorder(TimeUnit.MINUTES.toNanos(1), 3);
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private volatile boolean running = true;
+
+    public LoadGenerator(LoadGeneratorOptions options) {
+        this.options = options;
+        for (int i = 0; i < options.getChannels(); i++) {
+            ManagedChannel channel = ManagedChannelBuilder.forTarget(options.getTarget())
+                    .usePlaintext()
+                    .build();
+            channels.add(channel);
+            operations.add(options.getWorkload().prepare(channel, options.getMessagesPerStream()));
+        }
+    }
+
+    public Report run() throws InterruptedException {
+        log.info("Load generator: {}", options);
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            if (options.getMode() == LoadGeneratorOptions.Mode.CLOSED) {
+                startClosedLoop();
+            } else {
+                startOpenLoop(scheduler);
+            }
+
+            Thread.sleep(options.getWarmup().toMillis());
+            recorder.reset();
+            completed.reset();
+            errors.reset();
+            skipped.reset();
+
+            long measurementStart = System.nanoTime();
+            Thread.sleep(options.getDuration().toMillis());
+            Histogram histogram = recorder.getIntervalHistogram();
+            long elapsedNanos = System.nanoTime() - measurementStart;
+            Report report = new Report(histogram, completed.sum(), errors.sum(), skipped.sum(), elapsedNanos);
+
+            running = false;
+            return report;
+        } finally {
+            running = false;
+            scheduler.shutdownNow();
+        }
+    }
+
+    public void shutdown() throws InterruptedException {
+        for (ManagedChannel channel : channels) {
+            channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    private void startClosedLoop() {
+        for (Workload.Operation operation : operations) {
+            for (int i = 0; i < options.getStreamsPerChannel(); i++) {
+                startClosedLoopOperation(operation);
+            }
+        }
+    }
+
+    private void startClosedLoopOperation(Workload.Operation operation) {
+        long start = System.nanoTime();
+        operation.start(error -> {
+            record(start, error);
+            if (running) {
+                startClosedLoopOperation(operation);
+            }
+        });
+    }
+
+    private void startOpenLoop(ScheduledExecutorService scheduler) {
+        long start = System.nanoTime();
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / options.getRps();
+        long[] issued = new long[1];
+        scheduler.scheduleAtFixedRate(() -> {
+            long due = (System.nanoTime() - start) / intervalNanos;
+            for (; issued[0] < due && running; issued[0]++) {
+                if (outstanding.get() >= options.getMaxOutstanding()) {
+                    skipped.increment();
+                    continue;
+                }
+                long intendedStart = start + issued[0] * intervalNanos;
+                outstanding.incrementAndGet();
+                operations.get((int) (issued[0] % operations.size())).start(error -> {
+                    outstanding.decrementAndGet();
+                    record(intendedStart, error);
+                });
+            }
+        }, 0, OPEN_LOOP_TICK_MICROS, TimeUnit.MICROSECONDS);
+    }
+
+    private void record(long startNanos, Throwable error) {
+        if (error != null) {
+            errors.increment();
+            return;
+        }
+        recorder.recordValue(Math.min(System.nanoTime() - startNanos, TimeUnit.MINUTES.toNanos(1)));
+        completed.increment();
+    }
+
+    /**
+     * Outcome of the measurement phase.
+     */
+    public static final class Report {
+
+        private final Histogram latencyNanos;
+        private final long completed;
+        private final long errors;
+        private final long skipped;
+        private final long elapsedNanos;
+
+        private Report(Histogram latencyNanos, long completed, long errors, long skipped, long elapsedNanos) {
+            this.latencyNanos = latencyNanos;
+            this.completed = completed;
+            this.errors = errors;
+            this.skipped = skipped;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public long completed() {
+            return completed;
+        }
+
+        public long errors() {
+            return errors;
+        }
+
+        public long skipped() {
+            return skipped;
+        }
+
+        public double throughput() {
+            return completed * 1e9 / elapsedNanos;
+        }
+
+        public long percentileMicros(double percentile) {
+            return TimeUnit.NANOSECONDS.toMicros(latencyNanos.getValueAtPercentile(percentile));
+        }
+
+        public void print() {
+            System.out.printf("completed=%d errors=%d skipped=%d throughput=%.1f ops/s%n",
+                    completed, errors, skipped, throughput());
+            System.out.printf("latency (us): p50=%d p90=%d p99=%d p99.9=%d max=%d%n",
+                    percentileMicros(50), percentileMicros(90), percentileMicros(99), percentileMicros(99.9),
+                    TimeUnit.NANOSECONDS.toMicros(latencyNanos.getMaxValue()));
+            latencyNanos.outputPercentileDistribution(System.out, 1000.0);
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        LoadGenerator loadGenerator = new LoadGenerator(LoadGeneratorOptions.parse(args));
+        try {
+            loadGenerator.run().print();
+        } finally {
+            loadGenerator.shutdown();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.txt.grpc.loadgen;
+
+import lombok.Getter;
+
+import java.time.Duration;
+
+/**
+ * Command line options of {@link LoadGenerator}, given as {@code --name=value}.
+ */
+@Getter
+public class LoadGeneratorOptions {
+
+    public enum Mode {
+        /**
+         * A fixed number of outstanding operations, each one started as soon as the previous finishes.
+         */
+        CLOSED,
+        /**
+         * Operations started at a fixed rate regardless of how fast the server answers.
+         */
+        OPEN
+    }
+
+    static final int MAX_RPS = 1_000_000_000;
+
+    private String target = "localhost:8980";
+    private Workload workload = Workload.UNARY_COMMODITY;
+    private Mode mode = Mode.CLOSED;
+    private int channels = 1;
+    private int streamsPerChannel = 8;
+    private int rps = 1000;
+    private int maxOutstanding = 10_000;
+    private int messagesPerStream = 5;
+    private Duration warmup = Duration.ofSeconds(10);
+    private Duration duration = Duration.ofSeconds(30);
+
+    public static LoadGeneratorOptions parse(String[] args) {
+        LoadGeneratorOptions options = new LoadGeneratorOptions();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || arg.indexOf('=') < 0) {
+                throw new IllegalArgumentException("Expected --name=value but got " + arg + "\n" + usage());
+            }
+            String name = arg.substring(2, arg.indexOf('='));
+            String value = arg.substring(arg.indexOf('=') + 1);
+            switch (name) {
+                case "target":
+                    options.target = value;
+                    break;
+                case "rpc":
+                    options.workload = Workload.valueOf(value.toUpperCase().replace('-', '_'));
+                    break;
+                case "mode":
+                    options.mode = Mode.valueOf(value.toUpperCase());
+                    break;
+                case "channels":
+                    options.channels = Integer.parseInt(value);
+                    break;
+                case "streams":
+                    options.streamsPerChannel = Integer.parseInt(value);
+                    break;
+                case "rps":
+                    options.rps = Integer.parseInt(value);
+                    break;
+                case "max-outstanding":
+                    options.maxOutstanding = Integer.parseInt(value);
+                    break;
+                case "messages":
+                    options.messagesPerStream = Integer.parseInt(value);
+                    break;
+                case "warmup":
+                    options.warmup = Duration.ofSeconds(Long.parseLong(value));
+                    break;
+                case "duration":
+                    options.duration = Duration.ofSeconds(Long.parseLong(value));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option --" + name + "\n" + usage());
+            }
+        }
+        if (options.channels < 1 || options.streamsPerChannel < 1 || options.maxOutstanding < 1
+                || options.messagesPerStream < 0) {
+            throw new IllegalArgumentException("channels, streams and max-outstanding must be positive, messages must"
+                    + " not be negative\n" + usage());
+        }
+        // the open loop issues one operation per whole nanosecond interval
+        if (options.rps < 1 || options.rps > MAX_RPS) {
+            throw new IllegalArgumentException("rps must be between 1 and " + MAX_RPS + "\n" + usage());
+        }
+        if (options.warmup.isNegative() || options.duration.isNegative()) {
+            throw new IllegalArgumentException("warmup and duration must not be negative\n" + usage());
+        }
+        return options;
+    }
+
+    static String usage() {
+        return "Usage: LoadGenerator [--target=localhost:8980]"
+                + " [--rpc=unary-commodity|server-stream|client-stream|bidi-stream]"
+                + " [--mode=closed|open] [--channels=1] [--streams=8] [--rps=1000] [--max-outstanding=10000]"
+                + " [--messages=5] [--warmup=10] [--duration=30]";
+    }
+
+    @Override
+    public String toString() {
+        return "target=" + target + ", rpc=" + workload + ", mode=" + mode + ", channels=" + channels
+                + (mode == Mode.CLOSED ? ", streams/channel=" + streamsPerChannel : ", rps=" + rps)
+                + ", messages/stream=" + messagesPerStream + ", warmup=" + warmup.getSeconds() + "s"
+                + ", duration=" + duration.getSeconds() + "s";
+    }
+}
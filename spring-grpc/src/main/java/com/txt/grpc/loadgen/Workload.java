@@ -0,0 +1,104 @@
+package com.txt.grpc.loadgen;
+
+import com.txt.grpc.errorhandling.Commodity;
+import com.txt.grpc.errorhandling.CommodityPriceProviderGrpc;
+import com.txt.grpc.errorhandling.CommodityQuote;
+import com.txt.grpc.streaming.Stock;
+import com.txt.grpc.streaming.StockQuote;
+import com.txt.grpc.streaming.StockQuoteProviderGrpc;
+import io.grpc.Channel;
+import io.grpc.stub.StreamObserver;
+
+import java.util.function.Consumer;
+
+/**
+ * RPCs the load generator can drive. One operation is one complete call: a unary request, or a stream carrying
+ * {@code messagesPerStream} requests and all of its responses.
+ */
+public enum Workload {
+
+    UNARY_COMMODITY {
+        @Override
+        Operation prepare(Channel channel, int messagesPerStream) {
+            CommodityPriceProviderGrpc.CommodityPriceProviderStub stub = CommodityPriceProviderGrpc.newStub(channel);
+            Commodity request = Commodity.newBuilder()
+                    .setCommodityName("Commodity1")
+                    .setAccessToken("123validToken")
+                    .build();
+            return completion -> stub.getBestCommodityPrice(request, new CompletingObserver<CommodityQuote>(completion));
+        }
+    },
+
+    SERVER_STREAM {
+        @Override
+        Operation prepare(Channel channel, int messagesPerStream) {
+            StockQuoteProviderGrpc.StockQuoteProviderStub stub = StockQuoteProviderGrpc.newStub(channel);
+            return completion -> stub.serverSideStreamingGetListStockQuotes(STOCK, new CompletingObserver<>(completion));
+        }
+    },
+
+    CLIENT_STREAM {
+        @Override
+        Operation prepare(Channel channel, int messagesPerStream) {
+            StockQuoteProviderGrpc.StockQuoteProviderStub stub = StockQuoteProviderGrpc.newStub(channel);
+            return completion -> sendAll(stub.clientSideStreamingGetStatisticsOfStocks(
+                    new CompletingObserver<>(completion)), messagesPerStream);
+        }
+    },
+
+    BIDI_STREAM {
+        @Override
+        Operation prepare(Channel channel, int messagesPerStream) {
+            StockQuoteProviderGrpc.StockQuoteProviderStub stub = StockQuoteProviderGrpc.newStub(channel);
+            return completion -> sendAll(stub.bidirectionalStreamingGetListsStockQuotes(
+                    new CompletingObserver<StockQuote>(completion)), messagesPerStream);
+        }
+    };
+
+    private static final Stock STOCK = Stock.newBuilder()
+            .setTickerSymbol("AU")
+            .setCompanyName("Auburn Corp")
+            .setDescription("Aptitude Intel")
+            .build();
+
+    abstract Operation prepare(Channel channel, int messagesPerStream);
+
+    private static void sendAll(StreamObserver<Stock> requestObserver, int messagesPerStream) {
+        for (int i = 0; i < messagesPerStream; i++) {
+            requestObserver.onNext(STOCK);
+        }
+        requestObserver.onCompleted();
+    }
+
+    /**
+     * Starts one call and reports its outcome, {@code null} on success, to the completion callback.
+     */
+    @FunctionalInterface
+    interface Operation {
+
+        void start(Consumer<Throwable> completion);
+    }
+
+    private static final class CompletingObserver<T> implements StreamObserver<T> {
+
+        private final Consumer<Throwable> completion;
+
+        private CompletingObserver(Consumer<Throwable> completion) {
+            this.completion = completion;
+        }
+
+        @Override
+        public void onNext(T value) {
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            completion.accept(t);
+        }
+
+        @Override
+        public void onCompleted() {
+            completion.accept(null);
+        }
+    }
+}
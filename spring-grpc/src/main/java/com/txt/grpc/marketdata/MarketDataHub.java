@@ -0,0 +1,120 @@
+package com.txt.grpc.marketdata;
+
+import com.txt.grpc.streaming.StockQuote;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Central price engine shared by all quote streams.
+ * <p>
+ * Every ticker with at least one subscriber has exactly one producer task, scheduled at a fixed rate, that builds
+ * each {@link StockQuote} once and hands the same instance to all subscribers. The latest quote per ticker is kept in
+ * a lock-free table, so N subscribers on one ticker cost one quote instead of N. A ticker's feed is dropped with its
+ * last subscriber, so clients subscribing to arbitrary symbols cannot grow the table, and a later subscriber starts
+ * a fresh price walk.
+ */
+@Slf4j
+public class MarketDataHub implements AutoCloseable {
+
+    private static final Duration DEFAULT_TICK_INTERVAL = Duration.ofMillis(100);
+
+    private final ConcurrentMap<String, TickerFeed> feeds = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService producers;
+    private final long tickIntervalNanos;
+    private final QuoteRecorder recorder;
+
+    public MarketDataHub() {
+        this(QuoteRecorder.NONE);
+    }
+
+    public MarketDataHub(QuoteRecorder recorder) {
+        this(DEFAULT_TICK_INTERVAL, Math.max(1, Runtime.getRuntime().availableProcessors() / 2), recorder);
+    }
+
+    public MarketDataHub(Duration tickInterval, int producerThreads) {
+        this(tickInterval, producerThreads, QuoteRecorder.NONE);
+    }
+
+    /**
+     * @param recorder sees every published quote before the subscribers, e.g. to journal it
+     */
+    public MarketDataHub(Duration tickInterval, int producerThreads, QuoteRecorder recorder) {
+        this.tickIntervalNanos = tickInterval.toNanos();
+        this.recorder = recorder;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.producers = Executors.newScheduledThreadPool(producerThreads, runnable -> {
+            Thread thread = new Thread(runnable, "market-data-producer-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Registers the listener for the quotes of a ticker, starting the ticker's producer if needed.
+     *
+     * @return a handle that unsubscribes the listener when closed
+     */
+    public Subscription subscribe(String tickerSymbol, QuoteListener listener) {
+        while (true) {
+            TickerFeed feed = feeds.computeIfAbsent(tickerSymbol, symbol -> new TickerFeed(symbol, recorder));
+            synchronized (feed) {
+                // the last subscriber may have left and dropped the feed since it was looked up
+                if (feed.isRetired()) {
+                    continue;
+                }
+                if (feed.add(listener)) {
+                    feed.startProducer(producers.scheduleAtFixedRate(() -> publish(feed), 0, tickIntervalNanos,
+                            TimeUnit.NANOSECONDS));
+                }
+            }
+            return () -> {
+                synchronized (feed) {
+                    if (feed.remove(listener)) {
+                        feed.stopProducer();
+                        feed.retire();
+                        feeds.remove(tickerSymbol, feed);
+                    }
+                }
+            };
+        }
+    }
+
+    /**
+     * @return the last quote published for the ticker, or {@code null} if it has no subscriber
+     */
+    public StockQuote latest(String tickerSymbol) {
+        TickerFeed feed = feeds.get(tickerSymbol);
+        return feed == null ? null : feed.latest();
+    }
+
+    private static void publish(TickerFeed feed) {
+        try {
+            feed.publish();
+        } catch (RuntimeException e) {
+            // an exception would silently cancel the periodic task
+            log.warn("Failed to publish quote for {}: {}", feed.tickerSymbol(), e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        producers.shutdownNow();
+    }
+
+    /**
+     * Handle of a listener registration.
+     */
+    @FunctionalInterface
+    public interface Subscription extends AutoCloseable {
+
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,14 @@
+package com.txt.grpc.marketdata;
+
+import com.txt.grpc.streaming.StockQuote;
+
+/**
+ * Receives the quotes published by {@link MarketDataHub} for the tickers it subscribed to.
+ * <p>
+ * Called on the producer thread of the ticker, so implementations must hand the quote off without blocking.
+ */
+@FunctionalInterface
+public interface QuoteListener {
+
+    void onQuote(StockQuote stockQuote);
+}
@@ -0,0 +1,17 @@
+package com.txt.grpc.marketdata;
+
+import com.txt.grpc.streaming.StockQuote;
+
+/**
+ * Sees every quote published by {@link MarketDataHub}, before any subscriber does.
+ * <p>
+ * Called on the producer thread of the ticker, concurrently for different tickers.
+ */
+@FunctionalInterface
+public interface QuoteRecorder {
+
+    QuoteRecorder NONE = (tickerSymbol, stockQuote) -> {
+    };
+
+    void record(String tickerSymbol, StockQuote stockQuote);
+}
@@ -0,0 +1,115 @@
+package com.txt.grpc.marketdata;
+
+import com.txt.grpc.service.ZeroCopyMarshaller;
+import com.txt.grpc.streaming.StockQuote;
+
+import java.util.Arrays;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Latest price and subscribers of a single ticker.
+ * <p>
+ * {@link #publish()} is only ever run by the ticker's producer task, so the price walk needs no synchronization.
+ * Readers see the latest quote through a volatile field and subscribers through a copy-on-write array, which keeps
+ * the publish path lock-free; only subscribe and unsubscribe synchronize on the feed.
+ */
+final class TickerFeed {
+
+    private static final QuoteListener[] NO_LISTENERS = new QuoteListener[0];
+
+    private final String tickerSymbol;
+    private final String description;
+    private final QuoteRecorder recorder;
+    private double price;
+    private int offerNumber;
+    private volatile StockQuote latest;
+    private volatile QuoteListener[] listeners = NO_LISTENERS;
+    private ScheduledFuture<?> producer;
+    private boolean retired;
+
+    TickerFeed(String tickerSymbol, QuoteRecorder recorder) {
+        this.tickerSymbol = tickerSymbol;
+        this.recorder = recorder;
+        this.description = "Price for stock:" + tickerSymbol;
+        this.price = tickerSymbol.length();
+    }
+
+    String tickerSymbol() {
+        return tickerSymbol;
+    }
+
+    StockQuote latest() {
+        return latest;
+    }
+
+    /**
+     * Builds the next quote once, records it and fans the same immutable instance out to every subscriber.
+     */
+    void publish() {
+        price = Math.max(0.01d, price + ThreadLocalRandom.current().nextDouble(-0.1d, 0.1d));
+        StockQuote stockQuote = StockQuote.newBuilder()
+                .setPrice(price)
+                .setOfferNumber(++offerNumber)
+                .setDescription(description)
+                .build();
+        // memoizes the serialized size once instead of on every subscriber's stream
+        stockQuote.getSerializedSize();
+        ZeroCopyMarshaller.share(stockQuote);
+        recorder.record(tickerSymbol, stockQuote);
+        latest = stockQuote;
+        for (QuoteListener listener : listeners) {
+            listener.onQuote(stockQuote);
+        }
+    }
+
+    /**
+     * @return {@code true} if this is the first subscriber and the producer has to be started
+     */
+    synchronized boolean add(QuoteListener listener) {
+        QuoteListener[] current = listeners;
+        QuoteListener[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = listener;
+        listeners = updated;
+        return current.length == 0;
+    }
+
+    /**
+     * @return {@code true} if the last subscriber left and the producer can be stopped
+     */
+    synchronized boolean remove(QuoteListener listener) {
+        QuoteListener[] current = listeners;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == listener) {
+                QuoteListener[] updated = new QuoteListener[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                listeners = updated;
+                return updated.length == 0;
+            }
+        }
+        return false;
+    }
+
+    synchronized void startProducer(ScheduledFuture<?> producer) {
+        this.producer = producer;
+    }
+
+    synchronized void stopProducer() {
+        if (producer != null) {
+            producer.cancel(false);
+            producer = null;
+        }
+    }
+
+    /**
+     * Marks the feed as dropped from the hub after its last subscriber left; it accepts no new subscribers.
+     */
+    synchronized void retire() {
+        retired = true;
+    }
+
+    synchronized boolean isRetired() {
+        return retired;
+    }
+}
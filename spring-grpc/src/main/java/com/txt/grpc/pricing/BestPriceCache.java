@@ -0,0 +1,155 @@
+package com.txt.grpc.pricing;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Bounded short-TTL cache of best prices per commodity, with single-flight computation.
+ * <p>
+ * A hit is a single {@link ConcurrentHashMap#get} and allocates nothing. On a miss, the first caller installs a
+ * pending entry and computes the price; callers arriving for the same commodity meanwhile wait for that result
+ * instead of computing their own, and are counted as coalesced. A failed computation is not cached: it is rethrown
+ * to every waiting caller and the next request tries again. When the cache is full, expired entries are evicted
+ * first, then arbitrary completed ones. Insertions of new commodities are serialized, so the cache holds at most
+ * {@code maxSize} entries unless more computations than that are in flight.
+ */
+public class BestPriceCache {
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ReentrantLock insertionLock = new ReentrantLock();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    public BestPriceCache(int maxSize, Duration ttl) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    /**
+     * @return the cached price of the commodity, or the one computed by {@code bestPrice} if there is none yet
+     */
+    public double get(String commodityName, ToDoubleFunction<String> bestPrice) {
+        long now = System.nanoTime();
+        Entry entry = entries.get(commodityName);
+        while (true) {
+            if (entry != null) {
+                if (entry.pending != null) {
+                    coalesced.increment();
+                    return await(entry.pending);
+                }
+                if (entry.expiresAt - now > 0) {
+                    hits.increment();
+                    return entry.price;
+                }
+            }
+            Entry flight = new Entry(new CompletableFuture<>());
+            boolean leader = entry == null
+                    ? insert(commodityName, flight, now)
+                    : entries.replace(commodityName, entry, flight);
+            if (!leader) {
+                entry = entries.get(commodityName);
+                continue;
+            }
+            misses.increment();
+            return compute(commodityName, flight, bestPrice);
+        }
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long coalesced() {
+        return coalesced.sum();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private double compute(String commodityName, Entry flight, ToDoubleFunction<String> bestPrice) {
+        double price;
+        try {
+            price = bestPrice.applyAsDouble(commodityName);
+        } catch (Throwable e) {
+            entries.remove(commodityName, flight);
+            flight.pending.completeExceptionally(e);
+            throw e;
+        }
+        entries.replace(commodityName, flight, new Entry(price, System.nanoTime() + ttlNanos));
+        flight.pending.complete(price);
+        return price;
+    }
+
+    private static double await(CompletableFuture<Double> pending) {
+        try {
+            return pending.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private boolean insert(String commodityName, Entry flight, long now) {
+        insertionLock.lock();
+        try {
+            if (!entries.containsKey(commodityName) && entries.size() >= maxSize) {
+                evict(now);
+            }
+            return entries.putIfAbsent(commodityName, flight) == null;
+        } finally {
+            insertionLock.unlock();
+        }
+    }
+
+    private void evict(long now) {
+        entries.values().removeIf(entry -> entry.pending == null && entry.expiresAt - now <= 0);
+        Iterator<Entry> victims = entries.values().iterator();
+        while (entries.size() >= maxSize && victims.hasNext()) {
+            if (victims.next().pending == null) {
+                victims.remove();
+            }
+        }
+    }
+
+    private static final class Entry {
+
+        private final double price;
+        private final long expiresAt;
+        private final CompletableFuture<Double> pending;
+
+        private Entry(double price, long expiresAt) {
+            this.price = price;
+            this.expiresAt = expiresAt;
+            this.pending = null;
+        }
+
+        private Entry(CompletableFuture<Double> pending) {
+            this.price = Double.NaN;
+            this.expiresAt = 0;
+            this.pending = pending;
+        }
+    }
+}
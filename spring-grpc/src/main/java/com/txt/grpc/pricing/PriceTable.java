@@ -0,0 +1,174 @@
+package com.txt.grpc.pricing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Immutable commodity price table with primitive {@code double} storage.
+ * <p>
+ * Names and prices live in parallel arrays indexed by open addressing on the name's hash, so a lookup neither boxes
+ * nor allocates. Tables are loaded from binary snapshots through a read-only memory mapping and replaced as a whole
+ * when prices change, see {@link PriceTableSource}.
+ * <p>
+ * Snapshot layout, big-endian: magic {@code "CPTB"}, version, entry count, then per entry the UTF-8 length as an
+ * unsigned short, the UTF-8 name and the price as a double.
+ */
+public final class PriceTable {
+
+    private static final int MAGIC = 0x43505442;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 3 * Integer.BYTES;
+
+    private final String[] names;
+    private final double[] prices;
+    private final int mask;
+    private int size;
+    private volatile String listedNames;
+
+    private PriceTable(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(2, expectedSize * 2 - 1)) << 1;
+        this.names = new String[capacity];
+        this.prices = new double[capacity];
+        this.mask = capacity - 1;
+    }
+
+    public static PriceTable of(Map<String, Double> prices) {
+        PriceTable table = new PriceTable(prices.size());
+        prices.forEach(table::put);
+        return table;
+    }
+
+    /**
+     * Loads a snapshot written by {@link #write(Path, Map)}.
+     *
+     * @throws IOException if the file cannot be read or is not a valid snapshot
+     */
+    public static PriceTable load(Path snapshot) throws IOException {
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC) {
+                throw new IOException("Not a price table snapshot: " + snapshot);
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported price table version " + version + ": " + snapshot);
+            }
+            int count = buffer.getInt();
+            if (count < 0 || count > buffer.remaining() / (Short.BYTES + Double.BYTES)) {
+                throw new IOException("Corrupt price table entry count " + count + ": " + snapshot);
+            }
+            PriceTable table = new PriceTable(count);
+            byte[] name = new byte[0xFFFF];
+            for (int i = 0; i < count; i++) {
+                int length = Short.toUnsignedInt(buffer.getShort());
+                buffer.get(name, 0, length);
+                table.put(new String(name, 0, length, StandardCharsets.UTF_8).intern(), buffer.getDouble());
+            }
+            return table;
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt price table snapshot: " + snapshot, e);
+        }
+    }
+
+    /**
+     * Writes a snapshot next to the target and renames it into place, so readers never map a partial file.
+     */
+    public static void write(Path snapshot, Map<String, Double> prices) throws IOException {
+        int bytes = HEADER_BYTES;
+        for (String name : prices.keySet()) {
+            bytes += Short.BYTES + name.getBytes(StandardCharsets.UTF_8).length + Double.BYTES;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(bytes)
+                .putInt(MAGIC)
+                .putInt(VERSION)
+                .putInt(prices.size());
+        for (Map.Entry<String, Double> entry : prices.entrySet()) {
+            byte[] name = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            if (name.length > 0xFFFF) {
+                throw new IllegalArgumentException("Commodity name too long: " + entry.getKey());
+            }
+            buffer.putShort((short) name.length).put(name).putDouble(entry.getValue());
+        }
+        buffer.flip();
+
+        Path absolute = snapshot.toAbsolutePath();
+        Path temporary = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            Files.move(temporary, absolute, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * @return the price of the commodity, or {@link Double#NaN} if it is not listed or has no price
+     */
+    public double price(String name) {
+        int index = spread(name.hashCode()) & mask;
+        String candidate;
+        while ((candidate = names[index]) != null) {
+            if (candidate.equals(name)) {
+                return prices[index];
+            }
+            index = (index + 1) & mask;
+        }
+        return Double.NaN;
+    }
+
+    public boolean contains(String name) {
+        return !Double.isNaN(price(name));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the names of the listed commodities, sorted and separated by {@code ", "}
+     */
+    public String listedNames() {
+        String joined = listedNames;
+        if (joined == null) {
+            // the table never changes, so racing threads compute the same string
+            joined = Arrays.stream(names)
+                    .filter(Objects::nonNull)
+                    .sorted()
+                    .collect(Collectors.joining(", "));
+            listedNames = joined;
+        }
+        return joined;
+    }
+
+    private void put(String name, double price) {
+        int index = spread(name.hashCode()) & mask;
+        while (names[index] != null && !names[index].equals(name)) {
+            index = (index + 1) & mask;
+        }
+        if (names[index] == null) {
+            names[index] = name;
+            size++;
+        }
+        prices[index] = price;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
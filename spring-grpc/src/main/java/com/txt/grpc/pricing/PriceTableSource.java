@@ -0,0 +1,111 @@
+package com.txt.grpc.pricing;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Supplies the current {@link PriceTable}, optionally reloading it when its snapshot file changes.
+ * <p>
+ * A reload builds a complete new table off to the side and publishes it with a single volatile write, so readers
+ * never block and never see a half-loaded table. A snapshot that fails to load is logged and the previous table is
+ * kept.
+ */
+@Slf4j
+public final class PriceTableSource implements Supplier<PriceTable>, AutoCloseable {
+
+    private final Path snapshot;
+    private final ScheduledExecutorService watcher;
+    private volatile PriceTable current;
+    private String loadedVersion;
+
+    private PriceTableSource(PriceTable table, Path snapshot, ScheduledExecutorService watcher) {
+        this.current = table;
+        this.snapshot = snapshot;
+        this.watcher = watcher;
+    }
+
+    /**
+     * A source that always returns the given table.
+     */
+    public static PriceTableSource fixed(PriceTable table) {
+        return new PriceTableSource(table, null, null);
+    }
+
+    /**
+     * Loads the snapshot and checks it for changes every {@code pollInterval}.
+     *
+     * @throws IOException if the initial snapshot cannot be loaded
+     */
+    public static PriceTableSource watching(Path snapshot, Duration pollInterval) throws IOException {
+        String version = version(snapshot);
+        PriceTable table = PriceTable.load(snapshot);
+        ScheduledExecutorService watcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "price-table-watcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        PriceTableSource source = new PriceTableSource(table, snapshot, watcher);
+        source.loadedVersion = version;
+        log.info("Loaded {} commodity prices from {}", table.size(), snapshot);
+        watcher.scheduleWithFixedDelay(source::reloadIfChanged, pollInterval.toNanos(), pollInterval.toNanos(),
+                TimeUnit.NANOSECONDS);
+        return source;
+    }
+
+    @Override
+    public PriceTable get() {
+        return current;
+    }
+
+    /**
+     * Loads the snapshot again if the file changed since the last load.
+     *
+     * @return whether a new table was published
+     */
+    public synchronized boolean reloadIfChanged() {
+        if (snapshot == null) {
+            return false;
+        }
+        try {
+            String version = version(snapshot);
+            if (version.equals(loadedVersion)) {
+                return false;
+            }
+            PriceTable table = PriceTable.load(snapshot);
+            current = table;
+            loadedVersion = version;
+            log.info("Reloaded {} commodity prices from {}", table.size(), snapshot);
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        } catch (IOException e) {
+            log.warn("Keeping previous commodity prices, failed to reload {}: {}", snapshot, e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (watcher != null) {
+            watcher.shutdownNow();
+        }
+    }
+
+    /**
+     * Snapshots are replaced by renaming, so the file key changes even when time and size do not.
+     */
+    private static String version(Path snapshot) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(snapshot, BasicFileAttributes.class);
+        return attributes.fileKey() + ":" + attributes.lastModifiedTime().toMillis() + ":" + attributes.size();
+    }
+}
@@ -0,0 +1,25 @@
+package com.txt.grpc.server;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Cache in front of {@code getBestCommodityPrice}, bound from {@code commodity.best-price-cache.*}.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "commodity.best-price-cache")
+public class BestPriceCacheProperties {
+
+    private boolean enabled = false;
+
+    /**
+     * How long a computed best price is served to every caller.
+     */
+    private Duration ttl = Duration.ofMillis(50);
+
+    private int maxSize = 10_000;
+}
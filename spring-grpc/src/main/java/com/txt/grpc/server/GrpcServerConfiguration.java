@@ -0,0 +1,348 @@
+package com.txt.grpc.server;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.txt.grpc.errorhandling.Commodity;
+import com.txt.grpc.errorhandling.CommodityBatch;
+import com.txt.grpc.errorhandling.CommodityPriceProviderGrpc;
+import com.txt.grpc.hello.HelloRequest;
+import com.txt.grpc.hello.HelloServiceGrpc;
+import com.txt.grpc.interceptor.AccessLogInterceptor;
+import com.txt.grpc.interceptor.AccessLogWriter;
+import com.txt.grpc.interceptor.AccessTokenInterceptor;
+import com.txt.grpc.interceptor.ConcurrencyLimit;
+import com.txt.grpc.interceptor.ConcurrencyLimitInterceptor;
+import com.txt.grpc.interceptor.MetricsInterceptor;
+import com.txt.grpc.interceptor.PreviousAttemptsInterceptor;
+import com.txt.grpc.interceptor.QuoteDeliveryInterceptor;
+import com.txt.grpc.journal.QuoteJournal;
+import com.txt.grpc.marketdata.MarketDataHub;
+import com.txt.grpc.marketdata.QuoteRecorder;
+import com.txt.grpc.pricing.BestPriceCache;
+import com.txt.grpc.pricing.PriceTableSource;
+import com.txt.grpc.service.CommodityService;
+import com.txt.grpc.service.HelloServiceImpl;
+import com.txt.grpc.service.QuoteReplayService;
+import com.txt.grpc.service.StockService;
+import com.txt.grpc.service.WriteCoalescing;
+import com.txt.grpc.service.ZeroCopyMarshaller;
+import com.txt.grpc.streaming.Stock;
+import com.txt.grpc.streaming.StockQuoteJournalGrpc;
+import com.txt.grpc.streaming.StockQuoteProviderGrpc;
+import io.grpc.Server;
+import io.grpc.ServerInterceptors;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.grpc.netty.shaded.io.netty.channel.EventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.ServerChannel;
+import io.grpc.netty.shaded.io.netty.channel.epoll.Epoll;
+import io.grpc.netty.shaded.io.netty.channel.epoll.EpollEventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.epoll.EpollServerSocketChannel;
+import io.grpc.netty.shaded.io.netty.channel.nio.NioEventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.grpc.netty.shaded.io.netty.util.concurrent.DefaultThreadFactory;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * One Netty server hosting HelloService, CommodityPriceProvider and StockQuoteProvider, tuned through
+ * {@link GrpcServerProperties}.
+ */
+@Slf4j
+@Configuration
+@EnableConfigurationProperties({GrpcServerProperties.class, PriceTableProperties.class, JournalProperties.class,
+        BestPriceCacheProperties.class})
+public class GrpcServerConfiguration {
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "stock.journal", name = "enabled")
+    public QuoteJournal quoteJournal(JournalProperties properties) throws IOException {
+        return new QuoteJournal(properties.getDirectory(), (int) properties.getSegmentSize().toBytes(),
+                properties.getMaxSegments());
+    }
+
+    @Bean(destroyMethod = "close")
+    public MarketDataHub marketDataHub(ObjectProvider<QuoteJournal> quoteJournal) {
+        QuoteRecorder recorder = quoteJournal.getIfAvailable();
+        return new MarketDataHub(recorder != null ? recorder : QuoteRecorder.NONE);
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "stock.journal", name = "enabled")
+    public QuoteReplayService quoteReplayService(QuoteJournal quoteJournal, MarketDataHub marketDataHub) {
+        return new QuoteReplayService(quoteJournal, marketDataHub);
+    }
+
+    @Bean
+    public HelloServiceImpl helloService() {
+        return new HelloServiceImpl();
+    }
+
+    @Bean
+    public WriteCoalescing writeCoalescing(GrpcServerProperties properties) {
+        GrpcServerProperties.WriteCoalescing coalescing = properties.getWriteCoalescing();
+        return WriteCoalescing.of(coalescing.getMaxMessages(), coalescing.getMaxBytes().toBytes(),
+                coalescing.getMaxDelay());
+    }
+
+    @Bean(destroyMethod = "close")
+    public PriceTableSource priceTableSource(PriceTableProperties properties) throws IOException {
+        if (properties.getSnapshot() == null) {
+            return PriceTableSource.fixed(CommodityService.DEFAULT_BASE_PRICES);
+        }
+        return PriceTableSource.watching(properties.getSnapshot(), properties.getPollInterval());
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "commodity.best-price-cache", name = "enabled")
+    public BestPriceCache bestPriceCache(BestPriceCacheProperties properties, MeterRegistry meterRegistry) {
+        BestPriceCache cache = new BestPriceCache(properties.getMaxSize(), properties.getTtl());
+        FunctionCounter.builder("commodity.best.price.cache", cache, BestPriceCache::hits)
+                .tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("commodity.best.price.cache", cache, BestPriceCache::misses)
+                .tag("result", "miss")
+                .register(meterRegistry);
+        FunctionCounter.builder("commodity.best.price.cache", cache, BestPriceCache::coalesced)
+                .tag("result", "coalesced")
+                .register(meterRegistry);
+        Gauge.builder("commodity.best.price.cache.size", cache, BestPriceCache::size)
+                .register(meterRegistry);
+        return cache;
+    }
+
+    @Bean
+    public CommodityService commodityService(PriceTableSource priceTableSource,
+                                             ObjectProvider<BestPriceCache> bestPriceCache,
+                                             WriteCoalescing writeCoalescing) {
+        return new CommodityService(priceTableSource, bestPriceCache.getIfAvailable(), writeCoalescing);
+    }
+
+    @Bean
+    public StockService stockService(MarketDataHub marketDataHub, WriteCoalescing writeCoalescing) {
+        return new StockService(marketDataHub, 16, writeCoalescing);
+    }
+
+    @Bean
+    public AccessTokenInterceptor accessTokenInterceptor() {
+        return new AccessTokenInterceptor();
+    }
+
+    @Bean
+    public MetricsInterceptor metricsInterceptor(MeterRegistry meterRegistry) {
+        return new MetricsInterceptor(meterRegistry);
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "grpc.server.access-log", name = "enabled", matchIfMissing = true)
+    public AccessLogWriter accessLogWriter(GrpcServerProperties properties, MeterRegistry meterRegistry)
+            throws IOException {
+        GrpcServerProperties.AccessLog accessLog = properties.getAccessLog();
+        AccessLogWriter writer = new AccessLogWriter(accessLog.getFile(), accessLog.getBufferSize());
+        FunctionCounter.builder("grpc.server.access.log", writer, AccessLogWriter::written)
+                .tag("result", "written")
+                .register(meterRegistry);
+        FunctionCounter.builder("grpc.server.access.log", writer, AccessLogWriter::dropped)
+                .tag("result", "dropped")
+                .register(meterRegistry);
+        return writer;
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "grpc.server.access-log", name = "enabled", matchIfMissing = true)
+    public AccessLogInterceptor accessLogInterceptor(AccessLogWriter accessLogWriter,
+                                                     GrpcServerProperties properties) {
+        GrpcServerProperties.AccessLog accessLog = properties.getAccessLog();
+        return new AccessLogInterceptor(accessLogWriter, accessLog.getSampleRate(),
+                accessLog.getMethodSampleRates());
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "grpc.server.concurrency-limit", name = "enabled")
+    public ConcurrencyLimitInterceptor concurrencyLimitInterceptor(GrpcServerProperties properties) {
+        GrpcServerProperties.ConcurrencyLimit limit = properties.getConcurrencyLimit();
+        return new ConcurrencyLimitInterceptor(
+                () -> ConcurrencyLimit.adaptive(limit.getInitialLimit(), limit.getMinLimit(), limit.getMaxLimit(),
+                        limit.getRttTolerance(), limit.getSmoothing()),
+                () -> ConcurrencyLimit.fixed(limit.getStreamLimit(), limit.getStreamRetryAfter()));
+    }
+
+    @Bean(destroyMethod = "shutdownGracefully")
+    public EventLoopGroup grpcBossEventLoopGroup(GrpcServerProperties properties) {
+        return eventLoopGroup(properties.getBossThreads(), "grpc-boss", useEpoll(properties));
+    }
+
+    @Bean(destroyMethod = "shutdownGracefully")
+    public EventLoopGroup grpcWorkerEventLoopGroup(GrpcServerProperties properties) {
+        return eventLoopGroup(properties.getWorkerThreads(), "grpc-worker", useEpoll(properties));
+    }
+
+    /**
+     * Executor running the service methods; pools are shut down through Spring's inferred destroy method.
+     */
+    @Bean
+    public Executor grpcApplicationExecutor(GrpcServerProperties properties, MeterRegistry meterRegistry) {
+        GrpcServerProperties.Executor executor = properties.getExecutor();
+        int threads = executor.getThreads() > 0 ? executor.getThreads() : Runtime.getRuntime().availableProcessors();
+        switch (executor.getType()) {
+            case FORK_JOIN:
+                return new ForkJoinPool(threads, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+            case BOUNDED:
+                LoadSheddingExecutor loadShedding = new LoadSheddingExecutor(threads, executor.getQueueCapacity(),
+                        new DefaultThreadFactory("grpc-app", true));
+                FunctionCounter.builder("grpc.server.executor.rejected", loadShedding, LoadSheddingExecutor::rejected)
+                        .register(meterRegistry);
+                Gauge.builder("grpc.server.executor.queued", loadShedding, LoadSheddingExecutor::queued)
+                        .register(meterRegistry);
+                return loadShedding;
+            case DIRECT:
+            default:
+                // recognized by grpc, which then runs calls on the transport threads
+                return MoreExecutors.directExecutor();
+        }
+    }
+
+    @Bean
+    public Server grpcServer(GrpcServerProperties properties,
+                             EventLoopGroup grpcBossEventLoopGroup,
+                             EventLoopGroup grpcWorkerEventLoopGroup,
+                             Executor grpcApplicationExecutor,
+                             HelloServiceImpl helloService,
+                             CommodityService commodityService,
+                             StockService stockService,
+                             ObjectProvider<QuoteReplayService> quoteReplayService,
+                             AccessTokenInterceptor accessTokenInterceptor,
+                             MetricsInterceptor metricsInterceptor,
+                             ObjectProvider<AccessLogInterceptor> accessLogInterceptor,
+                             ObjectProvider<ConcurrencyLimitInterceptor> concurrencyLimitInterceptor) {
+        Class<? extends ServerChannel> channelType = useEpoll(properties)
+                ? EpollServerSocketChannel.class
+                : NioServerSocketChannel.class;
+        NettyServerBuilder serverBuilder = NettyServerBuilder.forPort(properties.getPort())
+                .bossEventLoopGroup(grpcBossEventLoopGroup)
+                .workerEventLoopGroup(grpcWorkerEventLoopGroup)
+                .channelType(channelType)
+                .flowControlWindow((int) properties.getFlowControlWindow().toBytes())
+                .maxConcurrentCallsPerConnection(properties.getMaxConcurrentStreams())
+                .maxInboundMessageSize((int) properties.getMaxInboundMessageSize().toBytes())
+                .keepAliveTime(properties.getKeepAliveTime().toNanos(), TimeUnit.NANOSECONDS)
+                .keepAliveTimeout(properties.getKeepAliveTimeout().toNanos(), TimeUnit.NANOSECONDS)
+                .permitKeepAliveTime(properties.getPermitKeepAliveTime().toNanos(), TimeUnit.NANOSECONDS)
+                .permitKeepAliveWithoutCalls(properties.isPermitKeepAliveWithoutCalls())
+                .maxConnectionAge(properties.getMaxConnectionAge().toNanos(), TimeUnit.NANOSECONDS)
+                .maxConnectionAgeGrace(properties.getMaxConnectionAgeGrace().toNanos(), TimeUnit.NANOSECONDS)
+                .addService(helloService)
+                .addService(marshalled(properties,
+                        ServerInterceptors.intercept(commodityService, accessTokenInterceptor)))
+                .addService(marshalled(properties,
+                        ServerInterceptors.intercept(stockService, new QuoteDeliveryInterceptor())))
+                .executor(grpcApplicationExecutor);
+        quoteReplayService.ifAvailable(serverBuilder::addService);
+        // interceptors added later run first: shed load inside the metrics, so rejected calls are counted
+        concurrencyLimitInterceptor.ifAvailable(serverBuilder::intercept);
+        serverBuilder.intercept(metricsInterceptor)
+                .intercept(new PreviousAttemptsInterceptor())
+                .addStreamTracerFactory(metricsInterceptor.streamTracerFactory());
+        accessLogInterceptor.ifAvailable(serverBuilder::intercept);
+        if (grpcApplicationExecutor instanceof LoadSheddingExecutor) {
+            // outermost, so it sees the call gRPC shed and nothing else runs for it on the event loop
+            LoadSheddingExecutor loadShedding = (LoadSheddingExecutor) grpcApplicationExecutor;
+            serverBuilder.callExecutor(loadShedding)
+                    .intercept(loadShedding.interceptor());
+        }
+        Server server = serverBuilder.build();
+        log.info("gRPC server configured on port {} with {} transport and {} executor", properties.getPort(),
+                useEpoll(properties) ? "epoll" : "nio", properties.getExecutor().getType());
+        return server;
+    }
+
+    /**
+     * Warms up the services bound into the server before it binds; server-wide interceptors, metrics included, do
+     * not see the warmup calls.
+     */
+    @Bean
+    public GrpcServerLifecycle grpcServerLifecycle(Server grpcServer, GrpcServerProperties properties,
+                                                   MeterRegistry meterRegistry) {
+        GrpcServerProperties.Warmup warmup = properties.getWarmup();
+        if (!warmup.isEnabled()) {
+            return new GrpcServerLifecycle(grpcServer, properties.getShutdownGracePeriod());
+        }
+        GrpcServerLifecycle lifecycle = new GrpcServerLifecycle(grpcServer, properties.getShutdownGracePeriod(),
+                serverWarmup(grpcServer, warmup));
+        TimeGauge.builder("grpc.server.warmup.duration", lifecycle,
+                        TimeUnit.MILLISECONDS, l -> warmupMillis(l, ServerWarmup.Report::duration))
+                .description("Time spent warming up the services before binding")
+                .register(meterRegistry);
+        TimeGauge.builder("grpc.server.startup.steady.state", lifecycle,
+                        TimeUnit.MILLISECONDS, l -> warmupMillis(l, ServerWarmup.Report::sinceJvmStart))
+                .description("Time from JVM start to the end of the warmup")
+                .register(meterRegistry);
+        return lifecycle;
+    }
+
+    private static ServerWarmup serverWarmup(Server grpcServer, GrpcServerProperties.Warmup warmup) {
+        Commodity commodity = Commodity.newBuilder()
+                .setAccessToken("123validToken")
+                .setCommodityName("Commodity1")
+                .build();
+        Stock stock = Stock.newBuilder().setTickerSymbol("AU").build();
+        return ServerWarmup.forServices(grpcServer.getServices())
+                .request(HelloServiceGrpc.getHelloMethod(), HelloRequest.newBuilder()
+                        .setFirstName("Warm")
+                        .setLastName("Up")
+                        .build())
+                .request(CommodityPriceProviderGrpc.getGetBestCommodityPriceMethod(), commodity)
+                .request(CommodityPriceProviderGrpc.getBidirectionalListOfPricesMethod(), commodity)
+                .request(CommodityPriceProviderGrpc.getGetBestCommodityPricesMethod(), CommodityBatch.newBuilder()
+                        .setAccessToken("123validToken")
+                        .addCommodityName("Commodity1")
+                        .addCommodityName("Commodity2")
+                        .build())
+                .request(StockQuoteProviderGrpc.getServerSideStreamingGetListStockQuotesMethod(), stock)
+                .request(StockQuoteProviderGrpc.getClientSideStreamingGetStatisticsOfStocksMethod(), stock, stock)
+                .request(StockQuoteProviderGrpc.getBidirectionalStreamingGetListsStockQuotesMethod(), stock, stock)
+                .request(StockQuoteProviderGrpc.getBidirectionalStreamingGetBatchedStockQuotesMethod(), stock, stock)
+                // live feeds, which never complete
+                .skip(StockQuoteProviderGrpc.getSubscribeStockQuotesMethod())
+                .skip(StockQuoteJournalGrpc.getReplayStockQuotesMethod())
+                .iterations(warmup.getMinIterations(), warmup.getMaxIterations())
+                .settle(warmup.getSettleWindow(), warmup.getSettleTolerance())
+                .maxDuration(warmup.getMaxDuration());
+    }
+
+    private static double warmupMillis(GrpcServerLifecycle lifecycle,
+                                       Function<ServerWarmup.Report, Duration> duration) {
+        ServerWarmup.Report report = lifecycle.getWarmupReport();
+        return report != null ? duration.apply(report).toMillis() : Double.NaN;
+    }
+
+    private static ServerServiceDefinition marshalled(GrpcServerProperties properties,
+                                                      ServerServiceDefinition service) {
+        return properties.isZeroCopyMarshallers() ? ZeroCopyMarshaller.rebind(service) : service;
+    }
+
+    private static boolean useEpoll(GrpcServerProperties properties) {
+        return properties.isEpoll() && Epoll.isAvailable();
+    }
+
+    private static EventLoopGroup eventLoopGroup(int threads, String name, boolean epoll) {
+        DefaultThreadFactory threadFactory = new DefaultThreadFactory(name, true);
+        return epoll
+                ? new EpollEventLoopGroup(threads, threadFactory)
+                : new NioEventLoopGroup(threads, threadFactory);
+    }
+}
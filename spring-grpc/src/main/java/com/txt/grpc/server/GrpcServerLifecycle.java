@@ -0,0 +1,95 @@
+package com.txt.grpc.server;
+
+import io.grpc.Server;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Binds the gRPC server once the application context is refreshed and drains it on shutdown.
+ * <p>
+ * With a {@link ServerWarmup}, the services are warmed up first; Spring reports readiness only after all lifecycle
+ * beans have started, so no traffic reaches the server before warmup has ended.
+ */
+@Slf4j
+public class GrpcServerLifecycle implements SmartLifecycle {
+
+    private final Server server;
+    private final Duration shutdownGracePeriod;
+    private final ServerWarmup warmup;
+    private volatile ServerWarmup.Report warmupReport;
+    private volatile boolean running;
+
+    public GrpcServerLifecycle(Server server, Duration shutdownGracePeriod) {
+        this(server, shutdownGracePeriod, null);
+    }
+
+    /**
+     * @param warmup run before binding, or {@code null} to bind at once
+     */
+    public GrpcServerLifecycle(Server server, Duration shutdownGracePeriod, ServerWarmup warmup) {
+        this.server = server;
+        this.shutdownGracePeriod = shutdownGracePeriod;
+        this.warmup = warmup;
+    }
+
+    @Override
+    public void start() {
+        try {
+            if (warmup != null) {
+                warmupReport = warmup.run();
+            }
+            server.start();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to start gRPC server", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while warming up the gRPC server", e);
+        }
+        running = true;
+        log.info("gRPC server started, listening on {}", server.getPort());
+
+        // the transport threads are daemons, this one keeps the JVM alive until the server terminates
+        Thread awaitThread = new Thread(() -> {
+            try {
+                server.awaitTermination();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "grpc-server-await");
+        awaitThread.setDaemon(false);
+        awaitThread.start();
+    }
+
+    @Override
+    public void stop() {
+        log.info("shutting down gRPC server");
+        server.shutdown();
+        try {
+            if (!server.awaitTermination(shutdownGracePeriod.toMillis(), TimeUnit.MILLISECONDS)) {
+                server.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            server.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        running = false;
+        log.info("gRPC server shut down");
+    }
+
+    /**
+     * @return the outcome of the warmup, or {@code null} before it ran or without one
+     */
+    public ServerWarmup.Report getWarmupReport() {
+        return warmupReport;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
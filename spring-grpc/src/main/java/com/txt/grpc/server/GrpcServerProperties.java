@@ -0,0 +1,227 @@
+package com.txt.grpc.server;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tuning of the consolidated gRPC server, bound from {@code grpc.server.*}.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "grpc.server")
+public class GrpcServerProperties {
+
+    private int port = 8980;
+
+    /**
+     * Threads accepting connections.
+     */
+    private int bossThreads = 1;
+
+    /**
+     * Threads handling socket I/O; 0 lets Netty pick twice the number of cores.
+     */
+    private int workerThreads = 0;
+
+    /**
+     * Use the native epoll transport when it is available (Linux only), NIO otherwise.
+     */
+    private boolean epoll = true;
+
+    /**
+     * Marshal the commodity and stock services with {@code ZeroCopyMarshaller} instead of the protobuf default.
+     */
+    private boolean zeroCopyMarshallers = true;
+
+    private final Executor executor = new Executor();
+
+    private final WriteCoalescing writeCoalescing = new WriteCoalescing();
+
+    private final AccessLog accessLog = new AccessLog();
+
+    private final ConcurrencyLimit concurrencyLimit = new ConcurrencyLimit();
+
+    private final Warmup warmup = new Warmup();
+
+    /**
+     * Initial HTTP/2 flow-control window per stream.
+     */
+    private DataSize flowControlWindow = DataSize.ofMegabytes(1);
+
+    private int maxConcurrentStreams = 1000;
+
+    private DataSize maxInboundMessageSize = DataSize.ofMegabytes(4);
+
+    /**
+     * Interval of server-initiated keepalive pings on idle connections.
+     */
+    private Duration keepAliveTime = Duration.ofHours(2);
+
+    private Duration keepAliveTimeout = Duration.ofSeconds(20);
+
+    /**
+     * Most aggressive keepalive interval accepted from clients.
+     */
+    private Duration permitKeepAliveTime = Duration.ofMinutes(5);
+
+    private boolean permitKeepAliveWithoutCalls = false;
+
+    /**
+     * Age after which a connection is sent a GOAWAY, so long-lived clients reconnect and spread over the replicas
+     * started since; jittered by gRPC to avoid reconnection storms.
+     */
+    private Duration maxConnectionAge = Duration.ofMinutes(30);
+
+    /**
+     * Time calls still open on an aged connection get to finish before it is closed.
+     */
+    private Duration maxConnectionAgeGrace = Duration.ofMinutes(1);
+
+    private Duration shutdownGracePeriod = Duration.ofSeconds(30);
+
+    @Getter
+    @Setter
+    public static class Executor {
+
+        /**
+         * Where service methods run: on the Netty event loop, in a bounded pool or in a fork-join pool.
+         */
+        private ExecutorType type = ExecutorType.BOUNDED;
+
+        /**
+         * Pool size for BOUNDED and parallelism for FORK_JOIN; 0 means the number of cores.
+         */
+        private int threads = 0;
+
+        /**
+         * Tasks queued in a BOUNDED pool before new calls are rejected with RESOURCE_EXHAUSTED.
+         */
+        private int queueCapacity = 10_000;
+    }
+
+    /**
+     * Coalescing of the bidirectional price streams; disabled while {@code maxMessages} is 1.
+     */
+    @Getter
+    @Setter
+    public static class WriteCoalescing {
+
+        /**
+         * Buffered messages triggering a flush.
+         */
+        private int maxMessages = 1;
+
+        /**
+         * Buffered serialized bytes triggering a flush.
+         */
+        private DataSize maxBytes = DataSize.ofKilobytes(16);
+
+        /**
+         * Longest time a message is held back.
+         */
+        private Duration maxDelay = Duration.ofNanos(200_000);
+    }
+
+    /**
+     * Sampled access log, written to a file by a background thread.
+     */
+    @Getter
+    @Setter
+    public static class AccessLog {
+
+        private boolean enabled = true;
+
+        private Path file = Path.of(System.getProperty("java.io.tmpdir"), "spring-grpc", "access.log");
+
+        /**
+         * Entries buffered in memory; further ones are dropped until the writer catches up.
+         */
+        private int bufferSize = 8192;
+
+        /**
+         * Share of the calls logged, for methods without their own rate.
+         */
+        private double sampleRate = 0.01;
+
+        /**
+         * Share of the calls logged, by full method name.
+         */
+        private Map<String, Double> methodSampleRates = new HashMap<>();
+    }
+
+    /**
+     * Per-method admission control; unary limits adapt to latency, stream limits are fixed.
+     */
+    @Getter
+    @Setter
+    public static class ConcurrencyLimit {
+
+        private boolean enabled = false;
+
+        private int initialLimit = 20;
+
+        private int minLimit = 4;
+
+        private int maxLimit = 500;
+
+        /**
+         * How much slower than the long-term average recent unary calls may get before the limit shrinks.
+         */
+        private double rttTolerance = 1.5;
+
+        /**
+         * Weight of each new limit estimate.
+         */
+        private double smoothing = 0.2;
+
+        /**
+         * Concurrent calls of each streaming method.
+         */
+        private int streamLimit = 1000;
+
+        /**
+         * Retry-after hint returned when the stream limit is reached.
+         */
+        private Duration streamRetryAfter = Duration.ofSeconds(1);
+    }
+
+    /**
+     * Synthetic calls through an in-process channel before the port is bound, and so before readiness.
+     */
+    @Getter
+    @Setter
+    public static class Warmup {
+
+        private boolean enabled = true;
+
+        /**
+         * Iterations over all methods before the iteration time is checked for settling.
+         */
+        private int minIterations = 500;
+
+        private int maxIterations = 20_000;
+
+        /**
+         * Iterations whose median time is compared with the ones before.
+         */
+        private int settleWindow = 50;
+
+        /**
+         * Largest relative change of the median iteration time considered settled.
+         */
+        private double settleTolerance = 0.05;
+
+        private Duration maxDuration = Duration.ofSeconds(30);
+    }
+
+    public enum ExecutorType {
+        DIRECT, BOUNDED, FORK_JOIN
+    }
+}
@@ -0,0 +1,34 @@
+package com.txt.grpc.server;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+
+/**
+ * Quote journal backing the replay RPC, bound from {@code stock.journal.*}.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stock.journal")
+public class JournalProperties {
+
+    /**
+     * Journal the published quotes and serve {@code StockQuoteJournal}.
+     */
+    private boolean enabled = false;
+
+    private Path directory = Path.of(System.getProperty("java.io.tmpdir"), "spring-grpc", "journal");
+
+    /**
+     * Size of each memory-mapped segment file.
+     */
+    private DataSize segmentSize = DataSize.ofMegabytes(64);
+
+    /**
+     * Segments kept before the oldest is deleted.
+     */
+    private int maxSegments = 16;
+}
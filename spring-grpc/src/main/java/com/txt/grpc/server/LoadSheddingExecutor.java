@@ -0,0 +1,111 @@
+package com.txt.grpc.server;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallExecutorSupplier;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed pool running the service methods that rejects new calls with {@code RESOURCE_EXHAUSTED} once
+ * {@code queueCapacity} tasks are waiting, without ever running service code on the transport thread.
+ * <p>
+ * gRPC starts each call with a method lookup task on the server executor and runs the rest of the call on the
+ * executor returned by the call-executor supplier; installed as both, this pool bounds only the starts. A start
+ * that finds the queue full runs on the submitting event loop and switches its call to that same thread, where
+ * {@link #interceptor()} closes it at once and its remaining callbacks reach a no-op listener. Tasks of calls
+ * already admitted always queue, so their messages are neither dropped nor run on the event loop; flow control
+ * bounds how many of them there are.
+ */
+public final class LoadSheddingExecutor implements Executor, ServerCallExecutorSupplier {
+
+    private final ThreadPoolExecutor pool;
+    private final int queueCapacity;
+    private final ThreadLocal<Boolean> shedding = new ThreadLocal<>();
+    // the call shed last on this event loop; gRPC starts it on the same thread right after the lookup
+    private final ThreadLocal<ServerCall<?, ?>> shedCall = new ThreadLocal<>();
+    private final LongAdder rejected = new LongAdder();
+
+    public LoadSheddingExecutor(int threads, int queueCapacity, ThreadFactory threadFactory) {
+        if (queueCapacity < 0) {
+            throw new IllegalArgumentException("queueCapacity must not be negative");
+        }
+        this.pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                threadFactory);
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Starts a call, or sheds it on the calling thread when the queue is full.
+     */
+    @Override
+    public void execute(Runnable start) {
+        // concurrent starts may all see the last free slot, which only overshoots the capacity by a few tasks
+        if (pool.getQueue().size() < queueCapacity) {
+            pool.execute(start);
+            return;
+        }
+        rejected.increment();
+        shedding.set(Boolean.TRUE);
+        try {
+            start.run();
+        } finally {
+            shedding.remove();
+        }
+    }
+
+    @Override
+    public <ReqT, RespT> Executor getExecutor(ServerCall<ReqT, RespT> call, Metadata headers) {
+        if (shedding.get() == null) {
+            return pool;
+        }
+        shedCall.set(call);
+        return MoreExecutors.directExecutor();
+    }
+
+    /**
+     * Closes the calls shed by {@link #execute}; must be the last interceptor added to the server, so it runs first
+     * and sees the call gRPC shed rather than a wrapper of it.
+     */
+    public ServerInterceptor interceptor() {
+        return new ServerInterceptor() {
+            @Override
+            public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call,
+                                                                         Metadata headers,
+                                                                         ServerCallHandler<ReqT, RespT> next) {
+                if (shedCall.get() != call) {
+                    return next.startCall(call, headers);
+                }
+                shedCall.remove();
+                call.close(Status.RESOURCE_EXHAUSTED.withDescription("Server executor queue is full"),
+                        new Metadata());
+                return new ServerCall.Listener<>() {
+                };
+            }
+        };
+    }
+
+    /**
+     * @return calls rejected so far
+     */
+    public long rejected() {
+        return rejected.sum();
+    }
+
+    public int queued() {
+        return pool.getQueue().size();
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+}
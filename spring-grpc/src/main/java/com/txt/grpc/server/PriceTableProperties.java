@@ -0,0 +1,27 @@
+package com.txt.grpc.server;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Source of the commodity base prices, bound from {@code commodity.price-table.*}.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "commodity.price-table")
+public class PriceTableProperties {
+
+    /**
+     * Binary price table snapshot; the built-in prices are used when unset.
+     */
+    private Path snapshot;
+
+    /**
+     * How often the snapshot is checked for changes.
+     */
+    private Duration pollInterval = Duration.ofSeconds(5);
+}
@@ -0,0 +1,345 @@
+package com.txt.grpc.server;
+
+import com.google.protobuf.MessageLite;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Server;
+import io.grpc.ServerMethodDefinition;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.Status;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives synthetic calls to every method of a set of services through an in-process server before the real server
+ * binds, so the JIT has compiled the request paths, protobuf parsers and serializers included, when the first
+ * client arrives.
+ * <p>
+ * Each iteration calls every method once, in order. Requests are sent as serialized bytes, so the services' own
+ * marshallers parse them, but from the heap streams of the in-process transport: the path a marshaller takes for
+ * Netty's buffers, such as {@code ZeroCopyMarshaller}'s detached parsing, is left to the first real requests.
+ * Warmup ends once the median iteration time of the latest {@code window} iterations is within
+ * {@code settleTolerance} of the window before, which is when compilation has settled, or at the iteration or
+ * duration cap. Only interceptors bound into the service definitions see the warmup calls; server-wide ones, such
+ * as metrics and load shedding, do not.
+ * <p>
+ * Methods get their default protobuf instance as request unless samples are given; live feeds that never complete
+ * must be skipped.
+ */
+@Slf4j
+public final class ServerWarmup {
+
+    private static final MethodDescriptor.Marshaller<byte[]> BYTES = new MethodDescriptor.Marshaller<>() {
+        @Override
+        public InputStream stream(byte[] value) {
+            return new ByteArrayInputStream(value);
+        }
+
+        @Override
+        public byte[] parse(InputStream stream) {
+            try {
+                return stream.readAllBytes();
+            } catch (IOException e) {
+                throw Status.INTERNAL.withCause(e).asRuntimeException();
+            }
+        }
+    };
+
+    private final List<ServerServiceDefinition> services;
+    private final Map<String, List<byte[]>> samples = new HashMap<>();
+    private final Set<String> skipped = new HashSet<>();
+    private int minIterations = 500;
+    private int maxIterations = 20_000;
+    private int window = 50;
+    private double settleTolerance = 0.05;
+    private Duration maxDuration = Duration.ofSeconds(30);
+    private Duration callTimeout = Duration.ofSeconds(5);
+
+    private ServerWarmup(List<ServerServiceDefinition> services) {
+        this.services = List.copyOf(services);
+    }
+
+    /**
+     * @param services the definitions the real server is built from, usually {@code Server.getServices()}
+     */
+    public static ServerWarmup forServices(List<ServerServiceDefinition> services) {
+        return new ServerWarmup(services);
+    }
+
+    /**
+     * Requests sent to the method: the first one for unary and server-streaming methods, all of them in order on
+     * each client stream.
+     */
+    @SafeVarargs
+    public final <ReqT extends MessageLite> ServerWarmup request(MethodDescriptor<ReqT, ?> method, ReqT... requests) {
+        if (requests.length == 0) {
+            throw new IllegalArgumentException("At least one request is required for " + method.getFullMethodName());
+        }
+        List<byte[]> serialized = new ArrayList<>(requests.length);
+        for (ReqT request : requests) {
+            serialized.add(request.toByteArray());
+        }
+        samples.put(method.getFullMethodName(), serialized);
+        return this;
+    }
+
+    public ServerWarmup skip(MethodDescriptor<?, ?> method) {
+        skipped.add(method.getFullMethodName());
+        return this;
+    }
+
+    /**
+     * @param minIterations iterations run before the latency is checked for settling
+     * @param maxIterations iterations after which warmup ends, settled or not
+     */
+    public ServerWarmup iterations(int minIterations, int maxIterations) {
+        if (minIterations < 1 || maxIterations < minIterations) {
+            throw new IllegalArgumentException("iterations must satisfy 1 <= min <= max");
+        }
+        this.minIterations = minIterations;
+        this.maxIterations = maxIterations;
+        return this;
+    }
+
+    /**
+     * @param window    iterations compared with the ones before to detect settling
+     * @param tolerance largest relative change of the median iteration time still considered settled
+     */
+    public ServerWarmup settle(int window, double tolerance) {
+        if (window < 1 || tolerance < 0) {
+            throw new IllegalArgumentException("window must be positive and tolerance not negative");
+        }
+        this.window = window;
+        this.settleTolerance = tolerance;
+        return this;
+    }
+
+    public ServerWarmup maxDuration(Duration maxDuration) {
+        this.maxDuration = maxDuration;
+        return this;
+    }
+
+    /**
+     * Runs the warmup; failed calls are counted, not thrown.
+     */
+    public Report run() throws IOException, InterruptedException {
+        long startNanos = System.nanoTime();
+        List<WarmupMethod> methods = methods();
+        String serverName = InProcessServerBuilder.generateName();
+        InProcessServerBuilder serverBuilder = InProcessServerBuilder.forName(serverName);
+        services.forEach(serverBuilder::addService);
+        Server server = serverBuilder.build().start();
+        ManagedChannel channel = InProcessChannelBuilder.forName(serverName).build();
+        try {
+            long[] iterationNanos = new long[maxIterations];
+            long deadline = startNanos + maxDuration.toNanos();
+            int iterations = 0;
+            long failures = 0;
+            boolean settled = false;
+            while (iterations < maxIterations && System.nanoTime() < deadline && !settled) {
+                long iterationStart = System.nanoTime();
+                for (WarmupMethod method : methods) {
+                    if (!call(channel, method)) {
+                        failures++;
+                    }
+                }
+                iterationNanos[iterations++] = System.nanoTime() - iterationStart;
+                settled = iterations >= minIterations && settled(iterationNanos, iterations);
+            }
+            Report report = new Report(methods.size(), iterations, (long) iterations * methods.size(), failures,
+                    settled, Duration.ofNanos(System.nanoTime() - startNanos),
+                    Duration.ofNanos(iterations > 0 ? iterationNanos[0] : 0),
+                    Duration.ofNanos(iterations > 0 ? median(iterationNanos, Math.max(0, iterations - window),
+                            iterations) : 0),
+                    Duration.ofMillis(ManagementFactory.getRuntimeMXBean().getUptime()));
+            log.info("gRPC warmup {}", report);
+            return report;
+        } finally {
+            channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+            server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    private List<WarmupMethod> methods() {
+        List<WarmupMethod> methods = new ArrayList<>();
+        for (ServerServiceDefinition service : services) {
+            for (ServerMethodDefinition<?, ?> definition : service.getMethods()) {
+                MethodDescriptor<?, ?> method = definition.getMethodDescriptor();
+                if (skipped.contains(method.getFullMethodName())) {
+                    continue;
+                }
+                MethodDescriptor<byte[], byte[]> bytesMethod = MethodDescriptor.newBuilder(BYTES, BYTES)
+                        .setFullMethodName(method.getFullMethodName())
+                        .setType(method.getType())
+                        .build();
+                List<byte[]> requests = samples.get(method.getFullMethodName());
+                methods.add(new WarmupMethod(bytesMethod, requests != null ? requests : List.of(prototype(method))));
+            }
+        }
+        return methods;
+    }
+
+    private static byte[] prototype(MethodDescriptor<?, ?> method) {
+        if (method.getRequestMarshaller() instanceof MethodDescriptor.PrototypeMarshaller) {
+            Object prototype = ((MethodDescriptor.PrototypeMarshaller<?>) method.getRequestMarshaller())
+                    .getMessagePrototype();
+            if (prototype instanceof MessageLite) {
+                return ((MessageLite) prototype).toByteArray();
+            }
+        }
+        return new byte[0];
+    }
+
+    private boolean call(Channel channel, WarmupMethod method) throws InterruptedException {
+        CountDownLatch closed = new CountDownLatch(1);
+        Status[] result = new Status[1];
+        ClientCall<byte[], byte[]> call = channel.newCall(method.descriptor,
+                CallOptions.DEFAULT.withDeadlineAfter(callTimeout.toNanos(), TimeUnit.NANOSECONDS));
+        call.start(new ClientCall.Listener<>() {
+            @Override
+            public void onClose(Status status, Metadata trailers) {
+                result[0] = status;
+                closed.countDown();
+            }
+        }, new Metadata());
+        call.request(Integer.MAX_VALUE);
+        int messages = method.descriptor.getType().clientSendsOneMessage() ? 1 : method.requests.size();
+        for (int i = 0; i < messages; i++) {
+            call.sendMessage(method.requests.get(i));
+        }
+        call.halfClose();
+        closed.await();
+        return result[0].isOk();
+    }
+
+    private boolean settled(long[] iterationNanos, int iterations) {
+        if (iterations < 2 * window) {
+            return false;
+        }
+        long recent = median(iterationNanos, iterations - window, iterations);
+        long previous = median(iterationNanos, iterations - 2 * window, iterations - window);
+        return Math.abs(recent - previous) <= settleTolerance * previous;
+    }
+
+    private static long median(long[] values, int from, int to) {
+        long[] sorted = Arrays.copyOfRange(values, from, to);
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private static final class WarmupMethod {
+
+        private final MethodDescriptor<byte[], byte[]> descriptor;
+        private final List<byte[]> requests;
+
+        private WarmupMethod(MethodDescriptor<byte[], byte[]> descriptor, List<byte[]> requests) {
+            this.descriptor = descriptor;
+            this.requests = requests;
+        }
+    }
+
+    /**
+     * Outcome of a warmup run.
+     */
+    public static final class Report {
+
+        private final int methods;
+        private final int iterations;
+        private final long calls;
+        private final long failures;
+        private final boolean settled;
+        private final Duration duration;
+        private final Duration firstIteration;
+        private final Duration settledIteration;
+        private final Duration sinceJvmStart;
+
+        private Report(int methods, int iterations, long calls, long failures, boolean settled, Duration duration,
+                       Duration firstIteration, Duration settledIteration, Duration sinceJvmStart) {
+            this.methods = methods;
+            this.iterations = iterations;
+            this.calls = calls;
+            this.failures = failures;
+            this.settled = settled;
+            this.duration = duration;
+            this.firstIteration = firstIteration;
+            this.settledIteration = settledIteration;
+            this.sinceJvmStart = sinceJvmStart;
+        }
+
+        public int methods() {
+            return methods;
+        }
+
+        public int iterations() {
+            return iterations;
+        }
+
+        public long calls() {
+            return calls;
+        }
+
+        public long failures() {
+            return failures;
+        }
+
+        /**
+         * @return whether the iteration time settled, rather than warmup stopping at a cap
+         */
+        public boolean settled() {
+            return settled;
+        }
+
+        public Duration duration() {
+            return duration;
+        }
+
+        /**
+         * @return time of the first iteration over all methods, mostly class loading and interpretation
+         */
+        public Duration firstIteration() {
+            return firstIteration;
+        }
+
+        /**
+         * @return median time of the last window of iterations
+         */
+        public Duration settledIteration() {
+            return settledIteration;
+        }
+
+        /**
+         * @return JVM uptime when warmup ended, i.e. the time from process start to steady state
+         */
+        public Duration sinceJvmStart() {
+            return sinceJvmStart;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s after %d iterations over %d methods (%d calls, %d failed) in %d ms: "
+                            + "iteration time %d us -> %d us, steady state %d ms after JVM start",
+                    settled ? "settled" : "stopped", iterations, methods, calls, failures, duration.toMillis(),
+                    firstIteration.toNanos() / 1000, settledIteration.toNanos() / 1000, sinceJvmStart.toMillis());
+        }
+    }
+}
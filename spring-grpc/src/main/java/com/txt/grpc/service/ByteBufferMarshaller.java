@@ -0,0 +1,69 @@
+package com.txt.grpc.service;
+
+import io.grpc.KnownLength;
+import io.grpc.MethodDescriptor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Passes already serialized messages through unchanged, for responses whose bytes exist before the call.
+ * <p>
+ * The transport copies the bytes straight from the buffer, which may be direct or memory-mapped, into its own
+ * frames; no message object is created or encoded on the way.
+ */
+final class ByteBufferMarshaller implements MethodDescriptor.Marshaller<ByteBuffer> {
+
+    static final ByteBufferMarshaller INSTANCE = new ByteBufferMarshaller();
+
+    private ByteBufferMarshaller() {
+    }
+
+    @Override
+    public InputStream stream(ByteBuffer value) {
+        return new BufferInputStream(value.duplicate());
+    }
+
+    @Override
+    public ByteBuffer parse(InputStream stream) {
+        try {
+            return ByteBuffer.wrap(stream.readAllBytes());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static final class BufferInputStream extends InputStream implements KnownLength {
+
+        private final ByteBuffer buffer;
+
+        private BufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
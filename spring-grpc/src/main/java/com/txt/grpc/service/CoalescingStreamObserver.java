@@ -0,0 +1,161 @@
+package com.txt.grpc.service;
+
+import com.google.protobuf.MessageLite;
+import io.grpc.stub.StreamObserver;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Response writer buffering messages according to a {@link WriteCoalescing} policy.
+ * <p>
+ * When coalescing is disabled every call goes straight to the delegate. Otherwise messages are buffered under this
+ * object's lock, and a flush, from the call's executor or from the {@link FlushTimer}, moves them to an outbound
+ * queue that a single drainer at a time writes to the delegate after the lock is released. The delegate thus never
+ * sees concurrent calls, and is never called with the lock held, which would deadlock against a transport delivering
+ * inbound messages under its own lock. Owners must call {@link #discard()} from their cancel handler.
+ */
+final class CoalescingStreamObserver<T extends MessageLite> implements StreamObserver<T> {
+
+    private final StreamObserver<T> delegate;
+    private final WriteCoalescing coalescing;
+    private final Queue<T> buffer = new ArrayDeque<>();
+    private final Queue<T> outbound = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger wip = new AtomicInteger();
+    private long bufferedBytes;
+    private ScheduledFuture<?> scheduledFlush;
+    private boolean done;
+    private volatile Runnable terminal;
+    private volatile boolean discarded;
+    private boolean terminated;
+
+    CoalescingStreamObserver(StreamObserver<T> delegate, WriteCoalescing coalescing) {
+        this.delegate = delegate;
+        this.coalescing = coalescing;
+    }
+
+    @Override
+    public void onNext(T value) {
+        if (!coalescing.isEnabled()) {
+            delegate.onNext(value);
+            return;
+        }
+        boolean full;
+        synchronized (this) {
+            if (done) {
+                return;
+            }
+            buffer.add(value);
+            bufferedBytes += value.getSerializedSize();
+            full = buffer.size() >= coalescing.getMaxMessages() || bufferedBytes >= coalescing.getMaxBytes();
+            if (full) {
+                moveBufferToOutbound();
+            } else if (scheduledFlush == null) {
+                scheduledFlush = FlushTimer.schedule(this::flush, coalescing.getMaxDelay().toNanos());
+            }
+        }
+        if (full) {
+            drain();
+        }
+    }
+
+    @Override
+    public void onCompleted() {
+        if (!coalescing.isEnabled()) {
+            delegate.onCompleted();
+            return;
+        }
+        synchronized (this) {
+            if (done) {
+                return;
+            }
+            moveBufferToOutbound();
+            done = true;
+            terminal = delegate::onCompleted;
+        }
+        drain();
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        if (!coalescing.isEnabled()) {
+            delegate.onError(t);
+            return;
+        }
+        synchronized (this) {
+            if (done) {
+                return;
+            }
+            done = true;
+            cancelScheduledFlush();
+            buffer.clear();
+            bufferedBytes = 0;
+            outbound.clear();
+            terminal = () -> delegate.onError(t);
+        }
+        drain();
+    }
+
+    /**
+     * Drops the buffered messages and ignores any later write.
+     */
+    synchronized void discard() {
+        done = true;
+        discarded = true;
+        cancelScheduledFlush();
+        buffer.clear();
+        bufferedBytes = 0;
+        outbound.clear();
+    }
+
+    private void flush() {
+        synchronized (this) {
+            if (done) {
+                return;
+            }
+            moveBufferToOutbound();
+        }
+        drain();
+    }
+
+    /**
+     * Must be called with the lock held.
+     */
+    private void moveBufferToOutbound() {
+        cancelScheduledFlush();
+        T value;
+        while ((value = buffer.poll()) != null) {
+            outbound.offer(value);
+        }
+        bufferedBytes = 0;
+    }
+
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            T value;
+            while (!discarded && (value = outbound.poll()) != null) {
+                delegate.onNext(value);
+            }
+            Runnable signal = terminal;
+            if (signal != null && !terminated && !discarded && outbound.isEmpty()) {
+                terminated = true;
+                signal.run();
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void cancelScheduledFlush() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+    }
+}
@@ -2,59 +2,107 @@ package com.txt.grpc.service;
 
 import com.google.protobuf.Any;
 import com.google.rpc.Code;
-import com.google.rpc.ErrorInfo;
 import com.txt.grpc.errorhandling.*;
+import com.txt.grpc.interceptor.AccessTokenInterceptor;
+import com.txt.grpc.pricing.BestPriceCache;
+import com.txt.grpc.pricing.PriceTable;
 import io.grpc.Metadata;
 import io.grpc.Status;
 import io.grpc.protobuf.ProtoUtils;
-import io.grpc.protobuf.StatusProto;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
 
+/**
+ * Must be registered behind an {@link AccessTokenInterceptor}, which tells every handler whether the current message
+ * is authorized. Without it every call is treated as unauthorized.
+ */
 @Slf4j
 public class CommodityService extends CommodityPriceProviderGrpc.CommodityPriceProviderImplBase {
 
-    private static Map<String, Double> commodityLookupBasePrice;
+    /**
+     * Batches at least this large are priced on the common fork-join pool.
+     */
+    private static final int PARALLEL_BATCH_THRESHOLD = 64;
+
+    /**
+     * Providers quoting each commodity requested on {@code bidirectionalListOfPrices}.
+     */
+    private static final int PROVIDERS = 5;
+
+    /**
+     * Base prices used when no snapshot is configured.
+     */
+    public static final PriceTable DEFAULT_BASE_PRICES = PriceTable.of(Map.of(
+            "Commodity1", 5.0,
+            "Commodity2", 6.0));
+
+    private final Supplier<PriceTable> basePrices;
+    private final BestPriceCache bestPriceCache;
+    private final WriteCoalescing coalescing;
+
+    public CommodityService() {
+        this(WriteCoalescing.DISABLED);
+    }
+
+    /**
+     * @param coalescing write coalescing of the {@code bidirectionalListOfPrices} responses
+     */
+    public CommodityService(WriteCoalescing coalescing) {
+        this(() -> DEFAULT_BASE_PRICES, coalescing);
+    }
+
+    /**
+     * @param basePrices current base price table, read once per request so a swap never splits a request
+     * @param coalescing write coalescing of the {@code bidirectionalListOfPrices} responses
+     */
+    public CommodityService(Supplier<PriceTable> basePrices, WriteCoalescing coalescing) {
+        this(basePrices, null, coalescing);
+    }
 
-    static {
-        commodityLookupBasePrice = new ConcurrentHashMap<>();
-        commodityLookupBasePrice.put("Commodity1", 5.0);
-        commodityLookupBasePrice.put("Commodity2", 6.0);
+    /**
+     * @param basePrices     current base price table, read once per request so a swap never splits a request
+     * @param bestPriceCache cache of the {@code getBestCommodityPrice} prices, or {@code null} to price every request
+     * @param coalescing     write coalescing of the {@code bidirectionalListOfPrices} responses
+     */
+    public CommodityService(Supplier<PriceTable> basePrices, BestPriceCache bestPriceCache,
+                            WriteCoalescing coalescing) {
+        this.basePrices = basePrices;
+        this.bestPriceCache = bestPriceCache;
+        this.coalescing = coalescing;
     }
 
     @Override
     public void getBestCommodityPrice(Commodity request, StreamObserver<CommodityQuote> responseObserver) {
-        if (commodityLookupBasePrice.get(request.getCommodityName()) == null) {
+        // an unsupported commodity is reported before the token is checked
+        PriceTable table = basePrices.get();
+        double basePrice = table.price(request.getCommodityName());
+        if (Double.isNaN(basePrice)) {
 
             Metadata.Key<ErrorResponse> errorResponseKey = ProtoUtils.keyForProto(ErrorResponse.getDefaultInstance());
             ErrorResponse errorResponse = ErrorResponse.newBuilder()
                     .setCommodityName(request.getCommodityName())
                     .setAccessToken(request.getAccessToken())
-                    .setExpectedValue("Only Commodity1, Commodity2 are supported")
+                    .setExpectedValue(expectedValue(table))
                     .build();
             Metadata metadata = new Metadata();
             metadata.put(errorResponseKey, errorResponse);
             responseObserver.onError(Status.INVALID_ARGUMENT.withDescription("The commodity is not supported")
                     .asRuntimeException(metadata));
-        } else if (request.getAccessToken().equals("123validToken") == false) {
-
-            com.google.rpc.Status status = com.google.rpc.Status.newBuilder()
-                    .setCode(Code.NOT_FOUND.getNumber())
-                    .setMessage("The access token not found")
-                    .addDetails(Any.pack(ErrorInfo.newBuilder()
-                            .setReason("Invalid Token")
-                            .setDomain("com.txt.grpc.errorhandling")
-                            .putMetadata("insertToken", "123validToken")
-                            .build()))
-                    .build();
-            responseObserver.onError(StatusProto.toStatusRuntimeException(status));
+        } else if (!AccessTokenInterceptor.CALL_AUTHORIZATION.get().isAuthorized()) {
+            responseObserver.onError(AccessTokenInterceptor.invalidTokenException());
         } else {
             CommodityQuote commodityQuote = CommodityQuote.newBuilder()
-                    .setPrice(fetchBestPriceBid(request))
+                    .setPrice(bestPriceCache == null
+                            ? fetchBestPriceBid(basePrice)
+                            : bestPriceCache.get(request.getCommodityName(), name -> fetchBestPriceBid(basePrice)))
                     .setCommodityName(request.getCommodityName())
                     .setProducerName("Best Producer with best price")
                     .build();
@@ -63,48 +111,106 @@ public class CommodityService extends CommodityPriceProviderGrpc.CommodityPriceP
         }
     }
 
+    @Override
+    public void getBestCommodityPrices(CommodityBatch request, StreamObserver<CommodityQuoteBatch> responseObserver) {
+        if (!AccessTokenInterceptor.CALL_AUTHORIZATION.get().isAuthorized()) {
+            responseObserver.onError(AccessTokenInterceptor.invalidTokenException());
+            return;
+        }
+        List<String> commodityNames = request.getCommodityNameList();
+        PriceTable table = basePrices.get();
+        StreamingCommodityQuote[] quotes = new StreamingCommodityQuote[commodityNames.size()];
+        IntStream indexes = IntStream.range(0, quotes.length);
+        if (quotes.length >= PARALLEL_BATCH_THRESHOLD) {
+            indexes = indexes.parallel();
+        }
+        indexes.forEach(i -> quotes[i] = batchItem(table, commodityNames.get(i), request.getAccessToken()));
+
+        responseObserver.onNext(CommodityQuoteBatch.newBuilder()
+                .addAllQuotes(Arrays.asList(quotes))
+                .build());
+        responseObserver.onCompleted();
+    }
+
+    private static StreamingCommodityQuote batchItem(PriceTable table, String commodityName, String accessToken) {
+        double basePrice = table.price(commodityName);
+        if (Double.isNaN(basePrice)) {
+            return unsupportedCommodity(table, commodityName, accessToken);
+        }
+        return StreamingCommodityQuote.newBuilder()
+                .setComodityQuote(CommodityQuote.newBuilder()
+                        .setPrice(fetchBestPriceBid(basePrice))
+                        .setCommodityName(commodityName)
+                        .setProducerName("Best Producer with best price")
+                        .build())
+                .build();
+    }
+
+    private static StreamingCommodityQuote unsupportedCommodity(PriceTable table, String commodityName,
+                                                                String accessToken) {
+        com.google.rpc.Status status = com.google.rpc.Status.newBuilder()
+                .setCode(Code.INVALID_ARGUMENT.getNumber())
+                .setMessage("The commodity is not supported")
+                .addDetails(Any.pack(ErrorResponse.newBuilder()
+                        .setCommodityName(commodityName)
+                        .setAccessToken(accessToken)
+                        .setExpectedValue(expectedValue(table))
+                        .build()))
+                .build();
+        return StreamingCommodityQuote.newBuilder()
+                .setStatus(status)
+                .build();
+    }
+
     @Override
     public StreamObserver<Commodity> bidirectionalListOfPrices(StreamObserver<StreamingCommodityQuote> responseObserver) {
+        AccessTokenInterceptor.CallAuthorization authorization = AccessTokenInterceptor.CALL_AUTHORIZATION.get();
+        CoalescingStreamObserver<StreamingCommodityQuote> writer =
+                new CoalescingStreamObserver<>(responseObserver, coalescing);
+        ((ServerCallStreamObserver<StreamingCommodityQuote>) responseObserver).setOnCancelHandler(writer::discard);
         return new StreamObserver<>() {
 
             @Override
             public void onNext(Commodity request) {
-                log.info("Access token:{}", request.getAccessToken());
-                if (request.getAccessToken().equals("123validToken") == false) {
-
-                    com.google.rpc.Status status = com.google.rpc.Status.newBuilder()
-                            .setCode(Code.NOT_FOUND.getNumber())
-                            .setMessage("The access token not found")
-                            .addDetails(Any.pack(ErrorInfo.newBuilder()
-                                    .setReason("Invalid Token")
-                                    .setDomain("com.txt.grpc.errorhandling")
-                                    .putMetadata("insertToken", "123validToken")
-                                    .build()))
-                            .build();
-                    StreamingCommodityQuote streamingCommodityQuote = StreamingCommodityQuote.newBuilder()
-                            .setStatus(status)
-                            .build();
-                    responseObserver.onNext(streamingCommodityQuote);
+                long requestId = request.getRequestId();
+                if (!authorization.isAuthorized()) {
+                    writer.onNext(requestId == 0
+                            ? AccessTokenInterceptor.INVALID_TOKEN_QUOTE
+                            : AccessTokenInterceptor.INVALID_TOKEN_QUOTE.toBuilder()
+                                    .setRequestId(requestId)
+                                    .build());
+                    return;
+                }
+                PriceTable table = basePrices.get();
+                double basePrice = table.price(request.getCommodityName());
+                if (Double.isNaN(basePrice)) {
+                    writer.onNext(unsupportedCommodity(table, request.getCommodityName(), request.getAccessToken())
+                            .toBuilder()
+                            .setRequestId(requestId)
+                            .setLast(true)
+                            .build());
 
                 } else {
 
-                    for (int i = 1; i <= 5; i++) {
+                    for (int i = 1; i <= PROVIDERS; i++) {
                         CommodityQuote commodityQuote = CommodityQuote.newBuilder()
-                                .setPrice(fetchProviderPriceBid(request, "producer:" + i))
+                                .setPrice(fetchProviderPriceBid(basePrice, "producer:" + i))
                                 .setCommodityName(request.getCommodityName())
                                 .setProducerName("producer:" + i)
                                 .build();
                         StreamingCommodityQuote streamingCommodityQuote = StreamingCommodityQuote.newBuilder()
                                 .setComodityQuote(commodityQuote)
+                                .setRequestId(requestId)
+                                .setLast(i == PROVIDERS)
                                 .build();
-                        responseObserver.onNext(streamingCommodityQuote);
+                        writer.onNext(streamingCommodityQuote);
                     }
                 }
             }
 
             @Override
             public void onCompleted() {
-                responseObserver.onCompleted();
+                writer.onCompleted();
             }
 
             @Override
@@ -114,13 +220,15 @@ public class CommodityService extends CommodityPriceProviderGrpc.CommodityPriceP
         };
     }
 
-    private static double fetchBestPriceBid(Commodity commodity) {
-        return commodityLookupBasePrice.get(commodity.getCommodityName()) + ThreadLocalRandom.current()
-                .nextDouble(-0.2d, 0.2d);
+    private static String expectedValue(PriceTable table) {
+        return "Only " + table.listedNames() + " are supported";
+    }
+
+    private static double fetchBestPriceBid(double basePrice) {
+        return basePrice + ThreadLocalRandom.current().nextDouble(-0.2d, 0.2d);
     }
 
-    private static double fetchProviderPriceBid(Commodity commodity, String providerName) {
-        return commodityLookupBasePrice.get(commodity.getCommodityName()) + providerName.length() + ThreadLocalRandom.current()
-                .nextDouble(-0.2d, 0.2d);
+    private static double fetchProviderPriceBid(double basePrice, String providerName) {
+        return basePrice + providerName.length() + ThreadLocalRandom.current().nextDouble(-0.2d, 0.2d);
     }
 }
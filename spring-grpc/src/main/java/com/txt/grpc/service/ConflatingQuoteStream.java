@@ -0,0 +1,98 @@
+package com.txt.grpc.service;
+
+import com.txt.grpc.marketdata.MarketDataHub;
+import com.txt.grpc.streaming.StockQuote;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Delivers the quotes of a {@link MarketDataHub} subscription to one response stream, keeping only the latest quote
+ * of each ticker the subscriber has not been able to take yet.
+ * <p>
+ * Every ticker has a single slot; a quote arriving while the previous one is still pending replaces it, so a slow
+ * subscriber holds at most one quote per ticker instead of a backlog, and catches up on the newest prices as soon
+ * as the call's on-ready handler fires. Slots with a pending quote are queued once, in the order they became
+ * pending, and drained by a single drainer at a time while the stream is ready. A subscriber that keeps up sees
+ * every quote, as with {@link QuoteSubscriberStream}.
+ */
+final class ConflatingQuoteStream {
+
+    private final ServerCallStreamObserver<StockQuote> responseObserver;
+    private final Queue<LatestQuote> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger wip = new AtomicInteger();
+    private final List<MarketDataHub.Subscription> subscriptions = new ArrayList<>();
+    private volatile boolean cancelled;
+
+    private ConflatingQuoteStream(StreamObserver<StockQuote> responseObserver) {
+        this.responseObserver = (ServerCallStreamObserver<StockQuote>) responseObserver;
+    }
+
+    /**
+     * Subscribes the response stream to every ticker; the subscriptions end when the client cancels the call.
+     * Must be called from the service method, before it returns.
+     */
+    static void subscribe(MarketDataHub hub, Iterable<String> tickerSymbols,
+                          StreamObserver<StockQuote> responseObserver) {
+        ConflatingQuoteStream stream = new ConflatingQuoteStream(responseObserver);
+        stream.responseObserver.setOnReadyHandler(stream::drain);
+        stream.responseObserver.setOnCancelHandler(stream::cancel);
+        synchronized (stream.subscriptions) {
+            for (String tickerSymbol : tickerSymbols) {
+                LatestQuote slot = stream.new LatestQuote();
+                stream.subscriptions.add(hub.subscribe(tickerSymbol, slot::onQuote));
+            }
+        }
+    }
+
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            while (!cancelled && responseObserver.isReady()) {
+                LatestQuote slot = pending.poll();
+                if (slot == null) {
+                    break;
+                }
+                // a quote replacing this one from now on finds the slot empty and queues it again
+                StockQuote stockQuote = slot.quote.getAndSet(null);
+                if (stockQuote != null) {
+                    responseObserver.onNext(stockQuote);
+                }
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void cancel() {
+        cancelled = true;
+        synchronized (subscriptions) {
+            subscriptions.forEach(MarketDataHub.Subscription::close);
+            subscriptions.clear();
+        }
+        pending.clear();
+    }
+
+    private final class LatestQuote {
+
+        private final AtomicReference<StockQuote> quote = new AtomicReference<>();
+
+        private void onQuote(StockQuote stockQuote) {
+            if (cancelled) {
+                return;
+            }
+            if (quote.getAndSet(stockQuote) == null) {
+                pending.offer(this);
+            }
+            drain();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.txt.grpc.service;
+
+import com.google.protobuf.MessageLite;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.function.Function;
+
+/**
+ * Answers every inbound request with a lazily generated sequence of responses while honouring HTTP/2 flow control.
+ * <p>
+ * Responses are only written while {@link ServerCallStreamObserver#isReady()} holds; the rest is resumed from the
+ * on-ready handler. For streaming requests, inbound flow control is manual: at most {@code maxInFlight} requests are
+ * pulled from the transport before their responses have been fully written, so a slow consumer applies backpressure
+ * all the way to the producer instead of growing the server heap.
+ * <p>
+ * All callbacks are delivered on the call's serialized executor, so no locking is needed. Responses go through a
+ * {@link CoalescingStreamObserver}, which may hold them back for a bounded delay.
+ */
+@Slf4j
+final class FlowControlledResponder<ReqT, RespT extends MessageLite> implements StreamObserver<ReqT> {
+
+    private final ServerCallStreamObserver<RespT> responseObserver;
+    private final CoalescingStreamObserver<RespT> writer;
+    private final Function<ReqT, Iterator<RespT>> responder;
+    private final boolean manualInboundFlowControl;
+    private final Queue<ReqT> pending = new ArrayDeque<>();
+    private Iterator<RespT> current;
+    private boolean halfClosed;
+    private boolean done;
+
+    private FlowControlledResponder(StreamObserver<RespT> responseObserver, Function<ReqT, Iterator<RespT>> responder,
+                                   boolean manualInboundFlowControl, WriteCoalescing coalescing) {
+        this.responseObserver = (ServerCallStreamObserver<RespT>) responseObserver;
+        this.writer = new CoalescingStreamObserver<>(responseObserver, coalescing);
+        this.responder = responder;
+        this.manualInboundFlowControl = manualInboundFlowControl;
+        this.responseObserver.setOnReadyHandler(this::drain);
+        this.responseObserver.setOnCancelHandler(() -> {
+            done = true;
+            writer.discard();
+        });
+    }
+
+    /**
+     * Streams the responses to a single request, then completes the call.
+     */
+    static <ReqT, RespT extends MessageLite> void respond(ReqT request, StreamObserver<RespT> responseObserver,
+                                      Function<ReqT, Iterator<RespT>> responder) {
+        FlowControlledResponder<ReqT, RespT> flowControlledResponder =
+                new FlowControlledResponder<>(responseObserver, responder, false, WriteCoalescing.DISABLED);
+        flowControlledResponder.onNext(request);
+        flowControlledResponder.onCompleted();
+    }
+
+    /**
+     * Creates the request observer of a streaming call that keeps at most {@code maxInFlight} requests buffered.
+     * Must be called from the service method, before it returns.
+     */
+    static <ReqT, RespT extends MessageLite> StreamObserver<ReqT> forStream(StreamObserver<RespT> responseObserver,
+                                                                            int maxInFlight, WriteCoalescing coalescing,
+                                                                            Function<ReqT, Iterator<RespT>> responder) {
+        FlowControlledResponder<ReqT, RespT> flowControlledResponder =
+                new FlowControlledResponder<>(responseObserver, responder, true, coalescing);
+        flowControlledResponder.responseObserver.disableAutoRequest();
+        flowControlledResponder.responseObserver.request(maxInFlight);
+        return flowControlledResponder;
+    }
+
+    @Override
+    public void onNext(ReqT request) {
+        pending.add(request);
+        drain();
+    }
+
+    @Override
+    public void onCompleted() {
+        halfClosed = true;
+        drain();
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        done = true;
+        pending.clear();
+        log.warn("error:{}", t.getMessage());
+    }
+
+    private void drain() {
+        while (!done && responseObserver.isReady()) {
+            if (current == null || !current.hasNext()) {
+                if (current != null && manualInboundFlowControl) {
+                    responseObserver.request(1);
+                }
+                current = null;
+                ReqT request = pending.poll();
+                if (request == null) {
+                    break;
+                }
+                current = responder.apply(request);
+                continue;
+            }
+            writer.onNext(current.next());
+        }
+        if (!done && halfClosed && pending.isEmpty() && (current == null || !current.hasNext())) {
+            done = true;
+            writer.onCompleted();
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.txt.grpc.service;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Daemon timer shared by the stream writers that hold messages back for a bounded delay.
+ */
+final class FlushTimer {
+
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "grpc-stream-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private FlushTimer() {
+    }
+
+    static ScheduledFuture<?> schedule(Runnable flush, long delayNanos) {
+        return TIMER.schedule(flush, delayNanos, TimeUnit.NANOSECONDS);
+    }
+}
@@ -9,8 +9,6 @@ public class HelloServiceImpl extends HelloServiceGrpc.HelloServiceImplBase {
 
     @Override
     public void hello(HelloRequest request, StreamObserver<HelloResponse> responseObserver) {
-        System.out.println("HelloServiceImpl request received from client:\n" + request);
-
         String greeting = new StringBuilder().append("Hello, ")
                 .append(request.getFirstName())
                 .append(" ")
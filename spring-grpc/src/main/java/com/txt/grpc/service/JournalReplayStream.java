@@ -0,0 +1,96 @@
+package com.txt.grpc.service;
+
+import com.txt.grpc.journal.JournalCursor;
+import com.txt.grpc.marketdata.MarketDataHub;
+import com.txt.grpc.marketdata.QuoteListener;
+import com.txt.grpc.streaming.StockQuote;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Streams journal records of a set of tickers to one response stream, from the replay start to the live edge and
+ * then on as new quotes are journaled.
+ * <p>
+ * Hub subscriptions keep the tickers' producers running and wake the stream up after each quote, which the hub
+ * journals before notifying subscribers; the quotes themselves are always read back from the journal, so history
+ * and live feed join without a gap or duplicate. A single drainer at a time, either a producer thread or the call's
+ * on-ready handler, writes records while the stream is ready. A slow client only falls behind in the journal.
+ */
+final class JournalReplayStream implements QuoteListener {
+
+    private final ServerCallStreamObserver<ByteBuffer> responseObserver;
+    private final JournalCursor cursor;
+    private final byte[][] tickerSymbols;
+    private final AtomicInteger wip = new AtomicInteger();
+    private final List<MarketDataHub.Subscription> subscriptions = new ArrayList<>();
+    private volatile boolean cancelled;
+
+    private JournalReplayStream(StreamObserver<ByteBuffer> responseObserver, JournalCursor cursor,
+                                List<String> tickerSymbols) {
+        this.responseObserver = (ServerCallStreamObserver<ByteBuffer>) responseObserver;
+        this.cursor = cursor;
+        this.tickerSymbols = tickerSymbols.stream()
+                .map(tickerSymbol -> tickerSymbol.getBytes(StandardCharsets.UTF_8))
+                .toArray(byte[][]::new);
+    }
+
+    /**
+     * Starts the replay; it ends when the client cancels the call. Must be called from the service method, before it
+     * returns.
+     */
+    static void start(MarketDataHub hub, JournalCursor cursor, List<String> tickerSymbols,
+                      StreamObserver<ByteBuffer> responseObserver) {
+        JournalReplayStream stream = new JournalReplayStream(responseObserver, cursor, tickerSymbols);
+        stream.responseObserver.setOnReadyHandler(stream::drain);
+        stream.responseObserver.setOnCancelHandler(stream::cancel);
+        synchronized (stream.subscriptions) {
+            for (String tickerSymbol : tickerSymbols) {
+                stream.subscriptions.add(hub.subscribe(tickerSymbol, stream));
+            }
+        }
+        stream.drain();
+    }
+
+    @Override
+    public void onQuote(StockQuote stockQuote) {
+        drain();
+    }
+
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            while (!cancelled && responseObserver.isReady() && cursor.advance()) {
+                if (matches()) {
+                    responseObserver.onNext(cursor.payload());
+                }
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private boolean matches() {
+        for (byte[] tickerSymbol : tickerSymbols) {
+            if (cursor.hasTickerSymbol(tickerSymbol)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void cancel() {
+        cancelled = true;
+        synchronized (subscriptions) {
+            subscriptions.forEach(MarketDataHub.Subscription::close);
+            subscriptions.clear();
+        }
+    }
+}
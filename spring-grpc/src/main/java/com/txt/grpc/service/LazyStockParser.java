@@ -0,0 +1,56 @@
+package com.txt.grpc.service;
+
+import com.google.protobuf.AbstractParser;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.ExtensionRegistryLite;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.txt.grpc.streaming.Stock;
+
+import java.io.IOException;
+
+/**
+ * Parses {@link Stock} decoding only {@code ticker_symbol} to a string.
+ * <p>
+ * {@code company_name} and {@code description} are kept as UTF-8 bytes, which the generated message decodes on the
+ * first call to their getter; the services never call it. Unknown fields are skipped rather than retained.
+ */
+final class LazyStockParser extends AbstractParser<Stock> {
+
+    static final LazyStockParser INSTANCE = new LazyStockParser();
+
+    private static final int TICKER_SYMBOL_TAG = Stock.TICKER_SYMBOL_FIELD_NUMBER << 3 | 2;
+    private static final int COMPANY_NAME_TAG = Stock.COMPANY_NAME_FIELD_NUMBER << 3 | 2;
+    private static final int DESCRIPTION_TAG = Stock.DESCRIPTION_FIELD_NUMBER << 3 | 2;
+
+    private LazyStockParser() {
+    }
+
+    @Override
+    public Stock parsePartialFrom(CodedInputStream input, ExtensionRegistryLite extensionRegistry)
+            throws InvalidProtocolBufferException {
+        Stock.Builder stock = Stock.newBuilder();
+        try {
+            while (true) {
+                int tag = input.readTag();
+                if (tag == 0) {
+                    return stock.buildPartial();
+                } else if (tag == TICKER_SYMBOL_TAG) {
+                    stock.setTickerSymbol(input.readStringRequireUtf8());
+                } else if (tag == COMPANY_NAME_TAG) {
+                    stock.setCompanyNameBytes(input.readBytes());
+                } else if (tag == DESCRIPTION_TAG) {
+                    stock.setDescriptionBytes(input.readBytes());
+                } else if (!input.skipField(tag)) {
+                    return stock.buildPartial();
+                }
+            }
+        } catch (InvalidProtocolBufferException e) {
+            throw e.setUnfinishedMessage(stock.buildPartial());
+        } catch (IllegalArgumentException e) {
+            // setXxxBytes rejects invalid UTF-8, as readStringRequireUtf8 would
+            throw new InvalidProtocolBufferException(e.getMessage()).setUnfinishedMessage(stock.buildPartial());
+        } catch (IOException e) {
+            throw new InvalidProtocolBufferException(e).setUnfinishedMessage(stock.buildPartial());
+        }
+    }
+}
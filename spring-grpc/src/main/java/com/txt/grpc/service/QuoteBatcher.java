@@ -0,0 +1,188 @@
+package com.txt.grpc.service;
+
+import com.txt.grpc.streaming.Stock;
+import com.txt.grpc.streaming.StockQuoteBatch;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Answers every inbound {@link Stock} with its offers, packed into {@link StockQuoteBatch} messages.
+ * <p>
+ * A batch is sent once it holds {@code maxBatchSize} quotes or when the flush window opened by its first quote
+ * elapses, whichever comes first. Inbound flow control is manual: new stocks are only requested once the quotes of
+ * the previous ones have been flushed while the stream is ready.
+ * <p>
+ * Inbound callbacks and the flush timer build batches under the batcher's lock, but write them after releasing it:
+ * a completed batch is queued and drained by a single drainer at a time, so the response observer is never called
+ * concurrently, and never with the lock held. A transport that delivers inbound messages under its own lock, like
+ * the in-process one on a direct executor, would otherwise deadlock with a timer flush writing to it.
+ */
+@Slf4j
+final class QuoteBatcher implements StreamObserver<Stock> {
+
+    private final ServerCallStreamObserver<StockQuoteBatch> responseObserver;
+    private final int offersPerStock;
+    private final ToDoubleFunction<Stock> pricer;
+    private final int maxBatchSize;
+    private final long flushWindowNanos;
+    private final Map<String, Integer> tickerIndexes = new HashMap<>();
+    private final Queue<StockQuoteBatch> outbound = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger wip = new AtomicInteger();
+    private final AtomicInteger credits = new AtomicInteger();
+    private StockQuoteBatch.Builder batch = StockQuoteBatch.newBuilder();
+    private ScheduledFuture<?> scheduledFlush;
+    private volatile boolean done;
+    private volatile boolean completed;
+    private volatile boolean cancelled;
+    private boolean completionSent;
+
+    private QuoteBatcher(StreamObserver<StockQuoteBatch> responseObserver, int offersPerStock,
+                         ToDoubleFunction<Stock> pricer, int maxBatchSize, Duration flushWindow) {
+        this.responseObserver = (ServerCallStreamObserver<StockQuoteBatch>) responseObserver;
+        this.offersPerStock = offersPerStock;
+        this.pricer = pricer;
+        this.maxBatchSize = maxBatchSize;
+        this.flushWindowNanos = flushWindow.toNanos();
+    }
+
+    /**
+     * Creates the request observer of a batched call. Must be called from the service method, before it returns.
+     */
+    static StreamObserver<Stock> forStream(StreamObserver<StockQuoteBatch> responseObserver, int maxInFlight,
+                                           int offersPerStock, ToDoubleFunction<Stock> pricer, int maxBatchSize,
+                                           Duration flushWindow) {
+        QuoteBatcher batcher = new QuoteBatcher(responseObserver, offersPerStock, pricer, maxBatchSize, flushWindow);
+        batcher.responseObserver.setOnReadyHandler(batcher::releaseCredits);
+        batcher.responseObserver.setOnCancelHandler(batcher::cancel);
+        batcher.responseObserver.disableAutoRequest();
+        batcher.responseObserver.request(maxInFlight);
+        return batcher;
+    }
+
+    @Override
+    public void onNext(Stock stock) {
+        boolean full;
+        synchronized (this) {
+            if (done) {
+                return;
+            }
+            String tickerSymbol = stock.getTickerSymbol();
+            Integer tickerIndex = tickerIndexes.get(tickerSymbol);
+            if (tickerIndex == null) {
+                tickerIndex = tickerIndexes.size();
+                tickerIndexes.put(tickerSymbol, tickerIndex);
+                batch.addTickerSymbol(tickerSymbol);
+            }
+            for (int i = 1; i <= offersPerStock; i++) {
+                batch.addTickerIndex(tickerIndex)
+                        .addPrice(pricer.applyAsDouble(stock))
+                        .addOfferNumber(i);
+            }
+            full = batch.getPriceCount() >= maxBatchSize;
+            if (full) {
+                enqueueBatch();
+            } else if (scheduledFlush == null) {
+                scheduledFlush = FlushTimer.schedule(this::flush, flushWindowNanos);
+            }
+        }
+        if (full) {
+            drain();
+        }
+    }
+
+    @Override
+    public void onCompleted() {
+        synchronized (this) {
+            if (done) {
+                return;
+            }
+            enqueueBatch();
+            done = true;
+            completed = true;
+        }
+        drain();
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        cancel();
+        log.warn("error:{}", t.getMessage());
+    }
+
+    private void flush() {
+        synchronized (this) {
+            enqueueBatch();
+        }
+        drain();
+    }
+
+    /**
+     * Queues the current batch for writing; must be called with the lock held.
+     */
+    private void enqueueBatch() {
+        cancelScheduledFlush();
+        if (done || batch.getPriceCount() == 0) {
+            return;
+        }
+        outbound.offer(batch.build());
+        batch = StockQuoteBatch.newBuilder();
+        tickerIndexes.clear();
+    }
+
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            StockQuoteBatch quoteBatch;
+            while (!cancelled && (quoteBatch = outbound.poll()) != null) {
+                responseObserver.onNext(quoteBatch);
+                // every stock of the batch carries offersPerStock prices
+                credits.addAndGet(quoteBatch.getPriceCount() / offersPerStock);
+            }
+            if (completed && !completionSent && !cancelled && outbound.isEmpty()) {
+                completionSent = true;
+                responseObserver.onCompleted();
+            }
+            releaseCredits();
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void releaseCredits() {
+        if (done || credits.get() == 0 || !responseObserver.isReady()) {
+            return;
+        }
+        int released = credits.getAndSet(0);
+        if (released > 0) {
+            responseObserver.request(released);
+        }
+    }
+
+    private void cancel() {
+        synchronized (this) {
+            done = true;
+            cancelled = true;
+            cancelScheduledFlush();
+        }
+        outbound.clear();
+    }
+
+    private void cancelScheduledFlush() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.txt.grpc.service;
+
+import com.txt.grpc.journal.JournalCursor;
+import com.txt.grpc.journal.QuoteJournal;
+import com.txt.grpc.marketdata.MarketDataHub;
+import com.txt.grpc.streaming.StockQuoteJournalGrpc;
+import com.txt.grpc.streaming.StockReplayRequest;
+import io.grpc.BindableService;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.ServiceDescriptor;
+import io.grpc.Status;
+import io.grpc.stub.ServerCalls;
+import io.grpc.stub.StreamObserver;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Serves {@code StockQuoteJournal} from a {@link QuoteJournal}.
+ * <p>
+ * The journal already holds every {@code JournaledStockQuote} serialized, so the replay method is bound with a
+ * pass-through marshaller and streams the bytes straight from the mapped segments. Clients use the generated stub,
+ * which sees the usual wire format.
+ */
+public class QuoteReplayService implements BindableService {
+
+    private static final MethodDescriptor<StockReplayRequest, ByteBuffer> REPLAY_STOCK_QUOTES_METHOD =
+            StockQuoteJournalGrpc.getReplayStockQuotesMethod().toBuilder(
+                    StockQuoteJournalGrpc.getReplayStockQuotesMethod().getRequestMarshaller(),
+                    ByteBufferMarshaller.INSTANCE).build();
+
+    private final QuoteJournal journal;
+    private final MarketDataHub marketDataHub;
+
+    /**
+     * @param journal       journal fed by {@code marketDataHub}
+     * @param marketDataHub hub whose producers are kept running for the replayed tickers
+     */
+    public QuoteReplayService(QuoteJournal journal, MarketDataHub marketDataHub) {
+        this.journal = journal;
+        this.marketDataHub = marketDataHub;
+    }
+
+    @Override
+    public ServerServiceDefinition bindService() {
+        ServiceDescriptor serviceDescriptor = ServiceDescriptor.newBuilder(StockQuoteJournalGrpc.SERVICE_NAME)
+                .setSchemaDescriptor(StockQuoteJournalGrpc.getServiceDescriptor().getSchemaDescriptor())
+                .addMethod(REPLAY_STOCK_QUOTES_METHOD)
+                .build();
+        return ServerServiceDefinition.builder(serviceDescriptor)
+                .addMethod(REPLAY_STOCK_QUOTES_METHOD, ServerCalls.asyncServerStreamingCall(this::replayStockQuotes))
+                .build();
+    }
+
+    private void replayStockQuotes(StockReplayRequest request, StreamObserver<ByteBuffer> responseObserver) {
+        if (request.getTickerSymbolCount() == 0) {
+            responseObserver.onError(Status.INVALID_ARGUMENT
+                    .withDescription("At least one ticker symbol is required")
+                    .asRuntimeException());
+            return;
+        }
+        JournalCursor cursor;
+        switch (request.getStartCase()) {
+            case FROM_TIMESTAMP_MILLIS:
+                cursor = journal.fromTimestamp(request.getFromTimestampMillis());
+                break;
+            case FROM_SEQUENCE:
+                cursor = journal.fromSequence(request.getFromSequence());
+                break;
+            default:
+                cursor = journal.fromSequence(Long.MIN_VALUE);
+        }
+        List<String> tickerSymbols = new ArrayList<>(new LinkedHashSet<>(request.getTickerSymbolList()));
+        JournalReplayStream.start(marketDataHub, cursor, tickerSymbols, responseObserver);
+    }
+}
@@ -0,0 +1,91 @@
+package com.txt.grpc.service;
+
+import com.txt.grpc.marketdata.MarketDataHub;
+import com.txt.grpc.marketdata.QuoteListener;
+import com.txt.grpc.streaming.StockQuote;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Delivers the quotes of a {@link MarketDataHub} subscription to one response stream.
+ * <p>
+ * Quotes arrive on the producer threads of the hub and are queued without blocking; a single drainer at a time,
+ * either a producer thread or the call's on-ready handler, writes them while the stream is ready. When the
+ * subscriber falls more than {@code bufferSize} quotes behind, the oldest queued quote is dropped.
+ */
+final class QuoteSubscriberStream implements QuoteListener {
+
+    private final ServerCallStreamObserver<StockQuote> responseObserver;
+    private final int bufferSize;
+    private final Queue<StockQuote> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger wip = new AtomicInteger();
+    private final List<MarketDataHub.Subscription> subscriptions = new ArrayList<>();
+    private volatile boolean cancelled;
+
+    private QuoteSubscriberStream(StreamObserver<StockQuote> responseObserver, int bufferSize) {
+        this.responseObserver = (ServerCallStreamObserver<StockQuote>) responseObserver;
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Subscribes the response stream to every ticker; the subscriptions end when the client cancels the call.
+     * Must be called from the service method, before it returns.
+     */
+    static void subscribe(MarketDataHub hub, Iterable<String> tickerSymbols, StreamObserver<StockQuote> responseObserver,
+                          int bufferSize) {
+        QuoteSubscriberStream stream = new QuoteSubscriberStream(responseObserver, bufferSize);
+        stream.responseObserver.setOnReadyHandler(stream::drain);
+        stream.responseObserver.setOnCancelHandler(stream::cancel);
+        synchronized (stream.subscriptions) {
+            for (String tickerSymbol : tickerSymbols) {
+                stream.subscriptions.add(hub.subscribe(tickerSymbol, stream));
+            }
+        }
+    }
+
+    @Override
+    public void onQuote(StockQuote stockQuote) {
+        if (cancelled) {
+            return;
+        }
+        queue.offer(stockQuote);
+        if (queued.incrementAndGet() > bufferSize && queue.poll() != null) {
+            queued.decrementAndGet();
+        }
+        drain();
+    }
+
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            while (!cancelled && responseObserver.isReady()) {
+                StockQuote stockQuote = queue.poll();
+                if (stockQuote == null) {
+                    break;
+                }
+                queued.decrementAndGet();
+                responseObserver.onNext(stockQuote);
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void cancel() {
+        cancelled = true;
+        synchronized (subscriptions) {
+            subscriptions.forEach(MarketDataHub.Subscription::close);
+            subscriptions.clear();
+        }
+        queue.clear();
+    }
+}
@@ -1,29 +1,102 @@
 package com.txt.grpc.service;
 
+import com.txt.grpc.interceptor.QuoteDeliveryInterceptor;
+import com.txt.grpc.marketdata.MarketDataHub;
+import com.txt.grpc.statistics.StockStatistics;
 import com.txt.grpc.streaming.Stock;
 import com.txt.grpc.streaming.StockQuote;
+import com.txt.grpc.streaming.StockQuoteBatch;
 import com.txt.grpc.streaming.StockQuoteProviderGrpc;
+import com.txt.grpc.streaming.StockSubscription;
+import io.grpc.Status;
 import io.grpc.stub.StreamObserver;
 import lombok.extern.slf4j.Slf4j;
 
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
 
+/**
+ * Stock quote streams. A service built without a {@link MarketDataHub} creates its own and closes it in
+ * {@link #close()}; an injected hub is left to its owner.
+ */
 @Slf4j
-public class StockService extends StockQuoteProviderGrpc.StockQuoteProviderImplBase {
+public class StockService extends StockQuoteProviderGrpc.StockQuoteProviderImplBase implements AutoCloseable {
 
+    private static final int OFFERS_PER_STOCK = 5;
+    private static final int DEFAULT_MAX_IN_FLIGHT = 16;
+    private static final int SUBSCRIBER_BUFFER_SIZE = 64;
+    private static final int MAX_BATCH_SIZE = 64;
+    private static final Duration BATCH_FLUSH_WINDOW = Duration.ofMillis(1);
+
+    private final MarketDataHub marketDataHub;
+    private final int maxInFlight;
+    private final WriteCoalescing coalescing;
+    private final boolean ownsMarketDataHub;
+
+    public StockService() {
+        this(DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    public StockService(int maxInFlight) {
+        this(new MarketDataHub(), maxInFlight, WriteCoalescing.DISABLED, true);
+    }
+
+    /**
+     * @param marketDataHub price engine feeding {@code subscribeStockQuotes}
+     * @param maxInFlight   maximum number of inbound {@link Stock} messages buffered per bidirectional call before
+     *                      their quotes have been written to the transport
+     */
+    public StockService(MarketDataHub marketDataHub, int maxInFlight) {
+        this(marketDataHub, maxInFlight, WriteCoalescing.DISABLED);
+    }
+
+    /**
+     * @param marketDataHub price engine feeding {@code subscribeStockQuotes}
+     * @param maxInFlight   maximum number of inbound {@link Stock} messages buffered per bidirectional call before
+     *                      their quotes have been written to the transport
+     * @param coalescing    write coalescing of the {@code bidirectionalStreamingGetListsStockQuotes} responses
+     */
+    public StockService(MarketDataHub marketDataHub, int maxInFlight, WriteCoalescing coalescing) {
+        this(marketDataHub, maxInFlight, coalescing, false);
+    }
+
+    private StockService(MarketDataHub marketDataHub, int maxInFlight, WriteCoalescing coalescing,
+                         boolean ownsMarketDataHub) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be positive");
+        }
+        this.marketDataHub = marketDataHub;
+        this.maxInFlight = maxInFlight;
+        this.coalescing = coalescing;
+        this.ownsMarketDataHub = ownsMarketDataHub;
+    }
+
+    /**
+     * Stops the producers of the market data hub if this service created it.
+     */
     @Override
-    public void serverSideStreamingGetListStockQuotes(Stock request, StreamObserver<StockQuote> responseObserver) {
-        System.out.println("StockService serverSide request received from client:\n" + request);
-
-        for (int i = 1; i <= 5; i++) {
-            StockQuote stockQuote = StockQuote.newBuilder()
-                    .setPrice(fetchStockPriceBid(request))
-                    .setOfferNumber(i)
-                    .setDescription("Price for stock:" + request.getTickerSymbol())
-                    .build();
-            responseObserver.onNext(stockQuote);
+    public void close() {
+        if (ownsMarketDataHub) {
+            marketDataHub.close();
         }
-        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void serverSideStreamingGetListStockQuotes(Stock request, StreamObserver<StockQuote> responseObserver) {
+        FlowControlledResponder.respond(request, responseObserver, StockService::offers);
+    }
+
+    private static Iterator<StockQuote> offers(Stock stock) {
+        return IntStream.rangeClosed(1, OFFERS_PER_STOCK)
+                .mapToObj(i -> StockQuote.newBuilder()
+                        .setPrice(fetchStockPriceBid(stock))
+                        .setOfferNumber(i)
+                        .setDescription("Price for stock:" + stock.getTickerSymbol())
+                        .build())
+                .iterator();
     }
 
     private static double fetchStockPriceBid(Stock stock) {
@@ -33,26 +106,17 @@ public class StockService extends StockQuoteProviderGrpc.StockQuoteProviderImplB
 
     @Override
     public StreamObserver<Stock> clientSideStreamingGetStatisticsOfStocks(StreamObserver<StockQuote> responseObserver) {
-        System.out.println("StockService clientSide request received from client:\n" + responseObserver);
-
         return new StreamObserver<Stock>() {
-            int count;
-            double price = 0.0;
-            StringBuffer sb = new StringBuffer();
+            final StockStatistics statistics = new StockStatistics();
 
             @Override
             public void onNext(Stock stock) {
-                count++;
-                price = +fetchStockPriceBid(stock);
-                sb.append(":").append(stock.getTickerSymbol());
+                statistics.add(stock.getTickerSymbol(), fetchStockPriceBid(stock));
             }
 
             @Override
             public void onCompleted() {
-                responseObserver.onNext(StockQuote.newBuilder()
-                        .setPrice(price / count)
-                        .setDescription("Statistics-" + sb.toString())
-                        .build());
+                responseObserver.onNext(statistics.toStockQuote());
                 responseObserver.onCompleted();
             }
 
@@ -65,30 +129,30 @@ public class StockService extends StockQuoteProviderGrpc.StockQuoteProviderImplB
 
     @Override
     public StreamObserver<Stock> bidirectionalStreamingGetListsStockQuotes(final StreamObserver<StockQuote> responseObserver) {
-        System.out.println("StockService bidirectional request received from client:\n" + responseObserver);
-
-        return new StreamObserver<Stock>() {
-            @Override
-            public void onNext(Stock request) {
-                for (int i = 1; i <= 5; i++) {
-                    StockQuote stockQuote = StockQuote.newBuilder()
-                            .setPrice(fetchStockPriceBid(request))
-                            .setOfferNumber(i)
-                            .setDescription("Price for stock:" + request.getTickerSymbol())
-                            .build();
-                    responseObserver.onNext(stockQuote);
-                }
-            }
+        return FlowControlledResponder.forStream(responseObserver, maxInFlight, coalescing, StockService::offers);
+    }
 
-            @Override
-            public void onCompleted() {
-                responseObserver.onCompleted();
-            }
+    @Override
+    public StreamObserver<Stock> bidirectionalStreamingGetBatchedStockQuotes(StreamObserver<StockQuoteBatch> responseObserver) {
+        return QuoteBatcher.forStream(responseObserver, maxInFlight, OFFERS_PER_STOCK, StockService::fetchStockPriceBid,
+                MAX_BATCH_SIZE, BATCH_FLUSH_WINDOW);
+    }
 
-            @Override
-            public void onError(Throwable t) {
-                log.warn("error:{}", t.getMessage());
-            }
-        };
+    /**
+     * Delivers every quote in order unless the call asks for conflation through {@link QuoteDeliveryInterceptor}.
+     */
+    @Override
+    public void subscribeStockQuotes(StockSubscription request, StreamObserver<StockQuote> responseObserver) {
+        if (request.getTickerSymbolCount() == 0) {
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription("At least one ticker symbol is required")
+                    .asRuntimeException());
+            return;
+        }
+        LinkedHashSet<String> tickerSymbols = new LinkedHashSet<>(request.getTickerSymbolList());
+        if (QuoteDeliveryInterceptor.QUOTE_DELIVERY.get() == QuoteDeliveryInterceptor.QuoteDelivery.CONFLATED) {
+            ConflatingQuoteStream.subscribe(marketDataHub, tickerSymbols, responseObserver);
+        } else {
+            QuoteSubscriberStream.subscribe(marketDataHub, tickerSymbols, responseObserver, SUBSCRIBER_BUFFER_SIZE);
+        }
     }
 }
@@ -0,0 +1,67 @@
+package com.txt.grpc.service;
+
+import java.time.Duration;
+
+/**
+ * Limits of the write coalescing applied to bidirectional response streams.
+ * <p>
+ * Outbound messages are held back and handed to the transport in bursts, once {@code maxMessages} messages or
+ * {@code maxBytes} serialized bytes are buffered, or {@code maxDelay} after the first buffered message. A burst
+ * written from one thread is flushed to the socket once instead of once per message, which trades at most
+ * {@code maxDelay} of latency for fewer syscalls and fuller TCP segments.
+ */
+public final class WriteCoalescing {
+
+    /**
+     * Every message is written as soon as it is produced.
+     */
+    public static final WriteCoalescing DISABLED = new WriteCoalescing(1, 0, Duration.ZERO);
+
+    private final int maxMessages;
+    private final long maxBytes;
+    private final Duration maxDelay;
+
+    private WriteCoalescing(int maxMessages, long maxBytes, Duration maxDelay) {
+        this.maxMessages = maxMessages;
+        this.maxBytes = maxBytes;
+        this.maxDelay = maxDelay;
+    }
+
+    /**
+     * @param maxMessages buffered messages triggering a flush; 1 disables coalescing
+     * @param maxBytes    buffered serialized bytes triggering a flush
+     * @param maxDelay    longest time a message is held back
+     */
+    public static WriteCoalescing of(int maxMessages, long maxBytes, Duration maxDelay) {
+        if (maxMessages < 1) {
+            throw new IllegalArgumentException("maxMessages must be positive");
+        }
+        if (maxMessages > 1 && (maxBytes < 1 || maxDelay.isNegative() || maxDelay.isZero())) {
+            throw new IllegalArgumentException("maxBytes and maxDelay must be positive when coalescing");
+        }
+        return maxMessages == 1 ? DISABLED : new WriteCoalescing(maxMessages, maxBytes, maxDelay);
+    }
+
+    public boolean isEnabled() {
+        return maxMessages > 1;
+    }
+
+    public int getMaxMessages() {
+        return maxMessages;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public Duration getMaxDelay() {
+        return maxDelay;
+    }
+
+    @Override
+    public String toString() {
+        return isEnabled()
+                ? "WriteCoalescing{maxMessages=" + maxMessages + ", maxBytes=" + maxBytes + ", maxDelay=" + maxDelay + "}"
+                : "WriteCoalescing{disabled}";
+    }
+}
@@ -0,0 +1,275 @@
+package com.txt.grpc.service;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.ExtensionRegistryLite;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.MessageLite;
+import com.google.protobuf.Parser;
+import com.txt.grpc.streaming.Stock;
+import io.grpc.Detachable;
+import io.grpc.Drainable;
+import io.grpc.HasByteBuffer;
+import io.grpc.KnownLength;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerMethodDefinition;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.ServiceDescriptor;
+import io.grpc.Status;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Protobuf marshaller parsing straight from the transport buffers and reusing the bytes of messages sent repeatedly.
+ * <p>
+ * Inbound, a stream exposing its buffers through {@link Detachable} and {@link HasByteBuffer} (Netty) is detached
+ * and parsed in place, without first being copied into a heap array; other streams are parsed as protobuf would.
+ * {@link Stock} is parsed with {@link LazyStockParser}, which leaves the fields the services never read as bytes.
+ * <p>
+ * Outbound, messages are written straight into the transport like protobuf's marshaller does. Instances the sender
+ * knows to be written many times, such as a quote fanned out to every subscriber or a constant error, can be
+ * {@linkplain #share shared}: they are then serialized once and their bytes reused. Other messages cost no lookup
+ * unless an instance of their type has been shared, and never an allocation or cache write.
+ */
+public final class ZeroCopyMarshaller<T extends MessageLite> implements MethodDescriptor.PrototypeMarshaller<T> {
+
+    private static final int SHARED_SLOTS = 64;
+    private static final ClassValue<SharedInstances> SHARED = new ClassValue<>() {
+        @Override
+        protected SharedInstances computeValue(Class<?> type) {
+            return new SharedInstances();
+        }
+    };
+
+    private final T prototype;
+    private final Parser<T> parser;
+    private final SharedInstances shared;
+
+    private ZeroCopyMarshaller(T prototype, Parser<T> parser) {
+        this.prototype = prototype;
+        this.parser = parser;
+        this.shared = SHARED.get(prototype.getClass());
+    }
+
+    /**
+     * Marks an immutable message as sent many times, so every marshaller of its type serializes it once. Only the
+     * most recently shared instances are remembered; older ones are simply serialized on every send again.
+     *
+     * @return the message
+     */
+    public static <T extends MessageLite> T share(T message) {
+        SharedInstances instances = SHARED.get(message.getClass());
+        instances.slots.set(slot(message), new Serialized(message));
+        if (!instances.used) {
+            instances.used = true;
+        }
+        return message;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T extends MessageLite> ZeroCopyMarshaller<T> of(T prototype) {
+        Parser<T> parser = prototype instanceof Stock
+                ? (Parser<T>) LazyStockParser.INSTANCE
+                : (Parser<T>) prototype.getParserForType();
+        return new ZeroCopyMarshaller<>(prototype, parser);
+    }
+
+    /**
+     * Rebinds every protobuf method of a service, interceptors included, to zero-copy marshallers.
+     */
+    public static ServerServiceDefinition rebind(ServerServiceDefinition definition) {
+        ServiceDescriptor descriptor = definition.getServiceDescriptor();
+        ServiceDescriptor.Builder descriptorBuilder = ServiceDescriptor.newBuilder(descriptor.getName())
+                .setSchemaDescriptor(descriptor.getSchemaDescriptor());
+        List<ServerMethodDefinition<?, ?>> methods = new ArrayList<>();
+        for (ServerMethodDefinition<?, ?> method : definition.getMethods()) {
+            ServerMethodDefinition<?, ?> rebound = rebind(method);
+            descriptorBuilder.addMethod(rebound.getMethodDescriptor());
+            methods.add(rebound);
+        }
+        ServerServiceDefinition.Builder builder = ServerServiceDefinition.builder(descriptorBuilder.build());
+        methods.forEach(builder::addMethod);
+        return builder.build();
+    }
+
+    private static <ReqT, RespT> ServerMethodDefinition<ReqT, RespT> rebind(ServerMethodDefinition<ReqT, RespT> method) {
+        MethodDescriptor<ReqT, RespT> descriptor = method.getMethodDescriptor();
+        MethodDescriptor.Marshaller<ReqT> requestMarshaller = rebind(descriptor.getRequestMarshaller());
+        MethodDescriptor.Marshaller<RespT> responseMarshaller = rebind(descriptor.getResponseMarshaller());
+        return ServerMethodDefinition.create(descriptor.toBuilder(requestMarshaller, responseMarshaller).build(),
+                method.getServerCallHandler());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> MethodDescriptor.Marshaller<T> rebind(MethodDescriptor.Marshaller<T> marshaller) {
+        if (marshaller instanceof MethodDescriptor.PrototypeMarshaller
+                && ((MethodDescriptor.PrototypeMarshaller<T>) marshaller).getMessagePrototype() instanceof MessageLite) {
+            MessageLite prototype = (MessageLite) ((MethodDescriptor.PrototypeMarshaller<T>) marshaller)
+                    .getMessagePrototype();
+            return (MethodDescriptor.Marshaller<T>) of(prototype);
+        }
+        return marshaller;
+    }
+
+    @Override
+    public T getMessagePrototype() {
+        return prototype;
+    }
+
+    @Override
+    public Class<T> getMessageClass() {
+        @SuppressWarnings("unchecked")
+        Class<T> messageClass = (Class<T>) prototype.getClass();
+        return messageClass;
+    }
+
+    @Override
+    public InputStream stream(T value) {
+        if (shared.used) {
+            Serialized serialized = shared.slots.get(slot(value));
+            if (serialized != null && serialized.message == value) {
+                return new MessageStream(null, serialized.bytes());
+            }
+        }
+        return new MessageStream(value, null);
+    }
+
+    @Override
+    public T parse(InputStream stream) {
+        try {
+            if (stream instanceof Detachable && stream instanceof HasByteBuffer
+                    && ((HasByteBuffer) stream).byteBufferSupported()) {
+                return parseDetached(((Detachable) stream).detach());
+            }
+            if (stream instanceof KnownLength) {
+                return parse(CodedInputStream.newInstance(stream.readNBytes(stream.available())));
+            }
+            return parse(CodedInputStream.newInstance(stream));
+        } catch (IOException e) {
+            throw Status.INTERNAL.withDescription("Invalid protobuf byte sequence").withCause(e).asRuntimeException();
+        }
+    }
+
+    private T parseDetached(InputStream detached) throws IOException {
+        try (detached) {
+            List<ByteBuffer> buffers = new ArrayList<>(2);
+            while (detached.available() > 0) {
+                ByteBuffer buffer = ((HasByteBuffer) detached).getByteBuffer();
+                buffers.add(buffer);
+                detached.skip(buffer.remaining());
+            }
+            // string and bytes fields are copied out, so the buffers can be released when the stream closes
+            return parse(buffers.size() == 1
+                    ? CodedInputStream.newInstance(buffers.get(0))
+                    : CodedInputStream.newInstance(buffers));
+        }
+    }
+
+    private T parse(CodedInputStream input) throws InvalidProtocolBufferException {
+        input.setSizeLimit(Integer.MAX_VALUE);
+        return parser.parseFrom(input, ExtensionRegistryLite.getEmptyRegistry());
+    }
+
+    private static int slot(MessageLite message) {
+        return System.identityHashCode(message) & (SHARED_SLOTS - 1);
+    }
+
+    private static final class SharedInstances {
+
+        private final AtomicReferenceArray<Serialized> slots = new AtomicReferenceArray<>(SHARED_SLOTS);
+        private volatile boolean used;
+    }
+
+    private static final class Serialized {
+
+        private final MessageLite message;
+        private volatile byte[] bytes;
+
+        private Serialized(MessageLite message) {
+            this.message = message;
+        }
+
+        /**
+         * Serializes on the first send rather than when shared, since a message may be shared with no one to send
+         * it to; concurrent first sends may each serialize it, which is harmless.
+         */
+        private byte[] bytes() {
+            byte[] serialized = bytes;
+            if (serialized == null) {
+                serialized = message.toByteArray();
+                bytes = serialized;
+            }
+            return serialized;
+        }
+    }
+
+    /**
+     * Drained into the transport by gRPC; read as a plain stream only by other consumers.
+     */
+    private static final class MessageStream extends InputStream implements Drainable, KnownLength {
+
+        private MessageLite message;
+        private byte[] bytes;
+        private int position;
+
+        private MessageStream(MessageLite message, byte[] bytes) {
+            this.message = message;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int drainTo(OutputStream target) throws IOException {
+            int written;
+            if (message != null) {
+                written = message.getSerializedSize();
+                message.writeTo(target);
+                message = null;
+            } else if (bytes != null) {
+                written = bytes.length - position;
+                target.write(bytes, position, written);
+            } else {
+                return 0;
+            }
+            bytes = null;
+            return written;
+        }
+
+        @Override
+        public int read() {
+            materialize();
+            return bytes != null && position < bytes.length ? bytes[position++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int length) {
+            materialize();
+            if (bytes == null || position >= bytes.length) {
+                return -1;
+            }
+            int count = Math.min(length, bytes.length - position);
+            System.arraycopy(bytes, position, target, offset, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public int available() {
+            if (message != null) {
+                return message.getSerializedSize();
+            }
+            return bytes == null ? 0 : bytes.length - position;
+        }
+
+        private void materialize() {
+            if (message != null) {
+                bytes = message.toByteArray();
+                message = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.txt.grpc.sharding;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Assigns keys, such as ticker symbols, to named shards by consistent hashing.
+ * <p>
+ * Every shard is placed on a ring of 64-bit murmur3 hashes at {@code virtualNodes} points, and a key belongs to the
+ * shard at the first point at or after its own hash. Adding or removing one of N shards therefore moves only about
+ * 1/N of the keys, and all of them to or from that shard. Clients and servers built from the same shard names agree
+ * on the owner of every key. Immutable and safe to share.
+ */
+public final class ConsistentHashRing {
+
+    public static final int DEFAULT_VIRTUAL_NODES = 128;
+
+    private static final HashFunction HASH = Hashing.murmur3_128();
+
+    private final List<String> shards;
+    private final NavigableMap<Long, String> ring = new TreeMap<>();
+
+    public ConsistentHashRing(Collection<String> shards) {
+        this(shards, DEFAULT_VIRTUAL_NODES);
+    }
+
+    /**
+     * @param virtualNodes points per shard on the ring; more points spread the keys more evenly
+     */
+    public ConsistentHashRing(Collection<String> shards, int virtualNodes) {
+        if (shards.isEmpty() || virtualNodes < 1) {
+            throw new IllegalArgumentException("At least one shard and one virtual node per shard are required");
+        }
+        this.shards = List.copyOf(shards);
+        for (String shard : this.shards) {
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.put(hash(shard + "#" + i), shard);
+            }
+        }
+    }
+
+    /**
+     * @return the shard owning the key
+     */
+    public String shardFor(String key) {
+        Map.Entry<Long, String> owner = ring.ceilingEntry(hash(key));
+        return owner != null ? owner.getValue() : ring.firstEntry().getValue();
+    }
+
+    public List<String> shards() {
+        return shards;
+    }
+
+    private static long hash(String value) {
+        return HASH.hashString(value, StandardCharsets.UTF_8).asLong();
+    }
+}
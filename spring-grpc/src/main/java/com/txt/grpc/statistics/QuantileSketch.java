@@ -0,0 +1,118 @@
+package com.txt.grpc.statistics;
+
+/**
+ * Mergeable quantile sketch with relative-error guarantees, following DDSketch.
+ * <p>
+ * Positive values are counted in logarithmically sized buckets, so any quantile is returned within
+ * {@code relativeAccuracy} of the true value. The number of buckets depends on the range of values, not on how many
+ * were added, and is capped at {@code maxBuckets} by collapsing the lowest buckets, which only affects the accuracy
+ * of the lowest quantiles. Non-positive values are counted separately and reported as 0.
+ */
+public class QuantileSketch {
+
+    private final double relativeAccuracy;
+    private final double gamma;
+    private final double logGamma;
+    private final int maxBuckets;
+    private long[] counts = new long[0];
+    private int minIndex;
+    private long zeroCount;
+    private long count;
+
+    public QuantileSketch() {
+        this(0.01, 2048);
+    }
+
+    public QuantileSketch(double relativeAccuracy, int maxBuckets) {
+        if (relativeAccuracy <= 0 || relativeAccuracy >= 1) {
+            throw new IllegalArgumentException("relativeAccuracy must be in (0, 1)");
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+        this.maxBuckets = maxBuckets;
+    }
+
+    public void add(double value) {
+        count++;
+        if (value <= 0) {
+            zeroCount++;
+            return;
+        }
+        increment(index(value), 1);
+    }
+
+    /**
+     * Adds the values counted by another sketch with the same accuracy.
+     */
+    public void merge(QuantileSketch other) {
+        if (other.relativeAccuracy != relativeAccuracy) {
+            throw new IllegalArgumentException("Cannot merge sketches with different accuracies");
+        }
+        count += other.count;
+        zeroCount += other.zeroCount;
+        for (int i = 0; i < other.counts.length; i++) {
+            if (other.counts[i] > 0) {
+                increment(other.minIndex + i, other.counts[i]);
+            }
+        }
+    }
+
+    /**
+     * @param quantile between 0 and 1
+     * @return the approximate value at the quantile, 0 for an empty sketch
+     */
+    public double quantile(double quantile) {
+        if (count == 0) {
+            return 0.0;
+        }
+        long rank = (long) (quantile * (count - 1));
+        if (rank < zeroCount) {
+            return 0.0;
+        }
+        long seen = zeroCount;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen > rank) {
+                return 2 * Math.pow(gamma, minIndex + i) / (gamma + 1);
+            }
+        }
+        return 2 * Math.pow(gamma, minIndex + counts.length - 1) / (gamma + 1);
+    }
+
+    public long count() {
+        return count;
+    }
+
+    private int index(double value) {
+        return (int) Math.ceil(Math.log(value) / logGamma);
+    }
+
+    private void increment(int index, long delta) {
+        if (counts.length == 0) {
+            counts = new long[1];
+            minIndex = index;
+        } else if (index < minIndex) {
+            int grownLength = counts.length + (minIndex - index);
+            if (grownLength > maxBuckets) {
+                // collapse into the lowest bucket kept rather than growing past the cap
+                counts[0] += delta;
+                return;
+            }
+            long[] grown = new long[grownLength];
+            System.arraycopy(counts, 0, grown, minIndex - index, counts.length);
+            counts = grown;
+            minIndex = index;
+        } else if (index >= minIndex + counts.length) {
+            // buckets falling below the cap are collapsed into the new lowest bucket
+            int grownMinIndex = Math.max(minIndex, index - maxBuckets + 1);
+            long[] grown = new long[index - grownMinIndex + 1];
+            for (int i = 0; i < counts.length; i++) {
+                grown[Math.max(minIndex + i, grownMinIndex) - grownMinIndex] += counts[i];
+            }
+            counts = grown;
+            minIndex = grownMinIndex;
+        }
+        counts[index - minIndex] += delta;
+    }
+}
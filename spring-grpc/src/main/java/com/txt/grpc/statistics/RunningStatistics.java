@@ -0,0 +1,70 @@
+package com.txt.grpc.statistics;
+
+/**
+ * Count, mean, variance, min and max of a stream of values in constant memory, using Welford's online algorithm,
+ * which stays numerically stable where the naive sum-of-squares formula cancels catastrophically.
+ */
+public class RunningStatistics {
+
+    private long count;
+    private double mean;
+    private double m2;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public void add(double value) {
+        count++;
+        double delta = value - mean;
+        mean += delta / count;
+        m2 += delta * (value - mean);
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Combines the statistics of another stream into this one (Chan et al.'s parallel variant of Welford).
+     */
+    public void merge(RunningStatistics other) {
+        if (other.count == 0) {
+            return;
+        }
+        if (count == 0) {
+            count = other.count;
+            mean = other.mean;
+            m2 = other.m2;
+            min = other.min;
+            max = other.max;
+            return;
+        }
+        long combined = count + other.count;
+        double delta = other.mean - mean;
+        mean += delta * other.count / combined;
+        m2 += other.m2 + delta * delta * ((double) count * other.count / combined);
+        count = combined;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public double mean() {
+        return count == 0 ? 0.0 : mean;
+    }
+
+    /**
+     * @return the sample variance, 0 for fewer than two values
+     */
+    public double variance() {
+        return count < 2 ? 0.0 : m2 / (count - 1);
+    }
+
+    public double min() {
+        return count == 0 ? 0.0 : min;
+    }
+
+    public double max() {
+        return count == 0 ? 0.0 : max;
+    }
+}
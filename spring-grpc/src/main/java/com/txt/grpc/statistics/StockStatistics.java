@@ -0,0 +1,62 @@
+package com.txt.grpc.statistics;
+
+import com.txt.grpc.streaming.StockQuote;
+import com.txt.grpc.streaming.TickerStatistics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Incremental per-ticker price statistics of a client stream, in memory proportional to the number of distinct
+ * tickers rather than to the length of the stream.
+ */
+public class StockStatistics {
+
+    private final Map<String, TickerAggregate> tickers = new LinkedHashMap<>();
+    private final RunningStatistics overall = new RunningStatistics();
+
+    public void add(String tickerSymbol, double price) {
+        tickers.computeIfAbsent(tickerSymbol, ticker -> new TickerAggregate()).add(price);
+        overall.add(price);
+    }
+
+    /**
+     * @return a quote carrying the overall mean price, the number of prices seen and one entry per ticker
+     */
+    public StockQuote toStockQuote() {
+        StringBuilder description = new StringBuilder("Statistics-");
+        StockQuote.Builder stockQuote = StockQuote.newBuilder()
+                .setPrice(overall.mean())
+                .setOfferNumber((int) Math.min(Integer.MAX_VALUE, overall.count()));
+        tickers.forEach((tickerSymbol, aggregate) -> {
+            description.append(":").append(tickerSymbol);
+            stockQuote.addStatistics(aggregate.toTickerStatistics(tickerSymbol));
+        });
+        return stockQuote.setDescription(description.toString()).build();
+    }
+
+    private static final class TickerAggregate {
+
+        private final RunningStatistics statistics = new RunningStatistics();
+        private final QuantileSketch sketch = new QuantileSketch();
+
+        private void add(double price) {
+            statistics.add(price);
+            sketch.add(price);
+        }
+
+        private TickerStatistics toTickerStatistics(String tickerSymbol) {
+            return TickerStatistics.newBuilder()
+                    .setTickerSymbol(tickerSymbol)
+                    .setCount(statistics.count())
+                    .setMean(statistics.mean())
+                    .setVariance(statistics.variance())
+                    .setMin(statistics.min())
+                    .setMax(statistics.max())
+                    .setP50(sketch.quantile(0.5))
+                    .setP90(sketch.quantile(0.9))
+                    .setP99(sketch.quantile(0.99))
+                    .build();
+        }
+    }
+}
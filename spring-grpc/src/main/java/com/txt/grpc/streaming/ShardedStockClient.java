@@ -0,0 +1,230 @@
+package com.txt.grpc.streaming;
+
+import com.txt.grpc.sharding.ConsistentHashRing;
+import io.grpc.Channel;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Status;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import io.grpc.stub.StreamObserver;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client of a ticker-sharded stock cluster: routes every {@link Stock} to the shard owning its ticker on a
+ * {@link ConsistentHashRing} built from the same shard names as the servers.
+ * <p>
+ * A mixed stream of stocks is split into one sub-stream per shard, opened when the first ticker of that shard shows
+ * up, and the quotes of all sub-streams are merged back into the caller's observer. Quotes of one ticker keep their
+ * order; quotes of tickers on different shards interleave as they arrive. The merged stream completes once the
+ * caller has completed and every sub-stream has; the first sub-stream to fail cancels the others and fails it.
+ * Sub-streams are not flow controlled against each other, a slow shard buffers its requests in its own call.
+ */
+@Slf4j
+public class ShardedStockClient {
+
+    private final ConsistentHashRing ring;
+    private final Map<String, StockQuoteProviderGrpc.StockQuoteProviderStub> stubs = new LinkedHashMap<>();
+
+    /**
+     * @param shards channel to every shard, by shard name
+     */
+    public ShardedStockClient(Map<String, ? extends Channel> shards) {
+        this.ring = new ConsistentHashRing(shards.keySet());
+        shards.forEach((shard, channel) -> stubs.put(shard, StockQuoteProviderGrpc.newStub(channel)));
+    }
+
+    /**
+     * @return the shard serving the ticker
+     */
+    public String shardFor(String tickerSymbol) {
+        return ring.shardFor(tickerSymbol);
+    }
+
+    /**
+     * Same contract as {@code bidirectionalStreamingGetListsStockQuotes} on a single server, across all shards.
+     */
+    public StreamObserver<Stock> bidirectionalStreamingGetListsStockQuotes(StreamObserver<StockQuote> responseObserver) {
+        return new ShardedStream(responseObserver);
+    }
+
+    /**
+     * Splits the caller's stream by shard; every method runs under the instance lock, which also serializes the
+     * merged quotes handed to the caller's observer.
+     */
+    private final class ShardedStream implements StreamObserver<Stock> {
+
+        private final StreamObserver<StockQuote> downstream;
+        private final Map<String, SubStream> subStreams = new LinkedHashMap<>();
+        private int openSubStreams;
+        private boolean completed;
+        private boolean terminated;
+
+        private ShardedStream(StreamObserver<StockQuote> downstream) {
+            this.downstream = downstream;
+        }
+
+        @Override
+        public synchronized void onNext(Stock stock) {
+            if (terminated) {
+                return;
+            }
+            String shard = ring.shardFor(stock.getTickerSymbol());
+            SubStream subStream = subStreams.get(shard);
+            if (subStream == null) {
+                subStream = new SubStream(this, shard);
+                subStreams.put(shard, subStream);
+                openSubStreams++;
+                stubs.get(shard).bidirectionalStreamingGetListsStockQuotes(subStream);
+            }
+            subStream.requests.onNext(stock);
+        }
+
+        @Override
+        public synchronized void onCompleted() {
+            if (terminated || completed) {
+                return;
+            }
+            completed = true;
+            subStreams.values().forEach(subStream -> subStream.requests.onCompleted());
+            completeIfDone();
+        }
+
+        @Override
+        public synchronized void onError(Throwable t) {
+            if (terminated) {
+                return;
+            }
+            terminated = true;
+            cancelAll("Cancelled by the client", t);
+            downstream.onError(Status.CANCELLED.withDescription("Cancelled by the client").withCause(t)
+                    .asRuntimeException());
+        }
+
+        private synchronized void quote(StockQuote quote) {
+            if (!terminated) {
+                downstream.onNext(quote);
+            }
+        }
+
+        private synchronized void subStreamCompleted() {
+            openSubStreams--;
+            completeIfDone();
+        }
+
+        private synchronized void subStreamFailed(String shard, Throwable t) {
+            if (terminated) {
+                return;
+            }
+            terminated = true;
+            log.warn("Shard {} failed: {}", shard, Status.fromThrowable(t));
+            cancelAll("Shard " + shard + " failed", t);
+            downstream.onError(t);
+        }
+
+        private void completeIfDone() {
+            if (completed && openSubStreams == 0 && !terminated) {
+                terminated = true;
+                downstream.onCompleted();
+            }
+        }
+
+        private void cancelAll(String message, Throwable cause) {
+            for (SubStream subStream : subStreams.values()) {
+                subStream.requests.cancel(message, cause);
+            }
+        }
+    }
+
+    private static final class SubStream implements ClientResponseObserver<Stock, StockQuote> {
+
+        private final ShardedStream parent;
+        private final String shard;
+        private ClientCallStreamObserver<Stock> requests;
+
+        private SubStream(ShardedStream parent, String shard) {
+            this.parent = parent;
+            this.shard = shard;
+        }
+
+        @Override
+        public void beforeStart(ClientCallStreamObserver<Stock> requestStream) {
+            this.requests = requestStream;
+        }
+
+        @Override
+        public void onNext(StockQuote quote) {
+            parent.quote(quote);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            parent.subStreamFailed(shard, t);
+        }
+
+        @Override
+        public void onCompleted() {
+            parent.subStreamCompleted();
+        }
+    }
+
+    /**
+     * Arguments: the shards as {@code name=host:port,...}, e.g.
+     * {@code shard-0=localhost:8981,shard-1=localhost:8982,shard-2=localhost:8983}.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        String cluster = args.length > 0 ? args[0] : "shard-0=localhost:8981,shard-1=localhost:8982";
+        Map<String, ManagedChannel> channels = new LinkedHashMap<>();
+        for (String shard : cluster.split(",")) {
+            String[] nameAndTarget = shard.split("=", 2);
+            channels.put(nameAndTarget[0].trim(), ManagedChannelBuilder.forTarget(nameAndTarget[1].trim())
+                    .usePlaintext()
+                    .build());
+        }
+        try {
+            ShardedStockClient client = new ShardedStockClient(channels);
+            List<String> tickers = List.of("AU", "BAS", "COR", "DIA", "EUS", "FIN", "GRO", "HAL");
+            CountDownLatch finishLatch = new CountDownLatch(1);
+            List<StockQuote> quotes = new ArrayList<>();
+            StreamObserver<Stock> requestObserver = client.bidirectionalStreamingGetListsStockQuotes(
+                    new StreamObserver<>() {
+                        @Override
+                        public void onNext(StockQuote quote) {
+                            quotes.add(quote);
+                        }
+
+                        @Override
+                        public void onError(Throwable t) {
+                            log.warn("Sharded stream failed: {}", Status.fromThrowable(t));
+                            finishLatch.countDown();
+                        }
+
+                        @Override
+                        public void onCompleted() {
+                            finishLatch.countDown();
+                        }
+                    });
+            for (String ticker : tickers) {
+                log.info("REQUEST: {} on {}", ticker, client.shardFor(ticker));
+                requestObserver.onNext(Stock.newBuilder().setTickerSymbol(ticker).build());
+            }
+            requestObserver.onCompleted();
+            if (!finishLatch.await(1, TimeUnit.MINUTES)) {
+                log.info("Sharded stream can not finish within 1 minute");
+            }
+            log.info("RESPONSE {} quotes for {} tickers from {} shards", quotes.size(), tickers.size(),
+                    channels.size());
+        } finally {
+            for (ManagedChannel channel : channels.values()) {
+                channel.shutdown().awaitTermination(5, TimeUnit.SECONDS);
+            }
+        }
+    }
+}
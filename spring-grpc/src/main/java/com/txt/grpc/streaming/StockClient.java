@@ -1,5 +1,7 @@
 package com.txt.grpc.streaming;
 
+import com.txt.grpc.client.ChannelPool;
+import com.txt.grpc.client.WeightedLeastRequestLoadBalancerProvider;
 import io.grpc.*;
 import io.grpc.stub.StreamObserver;
 import lombok.extern.slf4j.Slf4j;
@@ -7,6 +9,7 @@ import lombok.extern.slf4j.Slf4j;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
@@ -15,11 +18,13 @@ public class StockClient {
 
     private final StockQuoteProviderGrpc.StockQuoteProviderBlockingStub blockingStub;
     private final StockQuoteProviderGrpc.StockQuoteProviderStub nonBlockingStub;
+    private final StockQuoteJournalGrpc.StockQuoteJournalBlockingStub journalStub;
     private List<Stock> stocks;
 
     public StockClient(Channel channel) {
         blockingStub = StockQuoteProviderGrpc.newBlockingStub(channel);
         nonBlockingStub = StockQuoteProviderGrpc.newStub(channel);
+        journalStub = StockQuoteJournalGrpc.newBlockingStub(channel);
         initializeStocks();
     }
 
@@ -128,6 +133,114 @@ public class StockClient {
         }
     }
 
+    public void bidirectionalStreamingGetBatchedStockQuotes() throws InterruptedException {
+        log.info("#######START EXAMPLE#######: BidirectionalStreaming - getBatchedStockQuotes from list of stocks");
+        final CountDownLatch finishLatch = new CountDownLatch(1);
+
+        StreamObserver<StockQuoteBatch> responseObserver = new StreamObserver<StockQuoteBatch>() {
+            @Override
+            public void onNext(StockQuoteBatch batch) {
+                for (Iterator<StockQuote> stockQuotes = quotes(batch); stockQuotes.hasNext(); ) {
+                    StockQuote stockQuote = stockQuotes.next();
+                    log.info("RESPONSE price#{} : {}, description:{}", stockQuote.getOfferNumber(), stockQuote.getPrice(), stockQuote.getDescription());
+                }
+            }
+
+            @Override
+            public void onCompleted() {
+                log.info("Finished bidirectionalStreamingGetBatchedStockQuotes");
+                finishLatch.countDown();
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                log.warn("bidirectionalStreamingGetBatchedStockQuotes Failed: {}", Status.fromThrowable(t));
+                finishLatch.countDown();
+            }
+        };
+
+        StreamObserver<Stock> requestObserver = nonBlockingStub.bidirectionalStreamingGetBatchedStockQuotes(responseObserver);
+        try {
+            for (Stock stock : stocks) {
+                log.info("REQUEST: {}, {}", stock.getTickerSymbol(), stock.getCompanyName());
+                requestObserver.onNext(stock);
+                if (finishLatch.getCount() == 0) {
+                    return;
+                }
+            }
+        } catch (RuntimeException e) {
+            requestObserver.onError(e);
+            throw e;
+        }
+        requestObserver.onCompleted();
+
+        if (!finishLatch.await(1, TimeUnit.MINUTES)) {
+            log.warn("bidirectionalStreamingGetBatchedStockQuotes can not finish within 1 minute");
+        }
+    }
+
+    /**
+     * Replays journaled quotes of a ticker from a sequence, as a reconnecting client would, then follows the live
+     * feed until {@code limit} quotes have been received.
+     *
+     * @return the sequence to resume from on the next call
+     */
+    public long replayStockQuotes(String tickerSymbol, long fromSequence, int limit) {
+        log.info("######START EXAMPLE######: Replay - journaled quotes of {} from sequence {}", tickerSymbol, fromSequence);
+        long nextSequence = fromSequence;
+        Context.CancellableContext context = Context.current().withCancellation();
+        Context previous = context.attach();
+        try {
+            Iterator<JournaledStockQuote> quotes = journalStub.replayStockQuotes(StockReplayRequest.newBuilder()
+                    .addTickerSymbol(tickerSymbol)
+                    .setFromSequence(fromSequence)
+                    .build());
+            for (int i = 0; i < limit && quotes.hasNext(); i++) {
+                JournaledStockQuote journaled = quotes.next();
+                log.info("RESPONSE #{} at {}: {}", journaled.getSequence(), journaled.getTimestampMillis(),
+                        journaled.getQuote().getPrice());
+                nextSequence = journaled.getSequence() + 1;
+            }
+        } catch (StatusRuntimeException e) {
+            log.info("RPC failed: {}", e.getStatus());
+        } finally {
+            context.detach(previous);
+            context.cancel(null);
+        }
+        return nextSequence;
+    }
+
+    /**
+     * Unpacks a batch into the quotes it carries, in the order the server produced them.
+     */
+    public static Iterator<StockQuote> quotes(StockQuoteBatch batch) {
+        String[] descriptions = new String[batch.getTickerSymbolCount()];
+        for (int i = 0; i < descriptions.length; i++) {
+            descriptions[i] = "Price for stock:" + batch.getTickerSymbol(i);
+        }
+        return new Iterator<StockQuote>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < batch.getPriceCount();
+            }
+
+            @Override
+            public StockQuote next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int i = next++;
+                return StockQuote.newBuilder()
+                        .setPrice(batch.getPrice(i))
+                        .setOfferNumber(batch.getOfferNumber(i))
+                        .setDescription(descriptions[batch.getTickerIndex(i)])
+                        .build();
+            }
+        };
+    }
+
     private void initializeStocks() {
         this.stocks = Arrays.asList(
                 Stock.newBuilder().setTickerSymbol("AU").setCompanyName("Auburn Corp").setDescription("Aptitude Intel").build()
@@ -137,15 +250,27 @@ public class StockClient {
                 , Stock.newBuilder().setTickerSymbol("EUS").setCompanyName("Euskaltel Corp").setDescription("English Intel").build());
     }
 
+    /**
+     * Arguments: target ({@code localhost:8980}), which may list several replicas as
+     * {@code static:///host:port,...} to spread calls over them by least request, connections (1) and whether to
+     * run the replay example (false), which needs the Spring server with {@code stock.journal.enabled=true}; the
+     * standalone {@link StockServer} keeps no journal.
+     */
     public static void main(String[] args) throws InterruptedException {
         String target = "localhost:8980";
         if (args.length > 0) {
             target = args[0];
         }
 
-        ManagedChannel channel = ManagedChannelBuilder.forTarget(target)
-                .usePlaintext()
-                .build();
+        int connections = 1;
+        if (args.length > 1) {
+            connections = Integer.parseInt(args[1]);
+        }
+
+        boolean replay = args.length > 2 && Boolean.parseBoolean(args[2]);
+
+        ChannelPool channel = ChannelPool.forTarget(target, connections, ChannelPool.Selection.LEAST_OUTSTANDING,
+                WeightedLeastRequestLoadBalancerProvider.POLICY_NAME);
         try {
             StockClient client = new StockClient(channel);
 
@@ -155,8 +280,15 @@ public class StockClient {
 
             client.bidirectionalStreamingGetListsStockQuotes();
 
+            client.bidirectionalStreamingGetBatchedStockQuotes();
+
+            if (replay) {
+                long nextSequence = client.replayStockQuotes("AU", 0, 10);
+                client.replayStockQuotes("AU", nextSequence, 10);
+            }
+
         } finally {
-            channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+            channel.close();
         }
     }
 }
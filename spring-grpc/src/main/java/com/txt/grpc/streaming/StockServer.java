@@ -1,29 +1,111 @@
 package com.txt.grpc.streaming;
 
+import com.txt.grpc.interceptor.ConcurrencyLimitInterceptor;
+import com.txt.grpc.interceptor.QuoteDeliveryInterceptor;
+import com.txt.grpc.interceptor.TickerShardInterceptor;
+import com.txt.grpc.server.ServerWarmup;
+import com.txt.grpc.sharding.ConsistentHashRing;
 import com.txt.grpc.service.StockService;
 import io.grpc.Server;
-import io.grpc.ServerBuilder;
+import io.grpc.ServerInterceptors;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.concurrent.TimeUnit;
 
 @Slf4j
 public class StockServer {
 
-    private final int port;
+    private static final String WARMUP_TICKER = "AU";
+    private static final Duration DEFAULT_MAX_CONNECTION_AGE = Duration.ofMinutes(30);
+    private static final Duration DEFAULT_MAX_CONNECTION_AGE_GRACE = Duration.ofMinutes(1);
+
+    private final StockService stockService = new StockService();
     private final Server server;
+    private final String warmupTicker;
 
     public StockServer(int port) throws IOException {
-        this.port = port;
-        server = ServerBuilder.forPort(port)
-                .addService(new StockService())
+        this(port, DEFAULT_MAX_CONNECTION_AGE, DEFAULT_MAX_CONNECTION_AGE_GRACE, false);
+    }
+
+    /**
+     * @param maxConnectionAge      age after which a connection is sent a GOAWAY, so long-lived clients reconnect and
+     *                              spread over the replicas started since
+     * @param maxConnectionAgeGrace time calls still open on an aged connection get to finish before it is closed
+     * @param limitConcurrency      shed calls beyond the {@link ConcurrencyLimitInterceptor} limits of each method
+     */
+    public StockServer(int port, Duration maxConnectionAge, Duration maxConnectionAgeGrace, boolean limitConcurrency)
+            throws IOException {
+        server = serverBuilder(port, maxConnectionAge, maxConnectionAgeGrace, limitConcurrency)
+                .addService(ServerInterceptors.intercept(stockService, new QuoteDeliveryInterceptor()))
                 .build();
+        warmupTicker = WARMUP_TICKER;
+    }
+
+    /**
+     * One shard of a ticker-sharded cluster, generating quotes only for the tickers the ring assigns to
+     * {@code shard}; requests for other tickers fail with {@code FAILED_PRECONDITION}.
+     */
+    public StockServer(int port, ConsistentHashRing ring, String shard) throws IOException {
+        this(port, ring, shard, DEFAULT_MAX_CONNECTION_AGE, DEFAULT_MAX_CONNECTION_AGE_GRACE, false);
+    }
+
+    public StockServer(int port, ConsistentHashRing ring, String shard, Duration maxConnectionAge,
+                       Duration maxConnectionAgeGrace, boolean limitConcurrency) throws IOException {
+        server = serverBuilder(port, maxConnectionAge, maxConnectionAgeGrace, limitConcurrency)
+                .addService(ServerInterceptors.intercept(stockService, new TickerShardInterceptor(ring, shard),
+                        new QuoteDeliveryInterceptor()))
+                .build();
+        warmupTicker = ownedTicker(ring, shard);
+    }
+
+    private static NettyServerBuilder serverBuilder(int port, Duration maxConnectionAge,
+                                                    Duration maxConnectionAgeGrace, boolean limitConcurrency) {
+        NettyServerBuilder builder = NettyServerBuilder.forPort(port)
+                .maxConnectionAge(maxConnectionAge.toNanos(), TimeUnit.NANOSECONDS)
+                .maxConnectionAgeGrace(maxConnectionAgeGrace.toNanos(), TimeUnit.NANOSECONDS);
+        if (limitConcurrency) {
+            builder.intercept(new ConcurrencyLimitInterceptor());
+        }
+        return builder;
+    }
+
+    private static String ownedTicker(ConsistentHashRing ring, String shard) {
+        String ticker = WARMUP_TICKER;
+        for (int i = 0; !shard.equals(ring.shardFor(ticker)); i++) {
+            ticker = WARMUP_TICKER + i;
+        }
+        return ticker;
+    }
+
+    /**
+     * Calls every method in-process until compilation has settled; run before {@link #start()}. The live
+     * subscription feed never completes and is left out.
+     */
+    public ServerWarmup.Report warmUp() throws IOException, InterruptedException {
+        Stock stock = Stock.newBuilder().setTickerSymbol(warmupTicker).build();
+        return ServerWarmup.forServices(server.getServices())
+                .request(StockQuoteProviderGrpc.getServerSideStreamingGetListStockQuotesMethod(), stock)
+                .request(StockQuoteProviderGrpc.getClientSideStreamingGetStatisticsOfStocksMethod(), stock, stock)
+                .request(StockQuoteProviderGrpc.getBidirectionalStreamingGetListsStockQuotesMethod(), stock, stock)
+                .request(StockQuoteProviderGrpc.getBidirectionalStreamingGetBatchedStockQuotesMethod(), stock, stock)
+                .skip(StockQuoteProviderGrpc.getSubscribeStockQuotesMethod())
+                .run();
+    }
+
+    /**
+     * @return the bound port, once started
+     */
+    public int getPort() {
+        return server.getPort();
     }
 
     public void start() throws IOException {
         server.start();
-        log.info("Server started, listening on " + port);
+        log.info("Server started, listening on {}", server.getPort());
         Runtime.getRuntime()
                 .addShutdownHook(new Thread() {
                     @Override
@@ -43,10 +125,19 @@ public class StockServer {
         if (server != null) {
             server.shutdown().awaitTermination(30, TimeUnit.SECONDS);
         }
+        stockService.close();
     }
 
+    /**
+     * Arguments: port (8980), then optionally this server's shard and the comma-separated shards of the cluster,
+     * e.g. {@code 8981 shard-1 shard-0,shard-1,shard-2}.
+     */
     public static void main(String[] args) throws Exception {
-        StockServer stockServer = new StockServer(8980);
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8980;
+        StockServer stockServer = args.length > 2
+                ? new StockServer(port, new ConsistentHashRing(Arrays.asList(args[2].split(","))), args[1])
+                : new StockServer(port);
+        stockServer.warmUp();
         stockServer.start();
         if (stockServer.server != null) {
             stockServer.server.awaitTermination();
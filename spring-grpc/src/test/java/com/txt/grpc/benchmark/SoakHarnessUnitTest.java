@@ -0,0 +1,98 @@
+package com.txt.grpc.benchmark;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SoakHarnessUnitTest {
+
+    private static final long MB = 1_000_000;
+
+    private static final SoakOptions OPTIONS = SoakOptions.parse(new String[]{
+            "--streams=1000", "--max-bytes-per-stream=10000", "--max-heap-growth-per-stream=1000",
+            "--max-direct-growth-per-stream=1000", "--max-thread-growth=2", "--max-rate-drop=0.2"});
+
+    private static final SoakHarness.Sample BASELINE = sample(0, 50 * MB, 0, 20, 0);
+
+    @Test
+    public void whenFiguresStayWithinThresholds_thenSoakPasses() {
+        SoakHarness.Result result = new SoakHarness.Result(OPTIONS, BASELINE, List.of(
+                sample(10, 55 * MB, 4 * MB, 40, 10_000),
+                sample(20, 55 * MB, 4 * MB, 42, 20_000),
+                sample(30, 55 * MB + 900_000, 4 * MB + 900_000, 42, 29_000)), 1010, 0);
+
+        assertTrue(result.passed(), String.join("; ", result.failures()));
+        assertEquals(29_000, result.received());
+        assertEquals(1010, result.opened());
+    }
+
+    @Test
+    public void whenHeapIsRetainedPerStream_thenSoakFails() {
+        SoakHarness.Result result = new SoakHarness.Result(OPTIONS, BASELINE, List.of(
+                sample(10, 70 * MB, 4 * MB, 40, 10_000),
+                sample(20, 70 * MB, 4 * MB, 40, 20_000)), 1000, 0);
+
+        assertEquals(List.of("retained heap per stream 20000 exceeds 10000"), result.failures());
+    }
+
+    @Test
+    public void whenHeapAndDirectMemoryGrow_thenSoakFails() {
+        SoakHarness.Result result = new SoakHarness.Result(OPTIONS, BASELINE, List.of(
+                sample(10, 55 * MB, 4 * MB, 40, 10_000),
+                sample(20, 57 * MB, 6 * MB, 40, 20_000)), 1000, 0);
+
+        assertEquals(List.of("heap growth per stream 2000 exceeds 1000",
+                "direct memory growth per stream 2000 exceeds 1000"), result.failures());
+    }
+
+    @Test
+    public void whenThreadsGrow_thenSoakFails() {
+        SoakHarness.Result result = new SoakHarness.Result(OPTIONS, BASELINE, List.of(
+                sample(10, 55 * MB, 4 * MB, 40, 10_000),
+                sample(20, 55 * MB, 4 * MB, 43, 20_000)), 1000, 0);
+
+        assertEquals(List.of("thread growth 3 exceeds 2"), result.failures());
+    }
+
+    @Test
+    public void whenAStreamFails_thenSoakFails() {
+        SoakHarness.Result result = new SoakHarness.Result(OPTIONS, BASELINE, List.of(
+                sample(10, 55 * MB, 4 * MB, 40, 10_000),
+                sample(20, 55 * MB, 4 * MB, 40, 20_000)), 1000, 1);
+
+        assertEquals(List.of("failed streams 1 exceeds 0"), result.failures());
+    }
+
+    @Test
+    public void whenResponseRateDrops_thenSoakFails() {
+        SoakHarness.Result result = new SoakHarness.Result(OPTIONS, BASELINE, List.of(
+                sample(10, 55 * MB, 4 * MB, 40, 10_000),
+                sample(20, 55 * MB, 4 * MB, 40, 20_000),
+                sample(30, 55 * MB, 4 * MB, 40, 27_000)), 1000, 0);
+
+        assertFalse(result.passed());
+        assertEquals(1, result.failures().size());
+        assertTrue(result.failures().get(0).startsWith("response rate dropped 30%, from 1000 to 700 msg/s"),
+                result.failures().get(0));
+    }
+
+    @Test
+    public void whenOnlyTwoSamplesWereTaken_thenRateIsNotCompared() {
+        SoakHarness.Result result = new SoakHarness.Result(OPTIONS, BASELINE, List.of(
+                sample(10, 55 * MB, 4 * MB, 40, 10_000),
+                sample(20, 55 * MB, 4 * MB, 40, 10_001)), 1000, 0);
+
+        assertTrue(result.passed(), String.join("; ", result.failures()));
+    }
+
+    private static SoakHarness.Sample sample(long elapsedSeconds, long heapUsed, long directUsed, int threads,
+                                             long received) {
+        return new SoakHarness.Sample(TimeUnit.SECONDS.toNanos(elapsedSeconds), heapUsed, directUsed, threads,
+                received, received);
+    }
+}
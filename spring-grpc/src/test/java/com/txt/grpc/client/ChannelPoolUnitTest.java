@@ -0,0 +1,77 @@
+package com.txt.grpc.client;
+
+import com.txt.grpc.service.StockService;
+import com.txt.grpc.streaming.Stock;
+import com.txt.grpc.streaming.StockQuote;
+import com.txt.grpc.streaming.StockQuoteProviderGrpc;
+import com.txt.grpc.testing.GrpcCleanup;
+import io.grpc.ManagedChannel;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+public class ChannelPoolUnitTest {
+
+    StockQuoteProviderGrpc.StockQuoteProviderStub nonBlockingStub;
+    ChannelPool channelPool;
+
+    private final GrpcCleanup grpcCleanup = new GrpcCleanup();
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        grpcCleanup.close();
+    }
+
+    @BeforeEach
+    public void setup() throws Exception {
+        String serverName = InProcessServerBuilder.generateName();
+        grpcCleanup.register(InProcessServerBuilder.forName(serverName)
+                .directExecutor()
+                .addService(grpcCleanup.register(new StockService()))
+                .build()
+                .start());
+
+        List<ManagedChannel> channels = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            channels.add(grpcCleanup.register(InProcessChannelBuilder.forName(serverName)
+                    .directExecutor()
+                    .build()));
+        }
+        channelPool = new ChannelPool(channels, ChannelPool.Selection.LEAST_OUTSTANDING);
+        nonBlockingStub = StockQuoteProviderGrpc.newStub(channelPool);
+    }
+
+    @Test
+    public void whenOpeningStreams_thenSpreadThemEvenlyAndReleaseOnClose() {
+        List<StreamObserver<Stock>> requestObservers = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            requestObservers.add(nonBlockingStub.bidirectionalStreamingGetListsStockQuotes(new StreamObserver<StockQuote>() {
+                @Override
+                public void onNext(StockQuote stockQuote) {
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                }
+
+                @Override
+                public void onCompleted() {
+                }
+            }));
+        }
+
+        assertArrayEquals(new int[]{2, 2, 2}, channelPool.outstandingCalls());
+
+        requestObservers.forEach(StreamObserver::onCompleted);
+
+        assertArrayEquals(new int[]{0, 0, 0}, channelPool.outstandingCalls());
+    }
+}
@@ -0,0 +1,76 @@
+package com.txt.grpc.client;
+
+import com.txt.grpc.errorhandling.CommodityClient;
+import com.txt.grpc.errorhandling.CommodityServer;
+import io.grpc.ClientInterceptors;
+import io.grpc.ManagedChannel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HedgingUnitTest {
+
+    private static final int CALLS = 20;
+    private static final Duration INJECTED_DELAY = Duration.ofMillis(500);
+
+    private CommodityServer fastServer;
+    private CommodityServer slowServer;
+    private String target;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        fastServer = new CommodityServer(0);
+        fastServer.start();
+        slowServer = new CommodityServer(0, INJECTED_DELAY, 1.0);
+        slowServer.start();
+        target = StaticAddressNameResolverProvider.target(List.of(
+                "127.0.0.1:" + slowServer.getPort(), "127.0.0.1:" + fastServer.getPort()));
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        fastServer.stop();
+        slowServer.stop();
+    }
+
+    @Test
+    public void whenOneBackendIsSlow_thenHedgedAttemptsWin() throws Exception {
+        HedgingMetricsInterceptor metrics = new HedgingMetricsInterceptor();
+        ManagedChannel channel = CommodityClient.newChannel(target,
+                CommodityClient.hedgingServiceConfig(Duration.ofMillis(50)));
+        try {
+            int failures = new CommodityClient(ClientInterceptors.intercept(channel, metrics))
+                    .getBestCommodityPrice(CALLS);
+
+            assertEquals(0, failures);
+            assertEquals(CALLS, metrics.successes());
+            assertTrue(metrics.hedgeWins() > 0, "no call was answered by a hedged attempt");
+            assertTrue(metrics.latencyPercentile(99).compareTo(INJECTED_DELAY) < 0,
+                    "p99 " + metrics.latencyPercentile(99) + " includes the injected delay");
+        } finally {
+            channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void whenNoPolicy_thenSlowBackendShowsInTail() throws Exception {
+        HedgingMetricsInterceptor metrics = new HedgingMetricsInterceptor();
+        ManagedChannel channel = CommodityClient.newChannel(target,
+                new ServiceConfigBuilder().loadBalancingPolicy("round_robin").build());
+        try {
+            new CommodityClient(ClientInterceptors.intercept(channel, metrics)).getBestCommodityPrice(4);
+
+            assertEquals(0, metrics.hedgeWins());
+            assertTrue(metrics.latencyPercentile(99).compareTo(INJECTED_DELAY) >= 0);
+        } finally {
+            channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+}
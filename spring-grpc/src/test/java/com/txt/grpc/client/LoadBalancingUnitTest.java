@@ -0,0 +1,171 @@
+package com.txt.grpc.client;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.txt.grpc.errorhandling.Commodity;
+import com.txt.grpc.errorhandling.CommodityPriceProviderGrpc;
+import com.txt.grpc.errorhandling.CommodityQuote;
+import com.txt.grpc.interceptor.AccessTokenInterceptor;
+import com.txt.grpc.interceptor.DelayInjectionInterceptor;
+import com.txt.grpc.service.CommodityService;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Metadata;
+import io.grpc.Server;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.ServerInterceptors;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LoadBalancingUnitTest {
+
+    private static final Commodity REQUEST = Commodity.newBuilder()
+            .setCommodityName("Commodity1")
+            .setAccessToken("123validToken")
+            .build();
+
+    private final List<Replica> replicas = new ArrayList<>();
+    private ManagedChannel channel;
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        if (channel != null) {
+            channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        }
+        for (Replica replica : replicas) {
+            replica.server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void whenRoundRobin_thenCallsAreSpreadEvenly() throws Exception {
+        startReplicas(3, Duration.ZERO);
+        CommodityPriceProviderGrpc.CommodityPriceProviderBlockingStub stub =
+                CommodityPriceProviderGrpc.newBlockingStub(channel("round_robin", addresses()));
+
+        warmUp(stub);
+        for (int i = 0; i < 300; i++) {
+            stub.getBestCommodityPrice(REQUEST);
+        }
+
+        for (Replica replica : replicas) {
+            assertEquals(100, replica.calls.get());
+        }
+    }
+
+    @Test
+    public void whenOneReplicaIsSlow_thenLeastRequestSendsItFewerCalls() throws Exception {
+        startReplicas(2, Duration.ZERO);
+        startReplica(Duration.ofMillis(100));
+        CommodityPriceProviderGrpc.CommodityPriceProviderFutureStub stub = CommodityPriceProviderGrpc.newFutureStub(
+                channel(WeightedLeastRequestLoadBalancerProvider.POLICY_NAME, addresses()));
+
+        int calls = 600;
+        Semaphore inFlight = new Semaphore(8);
+        for (int i = 0; i < calls; i++) {
+            inFlight.acquire();
+            ListenableFuture<CommodityQuote> quote = stub.getBestCommodityPrice(REQUEST);
+            quote.addListener(inFlight::release, MoreExecutors.directExecutor());
+        }
+        assertTrue(inFlight.tryAcquire(8, 10, TimeUnit.SECONDS));
+
+        int slowCalls = replicas.get(2).calls.get();
+        assertTrue(slowCalls < calls / 6, "slow replica got " + slowCalls + " of " + calls + " calls");
+    }
+
+    @Test
+    public void whenReplicasAreWeighted_thenIdleCallsFollowTheWeights() throws Exception {
+        startReplicas(3, Duration.ZERO);
+        List<String> addresses = addresses();
+        addresses.set(2, addresses.get(2) + "*2");
+        CommodityPriceProviderGrpc.CommodityPriceProviderBlockingStub stub = CommodityPriceProviderGrpc
+                .newBlockingStub(channel(WeightedLeastRequestLoadBalancerProvider.POLICY_NAME, addresses));
+
+        warmUp(stub);
+        int calls = 400;
+        for (int i = 0; i < calls; i++) {
+            stub.getBestCommodityPrice(REQUEST);
+        }
+
+        int heavy = replicas.get(2).calls.get();
+        assertTrue(heavy > calls * 0.4 && heavy < calls * 0.6, "weighted replica got " + heavy + " of " + calls);
+    }
+
+    /**
+     * Connects to every replica, which the policies only use once ready, then clears the counts.
+     */
+    private void warmUp(CommodityPriceProviderGrpc.CommodityPriceProviderBlockingStub stub) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (replicas.stream().anyMatch(replica -> replica.calls.get() == 0) && System.nanoTime() < deadline) {
+            stub.getBestCommodityPrice(REQUEST);
+        }
+        replicas.forEach(replica -> replica.calls.set(0));
+    }
+
+    private void startReplicas(int count, Duration delay) throws Exception {
+        for (int i = 0; i < count; i++) {
+            startReplica(delay);
+        }
+    }
+
+    private void startReplica(Duration delay) throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        ServerInterceptor counting = new ServerInterceptor() {
+            @Override
+            public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call,
+                                                                         Metadata headers,
+                                                                         ServerCallHandler<ReqT, RespT> next) {
+                calls.incrementAndGet();
+                return next.startCall(call, headers);
+            }
+        };
+        Server server = NettyServerBuilder.forPort(0)
+                .addService(ServerInterceptors.intercept(new CommodityService(), new AccessTokenInterceptor(),
+                        new DelayInjectionInterceptor(delay, 1.0), counting))
+                .build()
+                .start();
+        replicas.add(new Replica(server, calls));
+    }
+
+    private List<String> addresses() {
+        List<String> addresses = new ArrayList<>();
+        for (Replica replica : replicas) {
+            addresses.add("127.0.0.1:" + replica.server.getPort());
+        }
+        return addresses;
+    }
+
+    private ManagedChannel channel(String policy, List<String> addresses) {
+        StaticAddressNameResolverProvider.register();
+        WeightedLeastRequestLoadBalancerProvider.register();
+        channel = ManagedChannelBuilder.forTarget(StaticAddressNameResolverProvider.target(addresses))
+                .usePlaintext()
+                .defaultServiceConfig(new ServiceConfigBuilder().loadBalancingPolicy(policy).build())
+                .build();
+        return channel;
+    }
+
+    private static final class Replica {
+
+        private final Server server;
+        private final AtomicInteger calls;
+
+        private Replica(Server server, AtomicInteger calls) {
+            this.server = server;
+            this.calls = calls;
+        }
+    }
+}
@@ -3,42 +3,62 @@ package com.txt.grpc.errorhandling;
 import com.google.protobuf.Any;
 import com.google.rpc.Code;
 import com.google.rpc.ErrorInfo;
+import com.txt.grpc.interceptor.AccessTokenInterceptor;
+import com.txt.grpc.pricing.PriceTable;
 import com.txt.grpc.service.CommodityService;
+import com.txt.grpc.service.WriteCoalescing;
+import com.txt.grpc.testing.GrpcCleanup;
+import io.grpc.ManagedChannel;
 import io.grpc.Metadata;
+import io.grpc.ServerInterceptors;
 import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
 import io.grpc.inprocess.InProcessChannelBuilder;
 import io.grpc.inprocess.InProcessServerBuilder;
 import io.grpc.protobuf.ProtoUtils;
 import io.grpc.protobuf.StatusProto;
-import io.grpc.testing.GrpcCleanupRule;
-import org.junit.Rule;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class CommodityServerUnitTest {
 
     CommodityPriceProviderGrpc.CommodityPriceProviderBlockingStub blockingStub;
+    CommodityPriceProviderGrpc.CommodityPriceProviderStub nonBlockingStub;
+
+    private final GrpcCleanup grpcCleanup = new GrpcCleanup();
 
-    @Rule
-    public final GrpcCleanupRule grpcCleanup = new GrpcCleanupRule();
+    @AfterEach
+    public void tearDown() throws Exception {
+        grpcCleanup.close();
+    }
 
     @BeforeEach
     public void setup() throws Exception {
         String serverName = InProcessServerBuilder.generateName();
         grpcCleanup.register(InProcessServerBuilder.forName(serverName)
                 .directExecutor()
-                .addService(new CommodityService())
+                .addService(ServerInterceptors.intercept(new CommodityService(), new AccessTokenInterceptor()))
                 .build()
                 .start());
 
-        blockingStub = CommodityPriceProviderGrpc.newBlockingStub(grpcCleanup.register(InProcessChannelBuilder.forName(serverName)
+        ManagedChannel channel = grpcCleanup.register(InProcessChannelBuilder.forName(serverName)
                 .directExecutor()
-                .build()));
+                .build());
+        blockingStub = CommodityPriceProviderGrpc.newBlockingStub(channel);
+        nonBlockingStub = CommodityPriceProviderGrpc.newStub(channel);
     }
 
     @Test
@@ -91,4 +111,144 @@ public class CommodityServerUnitTest {
         assertEquals("123validToken", errorResponse.getAccessToken());
         assertEquals("Only Commodity1, Commodity2 are supported", errorResponse.getExpectedValue());
     }
+
+    @Test
+    public void whenPriceTableListsOtherCommodities_thenExpectTheirNames() throws Exception {
+        String serverName = InProcessServerBuilder.generateName();
+        PriceTable table = PriceTable.of(Map.of("Silver", 24.0, "Gold", 1900.0, "Copper", 3.8));
+        grpcCleanup.register(InProcessServerBuilder.forName(serverName)
+                .directExecutor()
+                .addService(ServerInterceptors.intercept(new CommodityService(() -> table, WriteCoalescing.DISABLED),
+                        new AccessTokenInterceptor()))
+                .build()
+                .start());
+        CommodityPriceProviderGrpc.CommodityPriceProviderBlockingStub stub = CommodityPriceProviderGrpc.newBlockingStub(
+                grpcCleanup.register(InProcessChannelBuilder.forName(serverName).directExecutor().build()));
+        Commodity request = Commodity.newBuilder()
+                .setAccessToken("123validToken")
+                .setCommodityName("Commodity1")
+                .build();
+
+        StatusRuntimeException thrown = Assertions.assertThrows(StatusRuntimeException.class, () -> stub.getBestCommodityPrice(request));
+
+        ErrorResponse errorResponse = Status.trailersFromThrowable(thrown)
+                .get(ProtoUtils.keyForProto(ErrorResponse.getDefaultInstance()));
+        assertEquals("Only Copper, Gold, Silver are supported", errorResponse.getExpectedValue());
+    }
+
+    @Test
+    public void whenUsingInvalidCommodityNameAndToken_thenReportTheCommodityFirst() {
+        Commodity request = Commodity.newBuilder()
+                .setAccessToken("invalidToken")
+                .setCommodityName("Commodity5")
+                .build();
+
+        StatusRuntimeException thrown = Assertions.assertThrows(StatusRuntimeException.class, () -> blockingStub.getBestCommodityPrice(request));
+
+        assertEquals(Status.Code.INVALID_ARGUMENT, thrown.getStatus().getCode());
+        ErrorResponse errorResponse = Status.trailersFromThrowable(thrown)
+                .get(ProtoUtils.keyForProto(ErrorResponse.getDefaultInstance()));
+        assertEquals("invalidToken", errorResponse.getAccessToken());
+    }
+
+    @Test
+    public void whenServiceIsNotBehindTheTokenInterceptor_thenRejectUnaryCalls() throws Exception {
+        String serverName = InProcessServerBuilder.generateName();
+        grpcCleanup.register(InProcessServerBuilder.forName(serverName)
+                .directExecutor()
+                .addService(new CommodityService())
+                .build()
+                .start());
+        CommodityPriceProviderGrpc.CommodityPriceProviderBlockingStub unguardedStub =
+                CommodityPriceProviderGrpc.newBlockingStub(grpcCleanup.register(
+                        InProcessChannelBuilder.forName(serverName).directExecutor().build()));
+        Commodity request = Commodity.newBuilder()
+                .setAccessToken("123validToken")
+                .setCommodityName("Commodity1")
+                .build();
+
+        StatusRuntimeException thrown = Assertions.assertThrows(StatusRuntimeException.class, () -> unguardedStub.getBestCommodityPrice(request));
+
+        assertEquals(Status.Code.NOT_FOUND, thrown.getStatus().getCode());
+    }
+
+    @Test
+    public void whenUsingBatchRequest_thenReturnQuotesAndPerItemStatusInOrder() throws Exception {
+        CommodityQuoteBatch reply = blockingStub.getBestCommodityPrices(CommodityBatch.newBuilder()
+                .setAccessToken("123validToken")
+                .addCommodityName("Commodity1")
+                .addCommodityName("Commodity5")
+                .addCommodityName("Commodity2")
+                .build());
+
+        assertEquals(3, reply.getQuotesCount());
+        assertEquals("Commodity1", reply.getQuotes(0).getComodityQuote().getCommodityName());
+        assertEquals("Commodity2", reply.getQuotes(2).getComodityQuote().getCommodityName());
+        com.google.rpc.Status status = reply.getQuotes(1).getStatus();
+        assertEquals("INVALID_ARGUMENT", Code.forNumber(status.getCode()).toString());
+        ErrorResponse errorResponse = status.getDetails(0).unpack(ErrorResponse.class);
+        assertEquals("Commodity5", errorResponse.getCommodityName());
+    }
+
+    @Test
+    public void whenUsingLargeBatchRequest_thenReturnEveryQuote() {
+        CommodityBatch.Builder request = CommodityBatch.newBuilder().setAccessToken("123validToken");
+        for (int i = 0; i < 200; i++) {
+            request.addCommodityName("Commodity" + (i % 2 + 1));
+        }
+
+        CommodityQuoteBatch reply = blockingStub.getBestCommodityPrices(request.build());
+
+        assertEquals(200, reply.getQuotesCount());
+        for (int i = 0; i < 200; i++) {
+            assertEquals("Commodity" + (i % 2 + 1), reply.getQuotes(i).getComodityQuote().getCommodityName());
+        }
+    }
+
+    @Test
+    public void whenUsingInvalidBatchToken_thenReturnExceptionGoogleRPCStatus() {
+        CommodityBatch request = CommodityBatch.newBuilder()
+                .setAccessToken("invalidToken")
+                .addCommodityName("Commodity1")
+                .build();
+
+        StatusRuntimeException thrown = Assertions.assertThrows(StatusRuntimeException.class, () -> blockingStub.getBestCommodityPrices(request));
+
+        com.google.rpc.Status status = StatusProto.fromThrowable(thrown);
+        assertNotNull(status);
+        assertEquals("NOT_FOUND", Code.forNumber(status.getCode()).toString());
+    }
+
+    @Test
+    public void whenStreamingWithInvalidToken_thenReturnStatusAndKeepStreamOpen() throws Exception {
+        List<StreamingCommodityQuote> quotes = new ArrayList<>();
+        CountDownLatch finishLatch = new CountDownLatch(1);
+        StreamObserver<Commodity> requestObserver = nonBlockingStub.bidirectionalListOfPrices(new StreamObserver<>() {
+            @Override
+            public void onNext(StreamingCommodityQuote streamingCommodityQuote) {
+                quotes.add(streamingCommodityQuote);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                finishLatch.countDown();
+            }
+
+            @Override
+            public void onCompleted() {
+                finishLatch.countDown();
+            }
+        });
+
+        requestObserver.onNext(Commodity.newBuilder().setCommodityName("Commodity1").setAccessToken("invalidToken").build());
+        requestObserver.onNext(Commodity.newBuilder().setCommodityName("Commodity1").setAccessToken("123validToken").build());
+        requestObserver.onCompleted();
+
+        assertTrue(finishLatch.await(5, TimeUnit.SECONDS));
+        assertEquals(6, quotes.size());
+        assertEquals("NOT_FOUND", Code.forNumber(quotes.get(0).getStatus().getCode()).toString());
+        assertEquals("The access token not found", quotes.get(0).getStatus().getMessage());
+        assertTrue(quotes.get(0).getLast());
+        assertEquals("Commodity1", quotes.get(1).getComodityQuote().getCommodityName());
+    }
 }
@@ -0,0 +1,169 @@
+package com.txt.grpc.errorhandling;
+
+import com.google.rpc.Code;
+import com.txt.grpc.interceptor.AccessTokenInterceptor;
+import com.txt.grpc.service.CommodityService;
+import com.txt.grpc.testing.GrpcCleanup;
+import io.grpc.ManagedChannel;
+import io.grpc.ServerInterceptors;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PipelinedCommodityClientUnitTest {
+
+    private final GrpcCleanup grpcCleanup = new GrpcCleanup();
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        grpcCleanup.close();
+    }
+
+    private ManagedChannel startServer(CommodityPriceProviderGrpc.CommodityPriceProviderImplBase service)
+            throws Exception {
+        String serverName = InProcessServerBuilder.generateName();
+        grpcCleanup.register(InProcessServerBuilder.forName(serverName)
+                .addService(ServerInterceptors.intercept(service, new AccessTokenInterceptor()))
+                .build()
+                .start());
+        return grpcCleanup.register(InProcessChannelBuilder.forName(serverName).build());
+    }
+
+    private static Commodity commodity(String name, String accessToken) {
+        return Commodity.newBuilder().setCommodityName(name).setAccessToken(accessToken).build();
+    }
+
+    @Test
+    public void whenPipeliningManyRequests_thenEachFutureGetsItsOwnQuote() throws Exception {
+        ManagedChannel channel = startServer(new CommodityService());
+        List<CompletableFuture<CommodityQuote>> quotes = new ArrayList<>();
+        try (PipelinedCommodityClient client = new PipelinedCommodityClient(channel, 8)) {
+            for (int i = 0; i < 500; i++) {
+                quotes.add(client.bestPrice(commodity("Commodity" + (i % 2 + 1), "123validToken")));
+                assertTrue(client.inFlight() <= 8);
+            }
+        }
+
+        for (int i = 0; i < quotes.size(); i++) {
+            CommodityQuote quote = quotes.get(i).get(5, TimeUnit.SECONDS);
+            assertEquals("Commodity" + (i % 2 + 1), quote.getCommodityName());
+        }
+    }
+
+    @Test
+    public void whenRequestFails_thenOnlyItsFutureFailsAndPublisherCarriesStatus() throws Exception {
+        ManagedChannel channel = startServer(new CommodityService());
+        try (PipelinedCommodityClient client = new PipelinedCommodityClient(channel, 4)) {
+            CompletableFuture<CommodityQuote> invalidToken = client.bestPrice(commodity("Commodity1", "invalidToken"));
+            Flow.Publisher<StreamingCommodityQuote> unsupported =
+                    client.prices(commodity("Commodity5", "123validToken"));
+            CompletableFuture<CommodityQuote> valid = client.bestPrice(commodity("Commodity2", "123validToken"));
+
+            ExecutionException thrown = assertThrows(ExecutionException.class,
+                    () -> invalidToken.get(5, TimeUnit.SECONDS));
+            assertEquals(Status.Code.NOT_FOUND, ((StatusRuntimeException) thrown.getCause()).getStatus().getCode());
+            assertEquals("Commodity2", valid.get(5, TimeUnit.SECONDS).getCommodityName());
+
+            List<StreamingCommodityQuote> published = new ArrayList<>();
+            CountDownLatch completed = new CountDownLatch(1);
+            unsupported.subscribe(new Flow.Subscriber<>() {
+                @Override
+                public void onSubscribe(Flow.Subscription subscription) {
+                    subscription.request(Long.MAX_VALUE);
+                }
+
+                @Override
+                public void onNext(StreamingCommodityQuote item) {
+                    published.add(item);
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                }
+
+                @Override
+                public void onComplete() {
+                    completed.countDown();
+                }
+            });
+            assertTrue(completed.await(5, TimeUnit.SECONDS));
+            assertEquals(1, published.size());
+            assertEquals(Code.INVALID_ARGUMENT.getNumber(), published.get(0).getStatus().getCode());
+        }
+    }
+
+    @Test
+    public void whenWindowIsFull_thenProducerBlocksUntilAnAnswer() throws Exception {
+        BlockingQueue<Runnable> answers = new LinkedBlockingQueue<>();
+        AtomicInteger received = new AtomicInteger();
+        ManagedChannel channel = startServer(new CommodityPriceProviderGrpc.CommodityPriceProviderImplBase() {
+            @Override
+            public StreamObserver<Commodity> bidirectionalListOfPrices(
+                    StreamObserver<StreamingCommodityQuote> responseObserver) {
+                return new StreamObserver<>() {
+                    @Override
+                    public void onNext(Commodity request) {
+                        received.incrementAndGet();
+                        answers.add(() -> responseObserver.onNext(StreamingCommodityQuote.newBuilder()
+                                .setComodityQuote(CommodityQuote.newBuilder()
+                                        .setCommodityName(request.getCommodityName()))
+                                .setRequestId(request.getRequestId())
+                                .setLast(true)
+                                .build()));
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                    }
+
+                    @Override
+                    public void onCompleted() {
+                        answers.add(responseObserver::onCompleted);
+                    }
+                };
+            }
+        });
+
+        PipelinedCommodityClient client = new PipelinedCommodityClient(channel, 2);
+        client.bestPrice(commodity("Commodity1", "123validToken"));
+        client.bestPrice(commodity("Commodity1", "123validToken"));
+        CountDownLatch thirdSent = new CountDownLatch(1);
+        Thread producer = new Thread(() -> {
+            try {
+                client.bestPrice(commodity("Commodity2", "123validToken"));
+                thirdSent.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+
+        assertFalse(thirdSent.await(200, TimeUnit.MILLISECONDS));
+        assertEquals(2, received.get());
+
+        answers.take().run();
+        assertTrue(thirdSent.await(5, TimeUnit.SECONDS));
+        producer.join();
+        client.close();
+    }
+}
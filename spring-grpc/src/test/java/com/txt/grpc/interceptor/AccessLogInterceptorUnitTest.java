@@ -0,0 +1,99 @@
+package com.txt.grpc.interceptor;
+
+import com.txt.grpc.hello.HelloRequest;
+import com.txt.grpc.hello.HelloServiceGrpc;
+import com.txt.grpc.service.HelloServiceImpl;
+import com.txt.grpc.testing.GrpcCleanup;
+import io.grpc.ManagedChannel;
+import io.grpc.ServerInterceptors;
+import io.grpc.Status;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AccessLogInterceptorUnitTest {
+
+    private final GrpcCleanup grpcCleanup = new GrpcCleanup();
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        grpcCleanup.close();
+    }
+
+    @TempDir
+    Path directory;
+
+    private HelloServiceGrpc.HelloServiceBlockingStub start(AccessLogInterceptor interceptor) throws Exception {
+        String serverName = InProcessServerBuilder.generateName();
+        grpcCleanup.register(InProcessServerBuilder.forName(serverName)
+                .directExecutor()
+                .addService(ServerInterceptors.intercept(new HelloServiceImpl(), interceptor))
+                .build()
+                .start());
+        ManagedChannel channel = grpcCleanup.register(InProcessChannelBuilder.forName(serverName)
+                .directExecutor()
+                .build());
+        return HelloServiceGrpc.newBlockingStub(channel);
+    }
+
+    @Test
+    public void whenMethodIsSampled_thenEveryCallIsWrittenAsJsonLine() throws Exception {
+        Path file = directory.resolve("logs").resolve("access.log");
+        AccessLogWriter writer = new AccessLogWriter(file, 64);
+        HelloServiceGrpc.HelloServiceBlockingStub stub = start(new AccessLogInterceptor(writer, 0,
+                Map.of(HelloServiceGrpc.getHelloMethod().getFullMethodName(), 1.0)));
+
+        for (int i = 0; i < 3; i++) {
+            stub.hello(HelloRequest.newBuilder().setFirstName("Ada").setLastName("Lovelace").build());
+        }
+        writer.close();
+
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(3, lines.size());
+        assertEquals(3, writer.written());
+        String line = lines.get(0);
+        assertTrue(line.startsWith("{\"ts\":\""), line);
+        assertTrue(line.contains("\"method\":\"com.txt.grpc.hello.HelloService/hello\""), line);
+        assertTrue(line.contains("\"status\":\"OK\""), line);
+        assertTrue(line.contains("\"received\":1,\"sent\":1"), line);
+        assertFalse(line.contains("Lovelace"), "payloads must not be logged");
+    }
+
+    @Test
+    public void whenSampleRateIsZero_thenNothingIsWritten() throws Exception {
+        Path file = directory.resolve("access.log");
+        AccessLogWriter writer = new AccessLogWriter(file, 64);
+        HelloServiceGrpc.HelloServiceBlockingStub stub = start(new AccessLogInterceptor(writer, 0, Map.of()));
+
+        stub.hello(HelloRequest.newBuilder().setFirstName("Ada").build());
+        writer.close();
+
+        assertEquals(0, Files.readAllLines(file).size());
+    }
+
+    @Test
+    public void whenRingIsFull_thenEntriesAreDroppedWithoutBlocking() throws Exception {
+        Path file = directory.resolve("access.log");
+        AccessLogWriter writer = new AccessLogWriter(file, 2);
+        int offered = 100_000;
+        for (int i = 0; i < offered; i++) {
+            writer.offer(new AccessLogWriter.Entry(0, "m", null, Status.Code.OK, 0, 1, 1, 1.0));
+        }
+        writer.close();
+
+        assertTrue(writer.dropped() > 0);
+        assertEquals(offered, writer.written() + writer.dropped());
+        assertEquals(writer.written(), Files.readAllLines(file).size());
+    }
+}
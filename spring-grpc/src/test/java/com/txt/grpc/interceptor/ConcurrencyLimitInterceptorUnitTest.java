@@ -0,0 +1,224 @@
+package com.txt.grpc.interceptor;
+
+import com.txt.grpc.errorhandling.Commodity;
+import com.txt.grpc.errorhandling.CommodityPriceProviderGrpc;
+import com.txt.grpc.errorhandling.StreamingCommodityQuote;
+import com.txt.grpc.hello.HelloRequest;
+import com.txt.grpc.hello.HelloResponse;
+import com.txt.grpc.hello.HelloServiceGrpc;
+import com.txt.grpc.service.CommodityService;
+import com.txt.grpc.testing.GrpcCleanup;
+import io.grpc.ManagedChannel;
+import io.grpc.ServerInterceptors;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ConcurrencyLimitInterceptorUnitTest {
+
+    private final GrpcCleanup grpcCleanup = new GrpcCleanup();
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        grpcCleanup.close();
+    }
+
+    private ManagedChannel start(ServerServiceDefinition service) throws Exception {
+        String serverName = InProcessServerBuilder.generateName();
+        grpcCleanup.register(InProcessServerBuilder.forName(serverName)
+                .addService(service)
+                .build()
+                .start());
+        return grpcCleanup.register(InProcessChannelBuilder.forName(serverName).build());
+    }
+
+    @Test
+    public void whenUnaryLimitIsReached_thenRejectWithRetryPushback() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        ConcurrencyLimitInterceptor interceptor = new ConcurrencyLimitInterceptor(
+                () -> ConcurrencyLimit.fixed(1, Duration.ofMillis(250)),
+                () -> ConcurrencyLimit.fixed(1, Duration.ofSeconds(1)));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        interceptor.bindTo(registry);
+        ManagedChannel channel = start(ServerInterceptors.intercept(new HelloServiceGrpc.HelloServiceImplBase() {
+            @Override
+            public void hello(HelloRequest request, StreamObserver<HelloResponse> responseObserver) {
+                started.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                responseObserver.onNext(HelloResponse.newBuilder().setGreeting("Hello").build());
+                responseObserver.onCompleted();
+            }
+        }, interceptor));
+
+        CountDownLatch firstDone = new CountDownLatch(1);
+        HelloServiceGrpc.newStub(channel).hello(HelloRequest.getDefaultInstance(), new StreamObserver<>() {
+            @Override
+            public void onNext(HelloResponse value) {
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                firstDone.countDown();
+            }
+
+            @Override
+            public void onCompleted() {
+                firstDone.countDown();
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        HelloServiceGrpc.HelloServiceBlockingStub blockingStub = HelloServiceGrpc.newBlockingStub(channel);
+        StatusRuntimeException thrown = assertThrows(StatusRuntimeException.class,
+                () -> blockingStub.hello(HelloRequest.getDefaultInstance()));
+        assertEquals(Status.Code.RESOURCE_EXHAUSTED, thrown.getStatus().getCode());
+        assertEquals("250", thrown.getTrailers().get(ConcurrencyLimitInterceptor.RETRY_PUSHBACK_MS));
+        assertEquals(1.0, registry.get("grpc.server.concurrency.rejected").functionCounter().count());
+
+        release.countDown();
+        assertTrue(firstDone.await(5, TimeUnit.SECONDS));
+        assertEquals("Hello", blockingStub.hello(HelloRequest.getDefaultInstance()).getGreeting());
+    }
+
+    @Test
+    public void whenStreamLimitIsReached_thenUnaryCallsStillPass() throws Exception {
+        ConcurrencyLimitInterceptor interceptor = new ConcurrencyLimitInterceptor(
+                () -> ConcurrencyLimit.adaptive(4, 4, 8, 1.5, 0.2),
+                () -> ConcurrencyLimit.fixed(1, Duration.ofSeconds(1)));
+        ManagedChannel channel = start(ServerInterceptors.intercept(new CommodityService(),
+                new AccessTokenInterceptor(), interceptor));
+        CommodityPriceProviderGrpc.CommodityPriceProviderStub stub = CommodityPriceProviderGrpc.newStub(channel);
+
+        AtomicReference<Throwable> firstError = new AtomicReference<>();
+        CountDownLatch admitted = new CountDownLatch(1);
+        StreamObserver<Commodity> open = stub.bidirectionalListOfPrices(
+                new NoopObserver(firstError, admitted, null));
+        open.onNext(Commodity.newBuilder().setCommodityName("Commodity1").setAccessToken("123validToken").build());
+        assertTrue(admitted.await(5, TimeUnit.SECONDS));
+        CountDownLatch rejected = new CountDownLatch(1);
+        AtomicReference<Throwable> secondError = new AtomicReference<>();
+        stub.bidirectionalListOfPrices(new NoopObserver(secondError, null, rejected));
+
+        assertTrue(rejected.await(5, TimeUnit.SECONDS));
+        assertEquals(Status.Code.RESOURCE_EXHAUSTED, Status.fromThrowable(secondError.get()).getCode());
+        assertEquals("Commodity1", CommodityPriceProviderGrpc.newBlockingStub(channel)
+                .getBestCommodityPrice(Commodity.newBuilder()
+                        .setCommodityName("Commodity1")
+                        .setAccessToken("123validToken")
+                        .build())
+                .getCommodityName());
+        assertNull(firstError.get());
+        open.onCompleted();
+    }
+
+    @Test
+    public void whenDeadlineExpiresBeforeTheServerCloses_thenCountItAsDropped() throws Exception {
+        ConcurrencyLimitInterceptor interceptor = new ConcurrencyLimitInterceptor(
+                () -> ConcurrencyLimit.adaptive(20, 4, 500, 1.5, 0.2),
+                () -> ConcurrencyLimit.fixed(1, Duration.ofSeconds(1)));
+        ManagedChannel channel = start(ServerInterceptors.intercept(new HelloServiceGrpc.HelloServiceImplBase() {
+            @Override
+            public void hello(HelloRequest request, StreamObserver<HelloResponse> responseObserver) {
+                try {
+                    Thread.sleep(300);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, interceptor));
+
+        StatusRuntimeException thrown = assertThrows(StatusRuntimeException.class,
+                () -> HelloServiceGrpc.newBlockingStub(channel)
+                        .withDeadlineAfter(50, TimeUnit.MILLISECONDS)
+                        .hello(HelloRequest.getDefaultInstance()));
+        assertEquals(Status.Code.DEADLINE_EXCEEDED, thrown.getStatus().getCode());
+
+        String method = HelloServiceGrpc.getHelloMethod().getFullMethodName();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (interceptor.limit(method) >= 20 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(interceptor.limit(method) < 20, "limit " + interceptor.limit(method));
+    }
+
+    @Test
+    public void whenLatencyRises_thenAdaptiveLimitShrinksAndRecovers() {
+        ConcurrencyLimit limit = ConcurrencyLimit.adaptive(20, 4, 200, 1.5, 0.5);
+        long fast = TimeUnit.MILLISECONDS.toNanos(5);
+        for (int i = 0; i < 200; i++) {
+            assertTrue(limit.tryAcquire());
+            limit.release(fast, limit.limit());
+        }
+        int grown = limit.limit();
+        assertTrue(grown > 20, "limit " + grown);
+
+        for (int i = 0; i < 50; i++) {
+            assertTrue(limit.tryAcquire());
+            limit.release(fast * 10, limit.limit());
+        }
+        assertTrue(limit.limit() < grown / 2, "limit " + limit.limit());
+        assertTrue(limit.retryAfterMillis() >= 5);
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(limit.tryAcquire());
+            limit.releaseDropped();
+        }
+        assertTrue(limit.limit() >= 4);
+    }
+
+    private static final class NoopObserver implements StreamObserver<StreamingCommodityQuote> {
+
+        private final AtomicReference<Throwable> error;
+        private final CountDownLatch received;
+        private final CountDownLatch done;
+
+        private NoopObserver(AtomicReference<Throwable> error, CountDownLatch received, CountDownLatch done) {
+            this.error = error;
+            this.received = received;
+            this.done = done;
+        }
+
+        @Override
+        public void onNext(StreamingCommodityQuote value) {
+            if (received != null) {
+                received.countDown();
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            error.set(t);
+            if (done != null) {
+                done.countDown();
+            }
+        }
+
+        @Override
+        public void onCompleted() {
+            if (done != null) {
+                done.countDown();
+            }
+        }
+    }
+}
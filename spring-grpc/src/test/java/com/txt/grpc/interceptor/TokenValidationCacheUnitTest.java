@@ -0,0 +1,99 @@
+package com.txt.grpc.interceptor;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TokenValidationCacheUnitTest {
+
+    @Test
+    public void whenTokenIsCached_thenValidateItOncePerTtl() {
+        AtomicInteger validations = new AtomicInteger();
+        TokenValidationCache cache = new TokenValidationCache(token -> {
+            validations.incrementAndGet();
+            return token.equals("123validToken");
+        }, 10, Duration.ofMinutes(1));
+
+        assertTrue(cache.isValid("123validToken"));
+        assertTrue(cache.isValid("123validToken"));
+        assertFalse(cache.isValid("invalidToken"));
+        assertFalse(cache.isValid("invalidToken"));
+        assertEquals(2, validations.get());
+    }
+
+    @Test
+    public void whenInvalidTokensFloodTheCache_thenValidatedTokensStayCached() {
+        AtomicInteger validations = new AtomicInteger();
+        TokenValidationCache cache = new TokenValidationCache(token -> {
+            validations.incrementAndGet();
+            return token.equals("123validToken");
+        }, 10, Duration.ofMinutes(1));
+
+        assertTrue(cache.isValid("123validToken"));
+        for (int i = 0; i < 1_000; i++) {
+            assertFalse(cache.isValid("invalidToken" + i));
+        }
+        assertTrue(cache.isValid("123validToken"));
+        assertEquals(1_001, validations.get());
+    }
+
+    @Test
+    public void whenCacheIsFull_thenEvictATenthAtOnce() {
+        TokenValidationCache cache = new TokenValidationCache(token -> false, 100, Duration.ofMinutes(1));
+        for (int i = 0; i < 100; i++) {
+            cache.isValid("invalidToken" + i);
+        }
+        assertEquals(100, cache.size());
+
+        cache.isValid("invalidToken100");
+        assertEquals(91, cache.size());
+        for (int i = 101; i < 110; i++) {
+            cache.isValid("invalidToken" + i);
+        }
+        assertEquals(100, cache.size());
+    }
+
+    @Test
+    public void whenManyThreadsInsertTokens_thenNeverHoldMoreThanMaxSize() throws Exception {
+        int maxSize = 16;
+        TokenValidationCache cache = new TokenValidationCache(token -> true, maxSize, Duration.ofMinutes(1));
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger largest = new AtomicInteger();
+        ExecutorService inserters = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                results.add(inserters.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < 2_000; i++) {
+                        cache.isValid(thread + "-" + i);
+                        largest.accumulateAndGet(cache.size(), Math::max);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> result : results) {
+                result.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            inserters.shutdownNow();
+        }
+
+        assertTrue(largest.get() <= maxSize, largest.get() + " entries");
+    }
+}
@@ -0,0 +1,226 @@
+package com.txt.grpc.journal;
+
+import com.txt.grpc.marketdata.MarketDataHub;
+import com.txt.grpc.service.QuoteReplayService;
+import com.txt.grpc.streaming.JournaledStockQuote;
+import com.txt.grpc.streaming.StockQuote;
+import com.txt.grpc.streaming.StockQuoteJournalGrpc;
+import com.txt.grpc.streaming.StockReplayRequest;
+import com.txt.grpc.testing.GrpcCleanup;
+import io.grpc.Context;
+import io.grpc.ManagedChannel;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class QuoteJournalUnitTest {
+
+    @TempDir
+    Path directory;
+
+    private final GrpcCleanup grpcCleanup = new GrpcCleanup();
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        grpcCleanup.close();
+    }
+
+    @Test
+    public void whenSegmentsFillUp_thenRollAndKeepReadingInOrder() throws Exception {
+        try (QuoteJournal journal = new QuoteJournal(directory, 1024, 100)) {
+            JournalCursor cursor = journal.fromSequence(0);
+            for (int i = 1; i <= 100; i++) {
+                assertEquals(i, journal.append(i % 2 == 0 ? "AU" : "BAS", quote(i)));
+            }
+            assertTrue(journal.segmentCount() > 1);
+
+            for (int i = 1; i <= 100; i++) {
+                assertTrue(cursor.advance());
+                assertEquals(i, cursor.sequence());
+                assertEquals(i % 2 == 0 ? "AU" : "BAS", cursor.tickerSymbol());
+                JournaledStockQuote journaled = JournaledStockQuote.parseFrom(cursor.payload());
+                assertEquals(i, journaled.getQuote().getOfferNumber());
+            }
+            assertFalse(cursor.advance());
+
+            journal.append("AU", quote(101));
+            assertTrue(cursor.advance());
+            assertEquals(101, cursor.sequence());
+
+            JournalCursor fromMiddle = journal.fromSequence(60);
+            assertTrue(fromMiddle.advance());
+            assertEquals(60, fromMiddle.sequence());
+        }
+    }
+
+    @Test
+    public void whenTickerIsTooLongForItsLengthField_thenRejectIt() throws Exception {
+        try (QuoteJournal journal = new QuoteJournal(directory, 1 << 20, 2)) {
+            String tickerSymbol = "A".repeat(0x10000);
+            assertThrows(IllegalArgumentException.class, () -> journal.append(tickerSymbol, quote(1)));
+
+            assertEquals(1, journal.append("AU", quote(1)));
+            JournalCursor cursor = journal.fromSequence(0);
+            assertTrue(cursor.advance());
+            assertEquals("AU", cursor.tickerSymbol());
+        }
+    }
+
+    @Test
+    public void whenReopened_thenRecoverSequenceAndDropOldestSegments() throws Exception {
+        try (QuoteJournal journal = new QuoteJournal(directory, 1024, 2)) {
+            for (int i = 1; i <= 100; i++) {
+                journal.append("AU", quote(i));
+            }
+            assertEquals(2, journal.segmentCount());
+        }
+        try (QuoteJournal journal = new QuoteJournal(directory, 1024, 2)) {
+            assertEquals(101, journal.nextSequence());
+            JournalCursor cursor = journal.fromSequence(0);
+            assertTrue(cursor.advance());
+            assertTrue(cursor.sequence() > 1);
+            long last = cursor.sequence();
+            while (cursor.advance()) {
+                assertEquals(++last, cursor.sequence());
+            }
+            assertEquals(100, last);
+        }
+    }
+
+    @Test
+    public void whenLastRecordIsCorruptedMidPayload_thenRecoverUpToThePreviousOne() throws Exception {
+        int recordLength;
+        try (QuoteJournal journal = new QuoteJournal(directory, 64 * 1024, 4)) {
+            for (int i = 1; i <= 3; i++) {
+                journal.append("AU", quote(i));
+            }
+            // the three records only differ in fixed-size or single-byte fields
+            recordLength = journal.activeSegmentCommitted() / 3;
+        }
+        Path segment = onlySegment();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // a crash wrote the length of the third record, but only part of its payload reached the disk
+            channel.write(ByteBuffer.wrap(new byte[recordLength / 2]), 2L * recordLength + recordLength / 2);
+        }
+
+        try (QuoteJournal journal = new QuoteJournal(directory, 64 * 1024, 4)) {
+            assertEquals(3, journal.nextSequence());
+            assertEquals(List.of(1L, 2L), sequences(journal.fromSequence(0)));
+
+            assertEquals(3, journal.append("BAS", quote(3)));
+            assertEquals(List.of(1L, 2L, 3L), sequences(journal.fromSequence(0)));
+        }
+        try (QuoteJournal journal = new QuoteJournal(directory, 64 * 1024, 4)) {
+            assertEquals(4, journal.nextSequence());
+        }
+    }
+
+    @Test
+    public void whenLastRecordIsTruncated_thenRecoverUpToThePreviousOne() throws Exception {
+        int committed;
+        try (QuoteJournal journal = new QuoteJournal(directory, 64 * 1024, 4)) {
+            for (int i = 1; i <= 3; i++) {
+                journal.append("AU", quote(i));
+            }
+            committed = journal.activeSegmentCommitted();
+        }
+        Path segment = onlySegment();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // the file ends in the middle of the third record's payload
+            channel.truncate(committed - 5);
+        }
+
+        try (QuoteJournal journal = new QuoteJournal(directory, 64 * 1024, 4)) {
+            assertEquals(3, journal.nextSequence());
+            assertEquals(List.of(1L, 2L), sequences(journal.fromSequence(0)));
+        }
+    }
+
+    @Test
+    public void whenReplaying_thenStreamHistoryThenLiveQuotesWithoutGap() throws Exception {
+        try (QuoteJournal journal = new QuoteJournal(directory, 64 * 1024, 4);
+             MarketDataHub hub = new MarketDataHub(Duration.ofMillis(5), 1, journal)) {
+            journal.append("AU", quote(1));
+            journal.append("BAS", quote(2));
+            journal.append("AU", quote(3));
+
+            String serverName = InProcessServerBuilder.generateName();
+            grpcCleanup.register(InProcessServerBuilder.forName(serverName)
+                    .addService(new QuoteReplayService(journal, hub))
+                    .build()
+                    .start());
+            ManagedChannel channel = grpcCleanup.register(InProcessChannelBuilder.forName(serverName)
+                    .directExecutor()
+                    .build());
+
+            Context.CancellableContext context = Context.current().withCancellation();
+            Context previous = context.attach();
+            try {
+                Iterator<JournaledStockQuote> quotes = StockQuoteJournalGrpc.newBlockingStub(channel)
+                        .replayStockQuotes(StockReplayRequest.newBuilder()
+                                .addTickerSymbol("AU")
+                                .setFromSequence(2)
+                                .build());
+
+                JournaledStockQuote replayed = quotes.next();
+                assertEquals(3, replayed.getSequence());
+                assertEquals(3, replayed.getQuote().getOfferNumber());
+                long sequence = replayed.getSequence();
+                for (int i = 0; i < 5; i++) {
+                    JournaledStockQuote live = quotes.next();
+                    assertEquals("AU", live.getTickerSymbol());
+                    assertEquals("Price for stock:AU", live.getQuote().getDescription());
+                    assertTrue(live.getSequence() > sequence);
+                    sequence = live.getSequence();
+                }
+            } finally {
+                context.detach(previous);
+                context.cancel(null);
+            }
+        }
+    }
+
+    private Path onlySegment() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> segments = files.collect(Collectors.toList());
+            assertEquals(1, segments.size());
+            return segments.get(0);
+        }
+    }
+
+    private static List<Long> sequences(JournalCursor cursor) {
+        List<Long> sequences = new ArrayList<>();
+        while (cursor.advance()) {
+            sequences.add(cursor.sequence());
+        }
+        return sequences;
+    }
+
+    private static StockQuote quote(int offerNumber) {
+        return StockQuote.newBuilder()
+                .setPrice(offerNumber * 1.5)
+                .setOfferNumber(offerNumber)
+                .setDescription("Price for stock:test")
+                .build();
+    }
+}
@@ -0,0 +1,102 @@
+package com.txt.grpc.loadgen;
+
+import com.txt.grpc.interceptor.AccessTokenInterceptor;
+import com.txt.grpc.service.CommodityService;
+import com.txt.grpc.service.StockService;
+import com.txt.grpc.testing.GrpcCleanup;
+import io.grpc.Server;
+import io.grpc.ServerInterceptors;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LoadGeneratorUnitTest {
+
+    private final GrpcCleanup grpcCleanup = new GrpcCleanup();
+    private String target;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        Server server = grpcCleanup.register(NettyServerBuilder.forPort(0)
+                .addService(ServerInterceptors.intercept(new CommodityService(), new AccessTokenInterceptor()))
+                .addService(grpcCleanup.register(new StockService()))
+                .build()
+                .start());
+        target = "localhost:" + server.getPort();
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        grpcCleanup.close();
+    }
+
+    @Test
+    public void whenOptionsAreGiven_thenParseThem() {
+        LoadGeneratorOptions options = LoadGeneratorOptions.parse(new String[]{
+                "--target=host:1234", "--rpc=bidi-stream", "--mode=open", "--channels=2", "--streams=3",
+                "--rps=500", "--max-outstanding=7", "--messages=0", "--warmup=0", "--duration=4"});
+
+        assertEquals("host:1234", options.getTarget());
+        assertEquals(Workload.BIDI_STREAM, options.getWorkload());
+        assertEquals(LoadGeneratorOptions.Mode.OPEN, options.getMode());
+        assertEquals(2, options.getChannels());
+        assertEquals(3, options.getStreamsPerChannel());
+        assertEquals(500, options.getRps());
+        assertEquals(7, options.getMaxOutstanding());
+        assertEquals(0, options.getMessagesPerStream());
+        assertEquals(Duration.ZERO, options.getWarmup());
+        assertEquals(Duration.ofSeconds(4), options.getDuration());
+    }
+
+    @Test
+    public void whenOptionsAreOutOfRange_thenRejectThem() {
+        assertThrows(IllegalArgumentException.class, () -> LoadGeneratorOptions.parse(new String[]{"--rps=0"}));
+        assertThrows(IllegalArgumentException.class, () -> LoadGeneratorOptions.parse(new String[]{"--rps=-5"}));
+        assertThrows(IllegalArgumentException.class,
+                () -> LoadGeneratorOptions.parse(new String[]{"--rps=" + (LoadGeneratorOptions.MAX_RPS + 1L)}));
+        assertThrows(IllegalArgumentException.class, () -> LoadGeneratorOptions.parse(new String[]{"--channels=0"}));
+        assertThrows(IllegalArgumentException.class, () -> LoadGeneratorOptions.parse(new String[]{"--streams=0"}));
+        assertThrows(IllegalArgumentException.class, () -> LoadGeneratorOptions.parse(new String[]{"--duration=-1"}));
+        assertThrows(IllegalArgumentException.class, () -> LoadGeneratorOptions.parse(new String[]{"--rpc=nope"}));
+        assertThrows(IllegalArgumentException.class, () -> LoadGeneratorOptions.parse(new String[]{"--unknown=1"}));
+        assertThrows(IllegalArgumentException.class, () -> LoadGeneratorOptions.parse(new String[]{"rps"}));
+    }
+
+    @Test
+    public void whenRunningClosedLoop_thenCompleteOperations() throws Exception {
+        LoadGenerator.Report report = run("--mode=closed", "--rpc=bidi-stream", "--streams=2");
+
+        assertEquals(0, report.errors());
+        assertTrue(report.completed() > 0);
+    }
+
+    @Test
+    public void whenRunningOpenLoop_thenIssueOperationsAtTheRate() throws Exception {
+        LoadGenerator.Report report = run("--mode=open", "--rpc=unary-commodity", "--rps=200");
+
+        assertEquals(0, report.errors());
+        assertTrue(report.completed() + report.skipped() > 100, report.completed() + " completed");
+    }
+
+    private LoadGenerator.Report run(String... args) throws Exception {
+        String[] options = new String[args.length + 3];
+        System.arraycopy(args, 0, options, 0, args.length);
+        options[args.length] = "--target=" + target;
+        // the first calls also connect the channel and load classes
+        options[args.length + 1] = "--warmup=2";
+        options[args.length + 2] = "--duration=1";
+        LoadGenerator loadGenerator = new LoadGenerator(LoadGeneratorOptions.parse(options));
+        try {
+            return loadGenerator.run();
+        } finally {
+            loadGenerator.shutdown();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.txt.grpc.marketdata;
+
+import com.txt.grpc.streaming.StockQuote;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class MarketDataHubUnitTest {
+
+    @Test
+    public void whenLastSubscriberLeaves_thenDropTheFeed() throws Exception {
+        try (MarketDataHub hub = new MarketDataHub(Duration.ofMillis(1), 1)) {
+            BlockingQueue<StockQuote> received = new LinkedBlockingQueue<>();
+            MarketDataHub.Subscription first = hub.subscribe("AU", received::add);
+            MarketDataHub.Subscription second = hub.subscribe("AU", received::add);
+            assertNotNull(received.poll(5, TimeUnit.SECONDS));
+
+            first.close();
+            assertNotNull(hub.latest("AU"));
+            second.close();
+            assertNull(hub.latest("AU"));
+
+            try (MarketDataHub.Subscription again = hub.subscribe("AU", received::add)) {
+                received.clear();
+                assertNotNull(received.poll(5, TimeUnit.SECONDS));
+                assertNotNull(hub.latest("AU"));
+            }
+            assertNull(hub.latest("AU"));
+        }
+    }
+}
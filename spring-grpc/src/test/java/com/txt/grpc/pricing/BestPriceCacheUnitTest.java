@@ -0,0 +1,149 @@
+package com.txt.grpc.pricing;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BestPriceCacheUnitTest {
+
+    @Test
+    public void whenPriceIsFresh_thenServeItUntilItExpires() throws Exception {
+        BestPriceCache cache = new BestPriceCache(100, Duration.ofMillis(50));
+        AtomicInteger computations = new AtomicInteger();
+
+        assertEquals(1.0, cache.get("Commodity1", name -> computations.incrementAndGet()));
+        assertEquals(1.0, cache.get("Commodity1", name -> computations.incrementAndGet()));
+        assertEquals(2.0, cache.get("Commodity2", name -> computations.incrementAndGet()));
+        assertEquals(1, cache.hits());
+        assertEquals(2, cache.misses());
+
+        Thread.sleep(60);
+        assertEquals(3.0, cache.get("Commodity1", name -> computations.incrementAndGet()));
+        assertEquals(3, cache.misses());
+    }
+
+    @Test
+    public void whenMissesAreConcurrent_thenComputeOnce() throws Exception {
+        BestPriceCache cache = new BestPriceCache(100, Duration.ofSeconds(10));
+        AtomicInteger computations = new AtomicInteger();
+        CountDownLatch computing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        try {
+            Future<Double> leader = callers.submit(() -> cache.get("Commodity1", name -> {
+                computations.incrementAndGet();
+                computing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return 5.5;
+            }));
+            assertTrue(computing.await(5, TimeUnit.SECONDS));
+            List<Future<Double>> followers = new ArrayList<>();
+            for (int i = 0; i < 7; i++) {
+                followers.add(callers.submit(() -> cache.get("Commodity1", name -> computations.incrementAndGet())));
+            }
+            while (cache.coalesced() < 7) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+
+            assertEquals(5.5, leader.get(5, TimeUnit.SECONDS));
+            for (Future<Double> follower : followers) {
+                assertEquals(5.5, follower.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, computations.get());
+            assertEquals(1, cache.misses());
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    public void whenComputationFails_thenDoNotCacheIt() {
+        BestPriceCache cache = new BestPriceCache(100, Duration.ofSeconds(10));
+
+        assertThrows(IllegalStateException.class, () -> cache.get("Commodity1", name -> {
+            throw new IllegalStateException("pricing down");
+        }));
+        assertEquals(0, cache.size());
+        assertEquals(6.0, cache.get("Commodity1", name -> 6.0));
+    }
+
+    @Test
+    public void whenComputationThrowsAnError_thenReleaseTheWaitersAndDoNotCacheIt() throws Exception {
+        BestPriceCache cache = new BestPriceCache(100, Duration.ofSeconds(10));
+        CountDownLatch computing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            Future<Double> leader = callers.submit(() -> cache.get("Commodity1", name -> {
+                computing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new AssertionError("pricing broken");
+            }));
+            assertTrue(computing.await(5, TimeUnit.SECONDS));
+            Future<Double> follower = callers.submit(() -> cache.get("Commodity1", name -> 7.0));
+            while (cache.coalesced() < 1) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+
+            ExecutionException leaderFailure = assertThrows(ExecutionException.class,
+                    () -> leader.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(AssertionError.class, leaderFailure.getCause());
+            ExecutionException followerFailure = assertThrows(ExecutionException.class,
+                    () -> follower.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(AssertionError.class, followerFailure.getCause());
+            assertEquals(0, cache.size());
+            assertEquals(6.0, cache.get("Commodity1", name -> 6.0));
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    public void whenMissesOfManyCommoditiesAreConcurrent_thenStayWithinMaxSize() throws Exception {
+        int maxSize = 16;
+        BestPriceCache cache = new BestPriceCache(maxSize, Duration.ofSeconds(10));
+        AtomicInteger largest = new AtomicInteger();
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Double>> calls = new ArrayList<>();
+            for (int i = 0; i < 2000; i++) {
+                String commodity = "Commodity" + i;
+                calls.add(callers.submit(() -> cache.get(commodity, name -> {
+                    largest.accumulateAndGet(cache.size(), Math::max);
+                    return 1.0;
+                })));
+            }
+            for (Future<Double> call : calls) {
+                assertEquals(1.0, call.get(5, TimeUnit.SECONDS));
+            }
+            assertTrue(largest.get() <= maxSize, "largest " + largest.get());
+            assertTrue(cache.size() <= maxSize, "size " + cache.size());
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+}
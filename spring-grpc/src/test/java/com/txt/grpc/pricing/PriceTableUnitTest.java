@@ -0,0 +1,72 @@
+package com.txt.grpc.pricing;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PriceTableUnitTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void whenLoadingSnapshot_thenReturnEveryPrice() throws Exception {
+        Map<String, Double> prices = new HashMap<>();
+        for (int i = 0; i < 20_000; i++) {
+            prices.put("Commodity" + i, i + 0.5);
+        }
+        Path snapshot = directory.resolve("prices.bin");
+        PriceTable.write(snapshot, prices);
+
+        PriceTable table = PriceTable.load(snapshot);
+
+        assertEquals(20_000, table.size());
+        for (int i = 0; i < 20_000; i++) {
+            assertEquals(i + 0.5, table.price("Commodity" + i));
+        }
+        assertTrue(Double.isNaN(table.price("Commodity20000")));
+        assertFalse(table.contains("Commodity-1"));
+    }
+
+    @Test
+    public void whenSnapshotIsReplaced_thenSwapTableAndKeepItOnCorruptFile() throws Exception {
+        Path snapshot = directory.resolve("prices.bin");
+        PriceTable.write(snapshot, Map.of("Commodity1", 5.0));
+
+        try (PriceTableSource source = PriceTableSource.watching(snapshot, Duration.ofHours(1))) {
+            PriceTable first = source.get();
+            assertEquals(5.0, first.price("Commodity1"));
+            assertFalse(source.reloadIfChanged());
+
+            PriceTable.write(snapshot, Map.of("Commodity1", 7.0, "Commodity2", 8.0));
+            assertTrue(source.reloadIfChanged());
+            assertEquals(7.0, source.get().price("Commodity1"));
+            assertEquals(8.0, source.get().price("Commodity2"));
+            assertEquals(5.0, first.price("Commodity1"));
+
+            PriceTable second = source.get();
+            Files.write(snapshot, new byte[]{1, 2, 3});
+            assertFalse(source.reloadIfChanged());
+            assertSame(second, source.get());
+        }
+    }
+
+    @Test
+    public void whenFileIsNotASnapshot_thenFailToLoad() throws IOException {
+        Path snapshot = Files.write(directory.resolve("prices.bin"), new byte[16]);
+
+        assertThrows(IOException.class, () -> PriceTable.load(snapshot));
+    }
+}
@@ -0,0 +1,94 @@
+package com.txt.grpc.server;
+
+import com.txt.grpc.hello.HelloRequest;
+import com.txt.grpc.hello.HelloResponse;
+import com.txt.grpc.hello.HelloServiceGrpc;
+import com.txt.grpc.testing.GrpcCleanup;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LoadSheddingExecutorUnitTest {
+
+    private final GrpcCleanup grpcCleanup = new GrpcCleanup();
+    private final LoadSheddingExecutor executor = new LoadSheddingExecutor(1, 1, Executors.defaultThreadFactory());
+    private final ExecutorService callers = Executors.newFixedThreadPool(2);
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        callers.shutdownNow();
+        grpcCleanup.close();
+        executor.shutdown();
+    }
+
+    @Test
+    public void whenQueueIsFull_thenRejectNewCallsWithoutRunningThem() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ManagedChannel channel = start(new HelloServiceGrpc.HelloServiceImplBase() {
+            @Override
+            public void hello(HelloRequest request, StreamObserver<HelloResponse> responseObserver) {
+                started.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                responseObserver.onNext(HelloResponse.newBuilder().setGreeting("Hello").build());
+                responseObserver.onCompleted();
+            }
+        });
+        HelloServiceGrpc.HelloServiceBlockingStub stub = HelloServiceGrpc.newBlockingStub(channel)
+                .withDeadlineAfter(10, TimeUnit.SECONDS);
+
+        Future<String> running = callers.submit(() -> stub.hello(HelloRequest.getDefaultInstance()).getGreeting());
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Future<String> queued = callers.submit(() -> stub.hello(HelloRequest.getDefaultInstance()).getGreeting());
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (executor.queued() < 1 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+
+        StatusRuntimeException thrown = assertThrows(StatusRuntimeException.class,
+                () -> stub.hello(HelloRequest.getDefaultInstance()));
+        assertEquals(Status.Code.RESOURCE_EXHAUSTED, thrown.getStatus().getCode());
+        assertEquals(1, executor.rejected());
+
+        release.countDown();
+        assertEquals("Hello", running.get(5, TimeUnit.SECONDS));
+        assertEquals("Hello", queued.get(5, TimeUnit.SECONDS));
+        // the queued call's last callbacks may still wait in the queue after the client has its response
+        deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (executor.queued() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals("Hello", stub.hello(HelloRequest.getDefaultInstance()).getGreeting());
+    }
+
+    private ManagedChannel start(HelloServiceGrpc.HelloServiceImplBase service) throws Exception {
+        int port = grpcCleanup.register(NettyServerBuilder.forPort(0)
+                        .executor(executor)
+                        .callExecutor(executor)
+                        .addService(service)
+                        .intercept(executor.interceptor())
+                        .build()
+                        .start())
+                .getPort();
+        return grpcCleanup.register(ManagedChannelBuilder.forAddress("localhost", port).usePlaintext().build());
+    }
+}
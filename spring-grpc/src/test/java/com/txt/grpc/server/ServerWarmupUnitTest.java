@@ -0,0 +1,76 @@
+package com.txt.grpc.server;
+
+import com.txt.grpc.errorhandling.CommodityPriceProviderGrpc;
+import com.txt.grpc.errorhandling.CommodityServer;
+import com.txt.grpc.hello.HelloRequest;
+import com.txt.grpc.hello.HelloServiceGrpc;
+import com.txt.grpc.interceptor.AccessTokenInterceptor;
+import com.txt.grpc.service.CommodityService;
+import com.txt.grpc.service.HelloServiceImpl;
+import com.txt.grpc.service.StockService;
+import com.txt.grpc.streaming.Stock;
+import com.txt.grpc.streaming.StockQuoteProviderGrpc;
+import io.grpc.ServerInterceptors;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ServerWarmupUnitTest {
+
+    @Test
+    public void whenWarmingUp_thenEveryMethodButTheSkippedOnesIsCalledEachIteration() throws Exception {
+        Stock stock = Stock.newBuilder().setTickerSymbol("AU").build();
+        ServerWarmup.Report report;
+        try (StockService stockService = new StockService(1)) {
+            report = ServerWarmup.forServices(List.of(new HelloServiceImpl().bindService(), stockService.bindService()))
+                    .request(HelloServiceGrpc.getHelloMethod(), HelloRequest.newBuilder().setFirstName("Warm").build())
+                    .request(StockQuoteProviderGrpc.getServerSideStreamingGetListStockQuotesMethod(), stock)
+                    .request(StockQuoteProviderGrpc.getClientSideStreamingGetStatisticsOfStocksMethod(), stock, stock)
+                    .request(StockQuoteProviderGrpc.getBidirectionalStreamingGetListsStockQuotesMethod(), stock, stock)
+                    .request(StockQuoteProviderGrpc.getBidirectionalStreamingGetBatchedStockQuotesMethod(),
+                            stock, stock)
+                    .skip(StockQuoteProviderGrpc.getSubscribeStockQuotesMethod())
+                    .iterations(20, 200)
+                    .settle(10, 0.5)
+                    .run();
+        }
+
+        assertEquals(5, report.methods());
+        assertTrue(report.iterations() >= 20 && report.iterations() <= 200, report.toString());
+        assertEquals(report.iterations() * 5L, report.calls());
+        assertEquals(0, report.failures(), report.toString());
+        assertTrue(report.sinceJvmStart().compareTo(report.duration()) >= 0, report.toString());
+    }
+
+    @Test
+    public void whenCallsFail_thenTheyAreCountedAndWarmupStopsAtTheCap() throws Exception {
+        // the default request carries no access token, so every call is rejected
+        ServerWarmup.Report report = ServerWarmup.forServices(List.of(
+                        ServerInterceptors.intercept(new CommodityService(), new AccessTokenInterceptor())))
+                .skip(CommodityPriceProviderGrpc.getBidirectionalListOfPricesMethod())
+                .skip(CommodityPriceProviderGrpc.getGetBestCommodityPricesMethod())
+                .iterations(10, 10)
+                .run();
+
+        assertEquals(1, report.methods());
+        assertEquals(10, report.calls());
+        assertEquals(10, report.failures());
+        assertFalse(report.settled(), report.toString());
+    }
+
+    @Test
+    public void whenStandaloneServerWarmsUp_thenInjectedDelayIsBypassed() throws Exception {
+        CommodityServer server = new CommodityServer(0, Duration.ofSeconds(1), 1.0);
+        ServerWarmup.Report report = server.warmUp();
+
+        // the injected delay is server-wide; warmup calls seeing it would take a second each
+        assertEquals(3, report.methods());
+        assertEquals(0, report.failures(), report.toString());
+        assertTrue(report.duration().compareTo(Duration.ofSeconds(10)) < 0, report.toString());
+    }
+}
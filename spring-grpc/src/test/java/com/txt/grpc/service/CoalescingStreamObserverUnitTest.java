@@ -0,0 +1,93 @@
+package com.txt.grpc.service;
+
+import com.txt.grpc.streaming.StockQuote;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CoalescingStreamObserverUnitTest {
+
+    @Test
+    public void whenFlushing_thenWriteInOrderWithoutHoldingTheLock() throws Exception {
+        AtomicReference<CoalescingStreamObserver<StockQuote>> writer = new AtomicReference<>();
+        List<Integer> written = new CopyOnWriteArrayList<>();
+        List<String> lockedCalls = new CopyOnWriteArrayList<>();
+        CountDownLatch completed = new CountDownLatch(1);
+        writer.set(new CoalescingStreamObserver<>(new StreamObserver<>() {
+            @Override
+            public void onNext(StockQuote stockQuote) {
+                if (Thread.holdsLock(writer.get())) {
+                    lockedCalls.add("onNext from " + Thread.currentThread().getName());
+                }
+                written.add(stockQuote.getOfferNumber());
+            }
+
+            @Override
+            public void onError(Throwable t) {
+            }
+
+            @Override
+            public void onCompleted() {
+                if (Thread.holdsLock(writer.get())) {
+                    lockedCalls.add("onCompleted");
+                }
+                completed.countDown();
+            }
+        }, WriteCoalescing.of(4, 1024 * 1024, Duration.ofMillis(1))));
+
+        // the first two are flushed by the timer, the next four because the buffer is full
+        writer.get().onNext(quote(1));
+        writer.get().onNext(quote(2));
+        while (written.size() < 2) {
+            Thread.sleep(1);
+        }
+        for (int i = 3; i <= 7; i++) {
+            writer.get().onNext(quote(i));
+        }
+        writer.get().onCompleted();
+
+        assertTrue(completed.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of(1, 2, 3, 4, 5, 6, 7), written);
+        assertEquals(List.of(), lockedCalls);
+    }
+
+    @Test
+    public void whenDiscarded_thenDropBufferedMessages() {
+        List<StockQuote> written = new CopyOnWriteArrayList<>();
+        CoalescingStreamObserver<StockQuote> writer = new CoalescingStreamObserver<>(new StreamObserver<>() {
+            @Override
+            public void onNext(StockQuote stockQuote) {
+                written.add(stockQuote);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+            }
+
+            @Override
+            public void onCompleted() {
+                written.add(StockQuote.getDefaultInstance());
+            }
+        }, WriteCoalescing.of(4, 1024 * 1024, Duration.ofMinutes(1)));
+
+        writer.onNext(quote(1));
+        writer.discard();
+        writer.onNext(quote(2));
+        writer.onCompleted();
+
+        assertEquals(List.of(), written);
+    }
+
+    private static StockQuote quote(int offerNumber) {
+        return StockQuote.newBuilder().setOfferNumber(offerNumber).build();
+    }
+}
@@ -0,0 +1,110 @@
+package com.txt.grpc.service;
+
+import com.google.protobuf.ByteString;
+import com.txt.grpc.streaming.Stock;
+import com.txt.grpc.streaming.StockQuote;
+import com.txt.grpc.streaming.StockQuoteProviderGrpc;
+import io.grpc.Drainable;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.StatusRuntimeException;
+import io.grpc.internal.ReadableBuffers;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ZeroCopyMarshallerUnitTest {
+
+    private static final Stock STOCK = Stock.newBuilder()
+            .setTickerSymbol("AU")
+            .setCompanyName("Auburn Corp ü")
+            .setDescription("Aptitude Intel")
+            .build();
+
+    @Test
+    public void whenParsingDirectBuffer_thenStringFieldsStayUndecoded() throws Exception {
+        byte[] bytes = STOCK.toByteArray();
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+        InputStream stream = ReadableBuffers.openStream(ReadableBuffers.wrap(direct), true);
+
+        Stock stock = ZeroCopyMarshaller.of(Stock.getDefaultInstance()).parse(stream);
+
+        assertEquals("AU", stock.getTickerSymbol());
+        assertTrue(storedField(stock, "companyName_") instanceof ByteString);
+        assertTrue(storedField(stock, "description_") instanceof ByteString);
+        assertEquals("Auburn Corp ü", stock.getCompanyName());
+        assertEquals(STOCK, stock);
+    }
+
+    private static Object storedField(Stock stock, String name) throws ReflectiveOperationException {
+        Field field = Stock.class.getDeclaredField(name);
+        field.setAccessible(true);
+        return field.get(stock);
+    }
+
+    @Test
+    public void whenParsingInvalidUtf8_thenFailLikeProtobuf() {
+        // company_name (field 2, length-delimited) holding a lone continuation byte
+        byte[] bytes = {0x12, 0x01, (byte) 0xC0};
+
+        assertThrows(StatusRuntimeException.class,
+                () -> ZeroCopyMarshaller.of(Stock.getDefaultInstance()).parse(new ByteArrayInputStream(bytes)));
+    }
+
+    @Test
+    public void whenSharedQuoteIsSentRepeatedly_thenEverySendWritesItsBytes() throws IOException {
+        ZeroCopyMarshaller<StockQuote> marshaller = ZeroCopyMarshaller.of(StockQuote.getDefaultInstance());
+        StockQuote quote = ZeroCopyMarshaller.share(
+                StockQuote.newBuilder().setPrice(2.5).setOfferNumber(3).setDescription("AU").build());
+
+        assertSentAsItself(marshaller, quote);
+    }
+
+    @Test
+    public void whenQuoteIsNotShared_thenEverySendWritesItsBytes() throws IOException {
+        ZeroCopyMarshaller<StockQuote> marshaller = ZeroCopyMarshaller.of(StockQuote.getDefaultInstance());
+        ZeroCopyMarshaller.share(StockQuote.newBuilder().setPrice(1.5).setDescription("AG").build());
+        StockQuote quote = StockQuote.newBuilder().setPrice(2.5).setOfferNumber(3).setDescription("AU").build();
+
+        assertSentAsItself(marshaller, quote);
+    }
+
+    private static void assertSentAsItself(ZeroCopyMarshaller<StockQuote> marshaller, StockQuote quote)
+            throws IOException {
+        for (int i = 0; i < 3; i++) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            InputStream stream = marshaller.stream(quote);
+            assertEquals(quote.getSerializedSize(), stream.available());
+            ((Drainable) stream).drainTo(out);
+            assertArrayEquals(quote.toByteArray(), out.toByteArray());
+        }
+        assertArrayEquals(quote.toByteArray(), marshaller.stream(quote).readAllBytes());
+    }
+
+    @Test
+    public void whenRebindingService_thenEveryMethodUsesZeroCopyMarshallers() {
+        ServerServiceDefinition rebound;
+        try (StockService stockService = new StockService()) {
+            rebound = ZeroCopyMarshaller.rebind(stockService.bindService());
+        }
+
+        assertEquals(StockQuoteProviderGrpc.getServiceDescriptor().getMethods().size(), rebound.getMethods().size());
+        MethodDescriptor<?, ?> method = rebound.getMethod(
+                StockQuoteProviderGrpc.getServerSideStreamingGetListStockQuotesMethod().getFullMethodName())
+                .getMethodDescriptor();
+        assertTrue(method.getRequestMarshaller() instanceof ZeroCopyMarshaller);
+        assertTrue(method.getResponseMarshaller() instanceof ZeroCopyMarshaller);
+        assertFalse(method.getRequestMarshaller() == method.getResponseMarshaller());
+    }
+}
@@ -0,0 +1,66 @@
+package com.txt.grpc.statistics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class StatisticsUnitTest {
+
+    @Test
+    public void whenAddingValues_thenMatchTwoPassStatistics() {
+        double[] values = new Random(42).doubles(10_000, 1_000_000.0, 1_000_001.0).toArray();
+        RunningStatistics statistics = new RunningStatistics();
+        Arrays.stream(values).forEach(statistics::add);
+
+        double mean = Arrays.stream(values).average().orElseThrow();
+        double variance = Arrays.stream(values).map(v -> (v - mean) * (v - mean)).sum() / (values.length - 1);
+        assertEquals(values.length, statistics.count());
+        assertEquals(mean, statistics.mean(), 1e-6);
+        assertEquals(variance, statistics.variance(), 1e-6);
+        assertEquals(Arrays.stream(values).min().orElseThrow(), statistics.min());
+        assertEquals(Arrays.stream(values).max().orElseThrow(), statistics.max());
+    }
+
+    @Test
+    public void whenMergingStatistics_thenEqualSingleStream() {
+        RunningStatistics left = new RunningStatistics();
+        RunningStatistics right = new RunningStatistics();
+        RunningStatistics all = new RunningStatistics();
+        Random random = new Random(7);
+        for (int i = 0; i < 1_000; i++) {
+            double value = random.nextGaussian() * 3 + 10;
+            (i % 3 == 0 ? left : right).add(value);
+            all.add(value);
+        }
+
+        left.merge(right);
+
+        assertEquals(all.count(), left.count());
+        assertEquals(all.mean(), left.mean(), 1e-9);
+        assertEquals(all.variance(), left.variance(), 1e-9);
+    }
+
+    @Test
+    public void whenQueryingSketch_thenQuantilesWithinRelativeAccuracy() {
+        double[] values = new Random(1).doubles(100_000, 0.5, 500.0).toArray();
+        QuantileSketch sketch = new QuantileSketch(0.01, 2048);
+        QuantileSketch merged = new QuantileSketch(0.01, 2048);
+        QuantileSketch other = new QuantileSketch(0.01, 2048);
+        for (int i = 0; i < values.length; i++) {
+            sketch.add(values[i]);
+            (i % 2 == 0 ? merged : other).add(values[i]);
+        }
+        merged.merge(other);
+
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        for (double quantile : new double[]{0.5, 0.9, 0.99}) {
+            double expected = sorted[(int) (quantile * (sorted.length - 1))];
+            assertEquals(expected, sketch.quantile(quantile), expected * 0.01);
+            assertEquals(expected, merged.quantile(quantile), expected * 0.01);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.txt.grpc.streaming;
+
+import com.txt.grpc.sharding.ConsistentHashRing;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ShardedStockClusterUnitTest {
+
+    private static final List<String> SHARDS = List.of("shard-0", "shard-1", "shard-2");
+
+    private final List<StockServer> servers = new ArrayList<>();
+    private final Map<String, ManagedChannel> channels = new LinkedHashMap<>();
+
+    @BeforeEach
+    public void setup() throws Exception {
+        ConsistentHashRing ring = new ConsistentHashRing(SHARDS);
+        for (String shard : SHARDS) {
+            StockServer server = new StockServer(0, ring, shard);
+            server.start();
+            servers.add(server);
+            channels.put(shard, ManagedChannelBuilder.forAddress("127.0.0.1", server.getPort())
+                    .usePlaintext()
+                    .build());
+        }
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        for (ManagedChannel channel : channels.values()) {
+            channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        }
+        for (StockServer server : servers) {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void whenTickersAreHashed_thenShardsShareThemAndAddingOneMovesOnlyItsShare() {
+        ConsistentHashRing ring = new ConsistentHashRing(SHARDS);
+        List<String> withFourth = new ArrayList<>(SHARDS);
+        withFourth.add("shard-3");
+        ConsistentHashRing grown = new ConsistentHashRing(withFourth);
+
+        int tickers = 30_000;
+        Map<String, Integer> counts = new HashMap<>();
+        int moved = 0;
+        for (int i = 0; i < tickers; i++) {
+            String ticker = "T" + i;
+            String owner = ring.shardFor(ticker);
+            counts.merge(owner, 1, Integer::sum);
+            String newOwner = grown.shardFor(ticker);
+            if (!newOwner.equals(owner)) {
+                assertEquals("shard-3", newOwner, ticker + " moved between existing shards");
+                moved++;
+            }
+        }
+
+        for (String shard : SHARDS) {
+            int count = counts.get(shard);
+            assertTrue(count > tickers / 3 * 0.8 && count < tickers / 3 * 1.2, shard + " owns " + count);
+        }
+        assertTrue(moved > tickers / 4 * 0.7 && moved < tickers / 4 * 1.3, moved + " tickers moved");
+    }
+
+    @Test
+    public void whenMixedStreamIsSent_thenQuotesOfEveryShardAreMerged() throws Exception {
+        ShardedStockClient client = new ShardedStockClient(channels);
+        List<String> tickers = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            tickers.add("TK" + i);
+        }
+        assertEquals(SHARDS.size(), tickers.stream().map(client::shardFor).distinct().count());
+
+        List<StockQuote> quotes = new ArrayList<>();
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+        StreamObserver<Stock> requests = client.bidirectionalStreamingGetListsStockQuotes(
+                collecting(quotes, error, done));
+        for (String ticker : tickers) {
+            requests.onNext(Stock.newBuilder().setTickerSymbol(ticker).build());
+        }
+        requests.onCompleted();
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertNull(error.get());
+        assertEquals(tickers.size() * 5, quotes.size());
+        Map<String, Integer> offers = new HashMap<>();
+        for (StockQuote quote : quotes) {
+            String ticker = quote.getDescription().substring("Price for stock:".length());
+            assertEquals(offers.merge(ticker, 1, Integer::sum), quote.getOfferNumber(), "offers out of order");
+        }
+        assertEquals(tickers.size(), offers.size());
+    }
+
+    @Test
+    public void whenTickerIsSentToTheWrongShard_thenCallFails() throws Exception {
+        ShardedStockClient client = new ShardedStockClient(channels);
+        String ticker = "AU";
+        String wrongShard = SHARDS.stream().filter(shard -> !shard.equals(client.shardFor(ticker))).findFirst()
+                .orElseThrow();
+
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+        StreamObserver<Stock> requests = StockQuoteProviderGrpc.newStub(channels.get(wrongShard))
+                .bidirectionalStreamingGetListsStockQuotes(collecting(new ArrayList<>(), error, done));
+        requests.onNext(Stock.newBuilder().setTickerSymbol(ticker).build());
+        requests.onCompleted();
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        Status status = Status.fromThrowable(error.get());
+        assertEquals(Status.Code.FAILED_PRECONDITION, status.getCode());
+        assertTrue(status.getDescription().contains(client.shardFor(ticker)), status.getDescription());
+    }
+
+    private static StreamObserver<StockQuote> collecting(List<StockQuote> quotes, AtomicReference<Throwable> error,
+                                                         CountDownLatch done) {
+        return new StreamObserver<>() {
+            @Override
+            public void onNext(StockQuote quote) {
+                quotes.add(quote);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                error.set(t);
+                done.countDown();
+            }
+
+            @Override
+            public void onCompleted() {
+                done.countDown();
+            }
+        };
+    }
+}
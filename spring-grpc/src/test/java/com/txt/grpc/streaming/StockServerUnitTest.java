@@ -0,0 +1,377 @@
+package com.txt.grpc.streaming;
+
+import com.txt.grpc.interceptor.QuoteDeliveryInterceptor;
+import com.txt.grpc.marketdata.MarketDataHub;
+import com.txt.grpc.service.StockService;
+import com.txt.grpc.service.WriteCoalescing;
+import com.txt.grpc.testing.GrpcCleanup;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.Server;
+import io.grpc.ServerInterceptors;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import io.grpc.stub.MetadataUtils;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StockServerUnitTest {
+
+    StockQuoteProviderGrpc.StockQuoteProviderBlockingStub blockingStub;
+    StockQuoteProviderGrpc.StockQuoteProviderStub nonBlockingStub;
+
+    private final GrpcCleanup grpcCleanup = new GrpcCleanup();
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        grpcCleanup.close();
+    }
+
+    @BeforeEach
+    public void setup() throws Exception {
+        String serverName = InProcessServerBuilder.generateName();
+        grpcCleanup.register(InProcessServerBuilder.forName(serverName)
+                .directExecutor()
+                .addService(grpcCleanup.register(new StockService(1)))
+                .build()
+                .start());
+
+        ManagedChannel channel = grpcCleanup.register(InProcessChannelBuilder.forName(serverName)
+                .directExecutor()
+                .build());
+        blockingStub = StockQuoteProviderGrpc.newBlockingStub(channel);
+        nonBlockingStub = StockQuoteProviderGrpc.newStub(channel);
+    }
+
+    @Test
+    public void whenServerSideStreaming_thenReturnFiveOffers() {
+        Iterator<StockQuote> stockQuotes = blockingStub.serverSideStreamingGetListStockQuotes(Stock.newBuilder()
+                .setTickerSymbol("AU")
+                .build());
+
+        int offerNumber = 0;
+        while (stockQuotes.hasNext()) {
+            StockQuote stockQuote = stockQuotes.next();
+            assertEquals(++offerNumber, stockQuote.getOfferNumber());
+            assertEquals("Price for stock:AU", stockQuote.getDescription());
+        }
+        assertEquals(5, offerNumber);
+    }
+
+    @Test
+    public void whenBidirectionalStreaming_thenReturnFiveOffersPerStockInOrder() throws Exception {
+        List<StockQuote> stockQuotes = new ArrayList<>();
+        CountDownLatch finishLatch = new CountDownLatch(1);
+        StreamObserver<Stock> requestObserver = nonBlockingStub.bidirectionalStreamingGetListsStockQuotes(new StreamObserver<>() {
+            @Override
+            public void onNext(StockQuote stockQuote) {
+                stockQuotes.add(stockQuote);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                finishLatch.countDown();
+            }
+
+            @Override
+            public void onCompleted() {
+                finishLatch.countDown();
+            }
+        });
+
+        for (String ticker : List.of("AU", "BAS", "COR")) {
+            requestObserver.onNext(Stock.newBuilder().setTickerSymbol(ticker).build());
+        }
+        requestObserver.onCompleted();
+
+        assertTrue(finishLatch.await(5, TimeUnit.SECONDS));
+        assertEquals(15, stockQuotes.size());
+        assertEquals("Price for stock:AU", stockQuotes.get(0).getDescription());
+        assertEquals("Price for stock:BAS", stockQuotes.get(5).getDescription());
+        assertEquals("Price for stock:COR", stockQuotes.get(14).getDescription());
+        assertEquals(5, stockQuotes.get(14).getOfferNumber());
+    }
+
+    @Test
+    public void whenCoalescingBidirectionalStreaming_thenReturnFiveOffersPerStockInOrder() throws Exception {
+        String serverName = InProcessServerBuilder.generateName();
+        grpcCleanup.register(InProcessServerBuilder.forName(serverName)
+                .directExecutor()
+                .addService(new StockService(grpcCleanup.register(new MarketDataHub()), 1,
+                        WriteCoalescing.of(4, 1024, Duration.ofMillis(1))))
+                .build()
+                .start());
+        // the in-process transport deadlocks on its own stream locks when a server write from the flush timer meets
+        // a client write while both sides run callbacks inline, so only the server uses a direct executor here
+        ManagedChannel channel = grpcCleanup.register(InProcessChannelBuilder.forName(serverName).build());
+
+        List<StockQuote> stockQuotes = new ArrayList<>();
+        CountDownLatch finishLatch = new CountDownLatch(1);
+        StreamObserver<Stock> requestObserver = StockQuoteProviderGrpc.newStub(channel)
+                .bidirectionalStreamingGetListsStockQuotes(new StreamObserver<>() {
+                    @Override
+                    public void onNext(StockQuote stockQuote) {
+                        stockQuotes.add(stockQuote);
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                        finishLatch.countDown();
+                    }
+
+                    @Override
+                    public void onCompleted() {
+                        finishLatch.countDown();
+                    }
+                });
+
+        for (String ticker : List.of("AU", "BAS", "COR")) {
+            requestObserver.onNext(Stock.newBuilder().setTickerSymbol(ticker).build());
+        }
+        requestObserver.onCompleted();
+
+        assertTrue(finishLatch.await(5, TimeUnit.SECONDS));
+        assertEquals(15, stockQuotes.size());
+        for (int i = 0; i < stockQuotes.size(); i++) {
+            assertEquals(i % 5 + 1, stockQuotes.get(i).getOfferNumber());
+        }
+        assertEquals("Price for stock:COR", stockQuotes.get(14).getDescription());
+    }
+
+    @Test
+    public void whenBatchedBidirectionalStreaming_thenUnpackFiveOffersPerStockInOrder() throws Exception {
+        List<StockQuote> stockQuotes = new ArrayList<>();
+        CountDownLatch finishLatch = new CountDownLatch(1);
+        StreamObserver<Stock> requestObserver = nonBlockingStub.bidirectionalStreamingGetBatchedStockQuotes(new StreamObserver<>() {
+            @Override
+            public void onNext(StockQuoteBatch batch) {
+                StockClient.quotes(batch).forEachRemaining(stockQuotes::add);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                finishLatch.countDown();
+            }
+
+            @Override
+            public void onCompleted() {
+                finishLatch.countDown();
+            }
+        });
+
+        for (String ticker : List.of("AU", "BAS", "COR")) {
+            requestObserver.onNext(Stock.newBuilder().setTickerSymbol(ticker).build());
+        }
+        requestObserver.onCompleted();
+
+        assertTrue(finishLatch.await(5, TimeUnit.SECONDS));
+        assertEquals(15, stockQuotes.size());
+        assertEquals("Price for stock:AU", stockQuotes.get(0).getDescription());
+        assertEquals("Price for stock:BAS", stockQuotes.get(5).getDescription());
+        assertEquals("Price for stock:COR", stockQuotes.get(14).getDescription());
+        assertEquals(5, stockQuotes.get(14).getOfferNumber());
+    }
+
+    @Test
+    @Timeout(value = 10, threadMode = Timeout.ThreadMode.SEPARATE_THREAD)
+    public void whenStockArrivesWhileTimerFlushIsBeingWritten_thenDeliverIt() throws Exception {
+        String serverName = InProcessServerBuilder.generateName();
+        grpcCleanup.register(InProcessServerBuilder.forName(serverName)
+                .directExecutor()
+                .addService(grpcCleanup.register(new StockService(8)))
+                .build()
+                .start());
+        StockQuoteProviderGrpc.StockQuoteProviderStub stub = StockQuoteProviderGrpc.newStub(
+                grpcCleanup.register(InProcessChannelBuilder.forName(serverName).directExecutor().build()));
+        ExecutorService sender = Executors.newSingleThreadExecutor();
+        AtomicInteger quotes = new AtomicInteger();
+        AtomicReference<Throwable> senderFailure = new AtomicReference<>();
+        CountDownLatch finishLatch = new CountDownLatch(1);
+        AtomicReference<StreamObserver<Stock>> requestObserver = new AtomicReference<>();
+        try {
+            requestObserver.set(stub.bidirectionalStreamingGetBatchedStockQuotes(new StreamObserver<>() {
+                @Override
+                public void onNext(StockQuoteBatch batch) {
+                    // runs on the flush timer thread; the next stock is delivered to the service from another one
+                    if (quotes.getAndAdd(batch.getPriceCount()) == 0) {
+                        try {
+                            sender.submit(() -> requestObserver.get().onNext(stock("BAS"))).get(5, TimeUnit.SECONDS);
+                        } catch (Exception e) {
+                            senderFailure.set(e);
+                        }
+                    }
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    finishLatch.countDown();
+                }
+
+                @Override
+                public void onCompleted() {
+                    finishLatch.countDown();
+                }
+            }));
+
+            requestObserver.get().onNext(stock("AU"));
+            while (quotes.get() < 10 && senderFailure.get() == null) {
+                Thread.sleep(1);
+            }
+            requestObserver.get().onCompleted();
+
+            assertTrue(finishLatch.await(5, TimeUnit.SECONDS));
+            assertNull(senderFailure.get());
+            assertEquals(10, quotes.get());
+        } finally {
+            sender.shutdownNow();
+        }
+    }
+
+    private static Stock stock(String tickerSymbol) {
+        return Stock.newBuilder().setTickerSymbol(tickerSymbol).build();
+    }
+
+    @Test
+    public void whenClientSideStreaming_thenReturnPerTickerStatistics() throws Exception {
+        List<StockQuote> summaries = new ArrayList<>();
+        CountDownLatch finishLatch = new CountDownLatch(1);
+        StreamObserver<Stock> requestObserver = nonBlockingStub.clientSideStreamingGetStatisticsOfStocks(new StreamObserver<>() {
+            @Override
+            public void onNext(StockQuote stockQuote) {
+                summaries.add(stockQuote);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                finishLatch.countDown();
+            }
+
+            @Override
+            public void onCompleted() {
+                finishLatch.countDown();
+            }
+        });
+
+        for (int i = 0; i < 1_000; i++) {
+            requestObserver.onNext(Stock.newBuilder().setTickerSymbol(i % 2 == 0 ? "AU" : "BAS").build());
+        }
+        requestObserver.onCompleted();
+
+        assertTrue(finishLatch.await(5, TimeUnit.SECONDS));
+        StockQuote summary = summaries.get(0);
+        assertEquals("Statistics-:AU:BAS", summary.getDescription());
+        assertEquals(1_000, summary.getOfferNumber());
+        assertEquals(2.5, summary.getPrice(), 0.1);
+        TickerStatistics au = summary.getStatistics(0);
+        assertEquals("AU", au.getTickerSymbol());
+        assertEquals(500, au.getCount());
+        assertEquals(2.0, au.getMean(), 0.1);
+        assertTrue(au.getMin() >= 1.9 && au.getMax() <= 2.1);
+        assertEquals(2.0, au.getP50(), 0.1);
+    }
+
+    @Test
+    public void whenSubscribingToTicker_thenReceiveLiveQuotes() {
+        Iterator<StockQuote> stockQuotes = blockingStub.subscribeStockQuotes(StockSubscription.newBuilder()
+                .addTickerSymbol("AU")
+                .build());
+
+        StockQuote first = stockQuotes.next();
+        StockQuote second = stockQuotes.next();
+        assertEquals("Price for stock:AU", first.getDescription());
+        assertEquals(first.getOfferNumber() + 1, second.getOfferNumber());
+    }
+
+    @Test
+    public void whenConflatedSubscriberFallsBehind_thenItResumesWithTheLatestQuotePerTicker() throws Exception {
+        MarketDataHub hub = new MarketDataHub(Duration.ofMillis(1), 1);
+        String serverName = InProcessServerBuilder.generateName();
+        Server server = InProcessServerBuilder.forName(serverName)
+                .addService(ServerInterceptors.intercept(new StockService(hub, 1), new QuoteDeliveryInterceptor()))
+                .build()
+                .start();
+        ManagedChannel channel = InProcessChannelBuilder.forName(serverName).build();
+        try {
+            Metadata headers = new Metadata();
+            headers.put(QuoteDeliveryInterceptor.QUOTE_DELIVERY_HEADER,
+                    QuoteDeliveryInterceptor.QuoteDelivery.CONFLATED.headerValue());
+            BlockingQueue<StockQuote> received = new LinkedBlockingQueue<>();
+            AtomicReference<ClientCallStreamObserver<StockSubscription>> call = new AtomicReference<>();
+            StockQuoteProviderGrpc.newStub(channel)
+                    .withInterceptors(MetadataUtils.newAttachHeadersInterceptor(headers))
+                    .subscribeStockQuotes(StockSubscription.newBuilder()
+                            .addTickerSymbol("AU")
+                            .addTickerSymbol("BAS")
+                            .build(), new ClientResponseObserver<StockSubscription, StockQuote>() {
+                        @Override
+                        public void beforeStart(ClientCallStreamObserver<StockSubscription> requestStream) {
+                            call.set(requestStream);
+                            requestStream.disableAutoRequestWithInitial(1);
+                        }
+
+                        @Override
+                        public void onNext(StockQuote stockQuote) {
+                            received.add(stockQuote);
+                        }
+
+                        @Override
+                        public void onError(Throwable t) {
+                        }
+
+                        @Override
+                        public void onCompleted() {
+                        }
+                    });
+
+            assertNotNull(received.poll(5, TimeUnit.SECONDS));
+            // hundreds of quotes per ticker are published while the subscriber takes none
+            Thread.sleep(300);
+            Map<String, Integer> publishedBeforeResuming = Map.of(
+                    "AU", hub.latest("AU").getOfferNumber(),
+                    "BAS", hub.latest("BAS").getOfferNumber());
+            call.get().request(2);
+
+            Map<String, Integer> resumedAt = new HashMap<>();
+            for (int i = 0; i < 2; i++) {
+                StockQuote stockQuote = received.poll(5, TimeUnit.SECONDS);
+                assertNotNull(stockQuote);
+                String ticker = stockQuote.getDescription().substring("Price for stock:".length());
+                resumedAt.put(ticker, stockQuote.getOfferNumber());
+            }
+            assertEquals(publishedBeforeResuming.keySet(), resumedAt.keySet());
+            publishedBeforeResuming.forEach((ticker, offerNumber) ->
+                    assertTrue(resumedAt.get(ticker) >= offerNumber, ticker + " resumed at " + resumedAt.get(ticker)
+                            + ", before the " + offerNumber + " published while behind"));
+            call.get().cancel("done", null);
+        } finally {
+            channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+            server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+            hub.close();
+        }
+    }
+}
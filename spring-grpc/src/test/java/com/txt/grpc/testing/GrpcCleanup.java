@@ -0,0 +1,55 @@
+package com.txt.grpc.testing;
+
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JUnit 5 stand-in for grpc-testing's {@code GrpcCleanupRule}, which only JUnit 4 applies. Registered channels,
+ * servers and other resources are released in reverse order by {@link #close()}, to be called from the test's
+ * {@code @AfterEach}.
+ */
+public final class GrpcCleanup implements AutoCloseable {
+
+    private final Deque<AutoCloseable> resources = new ArrayDeque<>();
+
+    public <T extends ManagedChannel> T register(T channel) {
+        resources.push(() -> channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS));
+        return channel;
+    }
+
+    public <T extends Server> T register(T server) {
+        resources.push(() -> server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS));
+        return server;
+    }
+
+    public <T extends AutoCloseable> T register(T resource) {
+        resources.push(resource);
+        return resource;
+    }
+
+    /**
+     * Releases every resource, even when some fail; the first failure is rethrown.
+     */
+    @Override
+    public void close() throws Exception {
+        Exception failure = null;
+        for (AutoCloseable resource = resources.poll(); resource != null; resource = resources.poll()) {
+            try {
+                resource.close();
+            } catch (Exception e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}